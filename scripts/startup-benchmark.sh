@@ -0,0 +1,76 @@
+#!/usr/bin/env bash
+#
+# Measures the time from launching the JVM to the first successful booking search, the time an instance scaled out
+# on demand takes to serve, for the plain jar and for the jar started with its AppCDS archive and AOT-processed context.
+#
+# Needs the jar built by the aot profile (mvn -P aot package) and a migrated Postgres database, passed as usual:
+#   SPRING_DATASOURCE_URL=jdbc:postgresql://localhost:5432/<db_name> \
+#   SPRING_DATASOURCE_USERNAME=<db_user> SPRING_DATASOURCE_PASSWORD=<db_password> scripts/startup-benchmark.sh [runs]
+#
+# ROOM_NAME names the room searched for (Main Conference Room by default) and PORT the port to start on (18080 by default).
+# The archive is trained on the JVM running this script, it is only valid on that same JVM.
+
+set -euo pipefail
+
+RUNS="${1:-5}"
+PORT="${PORT:-18080}"
+ROOM_NAME="${ROOM_NAME:-Main Conference Room}"
+PROJECT_DIR="$(cd "$(dirname "$0")/.." && pwd)"
+WORK_DIR="$PROJECT_DIR/target/startup-benchmark"
+JAR="$(ls "$PROJECT_DIR"/target/acme-booking-*.jar 2>/dev/null | head -n 1 || true)"
+
+if [[ -z "$JAR" ]] || ! unzip -l "$JAR" | grep "__BeanDefinitions" > /dev/null; then
+    echo "No AOT-processed jar in target/, build it first with: mvn -P aot package" >&2
+    exit 1
+fi
+
+rm -rf "$WORK_DIR"
+mkdir -p "$WORK_DIR"
+java -Djarmode=tools -jar "$JAR" extract --destination "$WORK_DIR/application" > /dev/null
+EXTRACTED_JAR="$WORK_DIR/application/$(basename "$JAR")"
+
+echo "Training the AppCDS archive"
+java -XX:ArchiveClassesAtExit="$WORK_DIR/application.jsa" -Dspring.aot.enabled=true -Dspring.context.exit=onRefresh \
+    -jar "$EXTRACTED_JAR" --server.port="$PORT" > "$WORK_DIR/training.log" 2>&1
+
+# prints the milliseconds from launching the given command to the first successful booking search, stopping the application afterwards
+time_to_first_request() {
+    local log_file="$1"
+    shift
+    local started
+    started=$(date +%s%N)
+    "$@" --server.port="$PORT" > "$log_file" 2>&1 &
+    local pid=$!
+    until curl -sf -X GET "http://localhost:$PORT/api/v1/bookings" -H "Content-Type: application/json" \
+            -d "{\"roomName\": \"$ROOM_NAME\", \"date\": \"2030-01-07\"}" > /dev/null; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "The application exited before serving, see $log_file" >&2
+            exit 1
+        fi
+        sleep 0.01
+    done
+    echo $((($(date +%s%N) - started) / 1000000))
+    kill "$pid"
+    wait "$pid" || true
+}
+
+# prints the median, min and max of the given numbers
+summary() {
+    printf "%s\n" "$@" | sort -n | awk '{ times[NR] = $1 } END { printf "median %6d ms   min %6d ms   max %6d ms\n", times[int((NR + 1) / 2)], times[1], times[NR] }'
+}
+
+declare -A COMMANDS=(
+    [jar]="java -jar $JAR"
+    [cds]="java -XX:SharedArchiveFile=$WORK_DIR/application.jsa -jar $EXTRACTED_JAR"
+    [aot]="java -Dspring.aot.enabled=true -jar $EXTRACTED_JAR"
+    [aot+cds]="java -XX:SharedArchiveFile=$WORK_DIR/application.jsa -Dspring.aot.enabled=true -jar $EXTRACTED_JAR"
+)
+
+for mode in jar cds aot aot+cds; do
+    times=()
+    for run in $(seq 1 "$RUNS"); do
+        # shellcheck disable=SC2086 # the command is split into its arguments on purpose
+        times+=("$(time_to_first_request "$WORK_DIR/$mode-$run.log" ${COMMANDS[$mode]})")
+    done
+    printf "%-8s %s\n" "$mode" "$(summary "${times[@]}")"
+done
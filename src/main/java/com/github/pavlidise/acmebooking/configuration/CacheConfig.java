@@ -1,33 +1,154 @@
 package com.github.pavlidise.acmebooking.configuration;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.pavlidise.acmebooking.integration.repository.RoomRepository;
 import com.github.pavlidise.acmebooking.model.entity.RoomEntity;
+import com.github.pavlidise.acmebooking.service.RoomCacheSnapshot;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.boot.ApplicationRunner;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 @Slf4j
 @Configuration
 public class CacheConfig {
 
+    public static final String ROOMS_CACHE = "rooms";
+    public static final String ROOM_LIST_CACHE = "roomList";
+    public static final String USERS_CACHE = "users";
+    public static final String ROOM_MISSES_CACHE = "roomMisses";
+    public static final String USER_MISSES_CACHE = "userMisses";
+
     private final RoomRepository roomRepository;
-    private final CacheManager cacheManager;
 
-    public CacheConfig(RoomRepository roomRepository, CacheManager cacheManager) {
+    public CacheConfig(RoomRepository roomRepository) {
         this.roomRepository = roomRepository;
-        this.cacheManager = cacheManager;
     }
 
+    /**
+     * Caffeine backed caches, bounded in size and recording hit/miss/eviction statistics,
+     * which the actuator publishes as cache.* metrics.
+     * Misses are not cached along with the values, where lookups of random names could evict the rooms and users that exist,
+     * but in caches of their own, smaller and expiring sooner, see getOrLoad.
+     * Rooms are refreshed on the application task executor, which runs on virtual threads when those are enabled,
+     * rather than on the common fork join pool, which is not meant for blocking database calls.
+     * The list of all rooms is cached as a single entry, expiring as often as the rooms are refreshed.
+     */
+    @Bean
+    public CacheManager cacheManager(@Value("${acme.booking.cache.rooms.maximum-size:1000}") long roomsMaximumSize,
+                                     @Value("${acme.booking.cache.rooms.refresh-after-write:10m}") Duration roomsRefreshAfterWrite,
+                                     @Value("${acme.booking.cache.users.maximum-size:10000}") long usersMaximumSize,
+                                     @Value("${acme.booking.cache.users.expire-after-write:30m}") Duration usersExpireAfterWrite,
+                                     @Value("${acme.booking.cache.misses.maximum-size:1000}") long missesMaximumSize,
+                                     @Value("${acme.booking.cache.misses.expire-after-write:1m}") Duration missesExpireAfterWrite,
+                                     @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor refreshExecutor) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+        cacheManager.registerCustomCache(ROOMS_CACHE, Caffeine.newBuilder()
+                .maximumSize(roomsMaximumSize)
+                .refreshAfterWrite(roomsRefreshAfterWrite)
+                .executor(refreshExecutor)
+                .recordStats()
+                .build(roomName -> loadRoom((String) roomName)));
+        cacheManager.registerCustomCache(ROOM_LIST_CACHE, Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(roomsRefreshAfterWrite)
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(USERS_CACHE, Caffeine.newBuilder()
+                .maximumSize(usersMaximumSize)
+                .expireAfterWrite(usersExpireAfterWrite)
+                .recordStats()
+                .build());
+        for (String missesCache : List.of(ROOM_MISSES_CACHE, USER_MISSES_CACHE)) {
+            cacheManager.registerCustomCache(missesCache, Caffeine.newBuilder()
+                    .maximumSize(missesMaximumSize)
+                    .expireAfterWrite(missesExpireAfterWrite)
+                    .recordStats()
+                    .build());
+        }
+        return cacheManager;
+    }
+
+    /**
+     * Reloads a room on refresh, so that renamed or removed rooms eventually leave the cache, a null value removing the entry.
+     */
+    private RoomEntity loadRoom(final String roomName) {
+        log.debug("Loading room: {} into cache", roomName);
+        return roomRepository.findByRoomName(roomName).orElse(null);
+    }
+
+    /**
+     * Look a key up, loading and caching its value on a miss, like Cache.get(key, valueLoader) but without holding a lock of the cache while loading.
+     * Caffeine loads a missing entry while holding a lock that lookups of other keys may wait on, which deadlocks when the loader waits for
+     * a database connection held by one of those lookups. Concurrent misses of the same key may each load it instead, the first value loaded is kept.
+     *
+     * @return the cached or loaded value, null if the key has no value, which is not cached
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T getOrLoad(final Cache cache, final Object key, final Supplier<T> valueLoader) {
+        if (!(cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache)) {
+            Cache.ValueWrapper cached = cache.get(key);
+            if (cached != null) {
+                return (T) cached.get();
+            }
+            T value = valueLoader.get();
+            if (value != null) {
+                cache.putIfAbsent(key, value);
+            }
+            return value;
+        }
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> caffeineCache = (com.github.benmanes.caffeine.cache.Cache<Object, Object>) nativeCache;
+        Object storeValue = caffeineCache.getIfPresent(key);
+        if (storeValue == null) {
+            Object loadedValue = valueLoader.get();
+            if (loadedValue == null) {
+                return null;
+            }
+            storeValue = Objects.requireNonNullElse(caffeineCache.asMap().putIfAbsent(key, loadedValue), loadedValue);
+        }
+        return (T) storeValue;
+    }
+
+    /**
+     * Like getOrLoad, for keys that may have no value: a key found to have none is remembered in the misses cache rather than in the cache
+     * of the values, so that lookups of unknown keys neither reach the database again while remembered nor evict the values cached.
+     *
+     * @return the cached or loaded value, null if the key has no value
+     */
+    public static <T> T getOrLoad(final Cache cache, final Cache misses, final Object key, final Supplier<T> valueLoader) {
+        return getOrLoad(cache, key, () -> {
+            if (misses.get(key) != null) {
+                return null;
+            }
+            T value = valueLoader.get();
+            if (value == null) {
+                misses.put(key, Boolean.TRUE);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Rooms are read from the snapshot of the previous startup, when there is one, instead of all the rooms of the database.
+     */
     @Bean
-    public ApplicationRunner preloadRooms() {
+    public ApplicationRunner preloadRooms(CacheManager cacheManager, RoomCacheSnapshot roomCacheSnapshot) {
         return args -> {
-            List<RoomEntity> rooms = roomRepository.getAllRooms();
-            Cache cache = cacheManager.getCache("rooms");
+            List<RoomEntity> rooms = roomCacheSnapshot.loadRooms();
+            Cache cache = cacheManager.getCache(ROOMS_CACHE);
             rooms.forEach(room -> cache.put(room.getRoomName(), room));  // Cache each room by its name
             log.info("Preloaded {} rooms into cache.", rooms.size());
         };
@@ -0,0 +1,84 @@
+package com.github.pavlidise.acmebooking.configuration;
+
+import com.github.pavlidise.acmebooking.service.ReplicaRouting;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.Map;
+
+/**
+ * Active only when acme.booking.replica.enabled is set. The application then connects to the primary database through a pool configured
+ * by the spring.datasource properties, as it does otherwise, and to a read replica through a pool of its own, configured by the
+ * acme.booking.replica.datasource properties, e.g. acme.booking.replica.datasource.jdbc-url, username, password and maximum-pool-size.
+ * <p>
+ * Both are hidden behind a single data source, which picks the one ReplicaRouting decides on once a transaction first reaches the database,
+ * rather than when it begins, so that the routing can rely on the transaction being read-only.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "acme.booking.replica.enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource primaryDataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primaryDataSource.setPoolName(ReplicaRouting.PRIMARY);
+        return primaryDataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("acme.booking.replica.datasource")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource replicaDataSource = new HikariDataSource();
+        replicaDataSource.setPoolName(ReplicaRouting.REPLICA);
+        replicaDataSource.setReadOnly(true);
+        return replicaDataSource;
+    }
+
+    /**
+     * Connections are handed out as proxies, which reach for a connection of either pool on their first statement.
+     * Their defaults are those of the pools, so that setting up a transaction does not reach for a connection on its own.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 ReplicaRouting replicaRouting) {
+        AbstractRoutingDataSource routingDataSource = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return replicaRouting.determineTarget();
+            }
+        };
+        routingDataSource.setTargetDataSources(Map.of(ReplicaRouting.PRIMARY, primaryDataSource, ReplicaRouting.REPLICA, replicaDataSource));
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        routingDataSource.afterPropertiesSet();
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        log.info("Routing replica reads to: {}", ((HikariDataSource) replicaDataSource).getJdbcUrl());
+        return dataSource;
+    }
+
+    /**
+     * Streamed responses are written on the application task executor, which has to read from the primary too when the request does.
+     */
+    @Bean
+    public TaskDecorator replicaRoutingTaskDecorator(ReplicaRouting replicaRouting) {
+        return replicaRouting::propagate;
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.pavlidise.acmebooking.configuration;
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingRepository;
+import com.github.pavlidise.acmebooking.service.RoomScheduleIndex;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.LocalDateTime;
+
+@Configuration
+@ConditionalOnProperty(name = "acme.booking.schedule-index.enabled", havingValue = "true", matchIfMissing = true)
+public class ScheduleIndexConfig {
+
+    private final BookingRepository bookingRepository;
+    private final RoomScheduleIndex roomScheduleIndex;
+
+    public ScheduleIndexConfig(BookingRepository bookingRepository, RoomScheduleIndex roomScheduleIndex) {
+        this.bookingRepository = bookingRepository;
+        this.roomScheduleIndex = roomScheduleIndex;
+    }
+
+    /**
+     * Only bookings that have not ended yet can clash with a new one, since new bookings must start in the future.
+     */
+    @Bean
+    public ApplicationRunner preloadRoomSchedules() {
+        return args -> roomScheduleIndex.load(bookingRepository.findBookingIntervalsEndingFrom(LocalDateTime.now()));
+    }
+}
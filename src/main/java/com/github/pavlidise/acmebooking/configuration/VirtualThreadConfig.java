@@ -0,0 +1,57 @@
+package com.github.pavlidise.acmebooking.configuration;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * Active only when spring.threads.virtual.enabled is set (see the virtual-threads profile) and the runtime is Java 21 or later.
+ * Spring Boot then serves requests and runs the application task executor, which also runs streamed responses
+ * and cache refreshes, on virtual threads.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    private static final String VIRTUAL_THREAD_PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    /**
+     * A virtual thread blocking while pinned to its carrier, e.g. inside a synchronized block, holds one of the few carrier threads
+     * for as long as it blocks. Such pinning is reported by the JVM as a JFR event, which is logged here when it lasts beyond the threshold.
+     */
+    @Bean(destroyMethod = "close")
+    public RecordingStream pinnedVirtualThreadRecording(@Value("${acme.booking.virtual-threads.pinned-threshold:20ms}") Duration pinnedThreshold) {
+        RecordingStream recordingStream = new RecordingStream();
+        recordingStream.enable(VIRTUAL_THREAD_PINNED_EVENT).withThreshold(pinnedThreshold).withStackTrace();
+        recordingStream.onEvent(VIRTUAL_THREAD_PINNED_EVENT, event ->
+                log.warn("Virtual thread pinned to its carrier for {} ms at: {}", event.getDuration().toMillis(), topFrames(event)));
+        recordingStream.startAsync();
+        log.info("Serving requests on virtual threads, logging pinned virtual threads beyond {}", pinnedThreshold);
+        return recordingStream;
+    }
+
+    private static String topFrames(final RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "unknown";
+        }
+        return event.getStackTrace().getFrames().stream()
+                .limit(LOGGED_FRAMES)
+                .map(VirtualThreadConfig::describeFrame)
+                .collect(Collectors.joining(" <- "));
+    }
+
+    private static String describeFrame(final RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
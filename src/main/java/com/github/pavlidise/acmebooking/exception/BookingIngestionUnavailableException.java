@@ -0,0 +1,8 @@
+package com.github.pavlidise.acmebooking.exception;
+
+public class BookingIngestionUnavailableException extends RuntimeException {
+
+    public BookingIngestionUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.pavlidise.acmebooking.exception;
 
+import com.github.pavlidise.acmebooking.service.BookingMetrics;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -19,10 +20,17 @@ import java.util.Map;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private final BookingMetrics bookingMetrics;
+
+    public GlobalExceptionHandler(BookingMetrics bookingMetrics) {
+        this.bookingMetrics = bookingMetrics;
+    }
+
     @ExceptionHandler(BookingNotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public String handleBookingNotFoundException(BookingNotFoundException bookingNotFoundException) {
         log.warn("Handling BookingNotFoundException");
+        bookingMetrics.countException(bookingNotFoundException);
         return bookingNotFoundException.getMessage();
     }
 
@@ -31,6 +39,7 @@ public class GlobalExceptionHandler {
     @ResponseStatus(HttpStatus.CONFLICT)
     public String handleOverlappingBookingException(OverlappingBookingException overlappingBookingException) {
         log.warn("Handling OverlappingBookingException");
+        bookingMetrics.countException(overlappingBookingException);
         return overlappingBookingException.getMessage();
     }
 
@@ -38,6 +47,7 @@ public class GlobalExceptionHandler {
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public String handleRoomNotFoundException(RoomNotFoundException roomNotFoundException) {
         log.warn("Handling OverlappingBookingException");
+        bookingMetrics.countException(roomNotFoundException);
         return roomNotFoundException.getMessage();
     }
 
@@ -45,6 +55,7 @@ public class GlobalExceptionHandler {
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public String handleUserNotFoundException(UserNotFoundException userNotFoundException) {
         log.warn("Handling UserNotFoundException");
+        bookingMetrics.countException(userNotFoundException);
         return userNotFoundException.getMessage();
     }
 
@@ -52,13 +63,31 @@ public class GlobalExceptionHandler {
     @ResponseStatus(HttpStatus.FORBIDDEN)
     public String handlePastBookingDeletionException(PastBookingDeletionException pastBookingDeletionException){
         log.warn("Handling PastBookingDeletionException");
+        bookingMetrics.countException(pastBookingDeletionException);
         return pastBookingDeletionException.getMessage();
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String handleInvalidCursorException(InvalidCursorException invalidCursorException) {
+        log.warn("Handling InvalidCursorException");
+        bookingMetrics.countException(invalidCursorException);
+        return invalidCursorException.getMessage();
+    }
+
+    @ExceptionHandler(BookingIngestionUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String handleBookingIngestionUnavailableException(BookingIngestionUnavailableException bookingIngestionUnavailableException) {
+        log.warn("Handling BookingIngestionUnavailableException");
+        bookingMetrics.countException(bookingIngestionUnavailableException);
+        return bookingIngestionUnavailableException.getMessage();
+    }
+
     @ExceptionHandler(MethodArgumentTypeMismatchException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public String handleIllegalArgumentException(MethodArgumentTypeMismatchException methodArgumentTypeMismatchException) {
         log.error("Handling MethodArgumentTypeMismatchException with: {}", methodArgumentTypeMismatchException.getMessage());
+        bookingMetrics.countException(methodArgumentTypeMismatchException);
         return methodArgumentTypeMismatchException.getMessage();
     }
 
@@ -66,6 +95,7 @@ public class GlobalExceptionHandler {
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public String handleHttpMessageNotReadableException(HttpMessageNotReadableException httpMessageNotReadableException) {
         log.error("Handling HttpMessageNotReadableException caused by: {}", httpMessageNotReadableException.getMessage());
+        bookingMetrics.countException(httpMessageNotReadableException);
         return httpMessageNotReadableException.getMessage();
     }
 
@@ -73,6 +103,7 @@ public class GlobalExceptionHandler {
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public String handleConstraintViolationException(ConstraintViolationException constraintViolationException) {
         log.error("Handling ConstraintViolationException caused by: {}", constraintViolationException.getMessage());
+        bookingMetrics.countException(constraintViolationException);
         return constraintViolationException.getMessage();
     }
 
@@ -80,6 +111,7 @@ public class GlobalExceptionHandler {
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleMethodArgumentNotValidException(MethodArgumentNotValidException methodArgumentNotValidException) {
         log.warn("Handling MethodArgumentNotValidException");
+        bookingMetrics.countException(methodArgumentNotValidException);
         Map<String, String> errors = new HashMap<>();
         methodArgumentNotValidException.getBindingResult().getAllErrors()
                 .forEach(error -> {
@@ -94,6 +126,7 @@ public class GlobalExceptionHandler {
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public String catchAll(Exception exception) {
         log.error("Handling Exception: ", exception);
+        bookingMetrics.countException(exception);
         return "An unexpected error occurred";
     }
 }
@@ -0,0 +1,8 @@
+package com.github.pavlidise.acmebooking.exception;
+
+public class InvalidCursorException extends RuntimeException {
+
+    public InvalidCursorException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.pavlidise.acmebooking.integration.repository;
+
+import com.github.pavlidise.acmebooking.model.dto.ArchivedBookingDTO;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Moves bookings out of the booking table, and out of the partitions detached from it, for the archive.
+ * Bookings are deleted and returned a chunk at a time, the earliest first, in (booking_start_time, id) order,
+ * with the name of their room and the email of their user, so that callers can commit each chunk once they kept it,
+ * instead of holding a single transaction, its locks and its snapshot, for a whole month.
+ * Their keys are deleted along, as the trigger of the booking table deleting them does not fire for the partitions detached from it.
+ */
+@Repository
+public class BookingArchiveRepository {
+
+    private static final Pattern DETACHED_PARTITION = Pattern.compile("booking_p\\d{4}_\\d{2}");
+
+    private static final String MOVE_QUERY =
+            "WITH moved AS (DELETE FROM %1$s WHERE (id, booking_start_time) IN " +
+            "(SELECT id, booking_start_time FROM %1$s%2$s ORDER BY booking_start_time ASC, id ASC LIMIT ?) RETURNING *), " +
+            "unkeyed AS (DELETE FROM booking_key k USING moved m WHERE k.uuid = m.uuid) " +
+            "SELECT m.id, m.uuid, m.room_id, r.room_name, CAST(u.user_email AS text) AS user_email, m.booking_start_time, m.booking_end_time " +
+            "FROM moved m " +
+            "JOIN room r ON r.id = m.room_id " +
+            "JOIN acme_user u ON u.id = m.user_id " +
+            "ORDER BY m.booking_start_time ASC, m.id ASC";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BookingArchiveRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * @param before a date of the first month not to find
+     * @return the months before the month of the given date holding bookings, in order
+     */
+    public List<LocalDate> findMonthsWithBookingsBefore(final LocalDate before) {
+        return jdbcTemplate.queryForList(
+                "SELECT DISTINCT CAST(date_trunc('month', booking_start_time) AS date) FROM booking " +
+                "WHERE booking_start_time < date_trunc('month', CAST(? AS date)) ORDER BY 1",
+                LocalDate.class, before);
+    }
+
+    /**
+     * @return the monthly partitions detached from the booking table, see detach_booking_partitions of the 1.1.1 changelog, in order
+     */
+    public List<String> findDetachedPartitions() {
+        return jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_class c " +
+                "WHERE c.relkind = 'r' AND NOT c.relispartition AND c.relname ~ '^booking_p\\d{4}_\\d{2}$' " +
+                "AND c.relnamespace = CAST(current_schema() AS regnamespace) ORDER BY 1",
+                String.class);
+    }
+
+    /**
+     * Delete the earliest bookings starting in the month of the given date from the booking table.
+     *
+     * @param month a date of the month
+     * @param limit the maximum number of bookings to delete
+     * @return the bookings deleted, in order, fewer than the limit once the month is left empty
+     */
+    public List<ArchivedBookingDTO> moveBookingsOfMonth(final LocalDate month, final int limit) {
+        LocalDateTime monthStart = month.withDayOfMonth(1).atStartOfDay();
+        return moveBookings(String.format(MOVE_QUERY, "booking", " WHERE booking_start_time >= ? AND booking_start_time < ?"),
+                monthStart, monthStart.plusMonths(1), limit);
+    }
+
+    /**
+     * Delete the earliest bookings of a detached partition.
+     *
+     * @param partition the name of the detached partition
+     * @param limit     the maximum number of bookings to delete
+     * @return the bookings deleted, in order, fewer than the limit once the partition is left empty
+     * @throws IllegalArgumentException if the name is not one of a monthly partition
+     */
+    public List<ArchivedBookingDTO> moveBookingsOfDetachedPartition(final String partition, final int limit) {
+        return moveBookings(String.format(MOVE_QUERY, detachedPartition(partition), ""), limit);
+    }
+
+    /**
+     * Drop a detached partition, once all its bookings were moved out of it.
+     *
+     * @param partition the name of the detached partition
+     * @throws IllegalArgumentException if the name is not one of a monthly partition
+     */
+    public void dropDetachedPartition(final String partition) {
+        jdbcTemplate.execute("DROP TABLE " + detachedPartition(partition));
+    }
+
+    private static String detachedPartition(final String partition) {
+        if (!DETACHED_PARTITION.matcher(partition).matches()) {
+            throw new IllegalArgumentException(String.format("Not a booking partition: %s", partition));
+        }
+        return partition;
+    }
+
+    private List<ArchivedBookingDTO> moveBookings(final String query, final Object... parameters) {
+        return jdbcTemplate.query(query, (resultSet, rowNumber) -> new ArchivedBookingDTO(resultSet.getLong("id"),
+                resultSet.getObject("uuid", UUID.class),
+                resultSet.getLong("room_id"),
+                resultSet.getString("room_name"),
+                resultSet.getString("user_email"),
+                resultSet.getObject("booking_start_time", LocalDateTime.class),
+                resultSet.getObject("booking_end_time", LocalDateTime.class)), parameters);
+    }
+}
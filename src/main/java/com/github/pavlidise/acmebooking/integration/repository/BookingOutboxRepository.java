@@ -0,0 +1,75 @@
+package com.github.pavlidise.acmebooking.integration.repository;
+
+import com.github.pavlidise.acmebooking.model.entity.BookingOutboxEntity;
+import com.github.pavlidise.acmebooking.model.projection.BookingChangeView;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BookingOutboxRepository extends JpaRepository<BookingOutboxEntity, Long> {
+
+    /**
+     * Booking Outbox Table
+     * id | tx_id | event_type | booking_uuid | room_id | room_name | user_email | booking_start_time | booking_end_time | occurred_at
+     */
+
+    String CHANGE_COLUMNS =
+            "CAST(CAST(o.tx_id AS text) AS bigint) AS txId, o.id AS id, o.event_type AS type, o.booking_uuid AS uuid, " +
+            "o.room_name AS roomName, o.user_email AS userEmail, o.booking_start_time AS bookingStartTime, " +
+            "o.booking_end_time AS bookingEndTime, o.occurred_at AS occurredAt ";
+
+    /**
+     * Only the changes of transactions older than the oldest one still running, so that a change committed late,
+     * by a transaction that started earlier, is never skipped by a reader that has already moved past it.
+     */
+    String COMMITTED_IN_ORDER = "o.tx_id < pg_snapshot_xmin(pg_current_snapshot()) ";
+
+    /**
+     * Record a change of each of the bookings, in the current transaction.
+     * Must run before the bookings are deleted, as room and user are read from them.
+     */
+    @Modifying
+    @Query(value =
+            "INSERT INTO booking_outbox (event_type, booking_uuid, room_id, room_name, user_email, booking_start_time, booking_end_time) " +
+            "SELECT :eventType, b.uuid, b.room_id, r.room_name, CAST(u.user_email AS text), b.booking_start_time, b.booking_end_time " +
+            "FROM booking b " +
+            "JOIN room r ON r.id = b.room_id " +
+            "JOIN acme_user u ON u.id = b.user_id " +
+            "WHERE b.id IN (:bookingIds) " +
+            "ORDER BY b.id", nativeQuery = true)
+    int insertBookingChanges(@Param("eventType") String eventType, @Param("bookingIds") Collection<Long> bookingIds);
+
+    /**
+     * Changes after the position (txId, id), in (tx_id, id) order, served by the idx_booking_outbox_position index.
+     */
+    @Query(value =
+            "SELECT " + CHANGE_COLUMNS +
+            "FROM booking_outbox o " +
+            "WHERE (o.tx_id, o.id) > (CAST(CAST(:txId AS text) AS xid8), :id) " +
+            "AND " + COMMITTED_IN_ORDER +
+            "ORDER BY o.tx_id, o.id " +
+            "LIMIT :limit", nativeQuery = true)
+    List<BookingChangeView> findChangesAfter(@Param("txId") long txId, @Param("id") long id, @Param("limit") int limit);
+
+    @Query(value =
+            "SELECT " + CHANGE_COLUMNS +
+            "FROM booking_outbox o " +
+            "WHERE " + COMMITTED_IN_ORDER +
+            "ORDER BY o.tx_id DESC, o.id DESC " +
+            "LIMIT 1", nativeQuery = true)
+    Optional<BookingChangeView> findLastChange();
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM booking_outbox WHERE occurred_at < :before", nativeQuery = true)
+    int deleteChangesOccurredBefore(@Param("before") LocalDateTime before);
+}
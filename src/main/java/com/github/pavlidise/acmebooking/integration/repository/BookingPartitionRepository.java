@@ -0,0 +1,55 @@
+package com.github.pavlidise.acmebooking.integration.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Creates and detaches the monthly partitions of the booking table, through the functions of the 1.1.1 changelog.
+ * Both take an ACCESS EXCLUSIVE lock on the booking table, held until the transaction ends, so they give up once they waited
+ * for the lock timeout rather than queue every booking query behind them while a long transaction reads bookings.
+ */
+@Repository
+public class BookingPartitionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BookingPartitionRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Create the partitions of the months up to the given date, if not created yet.
+     *
+     * @param until       a date of the last month to create a partition for
+     * @param lockTimeout the time waited for the lock of the booking table
+     * @return the names of the partitions created
+     */
+    @Transactional
+    public List<String> extendPartitions(final LocalDate until, final Duration lockTimeout) {
+        setLockTimeout(lockTimeout);
+        return jdbcTemplate.queryForList("SELECT extend_booking_partitions(?)", String.class, until);
+    }
+
+    /**
+     * Detach the partitions of the months before the month of the given date.
+     *
+     * @param before      a date of the first month to keep attached
+     * @param lockTimeout the time waited for the lock of the booking table
+     * @return the names of the partitions detached, now tables of their own
+     */
+    @Transactional
+    public List<String> detachPartitions(final LocalDate before, final Duration lockTimeout) {
+        setLockTimeout(lockTimeout);
+        return jdbcTemplate.queryForList("SELECT detach_booking_partitions(?)", String.class, before);
+    }
+
+    private void setLockTimeout(final Duration lockTimeout) {
+        jdbcTemplate.queryForObject("SELECT set_config('lock_timeout', ?, true)", String.class, lockTimeout.toMillis() + "ms");
+    }
+}
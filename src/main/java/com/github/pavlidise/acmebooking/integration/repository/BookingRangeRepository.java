@@ -0,0 +1,93 @@
+package com.github.pavlidise.acmebooking.integration.repository;
+
+import com.github.pavlidise.acmebooking.model.dto.BookingCursor;
+import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Keyset paginated reads of a room's bookings, in (booking_start_time, id) order.
+ * Rows are read through a forward-only result set in chunks of the fetch size and handed over one at a time,
+ * so memory stays constant however many bookings are read. The Postgres driver only fetches in chunks
+ * within a transaction, so callers must run in one.
+ */
+@Repository
+public class BookingRangeRepository {
+
+    /**
+     * Bookings of a room never overlap, as guaranteed by the overlap constraints of the booking partitions and the check across months.
+     * So besides those starting within the period, at most one booking, the last one starting before it, can touch the period.
+     * Looking it up first lets the btree index idx_booking_room_dates serve the whole search, ordered by start time.
+     */
+    private static final String SEARCH_QUERY =
+            "SELECT b.id, b.uuid, r.room_name, CAST(u.user_email AS text) AS user_email, b.booking_start_time, b.booking_end_time " +
+            "FROM booking b " +
+            "JOIN room r ON r.id = b.room_id " +
+            "JOIN acme_user u ON u.id = b.user_id " +
+            "WHERE b.room_id = :roomId " +
+            "AND b.booking_start_time >= COALESCE(" +
+            "(SELECT p.booking_start_time FROM (SELECT booking_start_time, booking_end_time FROM booking " +
+            "WHERE room_id = :roomId AND booking_start_time < :periodStart ORDER BY booking_start_time DESC LIMIT 1) p " +
+            "WHERE p.booking_end_time >= :periodStart), :periodStart) " +
+            "AND b.booking_start_time < :periodEnd ";
+
+    private static final String AFTER_CURSOR_CONDITION =
+            "AND b.booking_start_time >= :afterStartTime AND (b.booking_start_time, b.id) > (:afterStartTime, :afterId) ";
+
+    private static final String ORDER_BY = "ORDER BY b.booking_start_time ASC, b.id ASC";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public BookingRangeRepository(DataSource dataSource, @Value("${acme.booking.search.fetch-size:500}") int fetchSize) {
+        JdbcTemplate fetchingJdbcTemplate = new JdbcTemplate(dataSource);
+        fetchingJdbcTemplate.setFetchSize(fetchSize);
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(fetchingJdbcTemplate);
+    }
+
+    /**
+     * Read the bookings of the room touching the half-open period [periodStart, periodEnd), in (booking_start_time, id) order.
+     *
+     * @param roomId      the ID of the room
+     * @param periodStart the start of the period
+     * @param periodEnd   the end of the period
+     * @param after       the cursor to resume after, null to start from the beginning
+     * @param limit       the maximum number of bookings to read, null for all of them
+     * @param consumer    receives the cursor and details of each booking, in order
+     */
+    public void searchBookingsOfRoom(final Long roomId, final LocalDateTime periodStart, final LocalDateTime periodEnd,
+                                     final BookingCursor after, final Integer limit,
+                                     final BiConsumer<BookingCursor, ConfirmedBookingDTO> consumer) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("roomId", roomId)
+                .addValue("periodStart", periodStart)
+                .addValue("periodEnd", periodEnd);
+        StringBuilder query = new StringBuilder(SEARCH_QUERY);
+        if (after != null) {
+            query.append(AFTER_CURSOR_CONDITION);
+            parameters.addValue("afterStartTime", after.bookingStartTime()).addValue("afterId", after.id());
+        }
+        query.append(ORDER_BY);
+        if (limit != null) {
+            query.append(" LIMIT :limit");
+            parameters.addValue("limit", limit);
+        }
+
+        jdbcTemplate.query(query.toString(), parameters, resultSet -> {
+            LocalDateTime bookingStartTime = resultSet.getObject("booking_start_time", LocalDateTime.class);
+            consumer.accept(new BookingCursor(bookingStartTime, resultSet.getLong("id")),
+                    new ConfirmedBookingDTO(resultSet.getObject("uuid", UUID.class),
+                            resultSet.getString("room_name"),
+                            resultSet.getString("user_email"),
+                            bookingStartTime,
+                            resultSet.getObject("booking_end_time", LocalDateTime.class)));
+        });
+    }
+}
@@ -1,16 +1,23 @@
 package com.github.pavlidise.acmebooking.integration.repository;
 
+import com.github.pavlidise.acmebooking.model.dto.BookingIntervalDTO;
 import com.github.pavlidise.acmebooking.model.entity.BookingEntity;
+import com.github.pavlidise.acmebooking.model.projection.BookingIntervalView;
+import com.github.pavlidise.acmebooking.model.projection.ConfirmedBookingView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookingRepository extends JpaRepository<BookingEntity, Long> {
@@ -20,18 +27,106 @@ public interface BookingRepository extends JpaRepository<BookingEntity, Long> {
      * id | room_id | user_id | booking_start_time | booking_end_time
      */
 
+    /**
+     * The booking table is partitioned by month of booking_start_time, and a range overlap alone can not prune partitions.
+     * Bookings of a room never overlap, so besides those starting within a period, at most one booking, the last one starting before it,
+     * can touch the period. Bounding booking_start_time from its start on lets Postgres skip every month before, once the bound is known.
+     */
+    String LAST_BOOKING_STARTING_BEFORE_PERIOD =
+            "(SELECT p.booking_start_time FROM (SELECT booking_start_time, booking_end_time FROM booking " +
+            "WHERE room_id = :roomId AND booking_start_time < :periodStart ORDER BY booking_start_time DESC LIMIT 1) p " +
+            "WHERE p.booking_end_time >= :periodStart)";
+
+    /**
+     * The earliest of the last bookings of the rooms starting before a period and touching it, see LAST_BOOKING_STARTING_BEFORE_PERIOD.
+     */
+    String LAST_BOOKING_OF_ROOMS_STARTING_BEFORE_PERIOD =
+            "(SELECT min(p.booking_start_time) FROM room r CROSS JOIN LATERAL (SELECT booking_start_time, booking_end_time FROM booking " +
+            "WHERE room_id = r.id AND booking_start_time < :periodStart ORDER BY booking_start_time DESC LIMIT 1) p " +
+            "WHERE r.id IN (:roomIds) AND p.booking_end_time >= :periodStart)";
+
+    /**
+     * Bookings of the room touching the half-open period [periodStart, periodEnd).
+     * Room and user are joined in, so that a single statement is issued however many bookings are found.
+     * Only the months touching the period are read, see LAST_BOOKING_STARTING_BEFORE_PERIOD.
+     */
     @Query(value =
-            "SELECT * FROM booking b " +
-            "WHERE b.room_id = :targetRoom AND (DATE(b.booking_start_time) <= :targetDate and DATE(b.booking_end_time) >= :targetDate) " +
+            "SELECT b.uuid AS uuid, r.room_name AS roomName, CAST(u.user_email AS text) AS userEmail, " +
+            "b.booking_start_time AS bookingStartTime, b.booking_end_time AS bookingEndTime " +
+            "FROM booking b " +
+            "JOIN room r ON r.id = b.room_id " +
+            "JOIN acme_user u ON u.id = b.user_id " +
+            "WHERE b.room_id = :roomId " +
+            "AND b.booking_start_time >= COALESCE(" + LAST_BOOKING_STARTING_BEFORE_PERIOD + ", :periodStart) " +
+            "AND b.booking_start_time < :periodEnd " +
+            "AND tsrange(b.booking_start_time, b.booking_end_time, '[]') && tsrange(:periodStart, :periodEnd, '[)') " +
             "ORDER BY b.booking_start_time ASC", nativeQuery = true)
-    List<BookingEntity> searchBookingsByRoomAndDateOrderByBookingStartTimeAsc(@Param("targetRoom") Long targetRoom, @Param("targetDate") LocalDate targetDate);
+    List<ConfirmedBookingView> searchBookingsByRoomAndPeriodOrderByBookingStartTimeAsc(@Param("roomId") Long roomId,
+                                                                               @Param("periodStart") LocalDateTime periodStart,
+                                                                               @Param("periodEnd") LocalDateTime periodEnd);
 
+    /**
+     * Whether any booking of the room touches the period [periodStart, periodEnd], both ends inclusive.
+     * Same predicate as the overlap constraints of the partitions, so it can be served by their GiST indexes.
+     * Only the months touching the period are read, see LAST_BOOKING_STARTING_BEFORE_PERIOD.
+     */
     @Query(value =
-            "SELECT COUNT(b) > 0 FROM booking b WHERE b.room_id = :roomId " +
-            "AND b.booking_end_time >= :startDate AND b.booking_start_time <= :endDate", nativeQuery = true)
+            "SELECT EXISTS (SELECT 1 FROM booking b WHERE b.room_id = :roomId " +
+            "AND b.booking_start_time >= COALESCE(" + LAST_BOOKING_STARTING_BEFORE_PERIOD + ", :periodStart) " +
+            "AND b.booking_start_time <= :periodEnd " +
+            "AND tsrange(b.booking_start_time, b.booking_end_time, '[]') && tsrange(:periodStart, :periodEnd, '[]'))", nativeQuery = true)
     boolean existsOverlappingBooking(@Param("roomId") Long roomId,
-                                     @Param("startDate") LocalDateTime startDate,
-                                     @Param("endDate") LocalDateTime endDate);
+                                     @Param("periodStart") LocalDateTime periodStart,
+                                     @Param("periodEnd") LocalDateTime periodEnd);
+
+    /**
+     * Take the transaction-level advisory lock keyed on the room id, waiting for the transaction holding it, if any, to end.
+     * Released when the current transaction commits or rolls back.
+     */
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:roomId)", nativeQuery = true)
+    Integer lockRoomForWrite(@Param("roomId") Long roomId);
 
-    Optional<BookingEntity> findBookingEntityByUuid(UUID uuid);
+    /**
+     * Bookings of any of the rooms touching the period [periodStart, periodEnd], both ends inclusive.
+     * Only the months touching the period are read, see LAST_BOOKING_OF_ROOMS_STARTING_BEFORE_PERIOD.
+     */
+    @Query(value =
+            "SELECT b.room_id AS roomId, b.uuid AS uuid, b.booking_start_time AS bookingStartTime, b.booking_end_time AS bookingEndTime " +
+            "FROM booking b WHERE b.room_id IN (:roomIds) " +
+            "AND b.booking_start_time >= COALESCE(" + LAST_BOOKING_OF_ROOMS_STARTING_BEFORE_PERIOD + ", :periodStart) " +
+            "AND b.booking_start_time <= :periodEnd " +
+            "AND tsrange(b.booking_start_time, b.booking_end_time, '[]') && tsrange(:periodStart, :periodEnd, '[]')", nativeQuery = true)
+    List<BookingIntervalView> findBookingIntervalsOverlapping(@Param("roomIds") Collection<Long> roomIds,
+                                                              @Param("periodStart") LocalDateTime periodStart,
+                                                              @Param("periodEnd") LocalDateTime periodEnd);
+
+    /**
+     * Bookings of any of the rooms touching the half-open period [periodStart, periodEnd), sorted by room and start time.
+     * Streamed in chunks of the fetch size, so that the caller can walk through each room's schedule in a single pass.
+     * Only the months touching the period are read, see LAST_BOOKING_OF_ROOMS_STARTING_BEFORE_PERIOD.
+     */
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(value =
+            "SELECT b.room_id AS roomId, b.uuid AS uuid, b.booking_start_time AS bookingStartTime, b.booking_end_time AS bookingEndTime " +
+            "FROM booking b WHERE b.room_id IN (:roomIds) " +
+            "AND b.booking_start_time >= COALESCE(" + LAST_BOOKING_OF_ROOMS_STARTING_BEFORE_PERIOD + ", :periodStart) " +
+            "AND b.booking_start_time < :periodEnd " +
+            "AND tsrange(b.booking_start_time, b.booking_end_time, '[]') && tsrange(:periodStart, :periodEnd, '[)') " +
+            "ORDER BY b.room_id ASC, b.booking_start_time ASC", nativeQuery = true)
+    Stream<BookingIntervalView> streamBookingIntervalsOverlappingOrderByRoomAndStartTime(@Param("roomIds") Collection<Long> roomIds,
+                                                                                        @Param("periodStart") LocalDateTime periodStart,
+                                                                                        @Param("periodEnd") LocalDateTime periodEnd);
+
+    /**
+     * The start time of the booking is read from booking_key first, so that only the partition of its month is read, see the 1.1.3 changelog.
+     */
+    @Query(value =
+            "SELECT * FROM booking b WHERE b.uuid = :uuid " +
+            "AND b.booking_start_time = (SELECT k.booking_start_time FROM booking_key k WHERE k.uuid = :uuid)", nativeQuery = true)
+    Optional<BookingEntity> findBookingEntityByUuid(@Param("uuid") UUID uuid);
+
+    @Query(value =
+            "SELECT new com.github.pavlidise.acmebooking.model.dto.BookingIntervalDTO(b.room.id, b.uuid, b.bookingStartTime, b.bookingEndTime) " +
+            "FROM BookingEntity b WHERE b.bookingEndTime >= :from")
+    List<BookingIntervalDTO> findBookingIntervalsEndingFrom(@Param("from") LocalDateTime from);
 }
@@ -0,0 +1,30 @@
+package com.github.pavlidise.acmebooking.integration.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+
+/**
+ * Reads the versions of the schedules of the rooms, bumped by the trigger on the booking table of the 1.1.2 changelog.
+ */
+@Repository
+public class BookingScheduleVersionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BookingScheduleVersionRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * @return the version of the schedule of the room on the date, 0 if never bumped
+     */
+    public long findVersion(final Long roomId, final LocalDate date) {
+        Long version = jdbcTemplate.queryForObject(
+                "SELECT coalesce(max(version), 0) FROM booking_schedule_version WHERE room_id = ? AND schedule_date = ?",
+                Long.class, roomId, date);
+        return version != null ? version : 0;
+    }
+}
@@ -1,17 +1,28 @@
 package com.github.pavlidise.acmebooking.integration.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.pavlidise.acmebooking.model.dto.BookingBatchResultDTO;
 import com.github.pavlidise.acmebooking.model.dto.BookingInquiryDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingPageDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingRangeInquiryDTO;
 import com.github.pavlidise.acmebooking.model.dto.BookingRequestDTO;
 import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO;
+import com.github.pavlidise.acmebooking.model.dto.RecurringBookingRequestDTO;
+import com.github.pavlidise.acmebooking.service.BookingChangeFeed;
+import com.github.pavlidise.acmebooking.service.BookingMetrics;
 import com.github.pavlidise.acmebooking.service.BookingService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import jakarta.websocket.server.PathParam;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -19,10 +30,19 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Slf4j
@@ -34,33 +54,143 @@ public class BookingController {
 
     private final BookingService bookingService;
 
-    public BookingController(BookingService bookingService) {
+    private final ObjectMapper objectMapper;
+
+    private final BookingMetrics bookingMetrics;
+
+    private final BookingChangeFeed bookingChangeFeed;
+
+    public BookingController(BookingService bookingService, ObjectMapper objectMapper, BookingMetrics bookingMetrics,
+                             BookingChangeFeed bookingChangeFeed) {
         this.bookingService = bookingService;
+        this.objectMapper = objectMapper;
+        this.bookingMetrics = bookingMetrics;
+        this.bookingChangeFeed = bookingChangeFeed;
     }
 
     /**
      * Search for bookings by room name and booking date.
+     * The bookings are tagged with a strong ETag of the schedule of the room on the date, and searched again only when
+     * the ETag sent in If-None-Match no longer matches, i.e. once a booking of the room touching the date was created or deleted.
      *
      * @param bookingInquiryDTO DTO consisting of room name and date to filter bookings
-     * @return a list of ConfirmedBookingDTO(Bookings) matching the criteria
+     * @param webRequest the request, checked for the If-None-Match header
+     * @return a list of ConfirmedBookingDTO(Bookings) matching the criteria, or no content when not modified
      */
     @Operation(summary = "Search Bookings, based on room and date",
             description = """
                     Validates incoming request and proceeds with the search of bookings based on the provided filters.
                     If at any point during that process an error occurs, an appropriate message is returned.
+                    If the ETag sent in If-None-Match still matches, the bookings are not searched again and it returns Not Modified.
                     Else it returns any found bookings.
                     """)
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved bookings", useReturnTypeSchema = true),
+            @ApiResponse(responseCode = "304", description = "Bookings not modified since the ETag sent in If-None-Match"),
             @ApiResponse(responseCode = "400", description = "Invalid input"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @GetMapping(consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<ConfirmedBookingDTO>> searchBookings(@Valid @RequestBody BookingInquiryDTO bookingInquiryDTO) {
+    public ResponseEntity<List<ConfirmedBookingDTO>> searchBookings(@Valid @RequestBody BookingInquiryDTO bookingInquiryDTO, WebRequest webRequest) {
         log.info("Searching for bookings with criteria: {}", bookingInquiryDTO);
+        Optional<String> eTag = bookingService.getBookingsETag(bookingInquiryDTO);
+        if (eTag.isPresent() && webRequest.checkNotModified(eTag.get())) {
+            log.info("Bookings matching the criteria not modified since ETag: {}", eTag.get());
+            bookingMetrics.countNotModifiedSearch();
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag.get()).cacheControl(CacheControl.noCache()).build();
+        }
         List<ConfirmedBookingDTO> confirmedBookingDTOList = bookingService.searchBookings(bookingInquiryDTO);
         log.info("Found {} bookings matching the criteria", confirmedBookingDTOList.size());
-        return ResponseEntity.ok(confirmedBookingDTOList);
+        return eTag.map(tag -> ResponseEntity.ok().eTag(tag).cacheControl(CacheControl.noCache()))
+                .orElseGet(ResponseEntity::ok)
+                .body(confirmedBookingDTOList);
+    }
+
+    /**
+     * Search for a page of bookings by room name and date range.
+     *
+     * @param bookingRangeInquiryDTO DTO consisting of room name, date range, and the cursor and size of the page
+     * @return a page of ConfirmedBookingDTO(Bookings) matching the criteria, with the cursor of the next page
+     */
+    @Operation(summary = "Search Bookings page by page, based on room and date range",
+            description = """
+                    Validates incoming request and proceeds with the search of bookings based on the provided filters.
+                    If at any point during that process an error occurs, an appropriate message is returned.
+                    Else it returns a page of found bookings, along with the cursor to request the next page with, unless this is the last one.
+                    """)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved bookings", useReturnTypeSchema = true),
+            @ApiResponse(responseCode = "400", description = "Invalid input or cursor"),
+            @ApiResponse(responseCode = "404", description = "Room not found"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping(path = "/page", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BookingPageDTO> searchBookingsPage(@Valid @RequestBody BookingRangeInquiryDTO bookingRangeInquiryDTO) {
+        log.info("Searching for a page of bookings with criteria: {}", bookingRangeInquiryDTO);
+        BookingPageDTO bookingPageDTO = bookingService.searchBookingsPage(bookingRangeInquiryDTO);
+        log.info("Found {} bookings matching the criteria, more to follow: {}", bookingPageDTO.bookings().size(), bookingPageDTO.nextCursor() != null);
+        return ResponseEntity.ok(bookingPageDTO);
+    }
+
+    /**
+     * Stream bookings by room name and date range, as newline delimited JSON.
+     *
+     * @param bookingRangeInquiryDTO DTO consisting of room name, date range, and optional cursor and limit
+     * @return the ConfirmedBookingDTO(Bookings) matching the criteria, one JSON document per line, written as they are read
+     */
+    @Operation(summary = "Stream Bookings, based on room and date range",
+            description = """
+                    Validates incoming request and proceeds with the search of bookings based on the provided filters.
+                    If an error occurs before the first booking is written, an appropriate message is returned.
+                    Else it writes each found booking as a line of JSON, as it is read.
+                    """)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully streamed bookings"),
+            @ApiResponse(responseCode = "400", description = "Invalid input or cursor"),
+            @ApiResponse(responseCode = "404", description = "Room not found"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping(path = "/stream", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamBookings(@Valid @RequestBody BookingRangeInquiryDTO bookingRangeInquiryDTO) {
+        log.info("Streaming bookings with criteria: {}", bookingRangeInquiryDTO);
+        StreamingResponseBody body = outputStream ->
+                bookingService.streamBookings(bookingRangeInquiryDTO, confirmedBookingDTO -> writeLine(outputStream, confirmedBookingDTO));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private void writeLine(final OutputStream outputStream, final ConfirmedBookingDTO confirmedBookingDTO) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(confirmedBookingDTO));
+            outputStream.write('\n');
+        } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+        }
+    }
+
+    /**
+     * Stream the bookings created and deleted, as server-sent events, resuming after the position of the last change received.
+     *
+     * @param after the position of the last change received, if any
+     * @param lastEventId the position of the last change received, sent by a client reconnecting, which takes precedence
+     * @return the changes, one event per change, named after its type, with its position as id and the BookingChangeDTO as data
+     */
+    @Operation(summary = "Stream Booking changes",
+            description = """
+                    Validates the position to resume after, if any, and proceeds with streaming the bookings created and deleted after it,
+                    in the order they were committed, or the ones committed from now on when there is none.
+                    Each change is sent as a server-sent event, whose id is the position to resume after, e.g. with the Last-Event-ID header.
+                    """)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully subscribed to booking changes"),
+            @ApiResponse(responseCode = "400", description = "Invalid position"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping(path = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(name = "after", required = false) String after,
+                                    @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        String position = lastEventId != null ? lastEventId : after;
+        log.info("Streaming booking changes after position: {}", position);
+        return bookingChangeFeed.subscribe(position);
     }
 
     /**
@@ -91,6 +221,60 @@ public class BookingController {
         return ResponseEntity.ok(confirmedBookingDTO);
     }
 
+    /**
+     * Book several rooms at once, e.g. a recurring booking, based on a list of BookingRequestDTO.
+     *
+     * @param bookingRequestDTOs the booking reservation details, at most 500
+     * @return the outcome of each booking request, in the order of the requests
+     */
+    @Operation(summary = "Create new Bookings in batch",
+            description = """
+                    Validates incoming requests and proceeds with the creation of the bookings in a single transaction.
+                    A request that can not be booked, e.g. due to an overlap, is reported with an appropriate message in its result.
+                    Else its result contains the newly created booking.
+                    """)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully processed booking requests", useReturnTypeSchema = true),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "409", description = "Overlapping booking created concurrently, no booking was created"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BookingBatchResultDTO>> createBookings(
+            @RequestBody @NotEmpty @Size(max = 500) List<@Valid BookingRequestDTO> bookingRequestDTOs) {
+        log.info("Creating a batch of {} bookings", bookingRequestDTOs.size());
+        List<BookingBatchResultDTO> bookingBatchResultDTOs = bookingService.createBookings(bookingRequestDTOs);
+        log.info("Batch of {} bookings processed", bookingBatchResultDTOs.size());
+        return ResponseEntity.ok(bookingBatchResultDTOs);
+    }
+
+    /**
+     * Book a room repeatedly, based on the RecurringBookingRequestDTO.
+     *
+     * @param recurringBookingRequestDTO the recurring booking details
+     * @return the confirmed booking details of every occurrence
+     */
+    @Operation(summary = "Create new recurring Booking",
+            description = """
+                    Validates incoming request, expands the series and proceeds with the creation of all its occurrences at once.
+                    If any occurrence can not be booked, none is and an appropriate message is returned.
+                    Else it returns the newly created bookings.
+                    """)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully created bookings", useReturnTypeSchema = true),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "409", description = "Overlapping booking"),
+            @ApiResponse(responseCode = "404", description = "Room or User not found"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping(path = "/recurring", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<ConfirmedBookingDTO>> createRecurringBooking(@Valid @RequestBody RecurringBookingRequestDTO recurringBookingRequestDTO) {
+        log.info("Creating a recurring booking with details: {}", recurringBookingRequestDTO);
+        List<ConfirmedBookingDTO> confirmedBookingDTOList = bookingService.createRecurringBooking(recurringBookingRequestDTO);
+        log.info("{} bookings created successfully for room: {}", confirmedBookingDTOList.size(), recurringBookingRequestDTO.roomName());
+        return ResponseEntity.ok(confirmedBookingDTOList);
+    }
+
     /**
      * Delete a booking by its UUID.
      * This operation should be performed only by authorized personnel. (future endeavors)
@@ -0,0 +1,93 @@
+package com.github.pavlidise.acmebooking.integration.rest;
+
+import com.github.pavlidise.acmebooking.service.ReplicaRouting;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseCookie;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Reads back the writes of a client from the primary database, for the read-your-writes window after them,
+ * rather than from a read replica which may not have replayed them yet.
+ * Each write hands the client a cookie holding the time it was made, and the reads of a client sending it back within the window
+ * go to the primary, so that a client that wrote through any instance reads its writes through any instance.
+ * <p>
+ * The cookie is handed out before the write is served, as the response may be committed by the time it was, so a write that failed
+ * sends the reads of the client to the primary as well. A cookie holding a time that can not be read is ignored.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "acme.booking.replica.enabled", havingValue = "true")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String LAST_WRITE_COOKIE = "acme_booking_last_write";
+
+    private static final String API_PATH = "/api/";
+
+    private final ReplicaRouting replicaRouting;
+
+    private final Duration readYourWritesWindow;
+
+    public ReadYourWritesFilter(ReplicaRouting replicaRouting,
+                                @Value("${acme.booking.replica.read-your-writes-window:5s}") Duration readYourWritesWindow) {
+        this.replicaRouting = replicaRouting;
+        this.readYourWritesWindow = readYourWritesWindow;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(API_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response, final FilterChain filterChain)
+            throws ServletException, IOException {
+        if (isWrite(request)) {
+            response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(LAST_WRITE_COOKIE, String.valueOf(System.currentTimeMillis()))
+                    .path(API_PATH)
+                    .maxAge(readYourWritesWindow)
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build()
+                    .toString());
+            filterChain.doFilter(request, response);
+            return;
+        }
+        replicaRouting.requirePrimary(wroteLately(request));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            replicaRouting.requirePrimary(false);
+        }
+    }
+
+    private static boolean isWrite(final HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod());
+    }
+
+    private boolean wroteLately(final HttpServletRequest request) {
+        Cookie lastWrite = WebUtils.getCookie(request, LAST_WRITE_COOKIE);
+        if (lastWrite == null) {
+            return false;
+        }
+        try {
+            return System.currentTimeMillis() - Long.parseLong(lastWrite.getValue()) < readYourWritesWindow.toMillis();
+        } catch (NumberFormatException numberFormatException) {
+            log.debug("Ignoring unreadable {} cookie: {}", LAST_WRITE_COOKIE, lastWrite.getValue());
+            return false;
+        }
+    }
+}
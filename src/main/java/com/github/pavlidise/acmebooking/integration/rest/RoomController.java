@@ -0,0 +1,59 @@
+package com.github.pavlidise.acmebooking.integration.rest;
+
+import com.github.pavlidise.acmebooking.model.dto.AvailabilityInquiryDTO;
+import com.github.pavlidise.acmebooking.model.dto.FreeSlotDTO;
+import com.github.pavlidise.acmebooking.service.AvailabilityService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@Slf4j
+@Validated
+@RestController
+@RequestMapping("api/v1/rooms")
+@Tag(name = "ACME Booking REST API")
+public class RoomController {
+
+    private final AvailabilityService availabilityService;
+
+    public RoomController(AvailabilityService availabilityService) {
+        this.availabilityService = availabilityService;
+    }
+
+    /**
+     * Search for free slots across all rooms, based on a date range, a minimum duration and an optional minimum capacity.
+     *
+     * @param availabilityInquiryDTO DTO consisting of the date range, the minimum duration and the optional minimum capacity
+     * @return a list of FreeSlotDTO matching the criteria, sorted by room and time
+     */
+    @Operation(summary = "Search free slots across rooms, based on date range, duration and capacity",
+            description = """
+                    Validates incoming request and proceeds with the computation of the free slots of every room with enough capacity.
+                    If at any point during that process an error occurs, an appropriate message is returned.
+                    Else it returns any free slots lasting at least the requested duration.
+                    """)
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved free slots", useReturnTypeSchema = true),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping(path = "/availability", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<FreeSlotDTO>> findFreeSlots(@Valid @RequestBody AvailabilityInquiryDTO availabilityInquiryDTO) {
+        log.info("Searching for free slots with criteria: {}", availabilityInquiryDTO);
+        List<FreeSlotDTO> freeSlotDTOList = availabilityService.findFreeSlots(availabilityInquiryDTO);
+        log.info("Found {} free slots matching the criteria", freeSlotDTOList.size());
+        return ResponseEntity.ok(freeSlotDTOList);
+    }
+}
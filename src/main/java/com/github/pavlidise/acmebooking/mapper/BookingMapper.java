@@ -1,15 +1,22 @@
 package com.github.pavlidise.acmebooking.mapper;
 
+import com.github.pavlidise.acmebooking.model.dto.ArchivedBookingDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingChangeDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingChangePosition;
+import com.github.pavlidise.acmebooking.model.dto.BookingIntervalDTO;
 import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO;
 import com.github.pavlidise.acmebooking.model.entity.BookingEntity;
 import com.github.pavlidise.acmebooking.model.entity.RoomEntity;
 import com.github.pavlidise.acmebooking.model.entity.AcmeUserEntity;
+import com.github.pavlidise.acmebooking.model.projection.BookingChangeView;
+import com.github.pavlidise.acmebooking.model.projection.BookingIntervalView;
+import com.github.pavlidise.acmebooking.model.projection.ConfirmedBookingView;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Named;
 import org.mapstruct.factory.Mappers;
 
-@Mapper
+@Mapper(imports = BookingChangePosition.class)
 public interface BookingMapper {
 
     BookingMapper INSTANCE = Mappers.getMapper( BookingMapper.class );
@@ -21,6 +28,18 @@ public interface BookingMapper {
     @Mapping(source = "uuid", target = "uuid")
     ConfirmedBookingDTO mapConfirmedBookingFromBooking(BookingEntity bookingEntity);
 
+    ConfirmedBookingDTO mapConfirmedBookingFromView(ConfirmedBookingView confirmedBookingView);
+
+    ConfirmedBookingDTO mapConfirmedBookingFromArchived(ArchivedBookingDTO archivedBookingDTO);
+
+    @Mapping(source = "room.id", target = "roomId")
+    BookingIntervalDTO mapBookingIntervalFromBooking(BookingEntity bookingEntity);
+
+    BookingIntervalDTO mapBookingIntervalFromView(BookingIntervalView bookingIntervalView);
+
+    @Mapping(target = "position", expression = "java(new BookingChangePosition(bookingChangeView.getTxId(), bookingChangeView.getId()).encode())")
+    BookingChangeDTO mapBookingChangeFromView(BookingChangeView bookingChangeView);
+
     @Named("getNameFromRoom")
     static String getNameFromRoom(RoomEntity room){
         return room.getRoomName();
@@ -0,0 +1,37 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A booking moved out of the booking table into the archive, holding the room name and user email it was booked with.
+ */
+public record ArchivedBookingDTO(
+        @NotNull
+        Long id,
+
+        @NotNull
+        UUID uuid,
+
+        @NotNull
+        Long roomId,
+
+        @NotNull
+        String roomName,
+
+        @NotNull
+        String userEmail,
+
+        @NotNull
+        LocalDateTime bookingStartTime,
+
+        @NotNull
+        LocalDateTime bookingEndTime
+) {
+
+    public BookingCursor cursor() {
+        return new BookingCursor(bookingStartTime, id);
+    }
+}
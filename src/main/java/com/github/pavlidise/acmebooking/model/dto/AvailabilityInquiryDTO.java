@@ -0,0 +1,33 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+public record AvailabilityInquiryDTO(
+
+        @NotNull
+        LocalDate fromDate,
+
+        @NotNull
+        LocalDate toDate,
+
+        @Min(1)
+        int minimumDurationMinutes,
+
+        @Positive
+        Short minimumCapacity
+) {
+
+    public static final int MAX_DAYS = 31;
+
+    @AssertTrue(message = "toDate must not be before fromDate, nor more than " + MAX_DAYS + " days after it")
+    public boolean isDateRangeValid() {
+        return fromDate == null || toDate == null
+                || (!toDate.isBefore(fromDate) && ChronoUnit.DAYS.between(fromDate, toDate) < MAX_DAYS);
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+/**
+ * Outcome of a single request of a booking batch.
+ * Either the confirmed booking or the reason it was rejected is present.
+ */
+public record BookingBatchResultDTO(
+
+        int index,
+
+        ConfirmedBookingDTO confirmedBooking,
+
+        String errorMessage
+) {
+}
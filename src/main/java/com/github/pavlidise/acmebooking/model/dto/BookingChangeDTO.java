@@ -0,0 +1,41 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A booking created or deleted, as streamed by the booking change feed.
+ *
+ * @param position the position of the change, to resume the feed after it
+ * @param type created or deleted
+ * @param occurredAt the start time of the transaction that made the change
+ */
+public record BookingChangeDTO(
+        @NotBlank
+        String position,
+
+        @NotBlank
+        String type,
+
+        @NotNull
+        UUID uuid,
+
+        @NotBlank
+        String roomName,
+
+        @NotBlank
+        String userEmail,
+
+        @NotNull
+        LocalDateTime bookingStartTime,
+
+        @NotNull
+        LocalDateTime bookingEndTime,
+
+        @NotNull
+        LocalDateTime occurredAt
+) {
+}
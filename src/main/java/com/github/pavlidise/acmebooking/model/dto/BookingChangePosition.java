@@ -0,0 +1,57 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+import com.github.pavlidise.acmebooking.exception.InvalidCursorException;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Comparator;
+
+/**
+ * Position of a change in the (tx_id, id) order of the booking change feed,
+ * handed to clients as the id of each event they receive, to resume the feed after it.
+ */
+public record BookingChangePosition(
+        @NotNull
+        Long txId,
+
+        @NotNull
+        Long id
+) implements Comparable<BookingChangePosition> {
+
+    /**
+     * Before every change.
+     */
+    public static final BookingChangePosition START = new BookingChangePosition(0L, 0L);
+
+    private static final String SEPARATOR = "-";
+
+    private static final Comparator<BookingChangePosition> ORDER =
+            Comparator.comparing(BookingChangePosition::txId).thenComparing(BookingChangePosition::id);
+
+    public String encode() {
+        return txId + SEPARATOR + id;
+    }
+
+    /**
+     * @param position a position previously returned by {@link #encode()}
+     * @return the decoded position
+     * @throws InvalidCursorException if the position was not returned by {@link #encode()}
+     */
+    public static BookingChangePosition decode(final String position) {
+        try {
+            int separatorIndex = position.indexOf(SEPARATOR);
+            BookingChangePosition decoded = new BookingChangePosition(Long.parseLong(position.substring(0, separatorIndex)),
+                    Long.parseLong(position.substring(separatorIndex + 1)));
+            if (decoded.compareTo(START) < 0) {
+                throw new IllegalArgumentException("Negative position");
+            }
+            return decoded;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException exception) {
+            throw new InvalidCursorException(String.format("Invalid position: %s", position));
+        }
+    }
+
+    @Override
+    public int compareTo(final BookingChangePosition other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+import com.github.pavlidise.acmebooking.exception.InvalidCursorException;
+import jakarta.validation.constraints.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * Position of a booking in the (booking_start_time, id) order of a keyset paginated search,
+ * handed to clients as an opaque string.
+ */
+public record BookingCursor(
+        @NotNull
+        LocalDateTime bookingStartTime,
+
+        @NotNull
+        Long id
+) implements Comparable<BookingCursor> {
+
+    private static final Comparator<BookingCursor> ORDER =
+            Comparator.comparing(BookingCursor::bookingStartTime).thenComparing(BookingCursor::id);
+
+    private static final String SEPARATOR = "|";
+
+    public String encode() {
+        String position = bookingStartTime + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor a cursor previously returned by {@link #encode()}
+     * @return the decoded cursor
+     * @throws InvalidCursorException if the cursor was not returned by {@link #encode()}
+     */
+    public static BookingCursor decode(final String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separatorIndex = position.indexOf(SEPARATOR);
+            return new BookingCursor(LocalDateTime.parse(position.substring(0, separatorIndex)),
+                    Long.parseLong(position.substring(separatorIndex + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException exception) {
+            throw new InvalidCursorException(String.format("Invalid cursor: %s", cursor));
+        }
+    }
+
+    /**
+     * Orders cursors as the bookings they point at are searched, by (booking_start_time, id).
+     */
+    @Override
+    public int compareTo(final BookingCursor other) {
+        return ORDER.compare(this, other);
+    }
+}
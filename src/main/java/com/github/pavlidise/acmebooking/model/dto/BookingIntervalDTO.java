@@ -0,0 +1,24 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Lightweight view of a booking, holding only what is needed to reason about a room's schedule.
+ */
+public record BookingIntervalDTO(
+        @NotNull
+        Long roomId,
+
+        @NotNull
+        UUID uuid,
+
+        @NotNull
+        LocalDateTime bookingStartTime,
+
+        @NotNull
+        LocalDateTime bookingEndTime
+) {
+}
@@ -0,0 +1,16 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+/**
+ * A page of bookings, along with the cursor to request the next page with, absent on the last page.
+ */
+public record BookingPageDTO(
+        @NotNull
+        List<ConfirmedBookingDTO> bookings,
+
+        String nextCursor
+) {
+}
@@ -0,0 +1,40 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDate;
+
+/**
+ * Search for the bookings of a room touching a range of dates, resuming after the cursor of a previous page if any.
+ */
+public record BookingRangeInquiryDTO(
+
+        @NotBlank
+        String roomName,
+
+        @NotNull
+        LocalDate fromDate,
+
+        @NotNull
+        LocalDate toDate,
+
+        String cursor,
+
+        @Min(1)
+        @Max(MAX_PAGE_SIZE)
+        Integer limit
+) {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    @AssertTrue(message = "toDate must not be before fromDate")
+    public boolean isDateRangeValid() {
+        return fromDate == null || toDate == null || !toDate.isBefore(fromDate);
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDateTime;
+
+/**
+ * A period during which a room has no booking, bounded by the requested period or by the adjacent bookings.
+ * Both ends are included, so a booking from freeFrom up to freeUntil is accepted.
+ */
+public record FreeSlotDTO(
+        @NotBlank
+        String roomName,
+
+        Short roomCapacity,
+
+        @NotNull
+        LocalDateTime freeFrom,
+
+        @NotNull
+        LocalDateTime freeUntil
+) {
+}
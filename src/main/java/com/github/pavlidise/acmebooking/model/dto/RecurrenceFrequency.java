@@ -0,0 +1,30 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * How often a recurring booking repeats, in the spirit of the FREQ part of an iCalendar RRULE.
+ */
+public enum RecurrenceFrequency {
+
+    DAILY {
+        @Override
+        public LocalDateTime next(final LocalDateTime occurrence, final int interval) {
+            return occurrence.plusDays(interval);
+        }
+    },
+
+    WEEKLY {
+        @Override
+        public LocalDateTime next(final LocalDateTime occurrence, final int interval) {
+            return occurrence.plusWeeks(interval);
+        }
+    };
+
+    /**
+     * @param occurrence the start of an occurrence
+     * @param interval   the number of days or weeks between two occurrences
+     * @return the start of the following occurrence
+     */
+    public abstract LocalDateTime next(final LocalDateTime occurrence, final int interval);
+}
@@ -0,0 +1,81 @@
+package com.github.pavlidise.acmebooking.model.dto;
+
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Future;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A booking repeated every interval days or weeks, either count times or until a date (inclusive),
+ * in the spirit of an iCalendar RRULE.
+ */
+@Validated
+public record RecurringBookingRequestDTO(
+
+        @NotBlank String userEmail,
+
+        @NotBlank String roomName,
+
+        @NotNull
+        @Future
+        LocalDateTime firstBookingStartDateTime,
+
+        @Min(1) int numberOfHours,
+
+        @NotNull RecurrenceFrequency frequency,
+
+        @Min(1) int interval,
+
+        @Min(1)
+        @Max(MAX_OCCURRENCES)
+        Integer count,
+
+        LocalDate until
+) {
+
+    public static final int MAX_OCCURRENCES = 500;
+
+    @AssertTrue(message = "exactly one of count or until must be provided")
+    public boolean isCountOrUntilProvided() {
+        return (count == null) != (until == null);
+    }
+
+    @AssertTrue(message = "until must not be before the first booking")
+    public boolean isUntilNotBeforeFirstBooking() {
+        return until == null || firstBookingStartDateTime == null || !until.isBefore(firstBookingStartDateTime.toLocalDate());
+    }
+
+    @AssertTrue(message = "the series must not exceed " + MAX_OCCURRENCES + " occurrences")
+    public boolean isWithinOccurrenceLimit() {
+        return until == null || firstBookingStartDateTime == null || frequency == null || interval < 1
+                || expand(MAX_OCCURRENCES + 1).size() <= MAX_OCCURRENCES;
+    }
+
+    /**
+     * Expand the series into the start times of its occurrences.
+     *
+     * @return the start times of the occurrences, in chronological order
+     */
+    public List<LocalDateTime> occurrenceStartTimes() {
+        return expand(MAX_OCCURRENCES);
+    }
+
+    private List<LocalDateTime> expand(final int limit) {
+        int occurrenceCount = count != null ? Math.min(count, limit) : limit;
+        List<LocalDateTime> occurrenceStartTimes = new ArrayList<>();
+        LocalDateTime occurrence = firstBookingStartDateTime;
+        while (occurrenceStartTimes.size() < occurrenceCount && (until == null || !occurrence.toLocalDate().isAfter(until))) {
+            occurrenceStartTimes.add(occurrence);
+            occurrence = frequency.next(occurrence, interval);
+        }
+        return occurrenceStartTimes;
+    }
+}
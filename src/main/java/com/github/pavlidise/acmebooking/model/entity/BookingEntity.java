@@ -7,7 +7,7 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import org.hibernate.annotations.Generated;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -21,12 +21,19 @@ import java.util.UUID;
 @Table(name = "booking")
 public class BookingEntity {
 
+    /**
+     * Ids are drawn from booking_id_seq in blocks of 50, so that bulk inserts can be batched.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_id_seq")
+    @SequenceGenerator(name = "booking_id_seq", sequenceName = "booking_id_seq", allocationSize = 50)
     private Long id;
 
-    @Column(name = "uuid", insertable = false, unique = true)
-    @Generated
+    /**
+     * Generated in the application, rather than read back after each insert.
+     */
+    @UuidGenerator
+    @Column(name = "uuid", nullable = false, updatable = false, unique = true)
     private UUID uuid;
 
     /**
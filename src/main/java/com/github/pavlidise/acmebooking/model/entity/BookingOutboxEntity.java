@@ -0,0 +1,53 @@
+package com.github.pavlidise.acmebooking.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A booking created or deleted, as recorded in the transaction of the change.
+ * Rows are inserted and read by native queries only; the id of the transaction that wrote the row,
+ * stamped by the database, is not mapped.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "booking_outbox")
+public class BookingOutboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+
+    @Column(name = "booking_uuid", nullable = false)
+    private UUID bookingUuid;
+
+    @Column(name = "room_id", nullable = false)
+    private Long roomId;
+
+    @Column(name = "room_name", nullable = false)
+    private String roomName;
+
+    @Column(name = "user_email", nullable = false)
+    private String userEmail;
+
+    @Column(name = "booking_start_time", nullable = false)
+    private LocalDateTime bookingStartTime;
+
+    @Column(name = "booking_end_time", nullable = false)
+    private LocalDateTime bookingEndTime;
+
+    @Column(name = "occurred_at", insertable = false, updatable = false)
+    private LocalDateTime occurredAt;
+}
@@ -11,6 +11,8 @@ import jakarta.validation.constraints.Positive;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.LocalDateTime;
+
 @Getter
 @Setter
 @Entity
@@ -28,4 +30,10 @@ public class RoomEntity {
     @Positive
     @Column(name = "room_capacity")
     private Short roomCapacity;
+
+    /**
+     * Stamped by the database on every insert and update of the room.
+     */
+    @Column(name = "updated_at", insertable = false, updatable = false)
+    private LocalDateTime updatedAt;
 }
@@ -0,0 +1,28 @@
+package com.github.pavlidise.acmebooking.model.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Projection of native booking outbox queries, selecting a change along with its position in the change feed.
+ */
+public interface BookingChangeView {
+
+    Long getTxId();
+
+    Long getId();
+
+    String getType();
+
+    UUID getUuid();
+
+    String getRoomName();
+
+    String getUserEmail();
+
+    LocalDateTime getBookingStartTime();
+
+    LocalDateTime getBookingEndTime();
+
+    LocalDateTime getOccurredAt();
+}
@@ -0,0 +1,18 @@
+package com.github.pavlidise.acmebooking.model.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Projection of native booking queries, selecting only the columns describing a room's schedule.
+ */
+public interface BookingIntervalView {
+
+    Long getRoomId();
+
+    UUID getUuid();
+
+    LocalDateTime getBookingStartTime();
+
+    LocalDateTime getBookingEndTime();
+}
@@ -0,0 +1,20 @@
+package com.github.pavlidise.acmebooking.model.projection;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Projection of native booking queries, selecting only the columns exposed by a ConfirmedBookingDTO.
+ */
+public interface ConfirmedBookingView {
+
+    UUID getUuid();
+
+    String getRoomName();
+
+    String getUserEmail();
+
+    LocalDateTime getBookingStartTime();
+
+    LocalDateTime getBookingEndTime();
+}
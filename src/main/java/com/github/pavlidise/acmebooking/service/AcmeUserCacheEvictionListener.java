@@ -0,0 +1,112 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.model.entity.AcmeUserEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the users cache in line with the changes made to users through JPA.
+ * Registered with Hibernate rather than on the entity, so that the entities do not depend on the services, and called once the change
+ * is committed, so that a concurrent lookup can not cache the stale user again. Only the email of the user changed is evicted,
+ * along with the email it had before, when changed, as a user is cached by their email.
+ */
+@Slf4j
+@Component
+public class AcmeUserCacheEvictionListener implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private static final String USER_EMAIL = "userEmail";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final UserCacheService userCacheService;
+
+    public AcmeUserCacheEvictionListener(EntityManagerFactory entityManagerFactory, UserCacheService userCacheService) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.userCacheService = userCacheService;
+    }
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry eventListenerRegistry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        eventListenerRegistry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        eventListenerRegistry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        eventListenerRegistry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    /**
+     * A user created may have been looked up, and cached as missing, before.
+     */
+    @Override
+    public void onPostInsert(final PostInsertEvent event) {
+        if (event.getEntity() instanceof AcmeUserEntity acmeUser) {
+            evict(acmeUser.getId(), acmeUser.getUserEmail());
+        }
+    }
+
+    /**
+     * The email the user had before is only known when the user was read in the same session, otherwise every user is evicted.
+     */
+    @Override
+    public void onPostUpdate(final PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof AcmeUserEntity acmeUser)) {
+            return;
+        }
+        evict(acmeUser.getId(), acmeUser.getUserEmail());
+        if (event.getOldState() == null) {
+            log.info("User with id: {} changed from an unknown email, evicting users cache", acmeUser.getId());
+            userCacheService.evictAll();
+            return;
+        }
+        Object oldUserEmail = event.getOldState()[Arrays.asList(event.getPersister().getPropertyNames()).indexOf(USER_EMAIL)];
+        if (!acmeUser.getUserEmail().equals(oldUserEmail)) {
+            evict(acmeUser.getId(), oldUserEmail.toString());
+        }
+    }
+
+    @Override
+    public void onPostDelete(final PostDeleteEvent event) {
+        if (event.getEntity() instanceof AcmeUserEntity acmeUser) {
+            evict(acmeUser.getId(), acmeUser.getUserEmail());
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(final PostInsertEvent event) {
+        // nothing was committed, so nothing is stale
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(final PostUpdateEvent event) {
+        // nothing was committed, so nothing is stale
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(final PostDeleteEvent event) {
+        // nothing was committed, so nothing is stale
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(final EntityPersister persister) {
+        return AcmeUserEntity.class.equals(persister.getMappedClass());
+    }
+
+    private void evict(final Long userId, final String userEmail) {
+        log.info("User with id: {} changed, evicting {} from users cache", userId, userEmail);
+        userCacheService.evict(userEmail);
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * Locks rooms with Postgres transaction-level advisory locks keyed on the room id,
+ * so that writes to a room are serialized across every instance of the application.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "acme.booking.room-lock", havingValue = "advisory", matchIfMissing = true)
+public class AdvisoryRoomWriteLock implements RoomWriteLock {
+
+    private final BookingRepository bookingRepository;
+
+    public AdvisoryRoomWriteLock(BookingRepository bookingRepository) {
+        this.bookingRepository = bookingRepository;
+    }
+
+    @Override
+    public void lock(final Collection<Long> roomIds) {
+        roomIds.stream().sorted().distinct().forEach(roomId -> {
+            log.debug("Locking room: {} for write", roomId);
+            bookingRepository.lockRoomForWrite(roomId);
+        });
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.model.dto.AvailabilityInquiryDTO;
+import com.github.pavlidise.acmebooking.model.dto.FreeSlotDTO;
+
+import java.util.List;
+
+public interface AvailabilityService {
+
+    List<FreeSlotDTO> findFreeSlots(final AvailabilityInquiryDTO availabilityInquiryDTO);
+}
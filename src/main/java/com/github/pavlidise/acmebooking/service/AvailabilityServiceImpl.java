@@ -0,0 +1,99 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingRepository;
+import com.github.pavlidise.acmebooking.model.dto.AvailabilityInquiryDTO;
+import com.github.pavlidise.acmebooking.model.dto.FreeSlotDTO;
+import com.github.pavlidise.acmebooking.model.entity.RoomEntity;
+import com.github.pavlidise.acmebooking.model.projection.BookingIntervalView;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+public class AvailabilityServiceImpl implements AvailabilityService {
+
+    /**
+     * The resolution of the booking times, as stored by Postgres, i.e. the least time between two bookings of a room.
+     */
+    private static final Duration RESOLUTION = ChronoUnit.MICROS.getDuration();
+
+    private final RoomCacheService roomCacheService;
+
+    private final BookingRepository bookingRepository;
+
+    public AvailabilityServiceImpl(RoomCacheService roomCacheService, BookingRepository bookingRepository) {
+        this.roomCacheService = roomCacheService;
+        this.bookingRepository = bookingRepository;
+    }
+
+    /**
+     * Find the free slots of every room, with at least the requested capacity, from the start of fromDate, or from now if later,
+     * to the end of toDate. The gaps are computed in a single pass over the bookings of those rooms, streamed sorted by room and start time.
+     * <p>
+     * Bookings include both their start and end, and two bookings of a room touching at an instant overlap, see excl_booking_room_overlap.
+     * A free slot therefore starts right after the booking before it and ends right before the booking after it, and includes both its ends:
+     * any booking from its freeFrom up to its freeUntil is accepted.
+     *
+     * @param availabilityInquiryDTO DTO consisting of the date range, the minimum duration of a slot and the optional minimum capacity
+     * @return the free slots lasting at least the minimum duration, sorted by room and time
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<FreeSlotDTO> findFreeSlots(final AvailabilityInquiryDTO availabilityInquiryDTO) {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        LocalDateTime periodStart = max(availabilityInquiryDTO.fromDate().atStartOfDay(), now);
+        LocalDateTime periodEnd = availabilityInquiryDTO.toDate().plusDays(1).atStartOfDay();
+        Duration minimumDuration = Duration.ofMinutes(availabilityInquiryDTO.minimumDurationMinutes());
+
+        List<RoomEntity> rooms = roomCacheService.getAllRooms().stream()
+                .filter(room -> hasCapacity(room, availabilityInquiryDTO.minimumCapacity()))
+                .sorted(Comparator.comparing(RoomEntity::getId))
+                .toList();
+        if (rooms.isEmpty() || !periodStart.isBefore(periodEnd)) {
+            return List.of();
+        }
+
+        List<FreeSlotDTO> freeSlots = new ArrayList<>();
+        try (Stream<BookingIntervalView> bookings = bookingRepository.streamBookingIntervalsOverlappingOrderByRoomAndStartTime(
+                rooms.stream().map(RoomEntity::getId).toList(), periodStart, periodEnd)) {
+            Iterator<BookingIntervalView> bookingIterator = bookings.iterator();
+            BookingIntervalView booking = bookingIterator.hasNext() ? bookingIterator.next() : null;
+            for (RoomEntity room : rooms) {
+                LocalDateTime freeFrom = periodStart;
+                while (booking != null && booking.getRoomId().equals(room.getId())) {
+                    addFreeSlot(freeSlots, room, freeFrom, booking.getBookingStartTime().minus(RESOLUTION), minimumDuration);
+                    freeFrom = max(freeFrom, booking.getBookingEndTime().plus(RESOLUTION));
+                    booking = bookingIterator.hasNext() ? bookingIterator.next() : null;
+                }
+                addFreeSlot(freeSlots, room, freeFrom, periodEnd.minus(RESOLUTION), minimumDuration);
+            }
+        }
+        log.info("Found {} free slots across {} rooms from: {} to: {}", freeSlots.size(), rooms.size(), periodStart, periodEnd);
+        return freeSlots;
+    }
+
+    private static LocalDateTime max(final LocalDateTime first, final LocalDateTime second) {
+        return first.isAfter(second) ? first : second;
+    }
+
+    private static boolean hasCapacity(final RoomEntity room, final Short minimumCapacity) {
+        return minimumCapacity == null || (room.getRoomCapacity() != null && room.getRoomCapacity() >= minimumCapacity);
+    }
+
+    private static void addFreeSlot(final List<FreeSlotDTO> freeSlots, final RoomEntity room,
+                                    final LocalDateTime freeFrom, final LocalDateTime freeUntil, final Duration minimumDuration) {
+        if (Duration.between(freeFrom, freeUntil).compareTo(minimumDuration) >= 0) {
+            freeSlots.add(new FreeSlotDTO(room.getRoomName(), room.getRoomCapacity(), freeFrom, freeUntil));
+        }
+    }
+}
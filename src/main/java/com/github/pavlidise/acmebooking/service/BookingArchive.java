@@ -0,0 +1,438 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.model.dto.ArchivedBookingDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Archive of the bookings moved out of the booking table, as compressed files of columns on local disk, one file per chunk of bookings.
+ * <p>
+ * A file holds a header of the magic number, the format version, the number of bookings, and the earliest start and latest end
+ * of its bookings, followed by blocks, each written as its length and deflated bytes: the dictionaries of the rooms, as id and name,
+ * and of the user emails, then a column per field of the bookings, in (booking_start_time, id) order. Rooms and users are written as
+ * positions in their dictionaries, start times and ids as the difference to the previous booking, end times as the duration of the booking,
+ * all as variable length integers, and times in microseconds, the precision of Postgres timestamps.
+ * <p>
+ * The headers and the room dictionaries of the files are kept in memory as the index of the archive, so a search only reads the files
+ * whose time range touches its period and whose dictionary holds the room, mapping them into memory and inflating only the columns it needs.
+ * The index is read again once the directory changed, e.g. written to by the archiver of another instance sharing it,
+ * reading only the files added or replaced since.
+ */
+@Slf4j
+@Component
+public class BookingArchive {
+
+    static final String FILE_EXTENSION = ".bka";
+
+    private static final int MAGIC = 0x41434d41;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+    private static final DateTimeFormatter FILE_NAME_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private static final int ROOMS = 0;
+    private static final int USERS = 1;
+    private static final int ROOM_COLUMN = 2;
+    private static final int START_COLUMN = 3;
+    private static final int DURATION_COLUMN = 4;
+    private static final int ID_COLUMN = 5;
+    private static final int USER_COLUMN = 6;
+    private static final int UUID_COLUMN = 7;
+    private static final int BLOCK_COUNT = 8;
+
+    private final BookingMetrics bookingMetrics;
+
+    private final Path directory;
+
+    private volatile Index index = new Index(null, List.of());
+
+    public BookingArchive(BookingMetrics bookingMetrics, @Value("${acme.booking.archive.directory:}") String directory) {
+        this.bookingMetrics = bookingMetrics;
+        this.directory = directory.isBlank() ? null : Path.of(directory);
+    }
+
+    public boolean isEnabled() {
+        return directory != null;
+    }
+
+    /**
+     * Write a chunk of bookings to a file of its own, named after its first booking, so that the same chunk archived again replaces it.
+     * Written to a temporary file first and moved in place, so that a crash while writing never leaves a truncated file behind.
+     *
+     * @param bookings the bookings, in (booking_start_time, id) order
+     * @return the file written
+     * @throws UncheckedIOException if the file can not be written
+     */
+    public Path write(final List<ArchivedBookingDTO> bookings) {
+        ArchivedBookingDTO firstBooking = bookings.get(0);
+        Path file = directory.resolve(String.format("bookings-%s-%d%s",
+                FILE_NAME_TIME.format(firstBooking.bookingStartTime()), firstBooking.id(), FILE_EXTENSION));
+        Map<Long, String> rooms = new LinkedHashMap<>();
+        Map<Long, Integer> roomPositions = new HashMap<>();
+        Map<String, Integer> users = new LinkedHashMap<>();
+        long firstStart = Long.MAX_VALUE;
+        long lastEnd = Long.MIN_VALUE;
+        for (ArchivedBookingDTO booking : bookings) {
+            rooms.putIfAbsent(booking.roomId(), booking.roomName());
+            roomPositions.putIfAbsent(booking.roomId(), roomPositions.size());
+            users.putIfAbsent(booking.userEmail(), users.size());
+            firstStart = Math.min(firstStart, micros(booking.bookingStartTime()));
+            lastEnd = Math.max(lastEnd, micros(booking.bookingEndTime()));
+        }
+        try {
+            Files.createDirectories(directory);
+            Path temporaryFile = Files.createTempFile(directory, "bookings", ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(bookings.size());
+                output.writeLong(firstStart);
+                output.writeLong(lastEnd);
+                writeBlock(output, block -> {
+                    writeVarLong(block, rooms.size());
+                    for (Map.Entry<Long, String> room : rooms.entrySet()) {
+                        writeVarLong(block, room.getKey());
+                        block.writeUTF(room.getValue());
+                    }
+                });
+                writeBlock(output, block -> {
+                    writeVarLong(block, users.size());
+                    for (String userEmail : users.keySet()) {
+                        block.writeUTF(userEmail);
+                    }
+                });
+                writeBlock(output, block -> {
+                    for (ArchivedBookingDTO booking : bookings) {
+                        writeVarLong(block, roomPositions.get(booking.roomId()));
+                    }
+                });
+                writeBlock(output, block -> {
+                    long previousStart = 0;
+                    for (ArchivedBookingDTO booking : bookings) {
+                        writeVarLong(block, zigZag(micros(booking.bookingStartTime()) - previousStart));
+                        previousStart = micros(booking.bookingStartTime());
+                    }
+                });
+                writeBlock(output, block -> {
+                    for (ArchivedBookingDTO booking : bookings) {
+                        writeVarLong(block, micros(booking.bookingEndTime()) - micros(booking.bookingStartTime()));
+                    }
+                });
+                writeBlock(output, block -> {
+                    long previousId = 0;
+                    for (ArchivedBookingDTO booking : bookings) {
+                        writeVarLong(block, zigZag(booking.id() - previousId));
+                        previousId = booking.id();
+                    }
+                });
+                writeBlock(output, block -> {
+                    for (ArchivedBookingDTO booking : bookings) {
+                        writeVarLong(block, users.get(booking.userEmail()));
+                    }
+                });
+                writeBlock(output, block -> {
+                    for (ArchivedBookingDTO booking : bookings) {
+                        block.writeLong(booking.uuid().getMostSignificantBits());
+                        block.writeLong(booking.uuid().getLeastSignificantBits());
+                    }
+                });
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(String.format("Could not write %d bookings to archive file %s", bookings.size(), file), exception);
+        }
+        index = new Index(null, index.files());
+        bookingMetrics.countArchiveFiles(BookingMetrics.ARCHIVE_WRITTEN, 1);
+        log.info("Archived {} bookings of {} rooms to {}", bookings.size(), rooms.size(), file);
+        return file;
+    }
+
+    /**
+     * Read the archived bookings of the room touching the half-open period [periodStart, periodEnd), in (booking_start_time, id) order.
+     * A booking archived more than once, by a run of the archiver failing to commit, is read once.
+     *
+     * @param roomId      the ID of the room
+     * @param periodStart the start of the period
+     * @param periodEnd   the end of the period
+     * @return the bookings found, none when the archive is disabled
+     * @throws UncheckedIOException if a file of the archive touching the period can not be read
+     */
+    public List<ArchivedBookingDTO> searchBookingsOfRoom(final Long roomId, final LocalDateTime periodStart, final LocalDateTime periodEnd) {
+        long start = micros(periodStart);
+        long end = micros(periodEnd);
+        List<ArchivedBookingDTO> bookings = new ArrayList<>();
+        int filesRead = 0;
+        for (ArchiveFile file : files()) {
+            if (file.firstStart() >= end || file.lastEnd() < start) {
+                continue;
+            }
+            if (file.rooms() == null) {
+                throw unreadable(file.path(), null);
+            }
+            ArchivedRoom room = file.rooms().get(roomId);
+            if (room != null) {
+                readBookingsOfRoom(file, roomId, room, start, end, bookings);
+                filesRead++;
+            }
+        }
+        bookingMetrics.countArchiveFiles(BookingMetrics.ARCHIVE_READ, filesRead);
+        return bookings.stream().distinct().sorted(Comparator.comparing(ArchivedBookingDTO::cursor)).toList();
+    }
+
+    private void readBookingsOfRoom(final ArchiveFile file, final Long roomId, final ArchivedRoom room, final long start, final long end,
+                                    final List<ArchivedBookingDTO> bookings) {
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int[] blockOffsets = new int[BLOCK_COUNT];
+            buffer.position(HEADER_SIZE);
+            for (int block = 0; block < BLOCK_COUNT; block++) {
+                int blockLength = buffer.getInt();
+                blockOffsets[block] = buffer.position();
+                buffer.position(buffer.position() + blockLength);
+            }
+
+            List<Integer> rows = new ArrayList<>();
+            List<long[]> periods = new ArrayList<>();
+            try (DataInputStream roomColumn = block(buffer, blockOffsets, ROOM_COLUMN);
+                 DataInputStream startColumn = block(buffer, blockOffsets, START_COLUMN);
+                 DataInputStream durationColumn = block(buffer, blockOffsets, DURATION_COLUMN)) {
+                long bookingStart = 0;
+                for (int row = 0; row < file.bookingCount(); row++) {
+                    long roomPosition = readVarLong(roomColumn);
+                    bookingStart += unZigZag(readVarLong(startColumn));
+                    long bookingEnd = bookingStart + readVarLong(durationColumn);
+                    if (roomPosition == room.position() && bookingStart < end && bookingEnd >= start) {
+                        rows.add(row);
+                        periods.add(new long[]{bookingStart, bookingEnd});
+                    }
+                }
+            }
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            List<String> users = new ArrayList<>();
+            try (DataInputStream userDictionary = block(buffer, blockOffsets, USERS)) {
+                long userCount = readVarLong(userDictionary);
+                for (int position = 0; position < userCount; position++) {
+                    users.add(userDictionary.readUTF());
+                }
+            }
+            try (DataInputStream idColumn = block(buffer, blockOffsets, ID_COLUMN);
+                 DataInputStream userColumn = block(buffer, blockOffsets, USER_COLUMN);
+                 DataInputStream uuidColumn = block(buffer, blockOffsets, UUID_COLUMN)) {
+                long id = 0;
+                int match = 0;
+                for (int row = 0; match < rows.size(); row++) {
+                    id += unZigZag(readVarLong(idColumn));
+                    int user = (int) readVarLong(userColumn);
+                    UUID uuid = new UUID(uuidColumn.readLong(), uuidColumn.readLong());
+                    if (row == rows.get(match)) {
+                        long[] period = periods.get(match);
+                        bookings.add(new ArchivedBookingDTO(id, uuid, roomId, room.name(), users.get(user),
+                                dateTime(period[0]), dateTime(period[1])));
+                        match++;
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException exception) {
+            throw unreadable(file.path(), exception);
+        }
+    }
+
+    private static UncheckedIOException unreadable(final Path path, final Exception cause) {
+        return new UncheckedIOException(new IOException(String.format("Could not read archive file %s", path), cause));
+    }
+
+    /**
+     * @return the files of the archive, read again from the directory once it changed
+     */
+    private List<ArchiveFile> files() {
+        if (directory == null) {
+            return List.of();
+        }
+        try {
+            FileTime lastModified = Files.getLastModifiedTime(directory);
+            Index current = index;
+            if (!lastModified.equals(current.lastModified())) {
+                current = new Index(lastModified, readIndex(current.files()));
+                index = current;
+            }
+            return current.files();
+        } catch (NoSuchFileException noSuchFileException) {
+            return List.of();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(String.format("Could not read the index of archive %s", directory), exception);
+        }
+    }
+
+    /**
+     * Files of an unknown format, e.g. written by another version of it, are left out of the index.
+     * Files whose rooms can not be read are kept without them, failing the searches touching their time range.
+     *
+     * @param previousFiles the files of the previous index, kept as they are unless modified since
+     */
+    private List<ArchiveFile> readIndex(final List<ArchiveFile> previousFiles) throws IOException {
+        Map<Path, ArchiveFile> previousFilesByPath = previousFiles.stream().collect(Collectors.toMap(ArchiveFile::path, Function.identity()));
+        List<ArchiveFile> files = new ArrayList<>();
+        int filesRead = 0;
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+            for (Path path : paths) {
+                FileTime lastModified = Files.getLastModifiedTime(path);
+                ArchiveFile previousFile = previousFilesByPath.get(path);
+                if (previousFile != null && previousFile.lastModified().equals(lastModified)) {
+                    files.add(previousFile);
+                    continue;
+                }
+                try (DataInputStream header = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                    if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                        log.warn("Ignoring archive file {} of an unknown format", path);
+                        continue;
+                    }
+                    int bookingCount = header.readInt();
+                    long firstStart = header.readLong();
+                    long lastEnd = header.readLong();
+                    Map<Long, ArchivedRoom> rooms = null;
+                    try {
+                        rooms = readRooms(header);
+                    } catch (IOException | RuntimeException exception) {
+                        log.warn("Could not read the rooms of archive file {}: {}", path, exception.getMessage());
+                    }
+                    files.add(new ArchiveFile(path, lastModified, bookingCount, firstStart, lastEnd, rooms));
+                    filesRead++;
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(ArchiveFile::firstStart));
+        log.info("Read the index of {} archive files from {}, {} of them added or replaced", files.size(), directory, filesRead);
+        return files;
+    }
+
+    /**
+     * @param file a file positioned at its block of rooms, the first one past the header
+     * @return the rooms of the dictionary by their ID
+     */
+    private static Map<Long, ArchivedRoom> readRooms(final DataInputStream file) throws IOException {
+        byte[] deflated = file.readNBytes(file.readInt());
+        Map<Long, ArchivedRoom> rooms = new HashMap<>();
+        try (DataInputStream block = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(deflated))))) {
+            long roomCount = readVarLong(block);
+            for (int position = 0; position < roomCount; position++) {
+                rooms.put(readVarLong(block), new ArchivedRoom(position, block.readUTF()));
+            }
+        }
+        return rooms;
+    }
+
+    private interface BlockWriter {
+
+        void write(DataOutputStream block) throws IOException;
+    }
+
+    private static void writeBlock(final DataOutputStream output, final BlockWriter blockWriter) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream block = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            blockWriter.write(block);
+        }
+        output.writeInt(bytes.size());
+        bytes.writeTo(output);
+    }
+
+    private static DataInputStream block(final ByteBuffer buffer, final int[] blockOffsets, final int block) {
+        byte[] deflated = new byte[buffer.getInt(blockOffsets[block] - Integer.BYTES)];
+        buffer.get(blockOffsets[block], deflated);
+        return new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(deflated))));
+    }
+
+    private static void writeVarLong(final DataOutput output, final long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            output.writeByte((int) (remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        output.writeByte((int) remaining);
+    }
+
+    private static long readVarLong(final DataInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte nextByte = input.readByte();
+            value |= (long) (nextByte & 0x7F) << shift;
+            if ((nextByte & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long micros(final LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1_000;
+    }
+
+    private static LocalDateTime dateTime(final long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * @param lastModified the last modification of the file, the index was read at
+     * @param firstStart   the earliest start of the bookings of the file, in microseconds
+     * @param lastEnd      the latest end of the bookings of the file, in microseconds
+     * @param rooms        the rooms of the dictionary of the file by their ID, null when they could not be read
+     */
+    private record ArchiveFile(Path path, FileTime lastModified, int bookingCount, long firstStart, long lastEnd,
+                               Map<Long, ArchivedRoom> rooms) {
+    }
+
+    /**
+     * @param position the position of the room in the dictionary of its file, as written in the column of the rooms
+     */
+    private record ArchivedRoom(int position, String name) {
+    }
+
+    /**
+     * @param lastModified the last modification of the directory the files were read at, null to read them again
+     */
+    private record Index(FileTime lastModified, List<ArchiveFile> files) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingArchiveRepository;
+import com.github.pavlidise.acmebooking.model.dto.ArchivedBookingDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Moves the bookings of the months past the archive horizon, and of the partitions detached from the booking table,
+ * out of the database into the archive, a chunk of bookings per transaction and per file, the earliest first.
+ * The deletion of a chunk is only committed once its file is written, so that a transaction never lasts longer than a chunk,
+ * and neither holds back vacuum and the change feed, nor the locks of its bookings, for a whole month.
+ * A run failing in between leaves the bookings of the chunk both archived and in the database, and the next run archives them again;
+ * searches read each booking once.
+ * <p>
+ * Runs on start and then every archive interval.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "acme.booking.archive.enabled", havingValue = "true")
+public class BookingArchiver {
+
+    private final BookingArchiveRepository bookingArchiveRepository;
+
+    private final BookingArchive bookingArchive;
+
+    private final RetryingTransactionTemplate retryingTransactionTemplate;
+
+    private final BookingMetrics bookingMetrics;
+
+    private final int afterMonths;
+
+    private final int chunkSize;
+
+    private final long archiveIntervalMillis;
+
+    private final Thread archiver = new Thread(this::archiveEveryInterval, "booking-archiver");
+
+    private volatile boolean running;
+
+    public BookingArchiver(BookingArchiveRepository bookingArchiveRepository, BookingArchive bookingArchive,
+                           RetryingTransactionTemplate retryingTransactionTemplate, BookingMetrics bookingMetrics,
+                           @Value("${acme.booking.archive.after-months:24}") int afterMonths,
+                           @Value("${acme.booking.archive.chunk-size:10000}") int chunkSize,
+                           @Value("${acme.booking.archive.interval:1h}") Duration archiveInterval) {
+        if (!bookingArchive.isEnabled()) {
+            throw new IllegalStateException("acme.booking.archive.directory must be set to archive bookings");
+        }
+        this.bookingArchiveRepository = bookingArchiveRepository;
+        this.bookingArchive = bookingArchive;
+        this.retryingTransactionTemplate = retryingTransactionTemplate;
+        this.bookingMetrics = bookingMetrics;
+        this.afterMonths = afterMonths;
+        this.chunkSize = chunkSize;
+        this.archiveIntervalMillis = archiveInterval.toMillis();
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        archiver.setDaemon(true);
+        archiver.start();
+        log.info("Started the booking archiver, archiving bookings after {} months", afterMonths);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        archiver.interrupt();
+        archiver.join();
+        log.info("Stopped the booking archiver");
+    }
+
+    private void archiveEveryInterval() {
+        while (running) {
+            archive();
+            try {
+                Thread.sleep(archiveIntervalMillis);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Archive the partitions detached from the booking table, dropping each once empty, then the months of the booking table
+     * before the archive horizon, the month the given number of months before the current one.
+     */
+    void archive() {
+        try {
+            for (String partition : bookingArchiveRepository.findDetachedPartitions()) {
+                archive("partition " + partition, limit -> bookingArchiveRepository.moveBookingsOfDetachedPartition(partition, limit));
+                retryingTransactionTemplate.execute(() -> {
+                    bookingArchiveRepository.dropDetachedPartition(partition);
+                    return null;
+                });
+            }
+            LocalDate horizon = LocalDate.now().withDayOfMonth(1).minusMonths(afterMonths);
+            for (LocalDate month : bookingArchiveRepository.findMonthsWithBookingsBefore(horizon)) {
+                archive("month " + YearMonth.from(month), limit -> bookingArchiveRepository.moveBookingsOfMonth(month, limit));
+            }
+        } catch (DataAccessException | UncheckedIOException exception) {
+            log.warn("Failed to archive bookings, retrying in {} ms: {}", archiveIntervalMillis, exception.getMessage());
+        }
+    }
+
+    /**
+     * Move chunks of bookings into the archive, one transaction each, until a chunk comes back short, leaving the source empty.
+     */
+    private void archive(final String source, final IntFunction<List<ArchivedBookingDTO>> moveChunk) {
+        int archived = 0;
+        int moved;
+        do {
+            moved = retryingTransactionTemplate.execute(() -> {
+                List<ArchivedBookingDTO> chunk = moveChunk.apply(chunkSize);
+                if (!chunk.isEmpty()) {
+                    bookingArchive.write(chunk);
+                }
+                return chunk.size();
+            });
+            bookingMetrics.countArchivedBookings(moved);
+            archived += moved;
+        } while (moved == chunkSize);
+        log.info("Archived {} bookings of {}", archived, source);
+    }
+}
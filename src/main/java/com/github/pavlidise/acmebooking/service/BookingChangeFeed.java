@@ -0,0 +1,291 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.exception.InvalidCursorException;
+import com.github.pavlidise.acmebooking.integration.repository.BookingOutboxRepository;
+import com.github.pavlidise.acmebooking.mapper.BookingMapper;
+import com.github.pavlidise.acmebooking.model.dto.BookingChangeDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingChangePosition;
+import com.github.pavlidise.acmebooking.model.projection.BookingChangeView;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the bookings created and deleted, as recorded in the booking outbox by the transaction of each change,
+ * to the subscribers of the change feed, as server-sent events whose id is the position of the change.
+ * A subscriber resumes after the position it was last sent, e.g. from the Last-Event-ID header of a reconnecting client,
+ * or starts with the changes committed after it subscribed.
+ * <p>
+ * A single thread reads the outbox, woken right after a change is committed through this instance and at least once per poll interval,
+ * for the changes committed through other instances. Subscribers up to date share a single read of the new changes per wake-up,
+ * while the ones resuming from further back are caught up by reads of their own, a batch per wake-up, until they are up to date.
+ * <p>
+ * Changes are kept in the outbox for the retention period, a subscriber resuming from further back misses the ones removed since.
+ */
+@Slf4j
+@Component
+public class BookingChangeFeed {
+
+    public static final String CREATED = "created";
+    public static final String DELETED = "deleted";
+
+    private final BookingOutboxRepository bookingOutboxRepository;
+
+    private final long pollIntervalMillis;
+
+    private final int batchSize;
+
+    private final Duration timeout;
+
+    private final long heartbeatIntervalNanos;
+
+    private final Duration retention;
+
+    private final long cleanUpIntervalNanos;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final Semaphore wakeUps = new Semaphore(0);
+
+    private final Thread reader = new Thread(this::read, "booking-change-feed");
+
+    /**
+     * Position of the last change sent to the subscribers up to date, unknown while there is none.
+     */
+    private BookingChangePosition head;
+
+    private long lastHeartbeat = System.nanoTime();
+
+    private long lastCleanUp = System.nanoTime();
+
+    private volatile boolean running;
+
+    public BookingChangeFeed(BookingOutboxRepository bookingOutboxRepository, BookingMetrics bookingMetrics,
+                             @Value("${acme.booking.changes.poll-interval:1s}") Duration pollInterval,
+                             @Value("${acme.booking.changes.batch-size:500}") int batchSize,
+                             @Value("${acme.booking.changes.timeout:30m}") Duration timeout,
+                             @Value("${acme.booking.changes.heartbeat-interval:15s}") Duration heartbeatInterval,
+                             @Value("${acme.booking.changes.retention:7d}") Duration retention,
+                             @Value("${acme.booking.changes.clean-up-interval:1h}") Duration cleanUpInterval) {
+        this.bookingOutboxRepository = bookingOutboxRepository;
+        this.pollIntervalMillis = pollInterval.toMillis();
+        this.batchSize = batchSize;
+        this.timeout = timeout;
+        this.heartbeatIntervalNanos = heartbeatInterval.toNanos();
+        this.retention = retention;
+        this.cleanUpIntervalNanos = cleanUpInterval.toNanos();
+        bookingMetrics.registerChangeSubscribers(subscribers);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        reader.setDaemon(true);
+        reader.start();
+        log.info("Started the booking change feed");
+    }
+
+    /**
+     * Subscribers are completed, so that their clients reconnect to another instance.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        signal();
+        reader.join();
+        subscribers.forEach(subscriber -> subscriber.emitter().complete());
+        subscribers.clear();
+        log.info("Stopped the booking change feed");
+    }
+
+    /**
+     * Subscribe to the changes after the given position, or to the ones committed from now on.
+     *
+     * @param after the position of the last change received, if any
+     * @return the emitter the changes are sent to, completed after the timeout
+     * @throws InvalidCursorException if the position was not handed out by the feed
+     */
+    public SseEmitter subscribe(final String after) {
+        return subscribe(after, new SseEmitter(timeout.toMillis()));
+    }
+
+    SseEmitter subscribe(final String after, final SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter, after != null ? BookingChangePosition.decode(after) : null);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        log.info("Subscribed to booking changes after position: {}", after);
+        signal();
+        return emitter;
+    }
+
+    /**
+     * Wake the feed up to read the changes just committed.
+     */
+    public void signal() {
+        if (wakeUps.availablePermits() == 0) {
+            wakeUps.release();
+        }
+    }
+
+    private void read() {
+        while (running) {
+            try {
+                wakeUps.tryAcquire(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                wakeUps.drainPermits();
+                poll();
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException runtimeException) {
+                log.warn("Failed to read booking changes, retrying in {} ms", pollIntervalMillis, runtimeException);
+            }
+        }
+    }
+
+    /**
+     * Send the new changes to the subscribers up to date, and a batch of the changes they missed to the others.
+     */
+    void poll() {
+        if (subscribers.isEmpty()) {
+            head = null;
+        } else {
+            if (head == null) {
+                head = bookingOutboxRepository.findLastChange().map(BookingChangeFeed::positionOf).orElse(BookingChangePosition.START);
+            }
+            BookingChangePosition previousHead = head;
+            List<BookingChangeView> newChanges = findChangesAfter(previousHead);
+            newChanges.stream().reduce((first, second) -> second).ifPresent(last -> head = positionOf(last));
+            boolean behind = newChanges.size() == batchSize;
+            for (Subscriber subscriber : subscribers) {
+                behind |= send(subscriber, previousHead, newChanges);
+            }
+            heartbeat();
+            if (behind) {
+                signal();
+            }
+        }
+        cleanUp();
+    }
+
+    /**
+     * @return whether the subscriber is still behind the head
+     */
+    private boolean send(final Subscriber subscriber, final BookingChangePosition previousHead, final List<BookingChangeView> newChanges) {
+        if (subscriber.position() == null) {
+            subscriber.moveTo(previousHead);
+        }
+        if (subscriber.position().equals(previousHead)) {
+            send(subscriber, newChanges);
+            return false;
+        }
+        if (subscriber.position().compareTo(head) >= 0) {
+            // resumed from the position handed out by an instance that read further, waiting for this one to catch up
+            return false;
+        }
+        List<BookingChangeView> missedChanges = findChangesAfter(subscriber.position()).stream()
+                .filter(change -> positionOf(change).compareTo(head) <= 0)
+                .toList();
+        if (!send(subscriber, missedChanges)) {
+            return false;
+        }
+        if (missedChanges.size() < batchSize) {
+            // nothing left up to the head, even when the changes in between were removed
+            subscriber.moveTo(head);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the changes were sent, otherwise the subscriber was dropped
+     */
+    private boolean send(final Subscriber subscriber, final List<BookingChangeView> changes) {
+        try {
+            for (BookingChangeView change : changes) {
+                BookingChangeDTO bookingChangeDTO = BookingMapper.INSTANCE.mapBookingChangeFromView(change);
+                subscriber.emitter().send(SseEmitter.event().id(bookingChangeDTO.position()).name(bookingChangeDTO.type()).data(bookingChangeDTO));
+                subscriber.moveTo(positionOf(change));
+            }
+            return true;
+        } catch (IOException | IllegalStateException exception) {
+            log.info("Dropping booking changes subscriber: {}", exception.getMessage());
+            subscribers.remove(subscriber);
+            return false;
+        }
+    }
+
+    /**
+     * A comment sent now and then keeps idle connections open through proxies, and drops the subscribers whose client is gone.
+     */
+    private void heartbeat() {
+        if (System.nanoTime() - lastHeartbeat < heartbeatIntervalNanos) {
+            return;
+        }
+        lastHeartbeat = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.emitter().send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException exception) {
+                log.info("Dropping booking changes subscriber: {}", exception.getMessage());
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private void cleanUp() {
+        if (System.nanoTime() - lastCleanUp < cleanUpIntervalNanos) {
+            return;
+        }
+        lastCleanUp = System.nanoTime();
+        int removed = bookingOutboxRepository.deleteChangesOccurredBefore(LocalDateTime.now().minus(retention));
+        log.info("Removed {} booking changes older than {}", removed, retention);
+    }
+
+    private List<BookingChangeView> findChangesAfter(final BookingChangePosition position) {
+        return bookingOutboxRepository.findChangesAfter(position.txId(), position.id(), batchSize);
+    }
+
+    private static BookingChangePosition positionOf(final BookingChangeView change) {
+        return new BookingChangePosition(change.getTxId(), change.getId());
+    }
+
+    /**
+     * A subscriber and the position of the last change it was sent, unknown until its first poll when subscribed from now on.
+     */
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private volatile BookingChangePosition position;
+
+        private Subscriber(final SseEmitter emitter, final BookingChangePosition position) {
+            this.emitter = emitter;
+            this.position = position;
+        }
+
+        SseEmitter emitter() {
+            return emitter;
+        }
+
+        BookingChangePosition position() {
+            return position;
+        }
+
+        void moveTo(final BookingChangePosition position) {
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.exception.BookingIngestionUnavailableException;
+import com.github.pavlidise.acmebooking.exception.OverlappingBookingException;
+import com.github.pavlidise.acmebooking.model.dto.BookingRequestDTO;
+import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+/**
+ * Bounded in-process queue of single booking requests, partitioned by room, each partition drained by a writer thread of its own.
+ * A writer takes every request waiting in its partition, up to the maximum group size, and creates their bookings as one batch,
+ * so that a single transaction and a single commit serve the whole group. Overlaps within the group are rejected in memory,
+ * as in any batch, and the callers wait for the outcome of their own request, so the contract of createBooking is unchanged.
+ * <p>
+ * Requests of a room always land in the same partition, so the writers rarely contend for the same room write lock.
+ * When the database rejects a group because of a booking made concurrently outside the queue, its requests are created one by one.
+ * <p>
+ * Callers wait for their outcome up to the timeout, so that a stuck writer never holds request threads for good.
+ * A request still waiting in its partition then is withdrawn, one already taken by its writer may still be booked.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "acme.booking.ingestion.enabled", havingValue = "true")
+public class BookingIngestionQueue {
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final BookingServiceImpl bookingService;
+
+    private final BookingMetrics bookingMetrics;
+
+    private final int maxGroupSize;
+
+    private final long timeoutMillis;
+
+    private final List<BlockingQueue<PendingBooking>> partitions;
+
+    private final List<Thread> writers;
+
+    private volatile boolean running;
+
+    public BookingIngestionQueue(BookingServiceImpl bookingService, BookingMetrics bookingMetrics,
+                                 @Value("${acme.booking.ingestion.writers:4}") int writerCount,
+                                 @Value("${acme.booking.ingestion.queue-capacity:2500}") int queueCapacity,
+                                 @Value("${acme.booking.ingestion.max-group-size:200}") int maxGroupSize,
+                                 @Value("${acme.booking.ingestion.timeout:10s}") Duration timeout) {
+        this.bookingService = bookingService;
+        this.bookingMetrics = bookingMetrics;
+        this.maxGroupSize = maxGroupSize;
+        this.timeoutMillis = timeout.toMillis();
+        this.partitions = IntStream.range(0, writerCount)
+                .<BlockingQueue<PendingBooking>>mapToObj(partition -> new ArrayBlockingQueue<>(queueCapacity))
+                .toList();
+        this.writers = IntStream.range(0, writerCount)
+                .mapToObj(partition -> new Thread(() -> drain(partitions.get(partition)), "booking-writer-" + partition))
+                .toList();
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int partition = 0; partition < partitions.size(); partition++) {
+            bookingMetrics.registerIngestionQueue(partition, partitions.get(partition));
+            writers.get(partition).setDaemon(true);
+            writers.get(partition).start();
+        }
+        log.info("Started {} booking writers", writers.size());
+    }
+
+    /**
+     * Requests already queued are still created, new ones are refused,
+     * as are the ones that slipped into a partition after its writer stopped.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        List<PendingBooking> leftOver = new ArrayList<>();
+        partitions.forEach(partition -> partition.drainTo(leftOver));
+        leftOver.forEach(pendingBooking -> pendingBooking.result().completeExceptionally(unavailable()));
+        log.info("Stopped {} booking writers", writers.size());
+    }
+
+    /**
+     * Queue the booking request and wait for a writer to create its booking.
+     *
+     * @param bookingRequestDTO the booking request details
+     * @return the confirmed booking details
+     * @throws BookingIngestionUnavailableException if the partition of the room is full, the queue is shutting down,
+     *                                              or the booking was not created within the timeout
+     * @throws RuntimeException the exception the request was rejected with, as thrown by a single booking
+     */
+    public ConfirmedBookingDTO submit(final BookingRequestDTO bookingRequestDTO) {
+        PendingBooking pendingBooking = new PendingBooking(bookingRequestDTO, new CompletableFuture<>());
+        BlockingQueue<PendingBooking> partition = partitionOf(bookingRequestDTO.roomName());
+        if (!running || !partition.offer(pendingBooking)) {
+            log.warn("Refusing booking request for room {}, the ingestion queue is full or shutting down", bookingRequestDTO.roomName());
+            throw unavailable();
+        }
+        try {
+            return pendingBooking.result().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException timeoutException) {
+            boolean withdrawn = partition.remove(pendingBooking);
+            log.error("Booking request for room {} was not created within {} ms, {}", bookingRequestDTO.roomName(), timeoutMillis,
+                    withdrawn ? "withdrawn from the queue" : "its writer may still create it");
+            throw timedOut();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            partition.remove(pendingBooking);
+            throw unavailable();
+        } catch (ExecutionException executionException) {
+            throw rethrown(executionException.getCause());
+        }
+    }
+
+    /**
+     * Errors, e.g. OutOfMemoryError, are thrown as they are, any other cause but a runtime exception is wrapped.
+     */
+    private static RuntimeException rethrown(final Throwable cause) {
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return cause instanceof RuntimeException runtimeException ? runtimeException : new CompletionException(cause);
+    }
+
+    private static BookingIngestionUnavailableException unavailable() {
+        return new BookingIngestionUnavailableException("Too many bookings are being requested, please try again later");
+    }
+
+    private static BookingIngestionUnavailableException timedOut() {
+        return new BookingIngestionUnavailableException("The booking could not be confirmed in time, please check your bookings before trying again");
+    }
+
+    private BlockingQueue<PendingBooking> partitionOf(final String roomName) {
+        return partitions.get(Math.floorMod(roomName.hashCode(), partitions.size()));
+    }
+
+    private void drain(final BlockingQueue<PendingBooking> partition) {
+        List<PendingBooking> group = new ArrayList<>(maxGroupSize);
+        while (running || !partition.isEmpty()) {
+            try {
+                PendingBooking first = partition.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                partition.drainTo(group, maxGroupSize - 1);
+                commit(group);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(final List<PendingBooking> group) {
+        bookingMetrics.recordIngestionGroup(group.size());
+        List<BookingOutcome> outcomes;
+        try {
+            outcomes = bookingService.createBookingGroup(group.stream().map(PendingBooking::request).toList());
+        } catch (OverlappingBookingException overlappingBookingException) {
+            log.warn("Group of {} bookings was rejected by the database, creating them one by one", group.size());
+            group.forEach(this::commitAlone);
+            return;
+        } catch (RuntimeException exception) {
+            log.error("Group of {} bookings failed", group.size(), exception);
+            group.forEach(pendingBooking -> pendingBooking.result().completeExceptionally(exception));
+            return;
+        }
+        for (int index = 0; index < group.size(); index++) {
+            BookingOutcome outcome = outcomes.get(index);
+            if (outcome.rejection() != null) {
+                group.get(index).result().completeExceptionally(outcome.rejection());
+            } else {
+                group.get(index).result().complete(outcome.confirmedBooking());
+            }
+        }
+    }
+
+    private void commitAlone(final PendingBooking pendingBooking) {
+        try {
+            pendingBooking.result().complete(bookingService.createBookingNow(pendingBooking.request()));
+        } catch (RuntimeException exception) {
+            pendingBooking.result().completeExceptionally(exception);
+        }
+    }
+
+    private record PendingBooking(BookingRequestDTO request, CompletableFuture<ConfirmedBookingDTO> result) {
+    }
+}
@@ -0,0 +1,245 @@
+package com.github.pavlidise.acmebooking.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Timers and counters of the steps of the booking operations, published by the actuator, e.g. at /actuator/prometheus,
+ * so that the latency of a request can be broken down into room and user lookups, overlap checks and database writes.
+ */
+@Component
+public class BookingMetrics {
+
+    public static final String ROOM_LOOKUP = "acme.booking.room.lookup";
+    public static final String USER_LOOKUP = "acme.booking.user.lookup";
+    public static final String OVERLAP_CHECK = "acme.booking.overlap.check";
+    public static final String INSERT = "acme.booking.insert";
+    public static final String DELETE = "acme.booking.delete";
+    public static final String SEARCH_RESULTS = "acme.booking.search.results";
+    public static final String SEARCH_NOT_MODIFIED = "acme.booking.search.not-modified";
+    public static final String EXCEPTIONS = "acme.booking.exceptions";
+    public static final String SERIALIZATION_FAILURES = "acme.booking.transaction.serialization-failures";
+    public static final String RETRIES = "acme.booking.transaction.retries";
+    public static final String INGESTION_QUEUE_SIZE = "acme.booking.ingestion.queue.size";
+    public static final String INGESTION_GROUP_SIZE = "acme.booking.ingestion.group.size";
+    public static final String CHANGE_SUBSCRIBERS = "acme.booking.changes.subscribers";
+    public static final String CACHE_INVALIDATIONS = "acme.booking.cache.invalidations";
+    public static final String REPLICA_READS = "acme.booking.replica.reads";
+    public static final String REPLICA_LAG = "acme.booking.replica.lag";
+    public static final String PARTITIONS = "acme.booking.partitions";
+    public static final String ARCHIVED_BOOKINGS = "acme.booking.archive.bookings";
+    public static final String ARCHIVE_FILES = "acme.booking.archive.files";
+
+    public static final String SOURCE_CACHE = "cache";
+    public static final String SOURCE_DATABASE = "database";
+    public static final String SOURCE_INDEX = "index";
+
+    public static final String OUTCOME_CREATED = "created";
+    public static final String OUTCOME_OVERLAP = "overlap";
+    public static final String OUTCOME_FAILED = "failed";
+
+    public static final String ARCHIVE_WRITTEN = "written";
+    public static final String ARCHIVE_READ = "read";
+
+    /**
+     * SQLStates raised by Postgres when a transaction has to be retried: serialization_failure and deadlock_detected.
+     */
+    private static final Set<String> SERIALIZATION_FAILURE_SQL_STATES = Set.of("40001", "40P01");
+
+    private final MeterRegistry meterRegistry;
+
+    public BookingMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Timer.Sample startTimer() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * @param loaded whether the lookup missed the cache and reached the database
+     */
+    public void stopRoomLookup(final Timer.Sample sample, final boolean loaded) {
+        sample.stop(meterRegistry.timer(ROOM_LOOKUP, "source", loaded ? SOURCE_DATABASE : SOURCE_CACHE));
+    }
+
+    /**
+     * @param loaded whether the lookup missed the cache and reached the database
+     */
+    public void stopUserLookup(final Timer.Sample sample, final boolean loaded) {
+        sample.stop(meterRegistry.timer(USER_LOOKUP, "source", loaded ? SOURCE_DATABASE : SOURCE_CACHE));
+    }
+
+    /**
+     * @param source whether the check was answered by the room schedule index or the database
+     * @param overlapping whether an overlapping booking was found
+     */
+    public void stopOverlapCheck(final Timer.Sample sample, final String source, final boolean overlapping) {
+        sample.stop(meterRegistry.timer(OVERLAP_CHECK, "source", source, "result", overlapping ? "overlap" : "free"));
+    }
+
+    /**
+     * @param operation the kind of booking inserted: single, batch, group or recurring
+     * @param outcome created, overlap if the database rejected it as overlapping, or failed
+     */
+    public void stopInsert(final Timer.Sample sample, final String operation, final String outcome) {
+        sample.stop(meterRegistry.timer(INSERT, "operation", operation, "outcome", outcome));
+    }
+
+    public void stopDelete(final Timer.Sample sample) {
+        sample.stop(meterRegistry.timer(DELETE));
+    }
+
+    /**
+     * @param search the kind of search: day, page or stream
+     * @param resultSize the number of bookings found
+     */
+    public void recordSearchResults(final String search, final int resultSize) {
+        DistributionSummary.builder(SEARCH_RESULTS)
+                .tag("search", search)
+                .baseUnit("bookings")
+                .register(meterRegistry)
+                .record(resultSize);
+    }
+
+    /**
+     * Count a search answered as not modified, by the ETag of the bookings the client already has.
+     */
+    public void countNotModifiedSearch() {
+        meterRegistry.counter(SEARCH_NOT_MODIFIED).increment();
+    }
+
+    /**
+     * Publish the number of booking requests waiting in a partition of the ingestion queue.
+     *
+     * @param partition the partition of the queue
+     * @param queue the requests waiting in the partition
+     */
+    public void registerIngestionQueue(final int partition, final Collection<?> queue) {
+        Gauge.builder(INGESTION_QUEUE_SIZE, queue, Collection::size)
+                .tag("partition", String.valueOf(partition))
+                .baseUnit("bookings")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param groupSize the number of booking requests committed together by a writer of the ingestion queue
+     */
+    public void recordIngestionGroup(final int groupSize) {
+        DistributionSummary.builder(INGESTION_GROUP_SIZE)
+                .baseUnit("bookings")
+                .register(meterRegistry)
+                .record(groupSize);
+    }
+
+    /**
+     * Publish the number of subscribers of the booking change feed.
+     *
+     * @param subscribers the subscribers of the feed
+     */
+    public void registerChangeSubscribers(final Collection<?> subscribers) {
+        Gauge.builder(CHANGE_SUBSCRIBERS, subscribers, Collection::size)
+                .baseUnit("subscribers")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Count an invalidation of a cache received from the database.
+     *
+     * @param cache the name of the invalidated cache
+     */
+    public void countCacheInvalidation(final String cache) {
+        meterRegistry.counter(CACHE_INVALIDATIONS, "cache", cache).increment();
+    }
+
+    /**
+     * Count a read the replica may answer, by the database it is sent to.
+     *
+     * @param target primary or replica
+     */
+    public void countReplicaRead(final String target) {
+        meterRegistry.counter(REPLICA_READS, "target", target).increment();
+    }
+
+    /**
+     * Publish how far the replica lags behind the primary, NaN while unknown.
+     *
+     * @param lagSeconds the lag of the replica, in seconds
+     */
+    public void registerReplicaLag(final DoubleSupplier lagSeconds) {
+        Gauge.builder(REPLICA_LAG, lagSeconds::getAsDouble)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Count the booking partitions created or detached by a maintenance run.
+     *
+     * @param operation created or detached
+     * @param count     the number of partitions
+     */
+    public void countPartitions(final String operation, final int count) {
+        meterRegistry.counter(PARTITIONS, "operation", operation).increment(count);
+    }
+
+    /**
+     * Count the bookings moved out of the booking table into the archive.
+     *
+     * @param count the number of bookings
+     */
+    public void countArchivedBookings(final int count) {
+        meterRegistry.counter(ARCHIVED_BOOKINGS).increment(count);
+    }
+
+    /**
+     * Count the files of the archive written by the archiver, or read by a search.
+     *
+     * @param operation written or read
+     * @param count     the number of files
+     */
+    public void countArchiveFiles(final String operation, final int count) {
+        meterRegistry.counter(ARCHIVE_FILES, "operation", operation).increment(count);
+    }
+
+    /**
+     * Count an exception handled by the GlobalExceptionHandler by its type,
+     * and as a serialization failure as well if the database aborted its transaction to be retried.
+     *
+     * @param exception the handled exception
+     */
+    public void countException(final Exception exception) {
+        meterRegistry.counter(EXCEPTIONS, "exception", exception.getClass().getSimpleName()).increment();
+        findSerializationFailureSqlState(exception)
+                .ifPresent(sqlState -> meterRegistry.counter(SERIALIZATION_FAILURES, "sqlstate", sqlState).increment());
+    }
+
+    /**
+     * Count a transaction run again after the database aborted it.
+     *
+     * @param sqlState the SQLState the transaction was aborted with
+     */
+    public void countRetry(final String sqlState) {
+        meterRegistry.counter(RETRIES, "sqlstate", sqlState).increment();
+    }
+
+    /**
+     * @return the SQLState of the serialization failure or deadlock the exception was caused by, if any
+     */
+    static Optional<String> findSerializationFailureSqlState(final Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && SERIALIZATION_FAILURE_SQL_STATES.contains(sqlException.getSQLState())) {
+                return Optional.of(sqlException.getSQLState());
+            }
+        }
+        return Optional.empty();
+    }
+}
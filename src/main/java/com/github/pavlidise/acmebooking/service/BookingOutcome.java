@@ -0,0 +1,23 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.model.dto.BookingBatchResultDTO;
+import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO;
+
+/**
+ * Outcome of a single request of a batch or group of bookings.
+ * Either the confirmed booking or the exception the request was rejected with is present.
+ */
+public record BookingOutcome(ConfirmedBookingDTO confirmedBooking, RuntimeException rejection) {
+
+    public static BookingOutcome created(final ConfirmedBookingDTO confirmedBooking) {
+        return new BookingOutcome(confirmedBooking, null);
+    }
+
+    public static BookingOutcome rejected(final RuntimeException rejection) {
+        return new BookingOutcome(null, rejection);
+    }
+
+    public BookingBatchResultDTO toBatchResult(final int index) {
+        return new BookingBatchResultDTO(index, confirmedBooking, rejection != null ? rejection.getMessage() : null);
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingPartitionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Keeps the booking table partitioned by month ahead of the bookings made, creating the partitions of the months ahead
+ * once they come within reach, and, with a retention, detaches the partitions of the months past it.
+ * Bookings beyond the months ahead are kept in booking_future until their month gets a partition of its own,
+ * and detached partitions stay in the database as tables of their own, out of the reach of the searches until archived, see {@link BookingArchiver}.
+ * <p>
+ * Runs on start and then every maintenance interval. A run that fails, e.g. as the booking table could not be locked in time,
+ * is done by the next one.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "acme.booking.partitions.enabled", havingValue = "true")
+public class BookingPartitionMaintainer {
+
+    static final String CREATED = "created";
+    static final String DETACHED = "detached";
+
+    private final BookingPartitionRepository bookingPartitionRepository;
+
+    private final BookingMetrics bookingMetrics;
+
+    private final int monthsAhead;
+
+    private final int retentionMonths;
+
+    private final long maintenanceIntervalMillis;
+
+    private final Duration lockTimeout;
+
+    private final Thread maintainer = new Thread(this::maintainEveryInterval, "booking-partition-maintainer");
+
+    private volatile boolean running;
+
+    public BookingPartitionMaintainer(BookingPartitionRepository bookingPartitionRepository, BookingMetrics bookingMetrics,
+                                      @Value("${acme.booking.partitions.months-ahead:12}") int monthsAhead,
+                                      @Value("${acme.booking.partitions.retention-months:0}") int retentionMonths,
+                                      @Value("${acme.booking.partitions.maintenance-interval:1h}") Duration maintenanceInterval,
+                                      @Value("${acme.booking.partitions.lock-timeout:1s}") Duration lockTimeout) {
+        this.bookingPartitionRepository = bookingPartitionRepository;
+        this.bookingMetrics = bookingMetrics;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.maintenanceIntervalMillis = maintenanceInterval.toMillis();
+        this.lockTimeout = lockTimeout;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        maintainer.setDaemon(true);
+        maintainer.start();
+        log.info("Started the booking partition maintainer, {} months ahead, retention of {} months", monthsAhead, retentionMonths);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        maintainer.interrupt();
+        maintainer.join();
+        log.info("Stopped the booking partition maintainer");
+    }
+
+    private void maintainEveryInterval() {
+        while (running) {
+            maintain();
+            try {
+                Thread.sleep(maintenanceIntervalMillis);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Create the partitions of the months ahead and, with a retention, detach the ones of the months past it.
+     * A retention of 0 keeps every partition attached.
+     */
+    void maintain() {
+        LocalDate thisMonth = LocalDate.now().withDayOfMonth(1);
+        try {
+            List<String> created = bookingPartitionRepository.extendPartitions(thisMonth.plusMonths(monthsAhead), lockTimeout);
+            bookingMetrics.countPartitions(CREATED, created.size());
+            if (!created.isEmpty()) {
+                log.info("Created booking partitions: {}", created);
+            }
+            if (retentionMonths > 0) {
+                List<String> detached = bookingPartitionRepository.detachPartitions(thisMonth.minusMonths(retentionMonths), lockTimeout);
+                bookingMetrics.countPartitions(DETACHED, detached.size());
+                if (!detached.isEmpty()) {
+                    log.info("Detached booking partitions: {}", detached);
+                }
+            }
+        } catch (DataAccessException dataAccessException) {
+            log.warn("Failed to maintain the booking partitions, retrying in {} ms: {}", maintenanceIntervalMillis, dataAccessException.getMessage());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingScheduleVersionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Versions of the schedule of each room on each date, i.e. of the bookings a day search of the room on the date finds,
+ * from which strong ETags of the day searches are derived.
+ * <p>
+ * The versions are kept in the booking_schedule_version table and bumped by a trigger on the booking table, in the transaction
+ * of every booking created, moved or deleted, whichever instance or session made it. Every instance therefore reads the same version
+ * for the same bookings, and a client may revalidate its ETag with any of them.
+ * <p>
+ * With a read replica, a day search is only read from it once the replica replayed the version of the schedule the primary has,
+ * so that its bookings are never older than the ETag they are handed out with.
+ */
+@Component
+public class BookingScheduleVersions {
+
+    private final boolean enabled;
+
+    private final boolean replicaEnabled;
+
+    private final BookingScheduleVersionRepository bookingScheduleVersionRepository;
+
+    private final ReplicaRouting replicaRouting;
+
+    private final TransactionTemplate readOnlyTransactionTemplate;
+
+    public BookingScheduleVersions(@Value("${acme.booking.search-etag.enabled:true}") boolean enabled,
+                                   @Value("${acme.booking.replica.enabled:false}") boolean replicaEnabled,
+                                   BookingScheduleVersionRepository bookingScheduleVersionRepository,
+                                   ReplicaRouting replicaRouting,
+                                   PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.replicaEnabled = replicaEnabled;
+        this.bookingScheduleVersionRepository = bookingScheduleVersionRepository;
+        this.replicaRouting = replicaRouting;
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The version is read before the bookings are searched, so that a version never stands for bookings older than the ones it was read with.
+     *
+     * @return the strong ETag of the bookings of the room on the date, unquoted
+     */
+    public String eTag(final Long roomId, final LocalDate date) {
+        return roomId + "-" + date + "-" + bookingScheduleVersionRepository.findVersion(roomId, date);
+    }
+
+    /**
+     * Read the bookings of the room on the date from the replica, if any. While ETags are enabled, the version of the schedule is read
+     * from the primary first, then again from the replica, in the read-only transaction of the read, which issues its first statement:
+     * a replica that did not replay that version yet leaves the read to the primary.
+     *
+     * @param read the read of the bookings of the room on the date
+     * @return the result of the read
+     */
+    public <T> T readFromReplica(final Long roomId, final LocalDate date, final Supplier<T> read) {
+        if (!enabled || !replicaEnabled) {
+            return replicaRouting.readFromReplica(read);
+        }
+        long primaryVersion = bookingScheduleVersionRepository.findVersion(roomId, date);
+        Optional<T> replicaResult = replicaRouting.readFromReplica(() -> readOnlyTransactionTemplate.execute(status ->
+                bookingScheduleVersionRepository.findVersion(roomId, date) >= primaryVersion ? Optional.of(read.get()) : Optional.<T>empty()));
+        return replicaResult.orElseGet(read);
+    }
+}
@@ -1,17 +1,33 @@
 package com.github.pavlidise.acmebooking.service;
 
+import com.github.pavlidise.acmebooking.model.dto.BookingBatchResultDTO;
 import com.github.pavlidise.acmebooking.model.dto.BookingInquiryDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingPageDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingRangeInquiryDTO;
 import com.github.pavlidise.acmebooking.model.dto.BookingRequestDTO;
 import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO;
+import com.github.pavlidise.acmebooking.model.dto.RecurringBookingRequestDTO;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface BookingService {
 
     List<ConfirmedBookingDTO> searchBookings(final BookingInquiryDTO bookingInquiryDTO);
 
+    Optional<String> getBookingsETag(final BookingInquiryDTO bookingInquiryDTO);
+
+    BookingPageDTO searchBookingsPage(final BookingRangeInquiryDTO bookingRangeInquiryDTO);
+
+    void streamBookings(final BookingRangeInquiryDTO bookingRangeInquiryDTO, final Consumer<ConfirmedBookingDTO> consumer);
+
     ConfirmedBookingDTO createBooking(final BookingRequestDTO bookingRequestDTO);
 
+    List<BookingBatchResultDTO> createBookings(final List<BookingRequestDTO> bookingRequestDTOs);
+
+    List<ConfirmedBookingDTO> createRecurringBooking(final RecurringBookingRequestDTO recurringBookingRequestDTO);
+
     void deleteBooking(final UUID uuid);
 }
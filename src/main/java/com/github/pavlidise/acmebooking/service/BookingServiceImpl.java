@@ -1,51 +1,138 @@
 package com.github.pavlidise.acmebooking.service;
 
+import com.github.pavlidise.acmebooking.exception.BookingIngestionUnavailableException;
 import com.github.pavlidise.acmebooking.exception.BookingNotFoundException;
+import com.github.pavlidise.acmebooking.exception.InvalidCursorException;
 import com.github.pavlidise.acmebooking.exception.OverlappingBookingException;
 import com.github.pavlidise.acmebooking.exception.PastBookingDeletionException;
 import com.github.pavlidise.acmebooking.exception.RoomNotFoundException;
 import com.github.pavlidise.acmebooking.exception.UserNotFoundException;
 import com.github.pavlidise.acmebooking.integration.repository.AcmeUserRepository;
+import com.github.pavlidise.acmebooking.integration.repository.BookingOutboxRepository;
+import com.github.pavlidise.acmebooking.integration.repository.BookingRangeRepository;
 import com.github.pavlidise.acmebooking.integration.repository.BookingRepository;
 import com.github.pavlidise.acmebooking.mapper.BookingMapper;
+import com.github.pavlidise.acmebooking.model.dto.ArchivedBookingDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingBatchResultDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingCursor;
 import com.github.pavlidise.acmebooking.model.dto.BookingInquiryDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingIntervalDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingPageDTO;
+import com.github.pavlidise.acmebooking.model.dto.BookingRangeInquiryDTO;
 import com.github.pavlidise.acmebooking.model.dto.BookingRequestDTO;
 import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO;
+import com.github.pavlidise.acmebooking.model.dto.RecurringBookingRequestDTO;
 import com.github.pavlidise.acmebooking.model.entity.AcmeUserEntity;
 import com.github.pavlidise.acmebooking.model.entity.BookingEntity;
 import com.github.pavlidise.acmebooking.model.entity.RoomEntity;
+import com.github.pavlidise.acmebooking.model.projection.ConfirmedBookingView;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
-import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Service
 @EnableCaching
 public class BookingServiceImpl implements BookingService {
 
+    /**
+     * SQLState raised by Postgres when the excl_booking_room_overlap constraint rejects a booking.
+     */
+    private static final String EXCLUSION_VIOLATION_SQL_STATE = "23P01";
+
     private final BookingRepository bookingRepository;
 
+    private final BookingRangeRepository bookingRangeRepository;
+
+    private final BookingOutboxRepository bookingOutboxRepository;
+
     private final RoomCacheService roomCacheService;
 
+    private final UserCacheService userCacheService;
+
     private final AcmeUserRepository acmeUserRepository;
 
-    public BookingServiceImpl(BookingRepository bookingRepository, RoomCacheService roomCacheService, AcmeUserRepository acmeUserRepository) {
+    private final RoomScheduleIndex roomScheduleIndex;
+
+    private final BookingScheduleVersions bookingScheduleVersions;
+
+    private final BookingChangeFeed bookingChangeFeed;
+
+    private final ReplicaRouting replicaRouting;
+
+    private final BookingArchive bookingArchive;
+
+    private final BookingMetrics bookingMetrics;
+
+    private final RoomWriteLock roomWriteLock;
+
+    private final RetryingTransactionTemplate retryingTransactionTemplate;
+
+    private final ObjectProvider<BookingIngestionQueue> bookingIngestionQueue;
+
+    private final boolean overlapPreCheckEnabled;
+
+    public BookingServiceImpl(BookingRepository bookingRepository, BookingRangeRepository bookingRangeRepository,
+                              BookingOutboxRepository bookingOutboxRepository,
+                              RoomCacheService roomCacheService, UserCacheService userCacheService,
+                              AcmeUserRepository acmeUserRepository, RoomScheduleIndex roomScheduleIndex,
+                              BookingScheduleVersions bookingScheduleVersions, BookingChangeFeed bookingChangeFeed,
+                              ReplicaRouting replicaRouting, BookingArchive bookingArchive, BookingMetrics bookingMetrics,
+                              RoomWriteLock roomWriteLock, RetryingTransactionTemplate retryingTransactionTemplate,
+                              ObjectProvider<BookingIngestionQueue> bookingIngestionQueue,
+                              @Value("${acme.booking.overlap-pre-check.enabled:true}") boolean overlapPreCheckEnabled) {
         this.bookingRepository = bookingRepository;
+        this.bookingRangeRepository = bookingRangeRepository;
+        this.bookingOutboxRepository = bookingOutboxRepository;
         this.roomCacheService = roomCacheService;
+        this.userCacheService = userCacheService;
         this.acmeUserRepository = acmeUserRepository;
+        this.roomScheduleIndex = roomScheduleIndex;
+        this.bookingScheduleVersions = bookingScheduleVersions;
+        this.bookingChangeFeed = bookingChangeFeed;
+        this.replicaRouting = replicaRouting;
+        this.bookingArchive = bookingArchive;
+        this.bookingMetrics = bookingMetrics;
+        this.roomWriteLock = roomWriteLock;
+        this.retryingTransactionTemplate = retryingTransactionTemplate;
+        this.bookingIngestionQueue = bookingIngestionQueue;
+        this.overlapPreCheckEnabled = overlapPreCheckEnabled;
     }
 
     /**
-     * Search for bookings by room name and booking date.
+     * Search for bookings by room name and booking date, on the read replica if any,
+     * unless the replica did not replay the version of the schedule of the room on the date the primary has yet,
+     * so that the bookings found are never older than the ETag of the schedule they are handed out with.
+     * Bookings moved to the archive are read from it.
      *
      * @param bookingInquiryDTO DTO consisting of room name and booking date to filter bookings
      * @return a list of ConfirmedBookingDTO matching the criteria
@@ -53,8 +140,138 @@ public class BookingServiceImpl implements BookingService {
     @Override
     public List<ConfirmedBookingDTO> searchBookings(final BookingInquiryDTO bookingInquiryDTO) {
         RoomEntity room = findRoomByName(bookingInquiryDTO.roomName());
-        List<BookingEntity> bookingEntities = performBookingSearch(room.getId(), bookingInquiryDTO.date());
-        return bookingEntities.stream().map(BookingMapper.INSTANCE::mapConfirmedBookingFromBooking).toList();
+        List<ConfirmedBookingView> confirmedBookingViews = bookingScheduleVersions.readFromReplica(room.getId(), bookingInquiryDTO.date(),
+                () -> performBookingSearch(room.getId(), bookingInquiryDTO.date()));
+        List<ConfirmedBookingDTO> bookings = confirmedBookingViews.stream().map(BookingMapper.INSTANCE::mapConfirmedBookingFromView).toList();
+        List<ArchivedBookingDTO> archivedBookings = bookingArchive.searchBookingsOfRoom(room.getId(),
+                bookingInquiryDTO.date().atStartOfDay(), bookingInquiryDTO.date().plusDays(1).atStartOfDay());
+        if (!archivedBookings.isEmpty()) {
+            bookings = withArchivedBookings(bookings, archivedBookings);
+        }
+        bookingMetrics.recordSearchResults("day", bookings.size());
+        return bookings;
+    }
+
+    /**
+     * A booking both archived and still in the database, left behind by a run of the archiver failing to commit, is kept once.
+     */
+    private static List<ConfirmedBookingDTO> withArchivedBookings(final List<ConfirmedBookingDTO> bookings,
+                                                                  final List<ArchivedBookingDTO> archivedBookings) {
+        Set<UUID> uuids = bookings.stream().map(ConfirmedBookingDTO::uuid).collect(Collectors.toSet());
+        List<ConfirmedBookingDTO> merged = new ArrayList<>(bookings);
+        archivedBookings.stream()
+                .filter(archivedBooking -> !uuids.contains(archivedBooking.uuid()))
+                .map(BookingMapper.INSTANCE::mapConfirmedBookingFromArchived)
+                .forEach(merged::add);
+        merged.sort(Comparator.comparing(ConfirmedBookingDTO::bookingStartTime));
+        return merged;
+    }
+
+    /**
+     * Get the strong ETag of the bookings a search by room name and booking date finds, without searching them,
+     * so that a client polling an unchanged schedule is answered by a lookup of its version.
+     *
+     * @param bookingInquiryDTO DTO consisting of room name and booking date to filter bookings
+     * @return the ETag, unless ETags of searches are disabled
+     * @throws RoomNotFoundException if the room is not found
+     */
+    @Override
+    public Optional<String> getBookingsETag(final BookingInquiryDTO bookingInquiryDTO) {
+        if (!bookingScheduleVersions.isEnabled()) {
+            return Optional.empty();
+        }
+        RoomEntity room = findRoomByName(bookingInquiryDTO.roomName());
+        return Optional.of(bookingScheduleVersions.eTag(room.getId(), bookingInquiryDTO.date()));
+    }
+
+    /**
+     * Search for a page of the bookings of a room touching a range of dates, resuming after the cursor of the previous page.
+     * Pages are delimited by keyset on (booking_start_time, id), so each page costs the same however deep it lies.
+     * The bookings are read from the read replica if any, and from the archive once moved there.
+     *
+     * @param bookingRangeInquiryDTO DTO consisting of room name, date range, cursor and page size
+     * @return the page of bookings, with the cursor of the next page unless this is the last one
+     * @throws RoomNotFoundException if the room is not found
+     * @throws InvalidCursorException if the cursor was not handed out by a previous page
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public BookingPageDTO searchBookingsPage(final BookingRangeInquiryDTO bookingRangeInquiryDTO) {
+        RoomEntity room = findRoomByName(bookingRangeInquiryDTO.roomName());
+        int pageSize = bookingRangeInquiryDTO.limit() != null ? bookingRangeInquiryDTO.limit() : BookingRangeInquiryDTO.DEFAULT_PAGE_SIZE;
+
+        List<ConfirmedBookingDTO> bookings = new ArrayList<>();
+        AtomicReference<BookingCursor> lastCursor = new AtomicReference<>();
+        AtomicBoolean hasNextPage = new AtomicBoolean();
+        // one more booking than the page size tells whether there is a next page
+        replicaRouting.readFromReplica(() -> searchBookingRange(room, bookingRangeInquiryDTO, pageSize + 1, (cursor, booking) -> {
+            if (bookings.size() < pageSize) {
+                bookings.add(booking);
+                lastCursor.set(cursor);
+            } else {
+                hasNextPage.set(true);
+            }
+        }));
+        bookingMetrics.recordSearchResults("page", bookings.size());
+        return new BookingPageDTO(bookings, hasNextPage.get() ? lastCursor.get().encode() : null);
+    }
+
+    /**
+     * Hand over the bookings of a room touching a range of dates one at a time, as they are read,
+     * resuming after the cursor of a previous page if any, up to the limit if any, from the read replica if any,
+     * and from the archive once moved there.
+     *
+     * @param bookingRangeInquiryDTO DTO consisting of room name, date range, and optional cursor and limit
+     * @param consumer receives each booking, in (booking_start_time, id) order
+     * @throws RoomNotFoundException if the room is not found
+     * @throws InvalidCursorException if the cursor was not handed out by a previous page
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamBookings(final BookingRangeInquiryDTO bookingRangeInquiryDTO, final Consumer<ConfirmedBookingDTO> consumer) {
+        RoomEntity room = findRoomByName(bookingRangeInquiryDTO.roomName());
+        AtomicInteger resultSize = new AtomicInteger();
+        replicaRouting.readFromReplica(() -> searchBookingRange(room, bookingRangeInquiryDTO, bookingRangeInquiryDTO.limit(), (cursor, booking) -> {
+            consumer.accept(booking);
+            resultSize.incrementAndGet();
+        }));
+        bookingMetrics.recordSearchResults("stream", resultSize.get());
+    }
+
+    private void searchBookingRange(final RoomEntity room, final BookingRangeInquiryDTO bookingRangeInquiryDTO, final Integer limit,
+                                    final BiConsumer<BookingCursor, ConfirmedBookingDTO> consumer) {
+        BookingCursor after = bookingRangeInquiryDTO.cursor() != null ? BookingCursor.decode(bookingRangeInquiryDTO.cursor()) : null;
+        LocalDateTime periodStart = bookingRangeInquiryDTO.fromDate().atStartOfDay();
+        LocalDateTime periodEnd = bookingRangeInquiryDTO.toDate().plusDays(1).atStartOfDay();
+        Deque<ArchivedBookingDTO> archivedBookings = bookingArchive.searchBookingsOfRoom(room.getId(), periodStart, periodEnd).stream()
+                .filter(archivedBooking -> after == null || archivedBooking.cursor().compareTo(after) > 0)
+                .collect(Collectors.toCollection(ArrayDeque::new));
+        if (archivedBookings.isEmpty()) {
+            bookingRangeRepository.searchBookingsOfRoom(room.getId(), periodStart, periodEnd, after, limit, consumer);
+            return;
+        }
+
+        // the archived bookings are merged in (booking_start_time, id) order, up to the limit, the ones still in the database kept once
+        AtomicInteger remaining = new AtomicInteger(limit != null ? limit : Integer.MAX_VALUE);
+        BiConsumer<BookingCursor, ConfirmedBookingDTO> limitedConsumer = (cursor, booking) -> {
+            if (remaining.getAndDecrement() > 0) {
+                consumer.accept(cursor, booking);
+            }
+        };
+        bookingRangeRepository.searchBookingsOfRoom(room.getId(), periodStart, periodEnd, after, limit, (cursor, booking) -> {
+            while (!archivedBookings.isEmpty() && archivedBookings.peek().cursor().compareTo(cursor) <= 0) {
+                handOverArchivedBooking(archivedBookings.poll(), cursor, limitedConsumer);
+            }
+            limitedConsumer.accept(cursor, booking);
+        });
+        archivedBookings.forEach(archivedBooking -> handOverArchivedBooking(archivedBooking, null, limitedConsumer));
+    }
+
+    private static void handOverArchivedBooking(final ArchivedBookingDTO archivedBooking, final BookingCursor nextCursor,
+                                                final BiConsumer<BookingCursor, ConfirmedBookingDTO> consumer) {
+        if (!archivedBooking.cursor().equals(nextCursor)) {
+            consumer.accept(archivedBooking.cursor(), BookingMapper.INSTANCE.mapConfirmedBookingFromArchived(archivedBooking));
+        }
     }
 
     /**
@@ -68,7 +285,7 @@ public class BookingServiceImpl implements BookingService {
         log.info("Searching room with name: {}", roomName);
         Optional<RoomEntity> roomByName = roomCacheService.getRoomByName(roomName);
         if(roomByName.isEmpty()){
-            final String errorMsg = String.format("Room with name: %s not found", roomName);
+            final String errorMsg = roomNotFoundMessage(roomName);
             log.error(errorMsg);
             throw new RoomNotFoundException(errorMsg);
         }
@@ -77,41 +294,66 @@ public class BookingServiceImpl implements BookingService {
 
     /**
      * Perform the search for bookings by room ID and date,
-     * by invoking the relevant bookingRepository method
+     * by invoking the relevant bookingRepository method for the whole day [date, date + 1)
      *
      * @param roomId the ID of the room
      * @param date   the date of the booking
-     * @return a list of BookingEntity matching the criteria
+     * @return a list of ConfirmedBookingView matching the criteria
      */
-    private List<BookingEntity> performBookingSearch(final Long roomId, final LocalDate date) {
-        return bookingRepository.searchBookingsByRoomAndDateOrderByBookingStartTimeAsc(roomId, date);
+    private List<ConfirmedBookingView> performBookingSearch(final Long roomId, final LocalDate date) {
+        return bookingRepository.searchBookingsByRoomAndPeriodOrderByBookingStartTimeAsc(roomId, date.atStartOfDay(), date.plusDays(1).atStartOfDay());
     }
 
     /**
      * Create a new booking based on the BookingRequestDTO.
+     * Overlaps are ultimately rejected by the excl_booking_room_overlap constraint, which makes the default
+     * READ COMMITTED isolation sufficient; the pre-check only spares the insert attempt and can be disabled.
+     * Writes to the room are serialized by the room write lock, so the pre-check is not raced by another booking of the room,
+     * and a transaction aborted by the database on a serialization failure or deadlock is retried.
+     * With the ingestion queue enabled, the booking is created by a writer of the queue, together with other requests.
      *
      * @param bookingRequestDTO the booking request details
      * @return the confirmed booking details
      * @throws OverlappingBookingException if there is an overlapping booking
      * @throws RoomNotFoundException if the room is not found
      * @throws UserNotFoundException if the user is not found
+     * @throws BookingIngestionUnavailableException if the ingestion queue is full or shutting down
      */
     @Override
-    @Transactional(propagation = Propagation.REQUIRED, isolation = Isolation.REPEATABLE_READ)
     public ConfirmedBookingDTO createBooking(final BookingRequestDTO bookingRequestDTO) {
-        RoomEntity room = findRoomByName(bookingRequestDTO.roomName());
+        BookingIngestionQueue queue = bookingIngestionQueue.getIfAvailable();
+        if (queue != null) {
+            return queue.submit(bookingRequestDTO);
+        }
+        return createBookingNow(bookingRequestDTO);
+    }
 
-        LocalDateTime bookingStartDateTime = bookingRequestDTO.bookingStartDateTime();
-        LocalDateTime bookingEndDateTime = bookingStartDateTime.plusHours(bookingRequestDTO.numberOfHours());
-        validateRoomAvailability(room, bookingStartDateTime, bookingEndDateTime);
+    /**
+     * Create a new booking in a transaction of its own, bypassing the ingestion queue.
+     *
+     * @see #createBooking(BookingRequestDTO)
+     */
+    public ConfirmedBookingDTO createBookingNow(final BookingRequestDTO bookingRequestDTO) {
+        return retryingTransactionTemplate.execute(() -> {
+            RoomEntity room = findRoomByName(bookingRequestDTO.roomName());
+            roomWriteLock.lock(Set.of(room.getId()));
+
+            LocalDateTime bookingStartDateTime = bookingRequestDTO.bookingStartDateTime();
+            LocalDateTime bookingEndDateTime = bookingStartDateTime.plusHours(bookingRequestDTO.numberOfHours());
+            if (overlapPreCheckEnabled) {
+                validateRoomAvailability(room, bookingStartDateTime, bookingEndDateTime);
+            }
 
-        // in a real scenario we would get this information from JWT or similar auth information
-        AcmeUserEntity user = findUserByEmail(bookingRequestDTO.userEmail());
-        return createBooking(room, user, bookingStartDateTime, bookingEndDateTime);
+            // in a real scenario we would get this information from JWT or similar auth information
+            AcmeUserEntity user = findUserByEmail(bookingRequestDTO.userEmail());
+            return createBooking(room, user, bookingStartDateTime, bookingEndDateTime);
+        });
     }
 
     /**
      * Validate the availability of the room for the given time period.
+     * Answered by the in-memory room schedule index once loaded, otherwise by the database.
+     * An overlap reported by the index is confirmed by the database, see hasConfirmedOverlap.
      *
      * @param room the room entity
      * @param bookingStartDateTime the start time of the booking
@@ -120,15 +362,61 @@ public class BookingServiceImpl implements BookingService {
      */
     private void validateRoomAvailability(final RoomEntity room, final LocalDateTime bookingStartDateTime, final LocalDateTime bookingEndDateTime) {
         log.info("Validating Room availability");
-        boolean existsOverlappingBooking = bookingRepository.existsOverlappingBooking(room.getId(), bookingStartDateTime, bookingEndDateTime);
+        Timer.Sample sample = bookingMetrics.startTimer();
+        boolean indexLoaded = roomScheduleIndex.isLoaded();
+        boolean existsOverlappingBooking = indexLoaded
+                ? hasConfirmedOverlap(roomScheduleIndex, room.getId(), bookingStartDateTime, bookingEndDateTime)
+                : bookingRepository.existsOverlappingBooking(room.getId(), bookingStartDateTime, bookingEndDateTime);
+        bookingMetrics.stopOverlapCheck(sample, overlapCheckSource(indexLoaded), existsOverlappingBooking);
 
         if (existsOverlappingBooking) {
-            final String errorMsg = String.format("Room: '%s' is already booked during the requested period", room.getRoomName());
-            log.error(errorMsg);
-            throw new OverlappingBookingException(errorMsg);
+            throw overlappingBookingException(room);
         }
     }
 
+    /**
+     * Whether a booking of the room touches the period according to the existing schedules.
+     * The room schedule index only learns of the bookings changed through this instance, so it may still hold bookings deleted
+     * by another instance, the archiver or a dropped partition. An overlap it reports is therefore confirmed by the database,
+     * and the bookings the database no longer holds are removed from the index. Answers of "free" are trusted as they are:
+     * a booking the index misses is still rejected by the excl_booking_room_overlap constraint on insert.
+     */
+    private boolean hasConfirmedOverlap(final RoomScheduleIndex existingSchedules, final Long roomId,
+                                        final LocalDateTime startDateTime, final LocalDateTime endDateTime) {
+        if (!existingSchedules.hasOverlap(roomId, startDateTime, endDateTime)) {
+            return false;
+        }
+        if (existingSchedules != roomScheduleIndex || bookingRepository.existsOverlappingBooking(roomId, startDateTime, endDateTime)) {
+            return true;
+        }
+        log.warn("Removing bookings of room {} from {} to {} from the room schedule index, not found in the database",
+                roomId, startDateTime, endDateTime);
+        roomScheduleIndex.removeOverlapping(roomId, startDateTime, endDateTime);
+        return false;
+    }
+
+    private static String overlapCheckSource(final boolean indexLoaded) {
+        return indexLoaded ? BookingMetrics.SOURCE_INDEX : BookingMetrics.SOURCE_DATABASE;
+    }
+
+    private static OverlappingBookingException overlappingBookingException(final RoomEntity room) {
+        final String errorMsg = overlappingBookingMessage(room.getRoomName());
+        log.error(errorMsg);
+        return new OverlappingBookingException(errorMsg);
+    }
+
+    private static String roomNotFoundMessage(final String roomName) {
+        return String.format("Room with name: %s not found", roomName);
+    }
+
+    private static String userNotFoundMessage(final String userEmail) {
+        return String.format("User with email: %s not found", userEmail);
+    }
+
+    private static String overlappingBookingMessage(final String roomName) {
+        return String.format("Room: '%s' is already booked during the requested period", roomName);
+    }
+
     /**
      * Find a user by their email address.
      *
@@ -138,9 +426,9 @@ public class BookingServiceImpl implements BookingService {
      */
     private AcmeUserEntity findUserByEmail(final String userEmail) {
         log.info("Searching for user with email: {}", userEmail);
-        Optional<AcmeUserEntity> optionalAcmeUser = acmeUserRepository.findByUserEmail(userEmail);
+        Optional<AcmeUserEntity> optionalAcmeUser = userCacheService.getUserByEmail(userEmail);
         if (optionalAcmeUser.isEmpty()) {
-            final String errorMsg = String.format("User with email: %s not found", userEmail);
+            final String errorMsg = userNotFoundMessage(userEmail);
             log.error(errorMsg);
             throw new UserNotFoundException(errorMsg);
         }
@@ -156,39 +444,338 @@ public class BookingServiceImpl implements BookingService {
      * @param bookingStartDateTime the start time of the booking
      * @param bookingEndDateTime the end time of the booking
      * @return the confirmed booking details
+     * @throws OverlappingBookingException if the database rejects the booking as overlapping
      */
     public ConfirmedBookingDTO createBooking(final RoomEntity room,
                                              final AcmeUserEntity user,
                                              final LocalDateTime bookingStartDateTime,
                                              final LocalDateTime bookingEndDateTime) {
-        BookingEntity newBooking = BookingEntity.builder()
+        BookingEntity newBooking = newBooking(room, user, bookingStartDateTime, bookingEndDateTime);
+
+        BookingEntity savedBooking = saveRejectingOverlaps("single", () -> bookingRepository.saveAndFlush(newBooking),
+                () -> overlappingBookingException(room));
+        recordChanges(BookingChangeFeed.CREATED, List.of(savedBooking));
+        BookingIntervalDTO bookingInterval = BookingMapper.INSTANCE.mapBookingIntervalFromBooking(savedBooking);
+        TransactionCallbacks.afterCommit(() -> {
+            roomScheduleIndex.add(bookingInterval);
+            bookingChangeFeed.signal();
+        });
+        return BookingMapper.INSTANCE.mapConfirmedBookingFromBooking(savedBooking);
+    }
+
+    private static BookingEntity newBooking(final RoomEntity room,
+                                            final AcmeUserEntity user,
+                                            final LocalDateTime bookingStartDateTime,
+                                            final LocalDateTime bookingEndDateTime) {
+        return BookingEntity.builder()
                 .room(room)
                 .acmeUser(user)
                 .bookingStartTime(bookingStartDateTime)
                 .bookingEndTime(bookingEndDateTime)
                 .build();
+    }
 
-        return BookingMapper.INSTANCE.mapConfirmedBookingFromBooking(bookingRepository.saveAndFlush(newBooking));
+    /**
+     * Run the insert, translating a rejection by the excl_booking_room_overlap constraint
+     * into an OverlappingBookingException, and time it by its outcome.
+     *
+     * @param operation the kind of booking inserted, to tag the insert timer with
+     * @param save the insert to run
+     * @param overlappingBookingException the exception to throw when the constraint rejects the insert
+     * @return the result of the insert
+     * @throws OverlappingBookingException if the database rejects the booking as overlapping
+     */
+    private <T> T saveRejectingOverlaps(final String operation, final Supplier<T> save,
+                                        final Supplier<OverlappingBookingException> overlappingBookingException) {
+        Timer.Sample sample = bookingMetrics.startTimer();
+        String outcome = BookingMetrics.OUTCOME_FAILED;
+        try {
+            T saved = save.get();
+            outcome = BookingMetrics.OUTCOME_CREATED;
+            return saved;
+        } catch (DataIntegrityViolationException dataIntegrityViolationException) {
+            if (isExclusionViolation(dataIntegrityViolationException)) {
+                outcome = BookingMetrics.OUTCOME_OVERLAP;
+                throw overlappingBookingException.get();
+            }
+            throw dataIntegrityViolationException;
+        } finally {
+            bookingMetrics.stopInsert(sample, operation, outcome);
+        }
     }
 
     /**
-     * Delete a booking by its UUID.
+     * Create several bookings at once, in a single transaction.
+     * Rooms and users are resolved once per distinct name and email, and overlaps are checked with a single query
+     * (or the room schedule index once loaded), as well as between the requests of the batch itself.
+     * With the overlap pre-check disabled, overlaps with existing bookings are left to the excl_booking_room_overlap constraint,
+     * as for a single booking, while the ones between the requests of the batch are still rejected in memory, at no cost.
+     * The accepted bookings are then inserted with JDBC batching.
+     * A request that can not be booked is reported in its result, without failing the rest of the batch.
+     * The requested rooms are locked for write, and the batch is retried if the database aborts it on a serialization failure or deadlock.
+     *
+     * @param bookingRequestDTOs the booking requests
+     * @return one result per request, in the order of the requests
+     * @throws OverlappingBookingException if a concurrent booking makes the database reject the batch
+     */
+    @Override
+    public List<BookingBatchResultDTO> createBookings(final List<BookingRequestDTO> bookingRequestDTOs) {
+        List<BookingOutcome> outcomes = retryingTransactionTemplate.execute(() -> createBookingsOfBatch("batch", bookingRequestDTOs));
+        return IntStream.range(0, outcomes.size()).mapToObj(index -> outcomes.get(index).toBatchResult(index)).toList();
+    }
+
+    /**
+     * Create the bookings of a group of single booking requests gathered by the BookingIngestionQueue, as a batch of its own.
+     * Each request is rejected with the exception its single booking would have thrown, and the overlap pre-check applies as to a batch.
+     *
+     * @param bookingRequestDTOs the booking requests of the group
+     * @return one outcome per request, in the order of the requests
+     * @throws OverlappingBookingException if a concurrent booking makes the database reject the group
+     */
+    public List<BookingOutcome> createBookingGroup(final List<BookingRequestDTO> bookingRequestDTOs) {
+        return retryingTransactionTemplate.execute(() -> createBookingsOfBatch("group", bookingRequestDTOs));
+    }
+
+    private List<BookingOutcome> createBookingsOfBatch(final String operation, final List<BookingRequestDTO> bookingRequestDTOs) {
+        Map<String, Optional<RoomEntity>> roomsByName = findRoomsByName(bookingRequestDTOs);
+        Set<Long> roomIds = findRoomIds(roomsByName);
+        roomWriteLock.lock(roomIds);
+        Map<String, AcmeUserEntity> usersByEmail = findUsersByEmail(bookingRequestDTOs);
+        // a disabled index reports no overlap, leaving the overlaps with existing bookings to the database
+        RoomScheduleIndex existingSchedules = !overlapPreCheckEnabled ? new IntervalTreeRoomScheduleIndex(false) : findExistingSchedules(roomIds,
+                bookingRequestDTOs.stream().map(BookingRequestDTO::bookingStartDateTime).min(Comparator.naturalOrder()).orElseThrow(),
+                bookingRequestDTOs.stream().map(BookingServiceImpl::bookingEndDateTime).max(Comparator.naturalOrder()).orElseThrow());
+        RoomScheduleIndex batchSchedules = new IntervalTreeRoomScheduleIndex(true);
+
+        BookingOutcome[] outcomes = new BookingOutcome[bookingRequestDTOs.size()];
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        List<BookingEntity> newBookings = new ArrayList<>();
+        for (int index = 0; index < bookingRequestDTOs.size(); index++) {
+            BookingRequestDTO bookingRequestDTO = bookingRequestDTOs.get(index);
+            LocalDateTime bookingStartDateTime = bookingRequestDTO.bookingStartDateTime();
+            LocalDateTime bookingEndDateTime = bookingEndDateTime(bookingRequestDTO);
+            Optional<RoomEntity> room = roomsByName.get(bookingRequestDTO.roomName());
+            AcmeUserEntity user = usersByEmail.get(normalizeEmail(bookingRequestDTO.userEmail()));
+
+            Optional<RuntimeException> rejection = findRejection(bookingRequestDTO, room, user, bookingEndDateTime, existingSchedules, batchSchedules);
+            if (rejection.isPresent()) {
+                log.warn("Rejecting booking request {} of {}: {}", index, operation, rejection.get().getMessage());
+                outcomes[index] = BookingOutcome.rejected(rejection.get());
+                continue;
+            }
+            batchSchedules.add(new BookingIntervalDTO(room.get().getId(), UUID.randomUUID(), bookingStartDateTime, bookingEndDateTime));
+            acceptedIndexes.add(index);
+            newBookings.add(newBooking(room.get(), user, bookingStartDateTime, bookingEndDateTime));
+        }
+
+        List<BookingEntity> savedBookings = saveRejectingOverlaps(operation, () -> bookingRepository.saveAllAndFlush(newBookings),
+                () -> new OverlappingBookingException("A requested room was booked concurrently, no booking of the " + operation + " was created"));
+        recordChanges(BookingChangeFeed.CREATED, savedBookings);
+        applyAfterCommit(savedBookings);
+
+        for (int i = 0; i < savedBookings.size(); i++) {
+            outcomes[acceptedIndexes.get(i)] = BookingOutcome.created(BookingMapper.INSTANCE.mapConfirmedBookingFromBooking(savedBookings.get(i)));
+        }
+        log.info("Created {} out of {} bookings of {}", savedBookings.size(), bookingRequestDTOs.size(), operation);
+        return Arrays.asList(outcomes);
+    }
+
+    private static LocalDateTime bookingEndDateTime(final BookingRequestDTO bookingRequestDTO) {
+        return bookingRequestDTO.bookingStartDateTime().plusHours(bookingRequestDTO.numberOfHours());
+    }
+
+    private void applyAfterCommit(final List<BookingEntity> savedBookings) {
+        List<BookingIntervalDTO> bookingIntervals = savedBookings.stream().map(BookingMapper.INSTANCE::mapBookingIntervalFromBooking).toList();
+        TransactionCallbacks.afterCommit(() -> {
+            bookingIntervals.forEach(roomScheduleIndex::add);
+            bookingChangeFeed.signal();
+        });
+    }
+
+    /**
+     * Record the changes of the bookings in the booking outbox, in the current transaction, for the change feed to stream once committed.
+     *
+     * @param eventType created or deleted
+     * @param bookings the bookings changed, still in the database
+     */
+    private void recordChanges(final String eventType, final List<BookingEntity> bookings) {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        bookingOutboxRepository.insertBookingChanges(eventType, bookings.stream().map(BookingEntity::getId).toList());
+    }
+
+    /**
+     * Same checks, in the same order, as the creation of a single booking.
+     *
+     * @return the exception the creation of the single booking would have thrown, if any
+     */
+    private Optional<RuntimeException> findRejection(final BookingRequestDTO bookingRequestDTO,
+                                                     final Optional<RoomEntity> room,
+                                                     final AcmeUserEntity user,
+                                                     final LocalDateTime bookingEndDateTime,
+                                                     final RoomScheduleIndex existingSchedules,
+                                                     final RoomScheduleIndex batchSchedules) {
+        if (room.isEmpty()) {
+            return Optional.of(new RoomNotFoundException(roomNotFoundMessage(bookingRequestDTO.roomName())));
+        }
+        Long roomId = room.get().getId();
+        LocalDateTime bookingStartDateTime = bookingRequestDTO.bookingStartDateTime();
+        if (batchSchedules.hasOverlap(roomId, bookingStartDateTime, bookingEndDateTime)
+                || hasConfirmedOverlap(existingSchedules, roomId, bookingStartDateTime, bookingEndDateTime)) {
+            return Optional.of(new OverlappingBookingException(overlappingBookingMessage(bookingRequestDTO.roomName())));
+        }
+        if (user == null) {
+            return Optional.of(new UserNotFoundException(userNotFoundMessage(bookingRequestDTO.userEmail())));
+        }
+        return Optional.empty();
+    }
+
+    private Map<String, Optional<RoomEntity>> findRoomsByName(final List<BookingRequestDTO> bookingRequestDTOs) {
+        return bookingRequestDTOs.stream()
+                .map(BookingRequestDTO::roomName)
+                .distinct()
+                .collect(Collectors.toMap(Function.identity(), roomCacheService::getRoomByName));
+    }
+
+    /**
+     * Emails are case-insensitive in the database, so they are matched case-insensitively here too.
+     * Their unique index is case-insensitive as well, so no two users share a lower-cased email.
+     */
+    private Map<String, AcmeUserEntity> findUsersByEmail(final List<BookingRequestDTO> bookingRequestDTOs) {
+        Set<String> userEmails = bookingRequestDTOs.stream().map(BookingRequestDTO::userEmail).collect(Collectors.toSet());
+        return acmeUserRepository.findByUserEmailIn(userEmails).stream()
+                .collect(Collectors.toMap(user -> normalizeEmail(user.getUserEmail()), Function.identity()));
+    }
+
+    private static String normalizeEmail(final String userEmail) {
+        return userEmail.toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<Long> findRoomIds(final Map<String, Optional<RoomEntity>> roomsByName) {
+        return roomsByName.values().stream().flatMap(Optional::stream).map(RoomEntity::getId).collect(Collectors.toSet());
+    }
+
+    /**
+     * The schedules of the given rooms over the given period,
+     * from the room schedule index when loaded, otherwise fetched with a single query.
+     */
+    private RoomScheduleIndex findExistingSchedules(final Set<Long> roomIds, final LocalDateTime periodStart, final LocalDateTime periodEnd) {
+        if (roomScheduleIndex.isLoaded()) {
+            return roomScheduleIndex;
+        }
+        RoomScheduleIndex existingSchedules = new IntervalTreeRoomScheduleIndex(true);
+        if (roomIds.isEmpty()) {
+            return existingSchedules;
+        }
+        bookingRepository.findBookingIntervalsOverlapping(roomIds, periodStart, periodEnd).stream()
+                .map(BookingMapper.INSTANCE::mapBookingIntervalFromView)
+                .forEach(existingSchedules::add);
+        return existingSchedules;
+    }
+
+    /**
+     * Create every occurrence of a recurring booking, in a single transaction.
+     * The series is expanded here and checked in one pass against the schedule of the room, as well as against itself.
+     * Either all occurrences are booked or none. The room is locked for write, as for a single booking.
+     *
+     * @param recurringBookingRequestDTO the recurring booking details
+     * @return the confirmed bookings, in chronological order
+     * @throws OverlappingBookingException if any occurrence overlaps with another booking
+     * @throws RoomNotFoundException if the room is not found
+     * @throws UserNotFoundException if the user is not found
+     */
+    @Override
+    public List<ConfirmedBookingDTO> createRecurringBooking(final RecurringBookingRequestDTO recurringBookingRequestDTO) {
+        return retryingTransactionTemplate.execute(() -> createSeries(recurringBookingRequestDTO));
+    }
+
+    private List<ConfirmedBookingDTO> createSeries(final RecurringBookingRequestDTO recurringBookingRequestDTO) {
+        RoomEntity room = findRoomByName(recurringBookingRequestDTO.roomName());
+        roomWriteLock.lock(Set.of(room.getId()));
+
+        List<BookingIntervalDTO> occurrences = recurringBookingRequestDTO.occurrenceStartTimes().stream()
+                .map(start -> new BookingIntervalDTO(room.getId(), UUID.randomUUID(), start, start.plusHours(recurringBookingRequestDTO.numberOfHours())))
+                .toList();
+        if (overlapPreCheckEnabled) {
+            validateSeriesAvailability(room, occurrences);
+        }
+
+        AcmeUserEntity user = findUserByEmail(recurringBookingRequestDTO.userEmail());
+        List<BookingEntity> newBookings = occurrences.stream()
+                .map(occurrence -> newBooking(room, user, occurrence.bookingStartTime(), occurrence.bookingEndTime()))
+                .toList();
+        List<BookingEntity> savedBookings = saveRejectingOverlaps("recurring", () -> bookingRepository.saveAllAndFlush(newBookings),
+                () -> overlappingBookingException(room));
+        recordChanges(BookingChangeFeed.CREATED, savedBookings);
+        applyAfterCommit(savedBookings);
+        log.info("Created {} bookings of recurring series for room: {}", savedBookings.size(), room.getRoomName());
+        return savedBookings.stream().map(BookingMapper.INSTANCE::mapConfirmedBookingFromBooking).toList();
+    }
+
+    /**
+     * Validate the availability of the room for every occurrence of a series,
+     * with a single lookup of the room's schedule over the whole series.
+     *
+     * @param room the room entity
+     * @param occurrences the occurrences of the series, in chronological order
+     * @throws OverlappingBookingException listing the occurrences that overlap with another booking
+     */
+    private void validateSeriesAvailability(final RoomEntity room, final List<BookingIntervalDTO> occurrences) {
+        log.info("Validating Room availability for {} occurrences", occurrences.size());
+        Timer.Sample sample = bookingMetrics.startTimer();
+        RoomScheduleIndex existingSchedules = findExistingSchedules(Set.of(room.getId()),
+                occurrences.get(0).bookingStartTime(), occurrences.get(occurrences.size() - 1).bookingEndTime());
+        RoomScheduleIndex seriesSchedule = new IntervalTreeRoomScheduleIndex(true);
+
+        List<LocalDateTime> conflictingStartTimes = new ArrayList<>();
+        for (BookingIntervalDTO occurrence : occurrences) {
+            if (seriesSchedule.hasOverlap(room.getId(), occurrence.bookingStartTime(), occurrence.bookingEndTime())
+                    || hasConfirmedOverlap(existingSchedules, room.getId(), occurrence.bookingStartTime(), occurrence.bookingEndTime())) {
+                conflictingStartTimes.add(occurrence.bookingStartTime());
+            }
+            seriesSchedule.add(occurrence);
+        }
+        bookingMetrics.stopOverlapCheck(sample, overlapCheckSource(existingSchedules == roomScheduleIndex), !conflictingStartTimes.isEmpty());
+
+        if (!conflictingStartTimes.isEmpty()) {
+            final String errorMsg = String.format("Room: '%s' is already booked during %d occurrence(s) of the series, starting at: %s",
+                    room.getRoomName(), conflictingStartTimes.size(), conflictingStartTimes);
+            log.error(errorMsg);
+            throw new OverlappingBookingException(errorMsg);
+        }
+    }
+
+    /**
+     * Delete a booking by its UUID, recording its deletion in the booking outbox in the same transaction.
+     * Run again when the transaction is aborted on a serialization failure or deadlock, like the bookings created.
      *
      * @param uuid the UUID of the booking to be deleted
      * @throws BookingNotFoundException if the booking is not found
      */
     @Override
     public void deleteBooking(final UUID uuid) {
-        Optional<BookingEntity> optionalBookingEntity = bookingRepository.findBookingEntityByUuid(uuid);
-        if(optionalBookingEntity.isEmpty()){
-            final String errorMsg = String.format("No Booking found with UUID: %s", uuid);
-            log.error(errorMsg);
-            throw new BookingNotFoundException(errorMsg);
-        }
-        BookingEntity booking = optionalBookingEntity.get();
-        validateBookingIsInTheFuture(booking);
-        
-        bookingRepository.delete(booking);
+        retryingTransactionTemplate.execute(() -> {
+            Optional<BookingEntity> optionalBookingEntity = bookingRepository.findBookingEntityByUuid(uuid);
+            if(optionalBookingEntity.isEmpty()){
+                final String errorMsg = String.format("No Booking found with UUID: %s", uuid);
+                log.error(errorMsg);
+                throw new BookingNotFoundException(errorMsg);
+            }
+            BookingEntity booking = optionalBookingEntity.get();
+            validateBookingIsInTheFuture(booking);
+
+            Timer.Sample sample = bookingMetrics.startTimer();
+            recordChanges(BookingChangeFeed.DELETED, List.of(booking));
+            bookingRepository.delete(booking);
+            bookingMetrics.stopDelete(sample);
+            BookingIntervalDTO bookingInterval = BookingMapper.INSTANCE.mapBookingIntervalFromBooking(booking);
+            TransactionCallbacks.afterCommit(() -> {
+                roomScheduleIndex.remove(bookingInterval);
+                bookingChangeFeed.signal();
+            });
+            return null;
+        });
     }
 
     private void validateBookingIsInTheFuture(BookingEntity booking) {
@@ -199,4 +786,13 @@ public class BookingServiceImpl implements BookingService {
             throw new PastBookingDeletionException(errorMsg);
         }
     }
+
+    private static boolean isExclusionViolation(final Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && EXCLUSION_VIOLATION_SQL_STATE.equals(sqlException.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,199 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.pavlidise.acmebooking.configuration.CacheConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the rooms and users caches of every instance in line with the changes committed to rooms and users, by any instance or outside the application.
+ * The database notifies the acme_booking_cache_invalidation channel of the keys each committed change made stale, from triggers on the room and acme_user tables,
+ * and this listener evicts just those keys, so that the next lookup of each reads it again.
+ * <p>
+ * The channel is listened to on a connection of its own, opened outside the connection pool, as it is held for as long as the application runs.
+ * Notifications sent while the connection is lost do not reach this instance, so both caches are cleared once it is listening again.
+ * A lookup reading a room or user just before a change commits may still cache the stale one after it was evicted,
+ * which the refresh of the rooms and the expiry of the users bound, as for the changes made through the application.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "acme.booking.cache.invalidation.enabled", havingValue = "true")
+public class CacheInvalidationListener {
+
+    static final String CHANNEL = "acme_booking_cache_invalidation";
+
+    /**
+     * The caches of the misses of each cache, where a room or user created is remembered as missing until evicted.
+     */
+    private static final Map<String, String> MISSES_CACHES = Map.of(
+            CacheConfig.ROOMS_CACHE, CacheConfig.ROOM_MISSES_CACHE,
+            CacheConfig.USERS_CACHE, CacheConfig.USER_MISSES_CACHE);
+
+    /**
+     * How long the listener waits for notifications before checking whether it was stopped.
+     */
+    private static final int RECEIVE_TIMEOUT_MILLIS = 500;
+
+    private final DataSource dataSource;
+
+    private final CacheManager cacheManager;
+
+    private final ObjectMapper objectMapper;
+
+    private final BookingMetrics bookingMetrics;
+
+    private final long reconnectIntervalMillis;
+
+    private final Thread listener = new Thread(this::listen, "cache-invalidation-listener");
+
+    private volatile boolean running;
+
+    @Autowired
+    public CacheInvalidationListener(DataSourceProperties dataSourceProperties, CacheManager cacheManager, ObjectMapper objectMapper,
+                                     BookingMetrics bookingMetrics,
+                                     @Value("${acme.booking.cache.invalidation.reconnect-interval:5s}") Duration reconnectInterval) {
+        this(dataSourceProperties.initializeDataSourceBuilder().type(SimpleDriverDataSource.class).build(),
+                cacheManager, objectMapper, bookingMetrics, reconnectInterval);
+    }
+
+    CacheInvalidationListener(DataSource dataSource, CacheManager cacheManager, ObjectMapper objectMapper, BookingMetrics bookingMetrics,
+                              Duration reconnectInterval) {
+        this.dataSource = dataSource;
+        this.cacheManager = cacheManager;
+        this.objectMapper = objectMapper;
+        this.bookingMetrics = bookingMetrics;
+        this.reconnectIntervalMillis = reconnectInterval.toMillis();
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        listener.setDaemon(true);
+        listener.start();
+        log.info("Started the cache invalidation listener");
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        listener.interrupt();
+        listener.join();
+        log.info("Stopped the cache invalidation listener");
+    }
+
+    private void listen() {
+        boolean listenedBefore = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                if (listenedBefore) {
+                    clearAll();
+                }
+                listenedBefore = true;
+                log.info("Listening for cache invalidations");
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(RECEIVE_TIMEOUT_MILLIS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            invalidate(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException sqlException) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Lost the cache invalidation connection, reconnecting in {} ms", reconnectIntervalMillis, sqlException);
+                try {
+                    Thread.sleep(reconnectIntervalMillis);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Evict the keys the notification names from the cache it names and from its misses, or clear both when it names no key.
+     * Any change of the rooms clears the list of all rooms as well.
+     *
+     * @param payload the payload of the notification, as sent by the notify_cache_invalidation trigger
+     */
+    void invalidate(final String payload) {
+        Invalidation invalidation;
+        try {
+            invalidation = objectMapper.readValue(payload, Invalidation.class);
+        } catch (JsonProcessingException jsonProcessingException) {
+            log.warn("Ignoring unreadable cache invalidation: {}", payload);
+            return;
+        }
+        if (!cacheManager.getCacheNames().contains(invalidation.cache())) {
+            log.warn("Ignoring invalidation of unknown cache: {}", invalidation.cache());
+            return;
+        }
+        List<Cache> caches = Stream.of(invalidation.cache(), MISSES_CACHES.get(invalidation.cache()))
+                .filter(Objects::nonNull)
+                .map(cacheManager::getCache)
+                .toList();
+        if (CacheConfig.ROOMS_CACHE.equals(invalidation.cache())) {
+            cacheManager.getCache(CacheConfig.ROOM_LIST_CACHE).clear();
+        }
+        if (invalidation.keys() == null) {
+            log.info("Clearing {} cache", invalidation.cache());
+            caches.forEach(Cache::clear);
+        } else {
+            log.debug("Evicting {} from {} cache", invalidation.keys(), invalidation.cache());
+            invalidation.keys().stream()
+                    .filter(Objects::nonNull)
+                    .forEach(key -> caches.forEach(cache -> cache.evict(cacheKey(invalidation.cache(), key))));
+        }
+        bookingMetrics.countCacheInvalidation(invalidation.cache());
+    }
+
+    /**
+     * Users are cached by their email in lower case, rooms by their name as is.
+     */
+    private static String cacheKey(final String cacheName, final String key) {
+        return CacheConfig.USERS_CACHE.equals(cacheName) ? key.toLowerCase(Locale.ROOT) : key;
+    }
+
+    private void clearAll() {
+        log.info("Clearing rooms and users caches, as their invalidations may have been missed while disconnected");
+        cacheManager.getCache(CacheConfig.ROOMS_CACHE).clear();
+        cacheManager.getCache(CacheConfig.ROOM_LIST_CACHE).clear();
+        cacheManager.getCache(CacheConfig.USERS_CACHE).clear();
+        MISSES_CACHES.values().forEach(missesCache -> cacheManager.getCache(missesCache).clear());
+    }
+
+    /**
+     * @param cache the name of the cache
+     * @param keys the stale keys of the cache, null when every key is stale
+     */
+    private record Invalidation(String cache, List<String> keys) {
+    }
+}
@@ -0,0 +1,241 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.model.dto.BookingIntervalDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps, per room, one bit per hour telling whether the hour is booked, packed into a long[] of 64 hours per word,
+ * so that a year of a room's schedule takes about 1 KB and an overlap check is a couple of masked word tests, without any object per booking.
+ * The bitmaps only cover the hours from the current one up to the horizon, so that their size stays bounded however far ahead,
+ * or for however long, a room is booked: the hours past are trimmed as time moves on, as no booking can be made in the past.
+ * Bookings are requested in whole hours; the ones that do not start on the hour, or that end beyond the horizon,
+ * are kept by an interval tree instead.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "acme.booking.schedule-index.type", havingValue = "hourly-bitmap")
+public class HourlyBitmapRoomScheduleIndex implements RoomScheduleIndex {
+
+    private static final int SECONDS_PER_HOUR = 3600;
+
+    private final boolean enabled;
+
+    private final Map<Long, RoomHours> hoursByRoom = new ConcurrentHashMap<>();
+
+    private final long horizonHours;
+
+    private final IntervalTreeRoomScheduleIndex otherBookings;
+
+    private volatile boolean loaded;
+
+    public HourlyBitmapRoomScheduleIndex(@Value("${acme.booking.schedule-index.enabled:true}") boolean enabled,
+                                         @Value("${acme.booking.schedule-index.horizon:366d}") Duration horizon) {
+        this.enabled = enabled;
+        this.horizonHours = horizon.toHours();
+        this.otherBookings = new IntervalTreeRoomScheduleIndex(enabled);
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Merges the given bookings into the index, so that changes applied while loading are not lost.
+     */
+    @Override
+    public void load(final Collection<BookingIntervalDTO> bookingIntervals) {
+        if (!enabled) {
+            return;
+        }
+        bookingIntervals.forEach(this::add);
+        loaded = true;
+        log.info("Loaded {} bookings into the room schedule index, {} KB of hourly bitmaps across {} rooms",
+                bookingIntervals.size(), hoursByRoom.values().stream().mapToLong(RoomHours::sizeInBytes).sum() / 1024, hoursByRoom.size());
+    }
+
+    @Override
+    public void add(final BookingIntervalDTO bookingInterval) {
+        if (!enabled) {
+            return;
+        }
+        long currentHour = floorHour(LocalDateTime.now());
+        if (!isOnTheHour(bookingInterval) || floorHour(bookingInterval.bookingEndTime()) > currentHour + horizonHours) {
+            otherBookings.add(bookingInterval);
+            return;
+        }
+        RoomHours roomHours = hoursByRoom.computeIfAbsent(bookingInterval.roomId(), roomId -> new RoomHours());
+        roomHours.trimBefore(currentHour);
+        roomHours.set(Math.max(floorHour(bookingInterval.bookingStartTime()), currentHour), floorHour(bookingInterval.bookingEndTime()), true);
+    }
+
+    /**
+     * Bookings of a room never overlap each other, so the hours of the removed booking are booked by no other booking.
+     * The booking may have been kept by the interval tree when added, beyond the horizon then, so it is removed from both.
+     */
+    @Override
+    public void remove(final BookingIntervalDTO bookingInterval) {
+        if (!enabled) {
+            return;
+        }
+        otherBookings.remove(bookingInterval);
+        RoomHours roomHours = hoursByRoom.get(bookingInterval.roomId());
+        if (roomHours != null && isOnTheHour(bookingInterval)) {
+            roomHours.set(floorHour(bookingInterval.bookingStartTime()), floorHour(bookingInterval.bookingEndTime()), false);
+        }
+    }
+
+    /**
+     * Clears the hours hasOverlap tests: none is booked, as a booking holding one of them would touch the period.
+     */
+    @Override
+    public void removeOverlapping(final Long roomId, final LocalDateTime startDateTime, final LocalDateTime endDateTime) {
+        RoomHours roomHours = hoursByRoom.get(roomId);
+        if (roomHours != null) {
+            roomHours.set(ceilHour(startDateTime) - 1, floorHour(endDateTime) + 1, false);
+        }
+        otherBookings.removeOverlapping(roomId, startDateTime, endDateTime);
+    }
+
+    /**
+     * A booked hour h, i.e. [h, h + 1), touches the period [start, end] when h <= end and h + 1 >= start,
+     * so the hours to test run from the one ending at or after the start to the one containing the end.
+     */
+    @Override
+    public boolean hasOverlap(final Long roomId, final LocalDateTime startDateTime, final LocalDateTime endDateTime) {
+        RoomHours roomHours = hoursByRoom.get(roomId);
+        return (roomHours != null && roomHours.anySet(ceilHour(startDateTime) - 1, floorHour(endDateTime)))
+                || otherBookings.hasOverlap(roomId, startDateTime, endDateTime);
+    }
+
+    private static boolean isOnTheHour(final BookingIntervalDTO bookingInterval) {
+        return isOnTheHour(bookingInterval.bookingStartTime()) && isOnTheHour(bookingInterval.bookingEndTime());
+    }
+
+    private static boolean isOnTheHour(final LocalDateTime dateTime) {
+        return dateTime.getMinute() == 0 && dateTime.getSecond() == 0 && dateTime.getNano() == 0;
+    }
+
+    /**
+     * @return the number of the hour containing the given time, counted from the epoch
+     */
+    private static long floorHour(final LocalDateTime dateTime) {
+        return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), SECONDS_PER_HOUR);
+    }
+
+    private static long ceilHour(final LocalDateTime dateTime) {
+        return isOnTheHour(dateTime) ? floorHour(dateTime) : floorHour(dateTime) + 1;
+    }
+
+    /**
+     * The booked hours of a room, as a bitmap starting at the word of the earliest hour booked, grown on demand and trimmed of the hours past.
+     */
+    static final class RoomHours {
+
+        private static final int HOURS_PER_WORD = Long.SIZE;
+
+        private long firstWord;
+
+        private long[] words = new long[0];
+
+        /**
+         * @param fromHour first hour to set, inclusive
+         * @param toHour last hour to set, exclusive
+         */
+        synchronized void set(final long fromHour, final long toHour, final boolean booked) {
+            if (toHour <= fromHour) {
+                return;
+            }
+            if (booked) {
+                cover(fromHour, toHour - 1);
+            }
+            forEachWord(fromHour, toHour - 1, (word, mask) -> {
+                words[word] = booked ? words[word] | mask : words[word] & ~mask;
+                return false;
+            });
+        }
+
+        /**
+         * @param fromHour first hour to test, inclusive
+         * @param toHour last hour to test, inclusive
+         */
+        synchronized boolean anySet(final long fromHour, final long toHour) {
+            return forEachWord(fromHour, toHour, (word, mask) -> (words[word] & mask) != 0);
+        }
+
+        synchronized long sizeInBytes() {
+            return (long) words.length * Long.BYTES;
+        }
+
+        /**
+         * Drops the words holding only hours before the given one, shifting the rest to the front of the bitmap.
+         */
+        synchronized void trimBefore(final long hour) {
+            long word = Math.floorDiv(hour, HOURS_PER_WORD);
+            if (word <= firstWord) {
+                return;
+            }
+            words = Arrays.copyOfRange(words, (int) Math.min(word - firstWord, words.length), words.length);
+            firstWord = word;
+        }
+
+        /**
+         * Applies the action to the mask of the hours of each word of the bitmap in the range, clipped to the hours the bitmap covers.
+         *
+         * @return true as soon as the action returns true
+         */
+        private boolean forEachWord(final long fromHour, final long toHour, final WordAction action) {
+            long from = Math.max(fromHour, firstWord * HOURS_PER_WORD);
+            long to = Math.min(toHour, (firstWord + words.length) * HOURS_PER_WORD - 1);
+            for (long hour = from; hour <= to; ) {
+                long wordStart = Math.floorDiv(hour, HOURS_PER_WORD) * HOURS_PER_WORD;
+                long lastHourOfWord = Math.min(to, wordStart + HOURS_PER_WORD - 1);
+                long mask = (-1L << (hour - wordStart)) & (-1L >>> (HOURS_PER_WORD - 1 - (lastHourOfWord - wordStart)));
+                if (action.apply((int) (wordStart / HOURS_PER_WORD - firstWord), mask)) {
+                    return true;
+                }
+                hour = lastHourOfWord + 1;
+            }
+            return false;
+        }
+
+        /**
+         * Grows the bitmap to cover the hours, by at least half its size when growing forward, as bookings are mostly added in time order.
+         */
+        private void cover(final long fromHour, final long toHour) {
+            long fromWord = Math.floorDiv(fromHour, HOURS_PER_WORD);
+            long toWord = Math.floorDiv(toHour, HOURS_PER_WORD);
+            if (words.length == 0) {
+                firstWord = fromWord;
+                words = new long[(int) (toWord - fromWord + 1)];
+                return;
+            }
+            long lastWord = firstWord + words.length - 1;
+            if (fromWord >= firstWord && toWord <= lastWord) {
+                return;
+            }
+            long newFirstWord = Math.min(firstWord, fromWord);
+            long newLastWord = toWord > lastWord ? Math.max(toWord, firstWord + words.length + words.length / 2) : lastWord;
+            long[] newWords = new long[(int) (newLastWord - newFirstWord + 1)];
+            System.arraycopy(words, 0, newWords, (int) (firstWord - newFirstWord), words.length);
+            firstWord = newFirstWord;
+            words = newWords;
+        }
+
+        @FunctionalInterface
+        private interface WordAction {
+            boolean apply(int word, long mask);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.model.dto.BookingIntervalDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keeps, per room, the bookings sorted by their start time.
+ * Bookings of a room never overlap each other, so the tree degenerates to a sorted map of disjoint intervals:
+ * the only candidate for an overlap is the last booking starting at or before the end of the requested period,
+ * which is found in O(log n).
+ * The bookings ended before the current hour are pruned from a room's schedule as its bookings are added, as no booking can be made
+ * in the past, and bookings starting beyond the horizon are not kept at all, so that the size of the index stays bounded however
+ * long it runs, or however far ahead rooms are booked: the overlap checks reaching beyond the horizon are left to the database.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "acme.booking.schedule-index.type", havingValue = "interval-tree", matchIfMissing = true)
+public class IntervalTreeRoomScheduleIndex implements RoomScheduleIndex {
+
+    private final boolean enabled;
+
+    private final Duration horizon;
+
+    private final Map<Long, NavigableMap<LocalDateTime, BookingIntervalDTO>> schedulesByRoom = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded;
+
+    @Autowired
+    public IntervalTreeRoomScheduleIndex(@Value("${acme.booking.schedule-index.enabled:true}") boolean enabled,
+                                         @Value("${acme.booking.schedule-index.horizon:366d}") Duration horizon) {
+        this.enabled = enabled;
+        this.horizon = horizon;
+    }
+
+    /**
+     * An index without a horizon, keeping the bookings however far ahead they start, e.g. the schedule of a series checked once.
+     */
+    public IntervalTreeRoomScheduleIndex(final boolean enabled) {
+        this(enabled, null);
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Merges the given bookings into the index, so that changes applied while loading are not lost.
+     */
+    @Override
+    public void load(final Collection<BookingIntervalDTO> bookingIntervals) {
+        if (!enabled) {
+            return;
+        }
+        bookingIntervals.forEach(this::add);
+        loaded = true;
+        log.info("Loaded {} bookings into the room schedule index", bookingIntervals.size());
+    }
+
+    @Override
+    public void add(final BookingIntervalDTO bookingInterval) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime currentHour = currentHour();
+        if (bookingInterval.bookingEndTime().isBefore(currentHour) || isBeyondHorizon(currentHour, bookingInterval.bookingStartTime())) {
+            return;
+        }
+        NavigableMap<LocalDateTime, BookingIntervalDTO> schedule = schedulesByRoom.computeIfAbsent(bookingInterval.roomId(),
+                roomId -> new ConcurrentSkipListMap<>());
+        schedule.headMap(currentHour).values().removeIf(booking -> booking.bookingEndTime().isBefore(currentHour));
+        schedule
+                // on a clash keep the longest booking, an index answering "overlapping" too often is the safe side
+                .merge(bookingInterval.bookingStartTime(), bookingInterval,
+                        (current, candidate) -> current.bookingEndTime().isBefore(candidate.bookingEndTime()) ? candidate : current);
+    }
+
+    @Override
+    public void remove(final BookingIntervalDTO bookingInterval) {
+        if (!enabled) {
+            return;
+        }
+        NavigableMap<LocalDateTime, BookingIntervalDTO> schedule = schedulesByRoom.get(bookingInterval.roomId());
+        if (schedule != null) {
+            schedule.computeIfPresent(bookingInterval.bookingStartTime(),
+                    (start, current) -> current.uuid().equals(bookingInterval.uuid()) ? null : current);
+        }
+    }
+
+    /**
+     * Removes the candidates for an overlap, see hasOverlap, until none is left.
+     */
+    @Override
+    public void removeOverlapping(final Long roomId, final LocalDateTime startDateTime, final LocalDateTime endDateTime) {
+        NavigableMap<LocalDateTime, BookingIntervalDTO> schedule = schedulesByRoom.get(roomId);
+        if (schedule == null) {
+            return;
+        }
+        for (Map.Entry<LocalDateTime, BookingIntervalDTO> candidate = schedule.floorEntry(endDateTime);
+             candidate != null && !candidate.getValue().bookingEndTime().isBefore(startDateTime);
+             candidate = schedule.floorEntry(endDateTime)) {
+            schedule.remove(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    /**
+     * A period ending beyond the horizon may touch a booking not kept, so it is reported as overlapping, for the database to tell.
+     */
+    @Override
+    public boolean hasOverlap(final Long roomId, final LocalDateTime startDateTime, final LocalDateTime endDateTime) {
+        if (isBeyondHorizon(currentHour(), endDateTime)) {
+            return true;
+        }
+        NavigableMap<LocalDateTime, BookingIntervalDTO> schedule = schedulesByRoom.get(roomId);
+        if (schedule == null) {
+            return false;
+        }
+        Map.Entry<LocalDateTime, BookingIntervalDTO> candidate = schedule.floorEntry(endDateTime);
+        return candidate != null && !candidate.getValue().bookingEndTime().isBefore(startDateTime);
+    }
+
+    private boolean isBeyondHorizon(final LocalDateTime currentHour, final LocalDateTime dateTime) {
+        return horizon != null && dateTime.isAfter(currentHour.plus(horizon));
+    }
+
+    private static LocalDateTime currentHour() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+    }
+}
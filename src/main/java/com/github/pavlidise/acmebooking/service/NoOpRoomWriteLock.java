@@ -0,0 +1,19 @@
+package com.github.pavlidise.acmebooking.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * Leaves concurrent writes to a room to the excl_booking_room_overlap constraint alone.
+ */
+@Component
+@ConditionalOnProperty(name = "acme.booking.room-lock", havingValue = "none")
+public class NoOpRoomWriteLock implements RoomWriteLock {
+
+    @Override
+    public void lock(final Collection<Long> roomIds) {
+        // nothing to lock
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.pavlidise.acmebooking.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Checks how far the read replica lags behind the primary every lag check interval, suspending the replica reads
+ * while it lags by more than the max lag or can not be checked, and resuming them once it caught up.
+ * <p>
+ * A standby that replayed all the WAL it received lags by nothing, otherwise by the time since the last transaction it replayed committed.
+ * A standby not streaming WAL from the primary, e.g. disconnected from it, lags by an unknown time, however much of the WAL it received it replayed.
+ * A database that is not a standby, e.g. a second local instance used in place of a replica, never lags.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "acme.booking.replica.enabled", havingValue = "true")
+public class ReplicaLagMonitor {
+
+    static final String STATUS_QUERY = """
+            SELECT pg_is_in_recovery() AS in_recovery,
+                   EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') AS streaming,
+                   pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() AS replayed,
+                   CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) AS double precision) AS replay_age
+            """;
+
+    private final JdbcTemplate replicaJdbcTemplate;
+
+    private final ReplicaRouting replicaRouting;
+
+    private final double maxLagSeconds;
+
+    private final long lagCheckIntervalMillis;
+
+    private final Thread monitor = new Thread(this::monitor, "replica-lag-monitor");
+
+    private volatile double lagSeconds = Double.NaN;
+
+    private volatile boolean running;
+
+    @Autowired
+    public ReplicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource, ReplicaRouting replicaRouting, BookingMetrics bookingMetrics,
+                             @Value("${acme.booking.replica.max-lag:1s}") Duration maxLag,
+                             @Value("${acme.booking.replica.lag-check-interval:1s}") Duration lagCheckInterval) {
+        this(new JdbcTemplate(replicaDataSource), replicaRouting, bookingMetrics, maxLag, lagCheckInterval);
+    }
+
+    ReplicaLagMonitor(JdbcTemplate replicaJdbcTemplate, ReplicaRouting replicaRouting, BookingMetrics bookingMetrics, Duration maxLag,
+                      Duration lagCheckInterval) {
+        this.replicaJdbcTemplate = replicaJdbcTemplate;
+        this.replicaRouting = replicaRouting;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        this.lagCheckIntervalMillis = lagCheckInterval.toMillis();
+        bookingMetrics.registerReplicaLag(() -> lagSeconds);
+    }
+
+    /**
+     * The lag is checked once before the application serves requests, so that it starts reading the replica when it is fresh.
+     */
+    @PostConstruct
+    public void start() {
+        check();
+        running = true;
+        monitor.setDaemon(true);
+        monitor.start();
+        log.info("Started the replica lag monitor, replica reads allowed up to a lag of {} s", maxLagSeconds);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        monitor.interrupt();
+        monitor.join();
+        log.info("Stopped the replica lag monitor");
+    }
+
+    private void monitor() {
+        while (running) {
+            try {
+                Thread.sleep(lagCheckIntervalMillis);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            check();
+        }
+    }
+
+    void check() {
+        try {
+            lagSeconds = lagSeconds(replicaJdbcTemplate.queryForMap(STATUS_QUERY));
+        } catch (DataAccessException dataAccessException) {
+            log.warn("Failed to check the lag of the replica: {}", dataAccessException.getMessage());
+            lagSeconds = Double.NaN;
+        }
+        // NaN, i.e. unknown, is never fresh
+        replicaRouting.setReplicaFresh(lagSeconds <= maxLagSeconds);
+    }
+
+    /**
+     * @param status the row of the status query
+     * @return the lag in seconds, NaN when unknown
+     */
+    static double lagSeconds(final Map<String, Object> status) {
+        if (!Boolean.TRUE.equals(status.get("in_recovery"))) {
+            return 0;
+        }
+        // the LSNs stop moving along with the WAL receiver, a standby it stopped on looks caught up however far behind it is
+        if (!Boolean.TRUE.equals(status.get("streaming"))) {
+            return Double.NaN;
+        }
+        if (Boolean.TRUE.equals(status.get("replayed"))) {
+            return 0;
+        }
+        Object replayAge = status.get("replay_age");
+        return replayAge != null ? ((Number) replayAge).doubleValue() : Double.NaN;
+    }
+}
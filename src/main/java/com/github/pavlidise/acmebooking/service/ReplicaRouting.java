@@ -0,0 +1,129 @@
+package com.github.pavlidise.acmebooking.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Decides whether a read is answered by the read replica or by the primary database, when a replica is configured.
+ * Only the reads marked as replica reads go to the replica, and only while it is fresh, i.e. lags behind the primary by at most the max lag,
+ * and the client did not write lately: the writes of a client are read back from the primary for the read-your-writes window after them.
+ * Every other read, e.g. of the caches, the schedule index or the change feed, and every write, goes to the primary.
+ * <p>
+ * The database a transaction reads is picked when it first reaches the database, so a replica read has to run in a read-only transaction
+ * of its own, or issue the first statement of the read-only transaction it runs in.
+ */
+@Slf4j
+@Component
+public class ReplicaRouting {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private static final ThreadLocal<Boolean> REPLICA_READ = ThreadLocal.withInitial(() -> false);
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = ThreadLocal.withInitial(() -> false);
+
+    private final BookingMetrics bookingMetrics;
+
+    private final Duration stalenessBound;
+
+    private volatile boolean replicaFresh;
+
+    public ReplicaRouting(BookingMetrics bookingMetrics,
+                          @Value("${acme.booking.replica.max-lag:1s}") Duration maxLag,
+                          @Value("${acme.booking.replica.lag-check-interval:1s}") Duration lagCheckInterval) {
+        this.bookingMetrics = bookingMetrics;
+        this.stalenessBound = maxLag.plus(lagCheckInterval);
+    }
+
+    /**
+     * A replica read as fresh may have been checked a lag check interval ago, so it lags by at most the max lag and that interval.
+     *
+     * @return how far behind the primary a replica read may be
+     */
+    public Duration stalenessBound() {
+        return stalenessBound;
+    }
+
+    /**
+     * Run a read that the replica may answer.
+     *
+     * @param read the read, in a read-only transaction of its own or issuing the first statement of the one it runs in
+     * @return the result of the read
+     */
+    public <T> T readFromReplica(final Supplier<T> read) {
+        boolean outer = REPLICA_READ.get();
+        REPLICA_READ.set(true);
+        try {
+            return read.get();
+        } finally {
+            REPLICA_READ.set(outer);
+        }
+    }
+
+    public void readFromReplica(final Runnable read) {
+        readFromReplica(() -> {
+            read.run();
+            return null;
+        });
+    }
+
+    /**
+     * Send the reads of the current thread to the primary, e.g. while serving a client that wrote lately.
+     *
+     * @param primaryRequired whether the reads have to go to the primary
+     */
+    public void requirePrimary(final boolean primaryRequired) {
+        if (primaryRequired) {
+            PRIMARY_REQUIRED.set(true);
+        } else {
+            PRIMARY_REQUIRED.remove();
+        }
+    }
+
+    /**
+     * Carry whether the reads have to go to the primary over to a task run on another thread, e.g. a streamed response.
+     *
+     * @param task the task submitted by the current thread
+     * @return the task, requiring the primary as the current thread does
+     */
+    public Runnable propagate(final Runnable task) {
+        boolean primaryRequired = PRIMARY_REQUIRED.get();
+        return () -> {
+            requirePrimary(primaryRequired);
+            try {
+                task.run();
+            } finally {
+                requirePrimary(false);
+            }
+        };
+    }
+
+    /**
+     * @param replicaFresh whether the replica lags behind the primary by at most the max lag, as last checked
+     */
+    public void setReplicaFresh(final boolean replicaFresh) {
+        if (this.replicaFresh != replicaFresh) {
+            log.info("Replica reads {}", replicaFresh ? "resumed, the replica caught up" : "suspended, the replica lags behind or is unreachable");
+        }
+        this.replicaFresh = replicaFresh;
+    }
+
+    /**
+     * Counts the replica reads by the database they are sent to.
+     *
+     * @return the database the current transaction reads, PRIMARY or REPLICA
+     */
+    public String determineTarget() {
+        if (!REPLICA_READ.get() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        String target = replicaFresh && !PRIMARY_REQUIRED.get() ? REPLICA : PRIMARY;
+        bookingMetrics.countReplicaRead(target);
+        return target;
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.pavlidise.acmebooking.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Runs an action in a transaction, running it again in a new transaction when Postgres aborts it on a serialization failure
+ * or a deadlock, up to acme.booking.transaction.max-attempts times in total. Any other exception is rethrown right away.
+ */
+@Slf4j
+@Component
+public class RetryingTransactionTemplate {
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final BookingMetrics bookingMetrics;
+
+    private final int maxAttempts;
+
+    public RetryingTransactionTemplate(PlatformTransactionManager transactionManager, BookingMetrics bookingMetrics,
+                                       @Value("${acme.booking.transaction.max-attempts:3}") int maxAttempts) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookingMetrics = bookingMetrics;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Within a transaction already, the action joins it and is not retried, since only the whole transaction can be run again.
+     *
+     * @param action the action to run in a transaction
+     * @return the result of the action
+     */
+    public <T> T execute(final Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (RuntimeException exception) {
+                Optional<String> sqlState = BookingMetrics.findSerializationFailureSqlState(exception);
+                if (sqlState.isEmpty() || attempt >= maxAttempts) {
+                    throw exception;
+                }
+                log.warn("Retrying transaction aborted with SQLState: {}, attempt {} of {}", sqlState.get(), attempt + 1, maxAttempts);
+                bookingMetrics.countRetry(sqlState.get());
+            }
+        }
+    }
+}
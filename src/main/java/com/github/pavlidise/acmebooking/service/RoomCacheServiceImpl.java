@@ -1,13 +1,18 @@
 package com.github.pavlidise.acmebooking.service;
 
+import com.github.pavlidise.acmebooking.configuration.CacheConfig;
 import com.github.pavlidise.acmebooking.integration.repository.RoomRepository;
 import com.github.pavlidise.acmebooking.model.entity.RoomEntity;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Service
@@ -17,26 +22,48 @@ public class RoomCacheServiceImpl implements RoomCacheService {
 
     private final RoomRepository roomRepository;
 
-    public RoomCacheServiceImpl(CacheManager cacheManager, RoomRepository roomRepository) {
+    private final BookingMetrics bookingMetrics;
+
+    public RoomCacheServiceImpl(CacheManager cacheManager, RoomRepository roomRepository, BookingMetrics bookingMetrics) {
         this.cacheManager = cacheManager;
         this.roomRepository = roomRepository;
+        this.bookingMetrics = bookingMetrics;
     }
 
+    /**
+     * Find a room by its name in the rooms cache, fetching it from the database on a cache miss.
+     * Rooms that do not exist are remembered in the room misses cache, so repeated lookups of an unknown name do not reach the database.
+     *
+     * @param roomName the name of the room
+     * @return the room, if it exists
+     */
     @Override
     public Optional<RoomEntity> getRoomByName(final String roomName) {
         log.debug("Querying rooms cache");
-        Cache cache = cacheManager.getCache("rooms");
-        RoomEntity roomEntity = cache.get(roomName, RoomEntity.class);
-
-        // If not found in the cache, fetch from the database and cache the result
-        if (roomEntity == null) {
+        Cache cache = cacheManager.getCache(CacheConfig.ROOMS_CACHE);
+        Timer.Sample sample = bookingMetrics.startTimer();
+        AtomicBoolean loaded = new AtomicBoolean();
+        RoomEntity room = CacheConfig.getOrLoad(cache, cacheManager.getCache(CacheConfig.ROOM_MISSES_CACHE), roomName, () -> {
             log.debug("Searching room: {} in db", roomName);
-            Optional<RoomEntity> optionalRoomFromDB = roomRepository.findByRoomName(roomName);
-            if (optionalRoomFromDB.isPresent()) {
-                cache.put(roomName, optionalRoomFromDB.get());  // Cache the room if found in DB
-                return optionalRoomFromDB;
-            }
-        }
-        return Optional.ofNullable(roomEntity);
+            loaded.set(true);
+            return roomRepository.findByRoomName(roomName).orElse(null);
+        });
+        bookingMetrics.stopRoomLookup(sample, loaded.get());
+        return Optional.ofNullable(room);
+    }
+
+    /**
+     * Find all the rooms in the room list cache, fetching them from the database on a cache miss.
+     * A change of any room evicts the list, as notified by the database, see CacheInvalidationListener.
+     *
+     * @return every room, in no particular order
+     */
+    @Override
+    public List<RoomEntity> getAllRooms() {
+        Cache cache = cacheManager.getCache(CacheConfig.ROOM_LIST_CACHE);
+        return CacheConfig.getOrLoad(cache, SimpleKey.EMPTY, () -> {
+            log.debug("Searching all rooms in db");
+            return List.copyOf(roomRepository.getAllRooms());
+        });
     }
 }
@@ -0,0 +1,171 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.integration.repository.RoomRepository;
+import com.github.pavlidise.acmebooking.model.entity.RoomEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Warm start of the rooms cache: the rooms preloaded at startup are written to a compact binary file on local disk,
+ * which the next startup maps into memory and reads instead of querying every room, catching up with a query of the rooms updated since.
+ * Rooms removed in the meantime are not caught up with, they leave the cache on its next refresh of them.
+ * <p>
+ * The file holds a magic number, the format version, the watermark, i.e. the latest updated_at of the rooms it holds,
+ * and the rooms as id, capacity (-1 when unknown), and the length and UTF-8 bytes of the name.
+ */
+@Slf4j
+@Component
+public class RoomCacheSnapshot {
+
+    static final String FILE_NAME = "rooms.snapshot";
+
+    private static final int MAGIC = 0x41434d52;
+    private static final int VERSION = 1;
+    private static final short UNKNOWN_CAPACITY = -1;
+    private static final LocalDateTime NO_WATERMARK = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final RoomRepository roomRepository;
+
+    private final Path snapshotFile;
+
+    private final Duration deltaOverlap;
+
+    public RoomCacheSnapshot(RoomRepository roomRepository,
+                             @Value("${acme.booking.cache.snapshot.directory:}") String directory,
+                             @Value("${acme.booking.cache.snapshot.delta-overlap:5m}") Duration deltaOverlap) {
+        this.roomRepository = roomRepository;
+        this.snapshotFile = directory.isBlank() ? null : Path.of(directory, FILE_NAME);
+        this.deltaOverlap = deltaOverlap;
+    }
+
+    /**
+     * Load the rooms to preload the cache with, from the snapshot and the rooms updated since when there is a readable snapshot,
+     * otherwise from all the rooms, and write them as the snapshot of the next startup.
+     * The rooms updated since are queried from a little before the watermark, so that updates committed after
+     * the snapshot but stamped before it, by a transaction started earlier, are caught up with as well.
+     *
+     * @return the rooms to preload
+     */
+    public List<RoomEntity> loadRooms() {
+        if (snapshotFile == null) {
+            return roomRepository.getAllRooms();
+        }
+        long start = System.nanoTime();
+        Optional<Snapshot> snapshot = read();
+        List<RoomEntity> rooms;
+        if (snapshot.isPresent()) {
+            Map<Long, RoomEntity> roomsById = new LinkedHashMap<>();
+            snapshot.get().rooms().forEach(room -> roomsById.put(room.getId(), room));
+            List<RoomEntity> updatedRooms = roomRepository.findRoomsUpdatedSince(snapshot.get().watermark().minus(deltaOverlap));
+            updatedRooms.forEach(room -> roomsById.put(room.getId(), room));
+            rooms = new ArrayList<>(roomsById.values());
+            log.info("Read {} rooms from snapshot {} and {} rooms updated since {} in {} ms", snapshot.get().rooms().size(), snapshotFile,
+                    updatedRooms.size(), snapshot.get().watermark(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+        } else {
+            rooms = roomRepository.getAllRooms();
+        }
+        write(new Snapshot(watermarkOf(rooms, snapshot.map(Snapshot::watermark).orElse(NO_WATERMARK)), rooms));
+        return rooms;
+    }
+
+    private static LocalDateTime watermarkOf(final List<RoomEntity> rooms, final LocalDateTime previousWatermark) {
+        return rooms.stream()
+                .map(RoomEntity::getUpdatedAt)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .filter(watermark -> watermark.isAfter(previousWatermark))
+                .orElse(previousWatermark);
+    }
+
+    /**
+     * @return the snapshot, empty when there is none or it can not be read, e.g. written by another version of the format
+     */
+    Optional<Snapshot> read() {
+        if (!Files.isRegularFile(snapshotFile)) {
+            log.info("No rooms snapshot at {}, loading all rooms", snapshotFile);
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("Ignoring rooms snapshot {} of an unknown format, loading all rooms", snapshotFile);
+                return Optional.empty();
+            }
+            LocalDateTime watermark = LocalDateTime.ofEpochSecond(buffer.getLong(), buffer.getInt(), ZoneOffset.UTC);
+            int roomCount = buffer.getInt();
+            List<RoomEntity> rooms = new ArrayList<>(roomCount);
+            for (int i = 0; i < roomCount; i++) {
+                RoomEntity room = new RoomEntity();
+                room.setId(buffer.getLong());
+                short capacity = buffer.getShort();
+                room.setRoomCapacity(capacity == UNKNOWN_CAPACITY ? null : capacity);
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                room.setRoomName(new String(name, StandardCharsets.UTF_8));
+                rooms.add(room);
+            }
+            return Optional.of(new Snapshot(watermark, rooms));
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException exception) {
+            log.warn("Ignoring unreadable rooms snapshot {}, loading all rooms", snapshotFile, exception);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Written to a temporary file first and moved in place, so that a crash while writing never leaves a truncated snapshot behind.
+     * A snapshot that can not be written is only logged, the next startup loads all rooms instead.
+     */
+    void write(final Snapshot snapshot) {
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path temporaryFile = Files.createTempFile(snapshotFile.getParent(), FILE_NAME, ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(snapshot.watermark().toEpochSecond(ZoneOffset.UTC));
+                output.writeInt(snapshot.watermark().getNano());
+                output.writeInt(snapshot.rooms().size());
+                for (RoomEntity room : snapshot.rooms()) {
+                    output.writeLong(room.getId());
+                    output.writeShort(room.getRoomCapacity() != null ? room.getRoomCapacity() : UNKNOWN_CAPACITY);
+                    byte[] name = room.getRoomName().getBytes(StandardCharsets.UTF_8);
+                    output.writeInt(name.length);
+                    output.write(name);
+                }
+            }
+            Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Wrote {} rooms to snapshot {}", snapshot.rooms().size(), snapshotFile);
+        } catch (IOException exception) {
+            log.warn("Could not write rooms snapshot {}", snapshotFile, exception);
+        }
+    }
+
+    /**
+     * @param watermark the latest updated_at of the rooms
+     */
+    record Snapshot(LocalDateTime watermark, List<RoomEntity> rooms) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.model.dto.BookingIntervalDTO;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * In-memory index of the bookings of each room, used to answer overlap checks without a database round trip.
+ * The database remains the final arbiter, the index only spares the query for the common case.
+ * The index of an instance only learns of the bookings changed through it, so it may still hold bookings deleted elsewhere,
+ * by another instance, the archiver or a dropped partition: an overlap it reports is confirmed by the database before rejecting a booking.
+ */
+public interface RoomScheduleIndex {
+
+    /**
+     * @return true once the index has been populated and can be trusted to answer overlap checks
+     */
+    boolean isLoaded();
+
+    void load(final Collection<BookingIntervalDTO> bookingIntervals);
+
+    void add(final BookingIntervalDTO bookingInterval);
+
+    void remove(final BookingIntervalDTO bookingInterval);
+
+    /**
+     * Remove the bookings of the room touching the period [startDateTime, endDateTime], once the database found none there,
+     * so that the index stops reporting an overlap for the period.
+     */
+    void removeOverlapping(final Long roomId, final LocalDateTime startDateTime, final LocalDateTime endDateTime);
+
+    /**
+     * Same semantics as the repository overlap check: both ends of the period are inclusive.
+     * A period the index cannot tell about, e.g. beyond its horizon, is reported as overlapping, for the database to confirm.
+     */
+    boolean hasOverlap(final Long roomId, final LocalDateTime startDateTime, final LocalDateTime endDateTime);
+}
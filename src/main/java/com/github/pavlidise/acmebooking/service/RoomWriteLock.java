@@ -0,0 +1,19 @@
+package com.github.pavlidise.acmebooking.service;
+
+import java.util.Collection;
+
+/**
+ * Serializes the writes to a room, so that the overlap check and the insert of a booking can not interleave with those of
+ * another booking of the same room, while bookings of different rooms proceed in parallel at READ COMMITTED.
+ * Selected by acme.booking.room-lock: advisory (default), striped or none.
+ */
+public interface RoomWriteLock {
+
+    /**
+     * Lock the rooms until the current transaction commits or rolls back, in a consistent order, so that
+     * two transactions locking overlapping sets of rooms can not deadlock.
+     *
+     * @param roomIds the ids of the rooms about to be booked
+     */
+    void lock(final Collection<Long> roomIds);
+}
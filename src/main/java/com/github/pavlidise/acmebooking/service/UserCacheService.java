@@ -0,0 +1,14 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.model.entity.AcmeUserEntity;
+
+import java.util.Optional;
+
+public interface UserCacheService {
+
+    Optional<AcmeUserEntity> getUserByEmail(final String userEmail);
+
+    void evict(final String userEmail);
+
+    void evictAll();
+}
@@ -0,0 +1,77 @@
+package com.github.pavlidise.acmebooking.service;
+
+import com.github.pavlidise.acmebooking.configuration.CacheConfig;
+import com.github.pavlidise.acmebooking.integration.repository.AcmeUserRepository;
+import com.github.pavlidise.acmebooking.model.entity.AcmeUserEntity;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@Slf4j
+@Service
+public class UserCacheServiceImpl implements UserCacheService {
+
+    private final CacheManager cacheManager;
+
+    private final AcmeUserRepository acmeUserRepository;
+
+    private final BookingMetrics bookingMetrics;
+
+    public UserCacheServiceImpl(CacheManager cacheManager, AcmeUserRepository acmeUserRepository, BookingMetrics bookingMetrics) {
+        this.cacheManager = cacheManager;
+        this.acmeUserRepository = acmeUserRepository;
+        this.bookingMetrics = bookingMetrics;
+    }
+
+    /**
+     * Find a user by their email address in the users cache, fetching them from the database on a cache miss.
+     * Emails are case-insensitive in the database, so they are cached in lower case.
+     * Users that do not exist are remembered in the user misses cache.
+     *
+     * @param userEmail the email address of the user
+     * @return the user, if they exist
+     */
+    @Override
+    public Optional<AcmeUserEntity> getUserByEmail(final String userEmail) {
+        log.debug("Querying users cache");
+        Cache cache = cacheManager.getCache(CacheConfig.USERS_CACHE);
+        Timer.Sample sample = bookingMetrics.startTimer();
+        AtomicBoolean loaded = new AtomicBoolean();
+        AcmeUserEntity user = CacheConfig.getOrLoad(cache, cacheManager.getCache(CacheConfig.USER_MISSES_CACHE), userEmail.toLowerCase(Locale.ROOT), () -> {
+            log.debug("Searching user: {} in db", userEmail);
+            loaded.set(true);
+            return acmeUserRepository.findByUserEmail(userEmail).orElse(null);
+        });
+        bookingMetrics.stopUserLookup(sample, loaded.get());
+        return Optional.ofNullable(user);
+    }
+
+    /**
+     * Evict the user cached by the email, or cached as missing, in whichever case the email is given.
+     *
+     * @param userEmail the email address of the user
+     */
+    @Override
+    public void evict(final String userEmail) {
+        log.debug("Evicting {} from users cache", userEmail);
+        String key = userEmail.toLowerCase(Locale.ROOT);
+        cacheManager.getCache(CacheConfig.USERS_CACHE).evict(key);
+        cacheManager.getCache(CacheConfig.USER_MISSES_CACHE).evict(key);
+    }
+
+    /**
+     * Evict every cached user and miss, when the emails a change concerns are not known.
+     */
+    @Override
+    public void evictAll() {
+        log.debug("Evicting users cache");
+        cacheManager.getCache(CacheConfig.USERS_CACHE).clear();
+        cacheManager.getCache(CacheConfig.USER_MISSES_CACHE).clear();
+    }
+}
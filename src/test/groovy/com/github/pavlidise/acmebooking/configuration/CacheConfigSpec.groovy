@@ -0,0 +1,125 @@
+package com.github.pavlidise.acmebooking.configuration
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats
+import com.github.pavlidise.acmebooking.integration.repository.AcmeUserRepository
+import com.github.pavlidise.acmebooking.integration.repository.RoomRepository
+import com.github.pavlidise.acmebooking.model.entity.AcmeUserEntity
+import com.github.pavlidise.acmebooking.model.entity.RoomEntity
+import com.github.pavlidise.acmebooking.service.BookingMetrics
+import com.github.pavlidise.acmebooking.service.RoomCacheService
+import com.github.pavlidise.acmebooking.service.RoomCacheServiceImpl
+import com.github.pavlidise.acmebooking.service.UserCacheService
+import com.github.pavlidise.acmebooking.service.UserCacheServiceImpl
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.cache.CacheManager
+import org.springframework.cache.caffeine.CaffeineCache
+import spock.lang.Specification
+
+import java.time.Duration
+
+class CacheConfigSpec extends Specification {
+
+    private RoomRepository roomRepository = Mock()
+    private CacheManager cacheManager = new CacheConfig(roomRepository).cacheManager(2, Duration.ofMinutes(10), 2, Duration.ofMinutes(30), 2, Duration.ofMinutes(1), Runnable::run)
+    private RoomCacheService roomCacheService = new RoomCacheServiceImpl(cacheManager, roomRepository, new BookingMetrics(new SimpleMeterRegistry()))
+    private AcmeUserRepository acmeUserRepository = Mock()
+    private UserCacheService userCacheService = new UserCacheServiceImpl(cacheManager, acmeUserRepository, new BookingMetrics(new SimpleMeterRegistry()))
+
+    def "rooms cache remembers rooms that do not exist, apart from the rooms"() {
+        when:
+        Optional<RoomEntity> first = roomCacheService.getRoomByName("Unknown Room")
+        Optional<RoomEntity> second = roomCacheService.getRoomByName("Unknown Room")
+
+        then:
+        1 * roomRepository.findByRoomName("Unknown Room") >> Optional.empty()
+        first.isEmpty()
+        second.isEmpty()
+        roomsCache().estimatedSize() == 0
+        nativeCache(CacheConfig.ROOM_MISSES_CACHE).asMap().keySet() == ["Unknown Room"] as Set
+    }
+
+    def "lookups of rooms that do not exist never evict the rooms that do"() {
+        given:
+        RoomEntity roomEntity = new RoomEntity(id: 1L, roomName: "Conference Room")
+        roomRepository.findByRoomName(_) >> Optional.empty()
+
+        when:
+        roomCacheService.getRoomByName("Conference Room")
+        (1..10).each { roomCacheService.getRoomByName("Unknown Room $it") }
+        nativeCache(CacheConfig.ROOM_MISSES_CACHE).cleanUp()
+        Optional<RoomEntity> result = roomCacheService.getRoomByName("Conference Room")
+
+        then:
+        1 * roomRepository.findByRoomName("Conference Room") >> Optional.of(roomEntity)
+        result.get() == roomEntity
+        nativeCache(CacheConfig.ROOM_MISSES_CACHE).estimatedSize() <= 2
+    }
+
+    def "a room removed leaves the cache when refreshed"() {
+        given:
+        roomRepository.findByRoomName("Conference Room") >>> [Optional.of(new RoomEntity(id: 1L, roomName: "Conference Room")), Optional.empty()]
+        roomCacheService.getRoomByName("Conference Room")
+
+        when:
+        roomsCache().refresh("Conference Room")
+
+        then:
+        !roomsCache().asMap().containsKey("Conference Room")
+        roomCacheService.getRoomByName("Conference Room").isEmpty()
+    }
+
+    def "rooms cache records hits and misses"() {
+        given:
+        RoomEntity roomEntity = new RoomEntity(id: 1L, roomName: "Conference Room")
+
+        when:
+        3.times { roomCacheService.getRoomByName("Conference Room") }
+
+        then:
+        1 * roomRepository.findByRoomName("Conference Room") >> Optional.of(roomEntity)
+        CacheStats stats = roomsCache().stats()
+        stats.hitCount() == 2
+        stats.missCount() == 1
+    }
+
+    def "rooms cache is bounded in size"() {
+        given:
+        roomRepository.findByRoomName(_) >> { String roomName -> Optional.of(new RoomEntity(roomName: roomName)) }
+
+        when:
+        (1..10).each { roomCacheService.getRoomByName("Room $it") }
+        roomsCache().cleanUp()
+
+        then:
+        roomsCache().estimatedSize() <= 2
+        roomsCache().stats().evictionCount() >= 8
+    }
+
+    def "users cache shares entries between differently cased emails until evicted"() {
+        given:
+        AcmeUserEntity acmeUserEntity = new AcmeUserEntity(id: 1L, userEmail: "user@example.com")
+
+        when:
+        userCacheService.getUserByEmail("user@example.com")
+        userCacheService.getUserByEmail("USER@example.com")
+
+        then:
+        1 * acmeUserRepository.findByUserEmail(_) >> Optional.of(acmeUserEntity)
+
+        when:
+        userCacheService.evictAll()
+        Optional<AcmeUserEntity> result = userCacheService.getUserByEmail("user@example.com")
+
+        then:
+        1 * acmeUserRepository.findByUserEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        result.get() == acmeUserEntity
+    }
+
+    private com.github.benmanes.caffeine.cache.LoadingCache<Object, Object> roomsCache() {
+        return (com.github.benmanes.caffeine.cache.LoadingCache<Object, Object>) nativeCache(CacheConfig.ROOMS_CACHE)
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache(final String cacheName) {
+        return ((CaffeineCache) cacheManager.getCache(cacheName)).nativeCache
+    }
+}
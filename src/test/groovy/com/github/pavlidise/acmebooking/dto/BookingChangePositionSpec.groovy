@@ -0,0 +1,34 @@
+package com.github.pavlidise.acmebooking.dto
+
+import com.github.pavlidise.acmebooking.exception.InvalidCursorException
+import com.github.pavlidise.acmebooking.model.dto.BookingChangePosition
+import spock.lang.Specification
+
+class BookingChangePositionSpec extends Specification {
+
+    def "position survives an encoding round trip"() {
+        given:
+        BookingChangePosition position = new BookingChangePosition(4_294_967_396L, 123456789L)
+
+        expect:
+        BookingChangePosition.decode(position.encode()) == position
+    }
+
+    def "positions are ordered by transaction, then by id"() {
+        expect:
+        [new BookingChangePosition(8L, 1L), new BookingChangePosition(7L, 9L), BookingChangePosition.START, new BookingChangePosition(7L, 3L)].sort() ==
+                [BookingChangePosition.START, new BookingChangePosition(7L, 3L), new BookingChangePosition(7L, 9L), new BookingChangePosition(8L, 1L)]
+    }
+
+    def "decode rejects #position"() {
+        when:
+        BookingChangePosition.decode(position)
+
+        then:
+        InvalidCursorException exception = thrown()
+        exception.message == "Invalid position: ${position}"
+
+        where:
+        position << ["not a position", "12", "12-", "-1-3", "12-x"]
+    }
+}
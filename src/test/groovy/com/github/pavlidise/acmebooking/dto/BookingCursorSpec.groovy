@@ -0,0 +1,39 @@
+package com.github.pavlidise.acmebooking.dto
+
+import com.github.pavlidise.acmebooking.exception.InvalidCursorException
+import com.github.pavlidise.acmebooking.model.dto.BookingCursor
+import spock.lang.Specification
+
+import java.time.LocalDateTime
+
+class BookingCursorSpec extends Specification {
+
+    def "cursor survives an encoding round trip"() {
+        given:
+        BookingCursor cursor = new BookingCursor(LocalDateTime.of(2030, 1, 7, 10, 30, 15), 123456789L)
+
+        expect:
+        BookingCursor.decode(cursor.encode()) == cursor
+    }
+
+    def "decode rejects #cursor"() {
+        when:
+        BookingCursor.decode(cursor)
+
+        then:
+        InvalidCursorException exception = thrown()
+        exception.message == "Invalid cursor: ${cursor}"
+
+        where:
+        cursor << ["not a cursor", Base64.urlEncoder.encodeToString("2030-01-07T10:30".bytes), Base64.urlEncoder.encodeToString("yesterday|1".bytes)]
+    }
+
+    def "cursors are ordered by start time, then by id"() {
+        given:
+        LocalDateTime start = LocalDateTime.of(2030, 1, 7, 10, 0)
+
+        expect:
+        [new BookingCursor(start.plusHours(1), 1L), new BookingCursor(start, 2L), new BookingCursor(start, 1L)].sort() ==
+                [new BookingCursor(start, 1L), new BookingCursor(start, 2L), new BookingCursor(start.plusHours(1), 1L)]
+    }
+}
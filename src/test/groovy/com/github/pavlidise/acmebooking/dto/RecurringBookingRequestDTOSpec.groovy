@@ -0,0 +1,50 @@
+package com.github.pavlidise.acmebooking.dto
+
+import com.github.pavlidise.acmebooking.model.dto.RecurrenceFrequency
+import com.github.pavlidise.acmebooking.model.dto.RecurringBookingRequestDTO
+import spock.lang.Specification
+
+import java.time.LocalDate
+import java.time.LocalDateTime
+
+class RecurringBookingRequestDTOSpec extends Specification {
+
+    private static LocalDateTime firstMonday = LocalDateTime.of(2030, 1, 7, 10, 0)
+
+    def "occurrenceStartTimes expands a #frequency series every #interval, count: #count, until: #until"() {
+        given:
+        RecurringBookingRequestDTO requestDTO = new RecurringBookingRequestDTO("user@example.com", "Conference Room",
+                firstMonday, 2, frequency, interval, count, until)
+
+        expect:
+        requestDTO.occurrenceStartTimes() == expectedOffsetsInDays.collect { firstMonday.plusDays(it) }
+
+        where:
+        frequency                  | interval | count | until                    || expectedOffsetsInDays
+        RecurrenceFrequency.DAILY  | 1        | 3     | null                     || [0, 1, 2]
+        RecurrenceFrequency.DAILY  | 2        | null  | LocalDate.of(2030, 1, 11) || [0, 2, 4]
+        RecurrenceFrequency.WEEKLY | 1        | 4     | null                     || [0, 7, 14, 21]
+        RecurrenceFrequency.WEEKLY | 2        | null  | LocalDate.of(2030, 2, 3)  || [0, 14]
+        RecurrenceFrequency.WEEKLY | 1        | null  | LocalDate.of(2030, 1, 7)  || [0]
+    }
+
+    def "series validation requires exactly one of count or until, within the occurrence limit"() {
+        given:
+        RecurringBookingRequestDTO requestDTO = new RecurringBookingRequestDTO("user@example.com", "Conference Room",
+                firstMonday, 2, RecurrenceFrequency.DAILY, 1, count, until)
+
+        expect:
+        requestDTO.isCountOrUntilProvided() == countOrUntilProvided
+        requestDTO.isUntilNotBeforeFirstBooking() == untilNotBeforeFirstBooking
+        requestDTO.isWithinOccurrenceLimit() == withinOccurrenceLimit
+
+        where:
+        count | until                     || countOrUntilProvided | untilNotBeforeFirstBooking | withinOccurrenceLimit
+        10    | null                      || true                 | true                       | true
+        null  | LocalDate.of(2031, 5, 21) || true                 | true                       | true
+        null  | LocalDate.of(2031, 5, 22) || true                 | true                       | false
+        null  | LocalDate.of(2030, 1, 6)  || true                 | false                      | true
+        10    | LocalDate.of(2030, 2, 1)  || false                | true                       | true
+        null  | null                      || false                | true                       | true
+    }
+}
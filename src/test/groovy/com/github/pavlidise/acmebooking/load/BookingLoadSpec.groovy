@@ -0,0 +1,249 @@
+package com.github.pavlidise.acmebooking.load
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.pavlidise.acmebooking.AcmeBookingApplication
+import org.springframework.boot.builder.SpringApplicationBuilder
+import org.springframework.context.ConfigurableApplicationContext
+import spock.lang.AutoCleanup
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Duration
+import java.time.LocalDate
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadLocalRandom
+
+/**
+ * Drives creating, searching and cancelling bookings through the REST API of the whole application, with most bookings
+ * requested for a few popular rooms, and reports requests per second, latency percentiles and the rate of conflicting bookings.
+ * The application runs against an embedded Postgres, migrated by the Liquibase changelogs and scaled up from their seed data,
+ * so nothing needs to be set up, but it takes minutes, so it runs only when ACME_BOOKING_LOAD_TEST is set.
+ * <p>
+ * Tuned through system properties, see the README. load.app-properties and load.setup-sql make it possible to measure,
+ * e.g., another isolation level or an additional index against the same load.
+ */
+@Requires({ env['ACME_BOOKING_LOAD_TEST'] })
+class BookingLoadSpec extends Specification {
+
+    private static final String CREATE = "create"
+    private static final String SEARCH = "search"
+    private static final String CANCEL = "cancel"
+
+    private static final int ROOMS = Integer.getInteger("load.rooms", 2000)
+    private static final int USERS = Integer.getInteger("load.users", 3000)
+    private static final int CLIENTS = Integer.getInteger("load.clients", 64)
+    private static final Duration WARM_UP = Duration.parse(System.getProperty("load.warm-up", "PT10S"))
+    private static final Duration DURATION = Duration.parse(System.getProperty("load.duration", "PT60S"))
+    private static final int POPULAR_ROOMS = Integer.getInteger("load.popular-rooms", 10)
+    private static final double POPULAR_SHARE = Double.parseDouble(System.getProperty("load.popular-share", "0.8"))
+    private static final int HORIZON_DAYS = Integer.getInteger("load.horizon-days", 7)
+    private static final String APP_PROPERTIES = System.getProperty("load.app-properties", "")
+    private static final String SETUP_SQL = System.getProperty("load.setup-sql", "")
+
+    private static final Path REPORT = Path.of("target", "load-test", "booking-load-report.json")
+
+    @Shared
+    @AutoCleanup
+    private EmbeddedBookingDatabase database
+
+    @Shared
+    private List<String> roomNames
+
+    @Shared
+    private List<String> userEmails
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+
+    def "setupSpec"() {
+        database = EmbeddedBookingDatabase.start()
+        database.scaleRooms(ROOMS)
+        database.scaleUsers(USERS)
+        if (SETUP_SQL) {
+            database.execute(Files.readString(Path.of(SETUP_SQL)))
+        }
+        roomNames = database.queryStrings("SELECT room_name FROM room ORDER BY id")
+        userEmails = database.queryStrings("SELECT CAST(user_email AS text) FROM acme_user ORDER BY id")
+    }
+
+    def "bookings are created, searched and cancelled by #CLIENTS concurrent clients, contending for #POPULAR_ROOMS popular rooms"() {
+        given:
+        ConfigurableApplicationContext context = startApplication()
+        URI bookingsUri = URI.create("http://localhost:${context.environment.getProperty("local.server.port")}/api/v1/bookings")
+
+        when:
+        drive(bookingsUri, WARM_UP)
+        Map<String, OperationStats> stats = drive(bookingsUri, DURATION)
+        report(stats)
+
+        then:
+        stats[CREATE].succeeded > 0
+        stats.values().every { it.failed == 0 }
+
+        cleanup:
+        context?.close()
+    }
+
+    /**
+     * Properties are passed as command line arguments, so that they take precedence over application.properties.
+     */
+    private ConfigurableApplicationContext startApplication() {
+        List<String> properties = [
+                "server.port=0",
+                "spring.datasource.url=" + database.jdbcUrl,
+                "spring.datasource.username=" + database.username,
+                "spring.datasource.password=",
+                "spring.jpa.show-sql=false",
+                "logging.level.com.github.pavlidise.acmebooking=WARN"]
+        properties.addAll(APP_PROPERTIES.split(";").findAll { !it.isBlank() })
+        return new SpringApplicationBuilder(AcmeBookingApplication).run(properties.collect { "--" + it } as String[])
+    }
+
+    /**
+     * Each client keeps sending requests until the duration is over: six in ten create a booking, three in ten search the bookings
+     * of a room on a day, and one in ten cancels a booking the client created earlier.
+     */
+    private Map<String, OperationStats> drive(final URI bookingsUri, final Duration duration) {
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS)
+        try {
+            long start = System.nanoTime()
+            long deadline = start + duration.toNanos()
+            List<Future<Map<String, OperationStats>>> futures = (1..CLIENTS).collect {
+                clients.submit({
+                    Map<String, OperationStats> clientStats = [(CREATE): new OperationStats(), (SEARCH): new OperationStats(), (CANCEL): new OperationStats()]
+                    Deque<String> createdBookings = new ArrayDeque<>()
+                    ThreadLocalRandom random = ThreadLocalRandom.current()
+                    while (System.nanoTime() < deadline) {
+                        int dice = random.nextInt(10)
+                        if (dice < 3) {
+                            send(httpClient, searchRequest(bookingsUri, random), clientStats[SEARCH])
+                        } else if (dice < 4 && !createdBookings.isEmpty()) {
+                            send(httpClient, cancelRequest(bookingsUri, createdBookings.pop()), clientStats[CANCEL])
+                        } else {
+                            HttpResponse<String> response = send(httpClient, createRequest(bookingsUri, random), clientStats[CREATE])
+                            if (response.statusCode() < 300) {
+                                createdBookings.push(objectMapper.readTree(response.body()).path("uuid").asText())
+                            }
+                        }
+                    }
+                    return clientStats
+                } as Callable<Map<String, OperationStats>>)
+            }
+            List<Map<String, OperationStats>> clientStats = futures*.get()
+            long elapsedNanos = System.nanoTime() - start
+            return [CREATE, SEARCH, CANCEL].collectEntries { String operation ->
+                [(operation): OperationStats.merge(clientStats*.get(operation), elapsedNanos)]
+            }
+        } finally {
+            clients.shutdownNow()
+        }
+    }
+
+    private static HttpResponse<String> send(final HttpClient httpClient, final HttpRequest request, final OperationStats stats) {
+        long requestStart = System.nanoTime()
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString())
+        stats.record(System.nanoTime() - requestStart, response.statusCode())
+        return response
+    }
+
+    private HttpRequest createRequest(final URI bookingsUri, final ThreadLocalRandom random) {
+        String body = objectMapper.writeValueAsString([
+                userEmail           : userEmails[random.nextInt(userEmails.size())],
+                roomName            : pickRoom(random),
+                bookingStartDateTime: LocalDate.now().plusDays(1 + random.nextInt(HORIZON_DAYS)).atTime(8 + random.nextInt(10), 0).toString(),
+                numberOfHours       : 1 + random.nextInt(2)])
+        return HttpRequest.newBuilder(bookingsUri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build()
+    }
+
+    private HttpRequest searchRequest(final URI bookingsUri, final ThreadLocalRandom random) {
+        String body = objectMapper.writeValueAsString([
+                roomName: pickRoom(random),
+                date    : LocalDate.now().plusDays(1 + random.nextInt(HORIZON_DAYS)).toString()])
+        return HttpRequest.newBuilder(bookingsUri)
+                .header("Content-Type", "application/json")
+                .method("GET", HttpRequest.BodyPublishers.ofString(body))
+                .build()
+    }
+
+    private static HttpRequest cancelRequest(final URI bookingsUri, final String uuid) {
+        return HttpRequest.newBuilder(URI.create("${bookingsUri}?uuid=${uuid}")).DELETE().build()
+    }
+
+    private String pickRoom(final ThreadLocalRandom random) {
+        if (random.nextDouble() < POPULAR_SHARE) {
+            return roomNames[random.nextInt(Math.min(POPULAR_ROOMS, roomNames.size()))]
+        }
+        return roomNames[random.nextInt(roomNames.size())]
+    }
+
+    private static void report(final Map<String, OperationStats> stats) {
+        System.out.printf("%n%d rooms, %d users, %d clients, %s%n", ROOMS, USERS, CLIENTS, DURATION)
+        System.out.printf("%-8s | %9s | %10s | %9s | %9s | %9s | %9s | %9s | %7s%n",
+                "request", "count", "requests/s", "p50 (ms)", "p95 (ms)", "p99 (ms)", "max (ms)", "conflicts", "failed")
+        Map<String, Map<String, Object>> summary = [:]
+        stats.each { String operation, OperationStats operationStats ->
+            LatencyStats latencies = operationStats.latencies
+            System.out.printf("%-8s | %9d | %10.0f | %9.1f | %9.1f | %9.1f | %9.1f | %8.1f%% | %7d%n",
+                    operation, latencies.count(), latencies.throughput(), latencies.percentileMillis(50), latencies.percentileMillis(95),
+                    latencies.percentileMillis(99), latencies.percentileMillis(100), operationStats.conflictRate() * 100, operationStats.failed)
+            summary[operation] = [count       : latencies.count(), requestsPerSecond: latencies.throughput(),
+                                  p50Millis   : latencies.percentileMillis(50), p95Millis: latencies.percentileMillis(95),
+                                  p99Millis   : latencies.percentileMillis(99), maxMillis: latencies.percentileMillis(100),
+                                  conflictRate: operationStats.conflictRate(), failed: operationStats.failed]
+        }
+        Files.createDirectories(REPORT.parent)
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(REPORT.toFile(), [
+                rooms        : ROOMS, users: USERS, clients: CLIENTS, duration: DURATION.toString(),
+                popularRooms : POPULAR_ROOMS, popularShare: POPULAR_SHARE, appProperties: APP_PROPERTIES, setupSql: SETUP_SQL,
+                requests     : summary])
+        System.out.printf("Report written to %s%n", REPORT.toAbsolutePath())
+    }
+
+    /**
+     * Requests of one kind. Conflicts are the 409 responses to overlapping bookings, any other non 2xx response is a failure.
+     */
+    private static class OperationStats {
+        List<Long> latencyNanos = []
+        int succeeded
+        int conflicts
+        int failed
+        LatencyStats latencies
+
+        void record(final long latency, final int statusCode) {
+            latencyNanos << latency
+            if (statusCode < 300) {
+                succeeded++
+            } else if (statusCode == 409) {
+                conflicts++
+            } else {
+                failed++
+            }
+        }
+
+        double conflictRate() {
+            int total = succeeded + conflicts + failed
+            return total == 0 ? 0 : conflicts / total
+        }
+
+        static OperationStats merge(final List<OperationStats> clientStats, final long elapsedNanos) {
+            OperationStats merged = new OperationStats(
+                    succeeded: clientStats.sum { it.succeeded } as int,
+                    conflicts: clientStats.sum { it.conflicts } as int,
+                    failed: clientStats.sum { it.failed } as int)
+            merged.latencies = new LatencyStats(elapsedNanos, clientStats.collectMany { it.latencyNanos }, merged.failed)
+            return merged
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.pavlidise.acmebooking.load
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres
+import liquibase.Scope
+import liquibase.command.CommandScope
+import liquibase.resource.ClassLoaderResourceAccessor
+
+import java.sql.Connection
+
+/**
+ * A throwaway Postgres server, run from the binaries of the embedded-postgres dependency, so no database or container needs to be set up.
+ * It is migrated by the same Liquibase changelogs as the docker-compose database, seeding the rooms and users of rooms.csv and users.csv,
+ * which can then be scaled up by copies of them.
+ */
+class EmbeddedBookingDatabase implements Closeable {
+
+    private static final String DATABASE = "postgres"
+    private static final String USERNAME = "postgres"
+
+    private final EmbeddedPostgres postgres
+
+    private EmbeddedBookingDatabase(final EmbeddedPostgres postgres) {
+        this.postgres = postgres
+    }
+
+    static EmbeddedBookingDatabase start() {
+        EmbeddedBookingDatabase database = new EmbeddedBookingDatabase(EmbeddedPostgres.builder().start())
+        database.migrate()
+        return database
+    }
+
+    String getJdbcUrl() {
+        return postgres.getJdbcUrl(USERNAME, DATABASE)
+    }
+
+    String getUsername() {
+        return USERNAME
+    }
+
+    Connection getConnection() {
+        return postgres.getPostgresDatabase().getConnection()
+    }
+
+    /**
+     * Copies every seeded room until there are at least the given number of rooms, named after the original with a copy number.
+     */
+    void scaleRooms(final int roomCount) {
+        execute("""
+                INSERT INTO room (id, room_name, room_capacity)
+                SELECT (SELECT max(id) FROM room) + row_number() OVER (ORDER BY copy, r.id), r.room_name || ' #' || copy, r.room_capacity
+                FROM room r
+                CROSS JOIN generate_series(1, ceil(${roomCount}::numeric / (SELECT count(*) FROM room))::int - 1) copy
+                """)
+    }
+
+    /**
+     * Copies every seeded user until there are at least the given number of users, with the copy number added to their email address.
+     */
+    void scaleUsers(final int userCount) {
+        execute("""
+                INSERT INTO acme_user (id, username, user_email)
+                SELECT (SELECT max(id) FROM acme_user) + row_number() OVER (ORDER BY copy, u.id),
+                       u.username || ' #' || copy,
+                       split_part(u.user_email, '@', 1) || '+' || copy || '@' || split_part(u.user_email, '@', 2)
+                FROM acme_user u
+                CROSS JOIN generate_series(1, ceil(${userCount}::numeric / (SELECT count(*) FROM acme_user))::int - 1) copy
+                """)
+    }
+
+    /**
+     * Runs statements on the migrated database, e.g. to try out an index before adding it to the changelogs.
+     */
+    void execute(final String sql) {
+        getConnection().withCloseable { it.createStatement().execute(sql) }
+    }
+
+    List<String> queryStrings(final String sql) {
+        getConnection().withCloseable {
+            def resultSet = it.createStatement().executeQuery(sql)
+            List<String> values = []
+            while (resultSet.next()) {
+                values << resultSet.getString(1)
+            }
+            return values
+        }
+    }
+
+    @Override
+    void close() {
+        postgres.close()
+    }
+
+    private void migrate() {
+        Scope.child([(Scope.Attr.resourceAccessor.name()): new ClassLoaderResourceAccessor()], {
+            new CommandScope("update")
+                    .addArgumentValue("url", getJdbcUrl())
+                    .addArgumentValue("username", USERNAME)
+                    .addArgumentValue("password", "")
+                    .addArgumentValue("changelogFile", "liquibase/master.xml")
+                    .execute()
+        } as Scope.ScopedRunner)
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.pavlidise.acmebooking.load
+
+/**
+ * Latencies of the requests of a load run, in nanoseconds, with the failed ones counted apart.
+ */
+class LatencyStats {
+
+    final long elapsedNanos
+    final List<Long> sortedLatencies
+    final int failedRequests
+
+    LatencyStats(final long elapsedNanos, final Collection<Long> latencies, final int failedRequests) {
+        this.elapsedNanos = elapsedNanos
+        this.sortedLatencies = latencies.toSorted()
+        this.failedRequests = failedRequests
+    }
+
+    int count() {
+        return sortedLatencies.size()
+    }
+
+    double throughput() {
+        return count() * 1_000_000_000d / elapsedNanos
+    }
+
+    double percentileMillis(final double percentile) {
+        if (sortedLatencies.isEmpty()) {
+            return 0
+        }
+        int index = Math.ceil(count() * percentile / 100d) as int
+        return sortedLatencies[Math.max(0, index - 1)] / 1_000_000d
+    }
+}
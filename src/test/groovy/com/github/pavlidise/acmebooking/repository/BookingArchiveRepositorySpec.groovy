@@ -0,0 +1,121 @@
+package com.github.pavlidise.acmebooking.repository
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingArchiveRepository
+import com.github.pavlidise.acmebooking.model.dto.ArchivedBookingDTO
+import org.springframework.jdbc.datasource.SingleConnectionDataSource
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.sql.Connection
+import java.sql.ResultSet
+import java.time.LocalDate
+import java.time.LocalDateTime
+
+/**
+ * Checks the moves of bookings out of the booking table and out of detached partitions for the archive,
+ * against a real, migrated Postgres database, see TestDatabase. All generated rows and tables are rolled back.
+ */
+class BookingArchiveRepositorySpec extends Specification {
+
+    private static final LocalDateTime MAY_1901 = LocalDateTime.of(1901, 5, 6, 10, 0)
+
+    @Shared
+    private Connection connection
+
+    @Shared
+    private BookingArchiveRepository bookingArchiveRepository
+
+    private long roomId
+
+    private long userId
+
+    def "setupSpec"() {
+        connection = TestDatabase.connection
+        connection.setAutoCommit(false)
+        bookingArchiveRepository = new BookingArchiveRepository(new SingleConnectionDataSource(connection, true))
+    }
+
+    def "cleanupSpec"() {
+        connection?.close()
+    }
+
+    def "setup"() {
+        roomId = queryForList("SELECT min(id) FROM room").first() as long
+        userId = queryForList("SELECT min(id) FROM acme_user").first() as long
+    }
+
+    def "cleanup"() {
+        connection.rollback()
+    }
+
+    def "the bookings of a month are moved out of the booking table a chunk at a time, the earliest first, with their room and user, and their keys"() {
+        given:
+        [MAY_1901.plusDays(2), MAY_1901, MAY_1901.plusDays(1), MAY_1901.plusMonths(1)].each { insertBooking("booking", it) }
+
+        when:
+        List<LocalDate> months = bookingArchiveRepository.findMonthsWithBookingsBefore(LocalDate.of(1901, 6, 15))
+        List<ArchivedBookingDTO> firstChunk = bookingArchiveRepository.moveBookingsOfMonth(LocalDate.of(1901, 5, 20), 2)
+        List<ArchivedBookingDTO> lastChunk = bookingArchiveRepository.moveBookingsOfMonth(LocalDate.of(1901, 5, 20), 2)
+        List<ArchivedBookingDTO> moved = firstChunk + lastChunk
+
+        then:
+        months.contains(LocalDate.of(1901, 5, 1))
+        !months.contains(LocalDate.of(1901, 6, 1))
+        firstChunk*.bookingStartTime() == [MAY_1901, MAY_1901.plusDays(1)]
+        lastChunk*.bookingStartTime() == [MAY_1901.plusDays(2)]
+        moved*.roomId().every { it == roomId }
+        moved*.roomName().every { it == queryForList("SELECT room_name FROM room WHERE id = ${roomId}").first() }
+        moved*.userEmail().every { it == queryForList("SELECT user_email FROM acme_user WHERE id = ${userId}").first() }
+        queryForList("SELECT count(*) FROM booking WHERE booking_start_time >= '1901-05-01' AND booking_start_time < '1901-07-01'") == ["1"]
+        queryForList("SELECT count(*) FROM booking_key WHERE booking_start_time >= '1901-05-01' AND booking_start_time < '1901-07-01'") == ["1"]
+    }
+
+    def "the bookings of a detached partition are moved out of it with their keys, and the partition dropped"() {
+        given:
+        connection.createStatement().execute("CREATE TABLE booking_p1901_05 (LIKE booking INCLUDING DEFAULTS)")
+        insertBooking("booking_p1901_05", MAY_1901)
+        connection.createStatement().execute("INSERT INTO booking_key (uuid, booking_start_time) SELECT uuid, booking_start_time FROM booking_p1901_05")
+
+        when:
+        List<String> partitions = bookingArchiveRepository.findDetachedPartitions()
+        List<ArchivedBookingDTO> moved = bookingArchiveRepository.moveBookingsOfDetachedPartition("booking_p1901_05", 2)
+        bookingArchiveRepository.dropDetachedPartition("booking_p1901_05")
+
+        then:
+        partitions.contains("booking_p1901_05")
+        !partitions.contains(String.format("booking_p%d_%02d", LocalDate.now().year, LocalDate.now().monthValue))
+        moved*.bookingStartTime() == [MAY_1901]
+        queryForList("SELECT CAST(to_regclass('booking_p1901_05') AS text)") == [null]
+        queryForList("SELECT count(*) FROM booking_key WHERE booking_start_time = timestamp '${MAY_1901}'") == ["0"]
+    }
+
+    def "only monthly partitions are moved out of the database and dropped"() {
+        when:
+        bookingArchiveRepository.moveBookingsOfDetachedPartition("booking; DROP TABLE room", 2)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        when:
+        bookingArchiveRepository.dropDetachedPartition("room")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private void insertBooking(final String table, final LocalDateTime start) {
+        connection.createStatement().execute("""
+                INSERT INTO ${table} (room_id, user_id, booking_start_time, booking_end_time)
+                VALUES (${roomId}, ${userId}, timestamp '${start}', timestamp '${start.plusHours(1)}')
+                """)
+    }
+
+    private List<String> queryForList(final String query) {
+        ResultSet resultSet = connection.createStatement().executeQuery(query)
+        List<String> values = []
+        while (resultSet.next()) {
+            values << resultSet.getString(1)
+        }
+        return values
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.pavlidise.acmebooking.repository
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingOutboxRepository
+import com.github.pavlidise.acmebooking.model.dto.BookingChangePosition
+import com.github.pavlidise.acmebooking.model.dto.BookingRequestDTO
+import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO
+import com.github.pavlidise.acmebooking.model.dto.RecurrenceFrequency
+import com.github.pavlidise.acmebooking.model.dto.RecurringBookingRequestDTO
+import com.github.pavlidise.acmebooking.model.projection.BookingChangeView
+import com.github.pavlidise.acmebooking.service.BookingChangeFeed
+import com.github.pavlidise.acmebooking.service.BookingService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import spock.lang.Specification
+
+import javax.sql.DataSource
+import java.sql.Connection
+import java.time.LocalDateTime
+
+/**
+ * Checks that booking changes are recorded in the booking outbox by the transaction of the change, and read back
+ * in the order they were committed, against a real, migrated Postgres database, see TestDatabase.
+ * The changes have to be committed to be read, so the generated rows are deleted afterwards instead of rolled back.
+ */
+@SpringBootTest
+class BookingOutboxSpec extends Specification {
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2092, 1, 7, 10, 0)
+
+    @Autowired
+    private BookingService bookingService
+
+    @Autowired
+    private BookingOutboxRepository bookingOutboxRepository
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate
+
+    @Autowired
+    private DataSource dataSource
+
+    private String roomName
+
+    private String userEmail
+
+    private BookingChangePosition start
+
+    @DynamicPropertySource
+    static void datasourceProperties(final DynamicPropertyRegistry registry) {
+        TestDatabase.registerDatasource(registry)
+    }
+
+    def "setup"() {
+        roomName = jdbcTemplate.queryForObject("SELECT room_name FROM room ORDER BY id LIMIT 1", String)
+        userEmail = jdbcTemplate.queryForObject("SELECT user_email FROM acme_user ORDER BY id LIMIT 1", String)
+        start = bookingOutboxRepository.findLastChange().map { new BookingChangePosition(it.txId, it.id) }.orElse(BookingChangePosition.START)
+    }
+
+    def "cleanup"() {
+        jdbcTemplate.update("DELETE FROM booking WHERE booking_start_time >= ? AND booking_start_time < ?", MONDAY.minusDays(1), MONDAY.plusYears(1))
+        jdbcTemplate.update("DELETE FROM booking_outbox WHERE booking_start_time >= ? AND booking_start_time < ?", MONDAY.minusDays(1), MONDAY.plusYears(1))
+    }
+
+    def "bookings created and deleted are read back as changes, in the order they were committed"() {
+        given:
+        ConfirmedBookingDTO single = bookingService.createBooking(new BookingRequestDTO(userEmail, roomName, MONDAY, 1))
+        List<ConfirmedBookingDTO> series = bookingService.createRecurringBooking(new RecurringBookingRequestDTO(userEmail, roomName,
+                MONDAY.plusDays(1), 1, RecurrenceFrequency.DAILY, 1, 3, null))
+        bookingService.deleteBooking(single.uuid())
+
+        when:
+        List<BookingChangeView> changes = changesAfter(start)
+
+        then:
+        changes*.type == [BookingChangeFeed.CREATED] * 4 + [BookingChangeFeed.DELETED]
+        changes*.uuid == [single.uuid()] + series*.uuid() + [single.uuid()]
+        changes*.roomName.every { it == roomName }
+        changes*.userEmail.every { it.equalsIgnoreCase(userEmail) }
+        changes*.bookingStartTime == [MONDAY, MONDAY.plusDays(1), MONDAY.plusDays(2), MONDAY.plusDays(3), MONDAY]
+        changes*.txId.toUnique().size() == 3
+        changes.collect { new BookingChangePosition(it.txId, it.id) } == changes.collect { new BookingChangePosition(it.txId, it.id) }.toSorted()
+        bookingOutboxRepository.findLastChange().get().id == changes.last().id
+    }
+
+    def "changes committed after a transaction still running are held back until it ends, then read after its own"() {
+        given:
+        Connection running = dataSource.getConnection()
+        running.autoCommit = false
+        running.prepareStatement("""
+                INSERT INTO booking_outbox (event_type, booking_uuid, room_id, room_name, user_email, booking_start_time, booking_end_time)
+                VALUES ('created', gen_random_uuid(), 1, 'Running Room', 'running@acme.com', '${MONDAY.plusDays(10)}', '${MONDAY.plusDays(10).plusHours(1)}')
+                """).executeUpdate()
+
+        when:
+        ConfirmedBookingDTO committed = bookingService.createBooking(new BookingRequestDTO(userEmail, roomName, MONDAY.plusDays(11), 1))
+
+        then:
+        changesAfter(start).isEmpty()
+
+        when:
+        running.commit()
+        running.close()
+
+        then:
+        changesAfter(start)*.roomName == ["Running Room", roomName]
+        changesAfter(start)*.uuid[1] == committed.uuid()
+    }
+
+    private List<BookingChangeView> changesAfter(final BookingChangePosition position) {
+        return bookingOutboxRepository.findChangesAfter(position.txId(), position.id(), 100)
+    }
+}
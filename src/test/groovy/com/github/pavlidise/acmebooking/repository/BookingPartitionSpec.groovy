@@ -0,0 +1,209 @@
+package com.github.pavlidise.acmebooking.repository
+
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.sql.Connection
+import java.sql.ResultSet
+import java.sql.SQLException
+import java.time.LocalDate
+import java.time.LocalDateTime
+
+/**
+ * Checks the monthly partitions of the booking table, their maintenance and the overlap check across months,
+ * against a real, migrated Postgres database, see TestDatabase. All generated rows and partitions are rolled back.
+ */
+class BookingPartitionSpec extends Specification {
+
+    @Shared
+    private Connection connection
+
+    private LocalDate horizon
+
+    private long roomId
+
+    private long userId
+
+    private long lastBookingId
+
+    def "setupSpec"() {
+        connection = TestDatabase.connection
+        connection.setAutoCommit(false)
+    }
+
+    def "cleanupSpec"() {
+        connection?.close()
+    }
+
+    def "setup"() {
+        horizon = LocalDate.parse(queryForList("""
+                SELECT CAST(max(to_timestamp(substr(c.relname, 10), 'YYYY_MM')) + interval '1 month' AS date)
+                FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'booking'::regclass AND c.relname ~ '^booking_p\\d{4}_\\d{2}\$'
+                """).first())
+        roomId = queryForList("SELECT min(id) FROM room").first() as long
+        userId = queryForList("SELECT min(id) FROM acme_user").first() as long
+        lastBookingId = queryForList("SELECT coalesce(max(id), 0) FROM booking").first() as long
+    }
+
+    def "cleanup"() {
+        connection.rollback()
+    }
+
+    def "a booking is kept in the partition of the month it starts in, or in booking_future beyond the horizon"() {
+        when:
+        insertBooking(start, start.plusHours(1))
+
+        then:
+        queryForList("SELECT CAST(tableoid::regclass AS text) FROM booking WHERE id > ${lastBookingId}") == [partition]
+
+        where:
+        start                                                              || partition
+        LocalDate.now().plusMonths(1).withDayOfMonth(15).atTime(10, 0)    || partitionOf(LocalDate.now().plusMonths(1))
+        LocalDate.of(2095, 1, 15).atTime(10, 0)                            || "booking_future"
+    }
+
+    def "extending the partitions splits the months up to the given date off booking_future, moving their bookings along"() {
+        given:
+        insertBooking(horizon.plusDays(2).atTime(10, 0), horizon.plusDays(2).atTime(11, 0))
+        insertBooking(horizon.plusMonths(1).plusDays(2).atTime(10, 0), horizon.plusMonths(1).plusDays(2).atTime(11, 0))
+        insertBooking(horizon.plusMonths(5).atTime(10, 0), horizon.plusMonths(5).atTime(11, 0))
+
+        when:
+        List<String> created = queryForList("SELECT extend_booking_partitions('${horizon.plusMonths(1).plusDays(10)}')")
+
+        then:
+        created == [partitionOf(horizon), partitionOf(horizon.plusMonths(1))]
+        bookingsPerPartition() == [(partitionOf(horizon)): 1L, (partitionOf(horizon.plusMonths(1))): 1L, booking_future: 1L]
+
+        and: "the months already partitioned are left alone"
+        queryForList("SELECT extend_booking_partitions('${horizon.minusMonths(1)}')").empty
+    }
+
+    def "detaching the partitions of the months before a date leaves their bookings in tables of their own"() {
+        given:
+        LocalDate nextMonth = LocalDate.now().plusMonths(1).withDayOfMonth(1)
+        insertBooking(nextMonth.plusDays(3).atTime(10, 0), nextMonth.plusDays(3).atTime(11, 0))
+        insertBooking(nextMonth.plusMonths(1).plusDays(3).atTime(10, 0), nextMonth.plusMonths(1).plusDays(3).atTime(11, 0))
+
+        when:
+        List<String> detached = queryForList("SELECT detach_booking_partitions('${nextMonth.plusMonths(1).plusDays(10)}')")
+
+        then:
+        detached.contains(partitionOf(nextMonth))
+        !detached.contains(partitionOf(nextMonth.plusMonths(1)))
+        bookingsPerPartition() == [(partitionOf(nextMonth.plusMonths(1))): 1L]
+        queryForList("SELECT count(*) FROM ${partitionOf(nextMonth)} WHERE id > ${lastBookingId}") == ["1"]
+    }
+
+    def "a booking overlapping a booking of the room of another month is rejected as an overlap, #order"() {
+        given:
+        LocalDateTime monthStart = LocalDate.now().plusMonths(2).withDayOfMonth(1).atStartOfDay()
+        List<List<LocalDateTime>> bookings = [[monthStart.minusHours(1), monthStart.plusHours(1)], [monthStart.plusMinutes(30), monthStart.plusHours(2)]]
+        if (order == "the later month first") {
+            bookings = bookings.reverse()
+        }
+        insertBooking(bookings[0][0], bookings[0][1])
+
+        when:
+        insertBooking(bookings[1][0], bookings[1][1])
+
+        then:
+        SQLException overlap = thrown()
+        overlap.SQLState == "23P01"
+
+        where:
+        order << ["the earlier month first", "the later month first"]
+    }
+
+    def "bookings of the room ending before the month starts, or of other rooms, are not overlaps"() {
+        given:
+        LocalDateTime monthStart = LocalDate.now().plusMonths(2).withDayOfMonth(1).atStartOfDay()
+        long otherRoomId = queryForList("SELECT max(id) FROM room").first() as long
+        insertBooking(monthStart.minusHours(2), monthStart.minusHours(1))
+        insertBooking(otherRoomId, monthStart.minusHours(1), monthStart.plusHours(1))
+
+        when:
+        insertBooking(monthStart, monthStart.plusHours(1))
+
+        then:
+        noExceptionThrown()
+    }
+
+    def "a booking with the uuid of a booking of another month is rejected as a duplicate key"() {
+        given:
+        LocalDateTime start = LocalDate.now().plusMonths(2).withDayOfMonth(1).atTime(10, 0)
+        insertBooking(start, start.plusHours(1))
+        String uuid = queryForList("SELECT uuid FROM booking WHERE id > ${lastBookingId}").first()
+
+        when:
+        connection.createStatement().execute("""
+                INSERT INTO booking (uuid, room_id, user_id, booking_start_time, booking_end_time)
+                VALUES ('${uuid}', ${roomId}, ${userId}, timestamp '${start.plusMonths(1)}', timestamp '${start.plusMonths(1).plusHours(1)}')
+                """)
+
+        then:
+        SQLException duplicate = thrown()
+        duplicate.SQLState == "23505"
+        duplicate.message.contains("booking_key_pkey")
+    }
+
+    def "the key of a booking follows it to another month, and is deleted with it"() {
+        given:
+        LocalDateTime start = LocalDate.now().plusMonths(2).withDayOfMonth(1).atTime(10, 0)
+        insertBooking(start, start.plusHours(1))
+        String uuid = queryForList("SELECT uuid FROM booking WHERE id > ${lastBookingId}").first()
+
+        when:
+        connection.createStatement().execute("""
+                UPDATE booking SET booking_start_time = booking_start_time + interval '1 month', booking_end_time = booking_end_time + interval '1 month'
+                WHERE uuid = '${uuid}'
+                """)
+
+        then:
+        queryForList("SELECT count(*) FROM booking_key WHERE uuid = '${uuid}' AND booking_start_time = timestamp '${start.plusMonths(1)}'") == ["1"]
+
+        when:
+        connection.createStatement().execute("DELETE FROM booking WHERE uuid = '${uuid}'")
+
+        then:
+        queryForList("SELECT count(*) FROM booking_key WHERE uuid = '${uuid}'") == ["0"]
+    }
+
+    private void insertBooking(final LocalDateTime start, final LocalDateTime end) {
+        insertBooking(roomId, start, end)
+    }
+
+    private void insertBooking(final long bookingRoomId, final LocalDateTime start, final LocalDateTime end) {
+        connection.createStatement().execute("""
+                INSERT INTO booking (room_id, user_id, booking_start_time, booking_end_time)
+                VALUES (${bookingRoomId}, ${userId}, timestamp '${start}', timestamp '${end}')
+                """)
+    }
+
+    private Map<String, Long> bookingsPerPartition() {
+        Map<String, Long> bookings = [:]
+        ResultSet resultSet = connection.createStatement().executeQuery("""
+                SELECT CAST(tableoid::regclass AS text), count(*) FROM booking
+                WHERE id > ${lastBookingId}
+                GROUP BY 1 ORDER BY 1
+                """)
+        while (resultSet.next()) {
+            bookings[resultSet.getString(1)] = resultSet.getLong(2)
+        }
+        return bookings
+    }
+
+    private List<String> queryForList(final String query) {
+        ResultSet resultSet = connection.createStatement().executeQuery(query)
+        List<String> values = []
+        while (resultSet.next()) {
+            values << resultSet.getString(1)
+        }
+        return values
+    }
+
+    private static String partitionOf(final LocalDate month) {
+        return String.format("booking_p%d_%02d", month.year, month.monthValue)
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.pavlidise.acmebooking.repository
+
+import com.github.pavlidise.acmebooking.model.dto.BookingPageDTO
+import com.github.pavlidise.acmebooking.model.dto.BookingRangeInquiryDTO
+import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO
+import com.github.pavlidise.acmebooking.service.BookingService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.springframework.transaction.annotation.Transactional
+import spock.lang.Specification
+
+import java.time.LocalDate
+
+/**
+ * Checks that walking the pages of a booking search returns the same bookings as streaming them, against a real,
+ * migrated Postgres database, see TestDatabase. All generated rows are rolled back.
+ */
+@Transactional
+@SpringBootTest(properties = [
+        'acme.booking.search.fetch-size=10'])
+class BookingRangeSearchSpec extends Specification {
+
+    private static final LocalDate FROM_DATE = LocalDate.of(2091, 3, 1)
+
+    @Autowired
+    private BookingService bookingService
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate
+
+    @DynamicPropertySource
+    static void datasourceProperties(final DynamicPropertyRegistry registry) {
+        TestDatabase.registerDatasource(registry)
+    }
+
+    def "walking the pages of #pageSize bookings returns every booking touching the range exactly once, in order"() {
+        given:
+        String roomName = jdbcTemplate.queryForObject("SELECT room_name FROM room ORDER BY id LIMIT 1", String)
+        generateBookings()
+        List<ConfirmedBookingDTO> streamed = []
+        bookingService.streamBookings(new BookingRangeInquiryDTO(roomName, FROM_DATE, FROM_DATE.plusDays(2), null, null), { streamed << it })
+
+        when:
+        List<ConfirmedBookingDTO> paged = []
+        String cursor = null
+        int pageCount = 0
+        do {
+            BookingPageDTO page = bookingService.searchBookingsPage(new BookingRangeInquiryDTO(roomName, FROM_DATE, FROM_DATE.plusDays(2), cursor, pageSize))
+            paged.addAll(page.bookings())
+            cursor = page.nextCursor()
+            pageCount++
+        } while (cursor != null)
+
+        then:
+        streamed.size() == 73
+        streamed.first().bookingStartTime() == FROM_DATE.atStartOfDay().minusMinutes(30)
+        streamed.last().bookingStartTime() == FROM_DATE.plusDays(2).atTime(23, 30)
+        streamed*.bookingStartTime() == streamed*.bookingStartTime().toSorted()
+        paged == streamed
+        pageCount == Math.max(1, Math.ceil(streamed.size() / pageSize) as int)
+
+        where:
+        pageSize << [1, 7, 73, 1000]
+    }
+
+    /**
+     * Bookings of one hour every hour from half an hour before FROM_DATE to a day after the range in the first room,
+     * so that the first one straddles the start of the range.
+     */
+    private void generateBookings() {
+        jdbcTemplate.update("""
+                INSERT INTO booking (room_id, user_id, booking_start_time, booking_end_time)
+                SELECT (SELECT min(id) FROM room),
+                       (SELECT min(id) FROM acme_user),
+                       ? + g * interval '1 hour',
+                       ? + g * interval '1 hour' + interval '59 minutes'
+                FROM generate_series(0, 95) g
+                """, FROM_DATE.atStartOfDay().minusMinutes(30), FROM_DATE.atStartOfDay().minusMinutes(30))
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.pavlidise.acmebooking.repository
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingRepository
+import org.springframework.data.jpa.repository.Query
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.sql.Connection
+import java.sql.ResultSet
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.LocalTime
+
+/**
+ * Guards the index usage of the native booking queries against a real, migrated Postgres database, see TestDatabase.
+ * All generated rows are rolled back.
+ */
+class BookingRepositoryQueryPlanSpec extends Specification {
+
+    @Shared
+    private Connection connection
+
+    def "setupSpec"() {
+        connection = TestDatabase.connection
+        connection.setAutoCommit(false)
+    }
+
+    def "cleanupSpec"() {
+        connection?.close()
+    }
+
+    def "cleanup"() {
+        connection.rollback()
+    }
+
+    def "#repositoryMethod is served by the indexes of the booking partitions with #bookingCount bookings"() {
+        given:
+        generateBookings(bookingCount)
+        connection.createStatement().execute("ANALYZE booking")
+
+        when:
+        String plan = explain(nativeQueryOf(repositoryMethod)
+                .replace(":roomIds", "1")
+                .replace(":roomId", "1")
+                .replace(":periodStart", sqlTimestamp(LocalDateTime.of(2005, 6, 1, 0, 0)))
+                .replace(":periodEnd", sqlTimestamp(LocalDateTime.of(2005, 6, 2, 0, 0))))
+
+        then:
+        plan =~ /Index (Only )?Scan/
+        !plan.contains("Seq Scan on booking")
+
+        where:
+        [repositoryMethod, bookingCount] << [
+                ["searchBookingsByRoomAndPeriodOrderByBookingStartTimeAsc", "existsOverlappingBooking",
+                 "streamBookingIntervalsOverlappingOrderByRoomAndStartTime"],
+                [10_000, 2_000_000]
+        ].combinations()
+    }
+
+    def "#repositoryMethod reads only the partitions of the months touching the period, from #periodStart"() {
+        given:
+        LocalDate nextMonth = LocalDate.now().plusMonths(1).withDayOfMonth(1)
+        generateBookings(nextMonth.atStartOfDay(), 20_000)
+        connection.createStatement().execute("ANALYZE booking")
+        LocalDateTime start = nextMonth.plusMonths(2).atTime(periodStart)
+
+        when:
+        String plan = explain("(ANALYZE, COSTS OFF, TIMING OFF, SUMMARY OFF) " + nativeQueryOf(repositoryMethod)
+                .replace(":roomIds", "1")
+                .replace(":roomId", "1")
+                .replace(":periodStart", sqlTimestamp(start))
+                .replace(":periodEnd", sqlTimestamp(start.plusHours(2))))
+
+        then:
+        Set<String> partitionsRead = plan.readLines()
+                .findAll { !it.contains("never executed") }
+                .collect { (it =~ /Scan .*on (booking_\w+)/).with { it.find() ? it.group(1) : null } }
+                .findAll()
+                .toSet()
+        partitionsRead.contains(partitionOf(nextMonth.plusMonths(2)))
+        partitionsRead.size() <= 2
+
+        where:
+        [repositoryMethod, periodStart] << [
+                ["searchBookingsByRoomAndPeriodOrderByBookingStartTimeAsc", "existsOverlappingBooking",
+                 "findBookingIntervalsOverlapping", "streamBookingIntervalsOverlappingOrderByRoomAndStartTime"],
+                [LocalTime.of(0, 30), LocalTime.of(10, 0)]
+        ].combinations()
+    }
+
+    def "findBookingEntityByUuid reads only the partition of the start time kept with the uuid"() {
+        given:
+        LocalDate nextMonth = LocalDate.now().plusMonths(1).withDayOfMonth(1)
+        generateBookings(nextMonth.atStartOfDay(), 20_000)
+        connection.createStatement().execute("ANALYZE booking")
+        ResultSet booking = connection.createStatement().executeQuery("""
+                SELECT uuid, booking_start_time FROM booking
+                WHERE booking_start_time >= ${sqlTimestamp(nextMonth.plusMonths(2).atStartOfDay())} ORDER BY booking_start_time LIMIT 1
+                """)
+        booking.next()
+
+        when:
+        String plan = explain("(ANALYZE, COSTS OFF, TIMING OFF, SUMMARY OFF) " + nativeQueryOf("findBookingEntityByUuid")
+                .replace(":uuid", "'${booking.getString(1)}'::uuid"))
+
+        then:
+        plan.readLines()
+                .findAll { !it.contains("never executed") }
+                .collect { (it =~ /Scan .*on (booking_p\w+)/).with { it.find() ? it.group(1) : null } }
+                .findAll() == [partitionOf(nextMonth.plusMonths(2))]
+    }
+
+    /**
+     * Bookings every two hours since 2000 for each of the seeded rooms, never overlapping within a room.
+     */
+    private void generateBookings(final int bookingCount) {
+        generateBookings(LocalDateTime.of(2000, 1, 1, 0, 0), bookingCount)
+    }
+
+    /**
+     * Bookings every two hours from the given time on for each of the seeded rooms, never overlapping within a room.
+     * As they never overlap, the check across months is left out while generating them, until the transaction is rolled back.
+     */
+    private void generateBookings(final LocalDateTime from, final int bookingCount) {
+        connection.createStatement().execute("ALTER TABLE booking DISABLE TRIGGER trg_booking_overlap_across_months")
+        connection.createStatement().execute("""
+                INSERT INTO booking (room_id, user_id, booking_start_time, booking_end_time)
+                SELECT r.id,
+                       (SELECT min(id) FROM acme_user),
+                       ${sqlTimestamp(from)} + (g / rooms.total) * interval '2 hours',
+                       ${sqlTimestamp(from)} + (g / rooms.total) * interval '2 hours' + interval '1 hour'
+                FROM generate_series(0, ${bookingCount} - 1) g
+                CROSS JOIN (SELECT count(*) AS total FROM room) rooms
+                JOIN (SELECT id, row_number() OVER (ORDER BY id) - 1 AS position FROM room) r ON r.position = g % rooms.total
+                """)
+    }
+
+    private String explain(final String query) {
+        ResultSet resultSet = connection.createStatement().executeQuery("EXPLAIN " + query)
+        List<String> lines = []
+        while (resultSet.next()) {
+            lines << resultSet.getString(1)
+        }
+        return lines.join("\n")
+    }
+
+    private static String nativeQueryOf(final String repositoryMethod) {
+        return BookingRepository.methods.find { it.name == repositoryMethod }.getAnnotation(Query).value()
+    }
+
+    private static String sqlTimestamp(final LocalDateTime dateTime) {
+        return "timestamp '${dateTime}'"
+    }
+
+    private static String partitionOf(final LocalDate month) {
+        return String.format("booking_p%d_%02d", month.year, month.monthValue)
+    }
+}
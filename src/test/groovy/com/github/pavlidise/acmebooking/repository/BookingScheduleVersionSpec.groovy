@@ -0,0 +1,118 @@
+package com.github.pavlidise.acmebooking.repository
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingScheduleVersionRepository
+import org.springframework.jdbc.datasource.SingleConnectionDataSource
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.sql.Connection
+import java.sql.ResultSet
+import java.time.LocalDate
+import java.time.LocalDateTime
+
+/**
+ * Checks the versions of the schedules bumped by the trigger on the booking table, against a real, migrated Postgres database, see TestDatabase.
+ * All generated rows are rolled back.
+ */
+class BookingScheduleVersionSpec extends Specification {
+
+    private static final LocalDate MONDAY = LocalDate.of(2093, 3, 2)
+
+    @Shared
+    private Connection connection
+
+    @Shared
+    private BookingScheduleVersionRepository bookingScheduleVersionRepository
+
+    private List<Long> roomIds
+
+    private long userId
+
+    def "setupSpec"() {
+        connection = TestDatabase.connection
+        connection.setAutoCommit(false)
+        bookingScheduleVersionRepository = new BookingScheduleVersionRepository(new SingleConnectionDataSource(connection, true))
+    }
+
+    def "cleanupSpec"() {
+        connection?.close()
+    }
+
+    def "setup"() {
+        roomIds = queryForList("SELECT id FROM room ORDER BY id LIMIT 2")*.toLong()
+        userId = queryForList("SELECT min(id) FROM acme_user").first() as long
+    }
+
+    def "cleanup"() {
+        connection.rollback()
+    }
+
+    def "a schedule never bumped reads as version 0"() {
+        expect:
+        bookingScheduleVersionRepository.findVersion(roomIds[0], LocalDate.of(2099, 12, 31)) == 0
+    }
+
+    def "a booking from #start to #end bumps the schedules of #bumpedDates"() {
+        given:
+        List<LocalDate> dates = (-1..2).collect { MONDAY.plusDays(it) }
+        Map<LocalDate, Long> versions = dates.collectEntries { [it, bookingScheduleVersionRepository.findVersion(roomIds[0], it)] }
+        long otherRoomVersion = bookingScheduleVersionRepository.findVersion(roomIds[1], MONDAY)
+
+        when:
+        insertBooking(roomIds[0], start, end)
+
+        then:
+        dates.findAll { bookingScheduleVersionRepository.findVersion(roomIds[0], it) != versions[it] } == bumpedDates
+        bumpedDates.every { bookingScheduleVersionRepository.findVersion(roomIds[0], it) > versions[it] }
+        bookingScheduleVersionRepository.findVersion(roomIds[1], MONDAY) == otherRoomVersion
+
+        where:
+        start                  | end                                 || bumpedDates
+        MONDAY.atTime(10, 0)   | MONDAY.atTime(12, 0)                || [MONDAY]
+        MONDAY.atStartOfDay()  | MONDAY.plusDays(1).atStartOfDay()   || [MONDAY, MONDAY.plusDays(1)]
+        MONDAY.atTime(22, 0)   | MONDAY.plusDays(2).atTime(1, 0)     || [MONDAY, MONDAY.plusDays(1), MONDAY.plusDays(2)]
+    }
+
+    def "deleting or moving a booking bumps the schedules it touched and touches, to versions they never had"() {
+        given:
+        insertBooking(roomIds[0], MONDAY.atTime(10, 0), MONDAY.atTime(12, 0))
+        long created = bookingScheduleVersionRepository.findVersion(roomIds[0], MONDAY)
+
+        when:
+        connection.createStatement().execute("""
+                UPDATE booking SET booking_start_time = booking_start_time + interval '1 day', booking_end_time = booking_end_time + interval '1 day'
+                WHERE room_id = ${roomIds[0]} AND booking_start_time = timestamp '${MONDAY.atTime(10, 0)}'
+                """)
+        long moved = bookingScheduleVersionRepository.findVersion(roomIds[0], MONDAY)
+
+        then:
+        moved > created
+        bookingScheduleVersionRepository.findVersion(roomIds[0], MONDAY.plusDays(1)) > created
+
+        when:
+        long movedTo = bookingScheduleVersionRepository.findVersion(roomIds[0], MONDAY.plusDays(1))
+        connection.createStatement().execute("""
+                DELETE FROM booking WHERE room_id = ${roomIds[0]} AND booking_start_time = timestamp '${MONDAY.plusDays(1).atTime(10, 0)}'
+                """)
+
+        then:
+        bookingScheduleVersionRepository.findVersion(roomIds[0], MONDAY.plusDays(1)) > movedTo
+        bookingScheduleVersionRepository.findVersion(roomIds[0], MONDAY) == moved
+    }
+
+    private void insertBooking(final long roomId, final LocalDateTime start, final LocalDateTime end) {
+        connection.createStatement().execute("""
+                INSERT INTO booking (room_id, user_id, booking_start_time, booking_end_time)
+                VALUES (${roomId}, ${userId}, timestamp '${start}', timestamp '${end}')
+                """)
+    }
+
+    private List<String> queryForList(final String query) {
+        ResultSet resultSet = connection.createStatement().executeQuery(query)
+        List<String> values = []
+        while (resultSet.next()) {
+            values << resultSet.getString(1)
+        }
+        return values
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.pavlidise.acmebooking.repository
+
+import com.github.pavlidise.acmebooking.model.dto.BookingInquiryDTO
+import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO
+import com.github.pavlidise.acmebooking.service.BookingService
+import jakarta.persistence.EntityManagerFactory
+import org.hibernate.SessionFactory
+import org.hibernate.stat.Statistics
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.springframework.transaction.annotation.Transactional
+import spock.lang.Specification
+
+import java.time.LocalDate
+
+/**
+ * Guards against N+1 selects when searching bookings, by counting the statements Hibernate prepares per search
+ * against a real, migrated Postgres database, see TestDatabase. All generated rows are rolled back.
+ */
+@Transactional
+@SpringBootTest(properties = [
+        'spring.jpa.properties.hibernate.generate_statistics=true'])
+class BookingSearchStatementCountSpec extends Specification {
+
+    private static final LocalDate BOOKING_DATE = LocalDate.of(2090, 6, 1)
+
+    @Autowired
+    private BookingService bookingService
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory
+
+    @DynamicPropertySource
+    static void datasourceProperties(final DynamicPropertyRegistry registry) {
+        TestDatabase.registerDatasource(registry)
+    }
+
+    def "searchBookings issues a single statement for #bookingCount bookings of distinct users"() {
+        given:
+        String roomName = jdbcTemplate.queryForObject("SELECT room_name FROM room ORDER BY id LIMIT 1", String)
+        generateBookings(bookingCount)
+        BookingInquiryDTO inquiryDTO = new BookingInquiryDTO(roomName, BOOKING_DATE)
+        bookingService.searchBookings(inquiryDTO)
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory).statistics
+        statistics.clear()
+
+        when:
+        List<ConfirmedBookingDTO> result = bookingService.searchBookings(inquiryDTO)
+
+        then:
+        result.size() == bookingCount
+        result*.userEmail().toSet().size() == bookingCount
+        statistics.prepareStatementCount == 1
+
+        where:
+        bookingCount << [1, 50, 200]
+    }
+
+    /**
+     * Bookings of four minutes every five minutes on BOOKING_DATE in the first room, each by a user of its own.
+     */
+    private void generateBookings(final int bookingCount) {
+        jdbcTemplate.update("""
+                INSERT INTO acme_user (id, username, user_email)
+                SELECT 1000000 + g, 'statement-count-' || g, 'statement-count-' || g || '@acme.com'
+                FROM generate_series(0, ? - 1) g
+                """, bookingCount)
+        jdbcTemplate.update("""
+                INSERT INTO booking (room_id, user_id, booking_start_time, booking_end_time)
+                SELECT (SELECT min(id) FROM room),
+                       1000000 + g,
+                       ? + g * interval '5 minutes',
+                       ? + g * interval '5 minutes' + interval '4 minutes'
+                FROM generate_series(0, ? - 1) g
+                """, BOOKING_DATE.atStartOfDay(), BOOKING_DATE.atStartOfDay(), bookingCount)
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.pavlidise.acmebooking.repository
+
+import com.github.pavlidise.acmebooking.configuration.CacheConfig
+import com.github.pavlidise.acmebooking.service.RoomCacheService
+import com.github.pavlidise.acmebooking.service.UserCacheService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.cache.Cache
+import org.springframework.cache.CacheManager
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+/**
+ * Checks that rooms and users changed in the database, as by another instance or by hand, are evicted from the caches
+ * once the change is committed, against a real, migrated Postgres database, see TestDatabase.
+ * The changes are committed to be notified, so they are undone afterwards instead of rolled back.
+ */
+@SpringBootTest
+class CacheInvalidationSpec extends Specification {
+
+    @Autowired
+    private RoomCacheService roomCacheService
+
+    @Autowired
+    private UserCacheService userCacheService
+
+    @Autowired
+    private CacheManager cacheManager
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate
+
+    private PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    private Long roomId
+
+    private String roomName
+
+    private Short roomCapacity
+
+    private String userEmail
+
+    @DynamicPropertySource
+    static void datasourceProperties(final DynamicPropertyRegistry registry) {
+        TestDatabase.registerDatasource(registry)
+    }
+
+    def "setup"() {
+        Map<String, Object> room = jdbcTemplate.queryForMap("SELECT id, room_name, room_capacity FROM room ORDER BY id LIMIT 1")
+        roomId = room.id as Long
+        roomName = room.room_name
+        roomCapacity = room.room_capacity as Short
+        userEmail = jdbcTemplate.queryForObject("SELECT user_email FROM acme_user ORDER BY id LIMIT 1", String)
+    }
+
+    def "cleanup"() {
+        jdbcTemplate.update("UPDATE room SET room_name = ?, room_capacity = ? WHERE id = ?", roomName, roomCapacity, roomId)
+    }
+
+    def "a room resized in the database is evicted, the other rooms stay cached"() {
+        given:
+        String otherRoomName = jdbcTemplate.queryForObject("SELECT room_name FROM room WHERE id <> ? ORDER BY id LIMIT 1", String, roomId)
+        roomCacheService.getRoomByName(roomName)
+        roomCacheService.getRoomByName(otherRoomName)
+
+        when:
+        jdbcTemplate.update("UPDATE room SET room_capacity = ? WHERE id = ?", (roomCapacity ?: 1) + 1, roomId)
+
+        then:
+        conditions.eventually {
+            assert !cached(CacheConfig.ROOMS_CACHE, roomName)
+        }
+        cached(CacheConfig.ROOMS_CACHE, otherRoomName)
+        roomCacheService.getRoomByName(roomName).get().roomCapacity == (roomCapacity ?: 1) + 1
+    }
+
+    def "a room renamed in the database is evicted by its old name, and its new name is no longer cached as missing"() {
+        given:
+        String newRoomName = roomName + " (renamed)"
+        roomCacheService.getRoomByName(roomName)
+
+        expect:
+        roomCacheService.getRoomByName(newRoomName).isEmpty()
+        cached(CacheConfig.ROOM_MISSES_CACHE, newRoomName)
+
+        when:
+        jdbcTemplate.update("UPDATE room SET room_name = ? WHERE id = ?", newRoomName, roomId)
+
+        then:
+        conditions.eventually {
+            assert !cached(CacheConfig.ROOMS_CACHE, roomName)
+            assert !cached(CacheConfig.ROOM_MISSES_CACHE, newRoomName)
+        }
+        roomCacheService.getRoomByName(roomName).isEmpty()
+        roomCacheService.getRoomByName(newRoomName).get().id == roomId
+    }
+
+    def "a user changed in the database is evicted by their email in lower case"() {
+        given:
+        userCacheService.getUserByEmail(userEmail)
+
+        expect:
+        cached(CacheConfig.USERS_CACHE, userEmail.toLowerCase())
+
+        when:
+        jdbcTemplate.update("UPDATE acme_user SET username = username WHERE user_email = ?", userEmail)
+
+        then:
+        conditions.eventually {
+            assert !cached(CacheConfig.USERS_CACHE, userEmail.toLowerCase())
+        }
+    }
+
+    private boolean cached(final String cacheName, final String key) {
+        Cache cache = cacheManager.getCache(cacheName)
+        return cache.nativeCache.asMap().containsKey(key)
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.pavlidise.acmebooking.repository
+
+import com.github.pavlidise.acmebooking.exception.OverlappingBookingException
+import com.github.pavlidise.acmebooking.model.dto.AvailabilityInquiryDTO
+import com.github.pavlidise.acmebooking.model.dto.BookingRequestDTO
+import com.github.pavlidise.acmebooking.model.dto.FreeSlotDTO
+import com.github.pavlidise.acmebooking.service.AvailabilityService
+import com.github.pavlidise.acmebooking.service.BookingService
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import org.springframework.transaction.annotation.Transactional
+import spock.lang.Specification
+
+import java.time.LocalDate
+import java.time.temporal.ChronoUnit
+
+/**
+ * Checks that the free slots found can be booked, and not a microsecond more, against the overlap constraints of a real,
+ * migrated Postgres database, see TestDatabase. All generated rows are rolled back.
+ * Overlaps are checked by the database rather than by the schedule index, which does not see the rows of the rolled back transaction.
+ */
+@Transactional
+@SpringBootTest(properties = [
+        'acme.booking.schedule-index.enabled=false'])
+class FreeSlotBookingSpec extends Specification {
+
+    private static final LocalDate DAY = LocalDate.of(2092, 5, 12)
+
+    @Autowired
+    private AvailabilityService availabilityService
+
+    @Autowired
+    private BookingService bookingService
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate
+
+    private String roomName
+
+    private String userEmail
+
+    private FreeSlotDTO slot
+
+    @DynamicPropertySource
+    static void datasourceProperties(final DynamicPropertyRegistry registry) {
+        TestDatabase.registerDatasource(registry)
+    }
+
+    def "setup"() {
+        roomName = jdbcTemplate.queryForObject("SELECT room_name FROM room ORDER BY id LIMIT 1", String)
+        userEmail = jdbcTemplate.queryForObject("SELECT user_email FROM acme_user ORDER BY id LIMIT 1", String)
+        bookingService.createBooking(new BookingRequestDTO(userEmail, roomName, DAY.atTime(9, 0), 2))
+        bookingService.createBooking(new BookingRequestDTO(userEmail, roomName, DAY.atTime(14, 0), 1))
+        slot = availabilityService.findFreeSlots(new AvailabilityInquiryDTO(DAY, DAY, 120, null))
+                .find { it.roomName() == roomName && it.freeFrom().isAfter(DAY.atTime(9, 0)) }
+    }
+
+    def "the slot between two bookings starts and ends a microsecond away from them"() {
+        expect:
+        slot.freeFrom() == DAY.atTime(11, 0).plus(1, ChronoUnit.MICROS)
+        slot.freeUntil() == DAY.atTime(14, 0).minus(1, ChronoUnit.MICROS)
+    }
+
+    def "a booking from the start of a free slot, or up to its end, is accepted"() {
+        when:
+        bookingService.createBooking(new BookingRequestDTO(userEmail, roomName, start(slot), 2))
+
+        then:
+        noExceptionThrown()
+
+        where:
+        start << [{ FreeSlotDTO free -> free.freeFrom() }, { FreeSlotDTO free -> free.freeUntil().minusHours(2) }]
+    }
+
+    def "a booking a microsecond beyond #edge of a free slot is rejected as an overlap"() {
+        when:
+        bookingService.createBooking(new BookingRequestDTO(userEmail, roomName, start(slot), 2))
+
+        then:
+        thrown(OverlappingBookingException)
+
+        where:
+        edge        | start
+        "the start" | { FreeSlotDTO free -> free.freeFrom().minus(1, ChronoUnit.MICROS) }
+        "the end"   | { FreeSlotDTO free -> free.freeUntil().minusHours(2).plus(1, ChronoUnit.MICROS) }
+    }
+}
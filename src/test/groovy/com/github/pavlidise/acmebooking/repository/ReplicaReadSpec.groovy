@@ -0,0 +1,80 @@
+package com.github.pavlidise.acmebooking.repository
+
+import com.github.pavlidise.acmebooking.model.dto.BookingInquiryDTO
+import com.github.pavlidise.acmebooking.model.dto.BookingRangeInquiryDTO
+import com.github.pavlidise.acmebooking.model.dto.BookingRequestDTO
+import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO
+import com.github.pavlidise.acmebooking.service.BookingService
+import com.github.pavlidise.acmebooking.service.ReplicaRouting
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.jdbc.core.JdbcTemplate
+import org.springframework.test.context.DynamicPropertyRegistry
+import org.springframework.test.context.DynamicPropertySource
+import spock.lang.Specification
+
+import java.time.LocalDate
+
+/**
+ * Checks that the booking searches are read from the replica, and everything else from the primary, against two real,
+ * migrated Postgres databases, see TestDatabase. The replica database need not replicate the primary one: the bookings written
+ * to the primary are then never read back from it, which tells the two apart. The bookings are committed, so they are deleted
+ * afterwards rather than rolled back.
+ */
+@SpringBootTest(properties = [
+        'acme.booking.replica.enabled=true',
+        'acme.booking.replica.max-lag=1s',
+        'acme.booking.replica.lag-check-interval=100ms'])
+class ReplicaReadSpec extends Specification {
+
+    private static final LocalDate BOOKING_DATE = LocalDate.of(2093, 6, 1)
+
+    @Autowired
+    private BookingService bookingService
+
+    @Autowired
+    private ReplicaRouting replicaRouting
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate
+
+    private String roomName
+
+    private ConfirmedBookingDTO booking
+
+    @DynamicPropertySource
+    static void datasourceProperties(final DynamicPropertyRegistry registry) {
+        TestDatabase.registerDatasource(registry)
+        TestDatabase.registerReplicaDatasource(registry)
+    }
+
+    def "setup"() {
+        roomName = jdbcTemplate.queryForObject("SELECT room_name FROM room ORDER BY id LIMIT 1", String)
+        String userEmail = jdbcTemplate.queryForObject("SELECT user_email FROM acme_user ORDER BY id LIMIT 1", String)
+        booking = bookingService.createBooking(new BookingRequestDTO(userEmail, roomName, BOOKING_DATE.atTime(10, 0), 1))
+    }
+
+    def "cleanup"() {
+        replicaRouting.requirePrimary(false)
+        bookingService.deleteBooking(booking.uuid())
+    }
+
+    def "a booking written to the primary is not read back from the replica, unless the primary is required"() {
+        given:
+        BookingRangeInquiryDTO inquiry = new BookingRangeInquiryDTO(roomName, BOOKING_DATE, BOOKING_DATE, null, null)
+
+        expect:
+        bookingService.searchBookingsPage(inquiry).bookings().empty
+
+        when:
+        replicaRouting.requirePrimary(true)
+
+        then:
+        bookingService.searchBookingsPage(inquiry).bookings()*.uuid() == [booking.uuid()]
+    }
+
+    def "a day search right after its schedule was bumped is read from the primary, so that its ETag is never paired with stale bookings"() {
+        expect:
+        bookingService.searchBookings(new BookingInquiryDTO(roomName, BOOKING_DATE))*.uuid() == [booking.uuid()]
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.pavlidise.acmebooking.repository
+
+import com.github.pavlidise.acmebooking.load.EmbeddedBookingDatabase
+import org.springframework.test.context.DynamicPropertyRegistry
+
+import java.sql.Connection
+import java.sql.DriverManager
+
+/**
+ * The Postgres databases of the specs checking what only a real, migrated Postgres does: the database ACME_BOOKING_TEST_DB_URL
+ * (and optionally _USERNAME / _PASSWORD) points at, e.g. the database of the docker-compose setup, and the replica database
+ * ACME_BOOKING_TEST_REPLICA_DB_URL points at. When not set, an embedded database is started instead, once for every spec of the run,
+ * and stopped when the run ends.
+ */
+final class TestDatabase {
+
+    private static EmbeddedBookingDatabase primary
+
+    private static EmbeddedBookingDatabase replica
+
+    private TestDatabase() {
+    }
+
+    static Connection getConnection() {
+        return DriverManager.getConnection(url, username, password)
+    }
+
+    static String getUrl() {
+        return System.getenv('ACME_BOOKING_TEST_DB_URL') ?: embeddedPrimary().jdbcUrl
+    }
+
+    static String getUsername() {
+        return System.getenv('ACME_BOOKING_TEST_DB_URL') ? System.getenv('ACME_BOOKING_TEST_DB_USERNAME') ?: "" : embeddedPrimary().username
+    }
+
+    static String getPassword() {
+        return System.getenv('ACME_BOOKING_TEST_DB_URL') ? System.getenv('ACME_BOOKING_TEST_DB_PASSWORD') ?: "" : ""
+    }
+
+    static String getReplicaUrl() {
+        return System.getenv('ACME_BOOKING_TEST_REPLICA_DB_URL') ?: embeddedReplica().jdbcUrl
+    }
+
+    static String getReplicaUsername() {
+        return System.getenv('ACME_BOOKING_TEST_REPLICA_DB_URL')
+                ? System.getenv('ACME_BOOKING_TEST_REPLICA_DB_USERNAME') ?: System.getenv('ACME_BOOKING_TEST_DB_USERNAME') ?: ""
+                : embeddedReplica().username
+    }
+
+    static String getReplicaPassword() {
+        return System.getenv('ACME_BOOKING_TEST_REPLICA_DB_URL')
+                ? System.getenv('ACME_BOOKING_TEST_REPLICA_DB_PASSWORD') ?: System.getenv('ACME_BOOKING_TEST_DB_PASSWORD') ?: ""
+                : ""
+    }
+
+    /**
+     * Points the datasource of the application under test at the database, from a @DynamicPropertySource method of the spec.
+     */
+    static void registerDatasource(final DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", TestDatabase::getUrl)
+        registry.add("spring.datasource.username", TestDatabase::getUsername)
+        registry.add("spring.datasource.password", TestDatabase::getPassword)
+    }
+
+    /**
+     * Points the replica datasource of the application under test at the replica database, which need not replicate the database.
+     */
+    static void registerReplicaDatasource(final DynamicPropertyRegistry registry) {
+        registry.add("acme.booking.replica.datasource.jdbc-url", TestDatabase::getReplicaUrl)
+        registry.add("acme.booking.replica.datasource.username", TestDatabase::getReplicaUsername)
+        registry.add("acme.booking.replica.datasource.password", TestDatabase::getReplicaPassword)
+    }
+
+    private static synchronized EmbeddedBookingDatabase embeddedPrimary() {
+        if (primary == null) {
+            primary = startEmbedded()
+        }
+        return primary
+    }
+
+    private static synchronized EmbeddedBookingDatabase embeddedReplica() {
+        if (replica == null) {
+            replica = startEmbedded()
+        }
+        return replica
+    }
+
+    private static EmbeddedBookingDatabase startEmbedded() {
+        EmbeddedBookingDatabase database = EmbeddedBookingDatabase.start()
+        Runtime.runtime.addShutdownHook(new Thread(database::close))
+        return database
+    }
+}
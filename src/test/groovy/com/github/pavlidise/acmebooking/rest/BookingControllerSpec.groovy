@@ -1,23 +1,40 @@
 package com.github.pavlidise.acmebooking.rest
 
+import com.fasterxml.jackson.databind.ObjectMapper
 import com.github.pavlidise.acmebooking.integration.rest.BookingController
+import com.github.pavlidise.acmebooking.model.dto.BookingBatchResultDTO
 import com.github.pavlidise.acmebooking.model.dto.BookingInquiryDTO
+import com.github.pavlidise.acmebooking.model.dto.BookingPageDTO
+import com.github.pavlidise.acmebooking.model.dto.BookingRangeInquiryDTO
 import com.github.pavlidise.acmebooking.model.dto.BookingRequestDTO
 import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO
+import com.github.pavlidise.acmebooking.model.dto.RecurrenceFrequency
+import com.github.pavlidise.acmebooking.model.dto.RecurringBookingRequestDTO
+import com.github.pavlidise.acmebooking.service.BookingChangeFeed
+import com.github.pavlidise.acmebooking.service.BookingMetrics
 import com.github.pavlidise.acmebooking.service.BookingService
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
 import org.springframework.http.HttpStatus
+import org.springframework.http.MediaType
 import org.springframework.http.ResponseEntity
+import org.springframework.web.context.request.WebRequest
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody
 import spock.lang.Specification
 import spock.lang.Subject
 
 import java.time.LocalDate
 import java.time.LocalDateTime
+import java.util.function.Consumer
 
 class BookingControllerSpec extends Specification {
 
     private BookingService bookingService = Mock()
+    private WebRequest webRequest = Mock()
+    private BookingChangeFeed bookingChangeFeed = Mock()
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
     @Subject
-    private BookingController bookingController = new BookingController(bookingService)
+    private BookingController bookingController = new BookingController(bookingService, new ObjectMapper().findAndRegisterModules(), new BookingMetrics(meterRegistry), bookingChangeFeed)
 
     def "searchBookings completes successfully"() {
         given:
@@ -30,14 +47,132 @@ class BookingControllerSpec extends Specification {
                         LocalDateTime.now().plusHours(2))]
 
         when:
-        ResponseEntity<List<ConfirmedBookingDTO>> response = bookingController.searchBookings(inquiryDTO)
+        ResponseEntity<List<ConfirmedBookingDTO>> response = bookingController.searchBookings(inquiryDTO, webRequest)
 
         then:
+        1 * bookingService.getBookingsETag(inquiryDTO) >> Optional.of("1-2030-01-07-3")
+        1 * webRequest.checkNotModified("1-2030-01-07-3") >> false
         1 * bookingService.searchBookings(inquiryDTO) >> confirmedBookings
         response.statusCode == HttpStatus.OK
+        response.headers.getETag() == '"1-2030-01-07-3"'
+        response.headers.getCacheControl() == "no-cache"
         response.body == confirmedBookings
     }
 
+    def "searchBookings answers not modified without searching while the ETag still matches"() {
+        given:
+        BookingInquiryDTO inquiryDTO = new BookingInquiryDTO("Conference Room", LocalDate.now())
+
+        when:
+        ResponseEntity<List<ConfirmedBookingDTO>> response = bookingController.searchBookings(inquiryDTO, webRequest)
+
+        then:
+        1 * bookingService.getBookingsETag(inquiryDTO) >> Optional.of("1-2030-01-07-3")
+        1 * webRequest.checkNotModified("1-2030-01-07-3") >> true
+        0 * bookingService.searchBookings(_)
+        response.statusCode == HttpStatus.NOT_MODIFIED
+        response.headers.getETag() == '"1-2030-01-07-3"'
+        response.body == null
+        meterRegistry.get(BookingMetrics.SEARCH_NOT_MODIFIED).counter().count() == 1
+    }
+
+    def "searchBookings is not tagged when ETags of searches are disabled"() {
+        given:
+        BookingInquiryDTO inquiryDTO = new BookingInquiryDTO("Conference Room", LocalDate.now())
+
+        when:
+        ResponseEntity<List<ConfirmedBookingDTO>> response = bookingController.searchBookings(inquiryDTO, webRequest)
+
+        then:
+        1 * bookingService.getBookingsETag(inquiryDTO) >> Optional.empty()
+        0 * webRequest._
+        1 * bookingService.searchBookings(inquiryDTO) >> []
+        response.statusCode == HttpStatus.OK
+        response.headers.getETag() == null
+        response.body == []
+    }
+
+    def "searchBookingsPage completes successfully with nextCursor: #nextCursor"() {
+        given:
+        BookingRangeInquiryDTO inquiryDTO = new BookingRangeInquiryDTO("Conference Room", LocalDate.now(), LocalDate.now().plusDays(6), null, 1)
+        BookingPageDTO bookingPage = new BookingPageDTO([
+                new ConfirmedBookingDTO(UUID.randomUUID(), "Conference Room", "user@example.com", LocalDateTime.now(), LocalDateTime.now().plusHours(2))],
+                nextCursor)
+
+        when:
+        ResponseEntity<BookingPageDTO> response = bookingController.searchBookingsPage(inquiryDTO)
+
+        then:
+        1 * bookingService.searchBookingsPage(inquiryDTO) >> bookingPage
+        response.statusCode == HttpStatus.OK
+        response.body == bookingPage
+
+        where:
+        nextCursor << ["next-cursor", null]
+    }
+
+    def "streamBookings writes each booking as a line of JSON"() {
+        given:
+        BookingRangeInquiryDTO inquiryDTO = new BookingRangeInquiryDTO("Conference Room", LocalDate.now(), LocalDate.now().plusDays(6), null, null)
+        List<ConfirmedBookingDTO> confirmedBookings = (1..2).collect {
+            new ConfirmedBookingDTO(UUID.randomUUID(), "Conference Room", "user@example.com", LocalDateTime.of(2030, 1, it, 10, 0), LocalDateTime.of(2030, 1, it, 12, 0))
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+
+        when:
+        ResponseEntity<StreamingResponseBody> response = bookingController.streamBookings(inquiryDTO)
+        response.body.writeTo(outputStream)
+
+        then:
+        1 * bookingService.streamBookings(inquiryDTO, _) >> { BookingRangeInquiryDTO inquiry, Consumer<ConfirmedBookingDTO> consumer ->
+            confirmedBookings.each { consumer.accept(it) }
+        }
+        response.statusCode == HttpStatus.OK
+        response.headers.getContentType() == MediaType.APPLICATION_NDJSON
+        outputStream.toString().readLines() == [
+                """{"uuid":"${confirmedBookings[0].uuid()}","roomName":"Conference Room","userEmail":"user@example.com","bookingStartTime":[2030,1,1,10,0],"bookingEndTime":[2030,1,1,12,0]}""".toString(),
+                """{"uuid":"${confirmedBookings[1].uuid()}","roomName":"Conference Room","userEmail":"user@example.com","bookingStartTime":[2030,1,2,10,0],"bookingEndTime":[2030,1,2,12,0]}""".toString()]
+    }
+
+    def "streamBookings fails when the client cannot be written to"() {
+        given:
+        BookingRangeInquiryDTO inquiryDTO = new BookingRangeInquiryDTO("Conference Room", LocalDate.now(), LocalDate.now().plusDays(6), null, null)
+        OutputStream closedStream = new OutputStream() {
+            @Override
+            void write(int b) throws IOException {
+                throw new IOException("Broken pipe")
+            }
+        }
+
+        when:
+        bookingController.streamBookings(inquiryDTO).body.writeTo(closedStream)
+
+        then:
+        1 * bookingService.streamBookings(inquiryDTO, _) >> { BookingRangeInquiryDTO inquiry, Consumer<ConfirmedBookingDTO> consumer ->
+            consumer.accept(new ConfirmedBookingDTO(UUID.randomUUID(), "Conference Room", "user@example.com", LocalDateTime.now(), LocalDateTime.now().plusHours(2)))
+        }
+        UncheckedIOException exception = thrown()
+        exception.cause.message == "Broken pipe"
+    }
+
+    def "streamChanges subscribes to the changes after #expectedPosition"() {
+        given:
+        SseEmitter emitter = new SseEmitter()
+
+        when:
+        SseEmitter result = bookingController.streamChanges(after, lastEventId)
+
+        then:
+        1 * bookingChangeFeed.subscribe(expectedPosition) >> emitter
+        result.is(emitter)
+
+        where:
+        after  | lastEventId || expectedPosition
+        null   | null        || null
+        "12-3" | null        || "12-3"
+        "12-3" | "14-7"      || "14-7"
+    }
+
     def "createBooking completes successfully"() {
         given:
         BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
@@ -52,6 +187,41 @@ class BookingControllerSpec extends Specification {
         response.body == confirmedBooking
     }
 
+    def "createBookings completes successfully"() {
+        given:
+        List<BookingRequestDTO> requestDTOs = [
+                new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2),
+                new BookingRequestDTO("user@example.com", "Unknown Room", LocalDateTime.now().plusDays(1), 2)]
+        List<BookingBatchResultDTO> results = [
+                new BookingBatchResultDTO(0, new ConfirmedBookingDTO(UUID.randomUUID(), "Conference Room", "user@example.com", LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(1).plusHours(2)), null),
+                new BookingBatchResultDTO(1, null, "Room with name: Unknown Room not found")]
+
+        when:
+        ResponseEntity<List<BookingBatchResultDTO>> response = bookingController.createBookings(requestDTOs)
+
+        then:
+        1 * bookingService.createBookings(requestDTOs) >> results
+        response.statusCode == HttpStatus.OK
+        response.body == results
+    }
+
+    def "createRecurringBooking completes successfully"() {
+        given:
+        RecurringBookingRequestDTO requestDTO = new RecurringBookingRequestDTO("user@example.com", "Conference Room",
+                LocalDateTime.now().plusDays(1), 2, RecurrenceFrequency.WEEKLY, 1, 2, null)
+        List<ConfirmedBookingDTO> confirmedBookings = requestDTO.occurrenceStartTimes().collect {
+            new ConfirmedBookingDTO(UUID.randomUUID(), "Conference Room", "user@example.com", it, it.plusHours(2))
+        }
+
+        when:
+        ResponseEntity<List<ConfirmedBookingDTO>> response = bookingController.createRecurringBooking(requestDTO)
+
+        then:
+        1 * bookingService.createRecurringBooking(requestDTO) >> confirmedBookings
+        response.statusCode == HttpStatus.OK
+        response.body == confirmedBookings
+    }
+
     def "deleteBooking completes successfully"() {
         given:
         UUID uuid = UUID.randomUUID()
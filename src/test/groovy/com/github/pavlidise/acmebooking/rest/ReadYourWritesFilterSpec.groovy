@@ -0,0 +1,93 @@
+package com.github.pavlidise.acmebooking.rest
+
+import com.github.pavlidise.acmebooking.integration.rest.ReadYourWritesFilter
+import com.github.pavlidise.acmebooking.service.BookingMetrics
+import com.github.pavlidise.acmebooking.service.ReplicaRouting
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import jakarta.servlet.FilterChain
+import jakarta.servlet.http.Cookie
+import org.springframework.http.HttpHeaders
+import org.springframework.mock.web.MockHttpServletRequest
+import org.springframework.mock.web.MockHttpServletResponse
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Duration
+
+class ReadYourWritesFilterSpec extends Specification {
+
+    private static final String LAST_WRITE_COOKIE = "acme_booking_last_write"
+
+    private ReplicaRouting replicaRouting = new ReplicaRouting(new BookingMetrics(new SimpleMeterRegistry()), Duration.ofSeconds(1), Duration.ofSeconds(1))
+    @Subject
+    private ReadYourWritesFilter readYourWritesFilter = new ReadYourWritesFilter(replicaRouting, Duration.ofSeconds(5))
+    private MockHttpServletResponse response = new MockHttpServletResponse()
+    private List<Boolean> primaryRequired = []
+    private FilterChain filterChain = { request, response -> primaryRequired << ReplicaRouting.PRIMARY_REQUIRED.get() } as FilterChain
+
+    def "a #method of the API hands the client the time of the write, for the read-your-writes window"() {
+        given:
+        long before = System.currentTimeMillis()
+
+        when:
+        readYourWritesFilter.doFilter(new MockHttpServletRequest(method, "/api/v1/bookings"), response, filterChain)
+
+        then:
+        Cookie lastWrite = response.getCookie(LAST_WRITE_COOKIE)
+        (lastWrite.value as long) >= before
+        lastWrite.maxAge == 5
+        lastWrite.path == "/api/"
+        lastWrite.httpOnly
+        response.getHeader(HttpHeaders.SET_COOKIE).contains("SameSite=Lax")
+        primaryRequired == [false]
+
+        where:
+        method << ["POST", "DELETE"]
+    }
+
+    def "a #method of the API by a client that wrote #age ago reads from the primary: #expected"() {
+        given:
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/v1/bookings")
+        request.setCookies(new Cookie(LAST_WRITE_COOKIE, String.valueOf(System.currentTimeMillis() - age.toMillis())))
+
+        when:
+        readYourWritesFilter.doFilter(request, response, filterChain)
+
+        then:
+        primaryRequired == [expected]
+        !ReplicaRouting.PRIMARY_REQUIRED.get()
+        response.getCookie(LAST_WRITE_COOKIE) == null
+
+        where:
+        method | age                   || expected
+        "GET"  | Duration.ofSeconds(1) || true
+        "HEAD" | Duration.ofSeconds(1) || true
+        "GET"  | Duration.ofSeconds(6) || false
+    }
+
+    def "a read of a client that did not write, or whose cookie can not be read, may go to the replica"() {
+        given:
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/bookings/page")
+        if (cookies) {
+            request.setCookies(cookies as Cookie[])
+        }
+
+        when:
+        readYourWritesFilter.doFilter(request, response, filterChain)
+
+        then:
+        primaryRequired == [false]
+
+        where:
+        cookies << [[], [new Cookie("other", "1")], [new Cookie(LAST_WRITE_COOKIE, "yesterday")]]
+    }
+
+    def "requests outside the API are left alone"() {
+        when:
+        readYourWritesFilter.doFilter(new MockHttpServletRequest("POST", "/actuator/caches"), response, filterChain)
+
+        then:
+        response.getCookie(LAST_WRITE_COOKIE) == null
+        primaryRequired == [false]
+    }
+}
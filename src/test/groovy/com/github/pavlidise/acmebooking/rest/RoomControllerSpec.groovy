@@ -0,0 +1,34 @@
+package com.github.pavlidise.acmebooking.rest
+
+import com.github.pavlidise.acmebooking.integration.rest.RoomController
+import com.github.pavlidise.acmebooking.model.dto.AvailabilityInquiryDTO
+import com.github.pavlidise.acmebooking.model.dto.FreeSlotDTO
+import com.github.pavlidise.acmebooking.service.AvailabilityService
+import org.springframework.http.HttpStatus
+import org.springframework.http.ResponseEntity
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.LocalDate
+
+class RoomControllerSpec extends Specification {
+
+    private AvailabilityService availabilityService = Mock()
+    @Subject
+    private RoomController roomController = new RoomController(availabilityService)
+
+    def "findFreeSlots completes successfully"() {
+        given:
+        AvailabilityInquiryDTO inquiryDTO = new AvailabilityInquiryDTO(LocalDate.now(), LocalDate.now().plusDays(1), 60, 10 as Short)
+        List<FreeSlotDTO> freeSlots = [
+                new FreeSlotDTO("Conference Room", 10 as Short, LocalDate.now().atStartOfDay(), LocalDate.now().plusDays(2).atStartOfDay())]
+
+        when:
+        ResponseEntity<List<FreeSlotDTO>> response = roomController.findFreeSlots(inquiryDTO)
+
+        then:
+        1 * availabilityService.findFreeSlots(inquiryDTO) >> freeSlots
+        response.statusCode == HttpStatus.OK
+        response.body == freeSlots
+    }
+}
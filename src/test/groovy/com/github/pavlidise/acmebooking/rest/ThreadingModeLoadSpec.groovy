@@ -0,0 +1,131 @@
+package com.github.pavlidise.acmebooking.rest
+
+import com.github.pavlidise.acmebooking.AcmeBookingApplication
+import com.github.pavlidise.acmebooking.load.LatencyStats
+import com.github.pavlidise.acmebooking.repository.TestDatabase
+import org.springframework.boot.builder.SpringApplicationBuilder
+import org.springframework.context.ConfigurableApplicationContext
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.net.http.HttpClient
+import java.net.http.HttpRequest
+import java.net.http.HttpResponse
+import java.time.LocalDate
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * Compares the throughput and p99 latency of searching bookings under load, when requests are served by platform threads
+ * and when served by virtual threads, with the same connection pool size. Starts the application against a real, migrated
+ * Postgres database, see TestDatabase. Virtual threads need a Java 21+ runtime. Only reads bookings.
+ */
+class ThreadingModeLoadSpec extends Specification {
+
+    private static final int POOL_SIZE = 10
+    private static final int CONCURRENT_CLIENTS = 400
+    private static final int REQUESTS_PER_CLIENT = 50
+    private static final int WARM_UP_REQUESTS_PER_CLIENT = 10
+
+    @Shared
+    private Map<String, LatencyStats> results = [:]
+
+    def "platform threads serve #CONCURRENT_CLIENTS concurrent clients"() {
+        when:
+        LatencyStats result = runLoad("platform threads")
+
+        then:
+        result.failedRequests == 0
+    }
+
+    @Requires({ Runtime.version().feature() >= 21 })
+    def "virtual threads serve #CONCURRENT_CLIENTS concurrent clients"() {
+        when:
+        LatencyStats result = runLoad("virtual threads", "virtual-threads")
+
+        then:
+        result.failedRequests == 0
+    }
+
+    def "cleanupSpec"() {
+        System.out.printf("%n%-16s | %12s | %10s | %10s%n", "mode", "requests/s", "p50 (ms)", "p99 (ms)")
+        results.each { String mode, LatencyStats result ->
+            System.out.printf("%-16s | %12.0f | %10.1f | %10.1f%n", mode, result.throughput(), result.percentileMillis(50), result.percentileMillis(99))
+        }
+    }
+
+    private LatencyStats runLoad(final String mode, final String... profiles) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(AcmeBookingApplication)
+                .profiles(profiles)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + TestDatabase.url,
+                        "spring.datasource.username=" + TestDatabase.username,
+                        "spring.datasource.password=" + TestDatabase.password,
+                        "spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                        "spring.jpa.show-sql=false",
+                        "logging.level.com.github.pavlidise.acmebooking=WARN")
+                .run()
+        try {
+            URI searchUri = URI.create("http://localhost:${context.environment.getProperty("local.server.port")}/api/v1/bookings")
+            String searchBody = """{"roomName":"${firstRoomName()}","date":"${LocalDate.now().plusDays(1)}"}"""
+            drive(searchUri, searchBody, WARM_UP_REQUESTS_PER_CLIENT)
+            LatencyStats result = drive(searchUri, searchBody, REQUESTS_PER_CLIENT)
+            results[mode] = result
+            return result
+        } finally {
+            context.close()
+        }
+    }
+
+    /**
+     * Every client sends its requests one after the other, each on a platform thread of its own, so the clients are never the bottleneck.
+     */
+    private static LatencyStats drive(final URI searchUri, final String searchBody, final int requestsPerClient) {
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()
+        HttpRequest request = HttpRequest.newBuilder(searchUri)
+                .header("Content-Type", "application/json")
+                .method("GET", HttpRequest.BodyPublishers.ofString(searchBody))
+                .build()
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENT_CLIENTS)
+        try {
+            long start = System.nanoTime()
+            List<Future<ClientResult>> futures = (1..CONCURRENT_CLIENTS).collect {
+                clients.submit({
+                    ClientResult clientResult = new ClientResult()
+                    requestsPerClient.times {
+                        long requestStart = System.nanoTime()
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding())
+                        clientResult.latencies << System.nanoTime() - requestStart
+                        if (response.statusCode() != 200) {
+                            clientResult.failedRequests++
+                        }
+                    }
+                    return clientResult
+                } as Callable<ClientResult>)
+            }
+            List<ClientResult> clientResults = futures*.get()
+            return new LatencyStats(System.nanoTime() - start,
+                    clientResults.collectMany { it.latencies },
+                    clientResults.sum { it.failedRequests } as int)
+        } finally {
+            clients.shutdownNow()
+        }
+    }
+
+    private static String firstRoomName() {
+        TestDatabase.connection.withCloseable {
+            def resultSet = it.createStatement().executeQuery("SELECT room_name FROM room ORDER BY id LIMIT 1")
+            resultSet.next()
+            return resultSet.getString(1)
+        }
+    }
+
+    private static class ClientResult {
+        List<Long> latencies = []
+        int failedRequests
+    }
+}
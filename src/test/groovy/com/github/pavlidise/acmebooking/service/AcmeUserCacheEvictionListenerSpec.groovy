@@ -0,0 +1,145 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.configuration.CacheConfig
+import com.github.pavlidise.acmebooking.integration.repository.AcmeUserRepository
+import com.github.pavlidise.acmebooking.model.entity.AcmeUserEntity
+import jakarta.persistence.EntityManagerFactory
+import org.hibernate.event.spi.PostDeleteEvent
+import org.hibernate.event.spi.PostInsertEvent
+import org.hibernate.event.spi.PostUpdateEvent
+import org.hibernate.persister.entity.EntityPersister
+import org.springframework.beans.factory.annotation.Autowired
+import org.springframework.boot.test.context.SpringBootTest
+import org.springframework.cache.Cache
+import org.springframework.cache.CacheManager
+import org.springframework.test.context.ActiveProfiles
+import org.springframework.transaction.support.TransactionTemplate
+import spock.lang.Specification
+
+/**
+ * Checks that the users changed through JPA are evicted by their emails once committed, against the in-memory database of the test profile.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class AcmeUserCacheEvictionListenerSpec extends Specification {
+
+    @Autowired
+    private AcmeUserRepository acmeUserRepository
+
+    @Autowired
+    private UserCacheService userCacheService
+
+    @Autowired
+    private CacheManager cacheManager
+
+    @Autowired
+    private TransactionTemplate transactionTemplate
+
+    private AcmeUserEntity jane
+
+    private AcmeUserEntity john
+
+    def "setup"() {
+        jane = acmeUserRepository.save(new AcmeUserEntity(username: "jane", userEmail: "jane@acme.com"))
+        john = acmeUserRepository.save(new AcmeUserEntity(username: "john", userEmail: "john@acme.com"))
+        userCacheService.getUserByEmail("jane@acme.com")
+        userCacheService.getUserByEmail("john@acme.com")
+        userCacheService.getUserByEmail("janet@acme.com")
+    }
+
+    def "cleanup"() {
+        acmeUserRepository.deleteAll(acmeUserRepository.findByUserEmailIn(["jane@acme.com", "john@acme.com", "janet@acme.com"]))
+        userCacheService.evictAll()
+    }
+
+    def "a user whose email changed is evicted by their old and new emails once committed, the other users stay cached"() {
+        when:
+        transactionTemplate.executeWithoutResult {
+            AcmeUserEntity user = acmeUserRepository.findById(jane.id).get()
+            user.userEmail = "janet@acme.com"
+            assert cached(CacheConfig.USERS_CACHE, "jane@acme.com")
+        }
+
+        then:
+        !cached(CacheConfig.USERS_CACHE, "jane@acme.com")
+        !cached(CacheConfig.USER_MISSES_CACHE, "janet@acme.com")
+        cached(CacheConfig.USERS_CACHE, "john@acme.com")
+        userCacheService.getUserByEmail("janet@acme.com").get().id == jane.id
+    }
+
+    def "a user created is no longer cached as missing, and a user deleted is evicted"() {
+        when:
+        acmeUserRepository.save(new AcmeUserEntity(username: "janet", userEmail: "janet@acme.com"))
+        acmeUserRepository.delete(john)
+
+        then:
+        !cached(CacheConfig.USER_MISSES_CACHE, "janet@acme.com")
+        !cached(CacheConfig.USERS_CACHE, "john@acme.com")
+        cached(CacheConfig.USERS_CACHE, "jane@acme.com")
+    }
+
+    def "changes rolled back evict no user"() {
+        when:
+        transactionTemplate.executeWithoutResult { status ->
+            acmeUserRepository.findById(jane.id).get().userEmail = "janet@acme.com"
+            acmeUserRepository.saveAndFlush(new AcmeUserEntity(username: "jim", userEmail: "jim@acme.com"))
+            acmeUserRepository.delete(acmeUserRepository.findById(john.id).get())
+            acmeUserRepository.flush()
+            status.setRollbackOnly()
+        }
+
+        then:
+        cached(CacheConfig.USERS_CACHE, "jane@acme.com")
+        cached(CacheConfig.USERS_CACHE, "john@acme.com")
+        cached(CacheConfig.USER_MISSES_CACHE, "janet@acme.com")
+    }
+
+    def "a user changed from an email not known evicts every user"() {
+        given:
+        UserCacheService users = Mock()
+        AcmeUserCacheEvictionListener listener = new AcmeUserCacheEvictionListener(Stub(EntityManagerFactory), users)
+
+        when:
+        listener.onPostUpdate(new PostUpdateEvent(jane, jane.id, [] as Object[], null, null, null, null))
+
+        then:
+        1 * users.evict("jane@acme.com")
+        1 * users.evictAll()
+    }
+
+    def "a user changed without changing their email is evicted by that email only"() {
+        given:
+        UserCacheService users = Mock()
+        AcmeUserCacheEvictionListener listener = new AcmeUserCacheEvictionListener(Stub(EntityManagerFactory), users)
+        EntityPersister persister = Stub() {
+            getPropertyNames() >> (["username", "userEmail"] as String[])
+        }
+
+        when:
+        listener.onPostUpdate(new PostUpdateEvent(jane, jane.id, [] as Object[], ["janet", "jane@acme.com"] as Object[], null, persister, null))
+
+        then:
+        1 * users.evict("jane@acme.com")
+        0 * users._
+    }
+
+    def "changes of other entities evict no user"() {
+        given:
+        UserCacheService users = Mock()
+        AcmeUserCacheEvictionListener listener = new AcmeUserCacheEvictionListener(Stub(EntityManagerFactory), users)
+        Object other = new Object()
+
+        when:
+        listener.onPostInsert(new PostInsertEvent(other, 1L, [] as Object[], null, null))
+        listener.onPostUpdate(new PostUpdateEvent(other, 1L, [] as Object[], [] as Object[], null, null, null))
+        listener.onPostDelete(new PostDeleteEvent(other, 1L, [] as Object[], null, null))
+
+        then:
+        0 * users._
+    }
+
+    private boolean cached(final String cacheName, final String key) {
+        Cache cache = cacheManager.getCache(cacheName)
+        return cache.nativeCache.asMap().containsKey(key)
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingRepository
+import com.github.pavlidise.acmebooking.model.dto.AvailabilityInquiryDTO
+import com.github.pavlidise.acmebooking.model.dto.FreeSlotDTO
+import com.github.pavlidise.acmebooking.model.entity.RoomEntity
+import com.github.pavlidise.acmebooking.model.projection.BookingIntervalView
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.temporal.ChronoUnit
+import java.util.stream.Stream
+
+class AvailabilityServiceSpec extends Specification {
+
+    private RoomCacheService roomCacheService = Mock()
+    private BookingRepository bookingRepository = Mock()
+    @Subject
+    private AvailabilityService availabilityService = new AvailabilityServiceImpl(roomCacheService, bookingRepository)
+
+    private static LocalDate day = LocalDate.of(2030, 1, 7)
+    private static RoomEntity smallRoom = new RoomEntity(id: 1L, roomName: "Small Room", roomCapacity: 4 as Short)
+    private static RoomEntity largeRoom = new RoomEntity(id: 2L, roomName: "Large Room", roomCapacity: 20 as Short)
+    private static RoomEntity unknownCapacityRoom = new RoomEntity(id: 3L, roomName: "Booth")
+
+    def "findFreeSlots computes the gaps between the bookings of every room in a single pass, excluding the instants the bookings include"() {
+        given:
+        AvailabilityInquiryDTO inquiryDTO = new AvailabilityInquiryDTO(day, day, 60, null)
+
+        when:
+        List<FreeSlotDTO> result = availabilityService.findFreeSlots(inquiryDTO)
+
+        then:
+        1 * roomCacheService.getAllRooms() >> [largeRoom, unknownCapacityRoom, smallRoom]
+        1 * bookingRepository.streamBookingIntervalsOverlappingOrderByRoomAndStartTime([1L, 2L, 3L], day.atStartOfDay(), day.plusDays(1).atStartOfDay()) >> Stream.of(
+                booking(1L, day.atTime(8, 0), day.atTime(10, 0)),
+                booking(1L, day.atTime(10, 30), day.atTime(12, 0)),
+                booking(1L, day.atTime(11, 0), day.atTime(11, 30)),
+                booking(1L, day.atTime(14, 0), day.atTime(15, 0)),
+                booking(2L, day.minusDays(1).atTime(22, 0), day.atTime(9, 0)),
+                booking(2L, day.atTime(23, 30), day.plusDays(1).atTime(1, 0)))
+        result == [
+                new FreeSlotDTO("Small Room", 4 as Short, day.atStartOfDay(), justBefore(day.atTime(8, 0))),
+                new FreeSlotDTO("Small Room", 4 as Short, justAfter(day.atTime(12, 0)), justBefore(day.atTime(14, 0))),
+                new FreeSlotDTO("Small Room", 4 as Short, justAfter(day.atTime(15, 0)), justBefore(day.plusDays(1).atStartOfDay())),
+                new FreeSlotDTO("Large Room", 20 as Short, justAfter(day.atTime(9, 0)), justBefore(day.atTime(23, 30))),
+                new FreeSlotDTO("Booth", null, day.atStartOfDay(), justBefore(day.plusDays(1).atStartOfDay()))]
+    }
+
+    def "findFreeSlots leaves out a gap of exactly the minimum duration, as a booking filling it would touch the bookings around it"() {
+        given:
+        AvailabilityInquiryDTO inquiryDTO = new AvailabilityInquiryDTO(day, day, 60, null)
+
+        when:
+        List<FreeSlotDTO> result = availabilityService.findFreeSlots(inquiryDTO)
+
+        then:
+        1 * roomCacheService.getAllRooms() >> [smallRoom]
+        1 * bookingRepository.streamBookingIntervalsOverlappingOrderByRoomAndStartTime([1L], day.atStartOfDay(), day.plusDays(1).atStartOfDay()) >> Stream.of(
+                booking(1L, day.atStartOfDay(), day.atTime(10, 0)),
+                booking(1L, day.atTime(11, 0), day.atTime(12, 0)),
+                booking(1L, day.atTime(12, 0).plusMinutes(61), day.plusDays(1).atStartOfDay()))
+        result == [new FreeSlotDTO("Small Room", 4 as Short, justAfter(day.atTime(12, 0)), justBefore(day.atTime(13, 1)))]
+    }
+
+    def "findFreeSlots starts from now when the range starts earlier, and returns nothing for a range already over"() {
+        given:
+        LocalDate today = LocalDate.now()
+        LocalDateTime before = LocalDateTime.now()
+
+        when:
+        List<FreeSlotDTO> result = availabilityService.findFreeSlots(new AvailabilityInquiryDTO(today.minusDays(1), today, 60, null))
+        List<FreeSlotDTO> pastResult = availabilityService.findFreeSlots(new AvailabilityInquiryDTO(today.minusDays(3), today.minusDays(1), 1, null))
+
+        then:
+        2 * roomCacheService.getAllRooms() >> [smallRoom]
+        1 * bookingRepository.streamBookingIntervalsOverlappingOrderByRoomAndStartTime([1L], { LocalDateTime periodStart ->
+            !periodStart.isBefore(before.truncatedTo(ChronoUnit.MICROS)) && !periodStart.isAfter(LocalDateTime.now())
+        }, today.plusDays(1).atStartOfDay()) >> Stream.empty()
+        result.size() <= 1
+        result.every { !it.freeFrom().isBefore(before.truncatedTo(ChronoUnit.MICROS)) }
+        pastResult.isEmpty()
+    }
+
+    def "findFreeSlots only considers rooms with at least the minimum capacity"() {
+        given:
+        AvailabilityInquiryDTO inquiryDTO = new AvailabilityInquiryDTO(day, day.plusDays(1), 60, 10 as Short)
+
+        when:
+        List<FreeSlotDTO> result = availabilityService.findFreeSlots(inquiryDTO)
+
+        then:
+        1 * roomCacheService.getAllRooms() >> [largeRoom, unknownCapacityRoom, smallRoom]
+        1 * bookingRepository.streamBookingIntervalsOverlappingOrderByRoomAndStartTime([2L], day.atStartOfDay(), day.plusDays(2).atStartOfDay()) >> Stream.empty()
+        result == [new FreeSlotDTO("Large Room", 20 as Short, day.atStartOfDay(), justBefore(day.plusDays(2).atStartOfDay()))]
+    }
+
+    def "findFreeSlots returns nothing without querying bookings when no room has the minimum capacity"() {
+        given:
+        AvailabilityInquiryDTO inquiryDTO = new AvailabilityInquiryDTO(day, day, 60, 100 as Short)
+
+        when:
+        List<FreeSlotDTO> result = availabilityService.findFreeSlots(inquiryDTO)
+
+        then:
+        1 * roomCacheService.getAllRooms() >> [largeRoom, smallRoom]
+        0 * bookingRepository._
+        result.isEmpty()
+    }
+
+    def "date range validation rejects reversed or overly long ranges"() {
+        expect:
+        new AvailabilityInquiryDTO(day, day.plusDays(days), 60, null).isDateRangeValid() == valid
+
+        where:
+        days || valid
+        0    || true
+        30   || true
+        31   || false
+        -1   || false
+    }
+
+    private static LocalDateTime justBefore(final LocalDateTime dateTime) {
+        return dateTime.minus(1, ChronoUnit.MICROS)
+    }
+
+    private static LocalDateTime justAfter(final LocalDateTime dateTime) {
+        return dateTime.plus(1, ChronoUnit.MICROS)
+    }
+
+    private static BookingIntervalView booking(final Long roomId, final LocalDateTime start, final LocalDateTime end) {
+        return [getRoomId          : { roomId },
+                getUuid            : { UUID.randomUUID() },
+                getBookingStartTime: { start },
+                getBookingEndTime  : { end }] as BookingIntervalView
+    }
+}
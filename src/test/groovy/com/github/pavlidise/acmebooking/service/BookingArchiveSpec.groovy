@@ -0,0 +1,205 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.model.dto.ArchivedBookingDTO
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.LocalDateTime
+
+class BookingArchiveSpec extends Specification {
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2020, 1, 6, 10, 0)
+
+    @TempDir
+    private Path directory
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+
+    private BookingArchive bookingArchive
+
+    def "setup"() {
+        bookingArchive = new BookingArchive(new BookingMetrics(meterRegistry), directory.resolve("archive").toString())
+    }
+
+    def "archived bookings are read back as they were written"() {
+        given:
+        List<ArchivedBookingDTO> bookings = [
+                booking(1042L, 1L, "Conference Room", "user@example.com", MONDAY, MONDAY.plusHours(2)),
+                booking(17L, 2L, "Réunion ☕", "other@example.com", MONDAY.plusHours(1).plusNanos(123_456_000), MONDAY.plusHours(3)),
+                booking(1043L, 1L, "Conference Room", "other@example.com", MONDAY.plusDays(1), MONDAY.plusDays(1).plusMinutes(30))]
+
+        when:
+        Path file = bookingArchive.write(bookings)
+
+        then:
+        file.fileName.toString() == "bookings-20200106T100000-1042.bka"
+        bookingArchive.searchBookingsOfRoom(1L, MONDAY.minusDays(1), MONDAY.plusDays(2)) == [bookings[0], bookings[2]]
+        bookingArchive.searchBookingsOfRoom(2L, MONDAY.minusDays(1), MONDAY.plusDays(2)) == [bookings[1]]
+        meterRegistry.get(BookingMetrics.ARCHIVE_FILES).tag("operation", BookingMetrics.ARCHIVE_WRITTEN).counter().count() == 1
+        meterRegistry.get(BookingMetrics.ARCHIVE_FILES).tag("operation", BookingMetrics.ARCHIVE_READ).counter().count() == 2
+    }
+
+    def "a search for the period from #periodStart to #periodEnd finds the archived bookings of the room touching it: #found"() {
+        given:
+        bookingArchive.write([booking(1L, 1L, "Conference Room", "user@example.com", MONDAY, MONDAY.plusHours(1))])
+
+        expect:
+        !bookingArchive.searchBookingsOfRoom(1L, periodStart, periodEnd).empty == found
+
+        where:
+        periodStart              | periodEnd                 || found
+        MONDAY.minusHours(1)     | MONDAY                    || false
+        MONDAY.minusHours(1)     | MONDAY.plusMinutes(1)     || true
+        MONDAY.plusHours(1)      | MONDAY.plusHours(2)       || true
+        MONDAY.plusMinutes(61)   | MONDAY.plusHours(2)       || false
+    }
+
+    def "a search only reads the files whose time range touches the period, failing on one whose #corrupted can not be read"() {
+        given:
+        bookingArchive.write([booking(1L, 1L, "Conference Room", "user@example.com", MONDAY, MONDAY.plusHours(1))])
+        Path march = bookingArchive.write([booking(2L, 1L, "Conference Room", "user@example.com", MONDAY.plusMonths(2), MONDAY.plusMonths(2).plusHours(1))])
+        byte[] written = Files.readAllBytes(march)
+        Files.write(march, corrupt(written, 32 + ByteBuffer.wrap(written, 28, 4).getInt()))
+
+        when:
+        List<ArchivedBookingDTO> january = bookingArchive.searchBookingsOfRoom(1L, MONDAY.minusDays(1), MONDAY.plusDays(1))
+
+        then:
+        january*.id() == [1L]
+        meterRegistry.get(BookingMetrics.ARCHIVE_FILES).tag("operation", BookingMetrics.ARCHIVE_READ).counter().count() == 1
+
+        when:
+        bookingArchive.searchBookingsOfRoom(1L, MONDAY.plusMonths(2).minusDays(1), MONDAY.plusMonths(2).plusDays(1))
+
+        then:
+        UncheckedIOException exception = thrown()
+        exception.message.contains(march.toString())
+
+        where:
+        corrupted          | corrupt
+        "rooms"            | { byte[] bytes, int roomsEnd -> truncated(bytes, 28) }
+        "columns"          | { byte[] bytes, int roomsEnd -> truncated(bytes, roomsEnd) }
+        "deflated columns" | { byte[] bytes, int roomsEnd ->
+            Arrays.fill(bytes, roomsEnd + 4, roomsEnd + 4 + ByteBuffer.wrap(bytes, roomsEnd, 4).getInt(), (byte) 0xFF)
+            bytes
+        }
+    }
+
+    def "files without bookings of the room touching the period are left after the #leftAfter"() {
+        given:
+        bookingArchive.write([booking(1L, 1L, "Conference Room", "user@example.com", MONDAY, MONDAY.plusHours(1)),
+                              booking(2L, 2L, "Board Room", "user@example.com", MONDAY.plusHours(1), MONDAY.plusHours(2)),
+                              booking(3L, 1L, "Conference Room", "user@example.com", MONDAY.plusHours(3), MONDAY.plusHours(4))])
+
+        expect:
+        bookingArchive.searchBookingsOfRoom(roomId, MONDAY.plusMinutes(90), MONDAY.plusMinutes(150)).empty
+        meterRegistry.get(BookingMetrics.ARCHIVE_FILES).tag("operation", BookingMetrics.ARCHIVE_READ).counter().count() == filesRead
+
+        where:
+        roomId | leftAfter                        || filesRead
+        3L     | "dictionary of the rooms"        || 0
+        1L     | "columns of the rooms and times" || 1
+    }
+
+    def "the index keeps the files not modified since it was read, and reads the ones replaced again"() {
+        given:
+        bookingArchive.write([booking(1L, 1L, "Conference Room", "user@example.com", MONDAY, MONDAY.plusHours(1))])
+        bookingArchive.write([booking(2L, 1L, "Conference Room", "user@example.com", MONDAY.plusDays(1), MONDAY.plusDays(1).plusHours(1))])
+        assert bookingArchive.searchBookingsOfRoom(1L, MONDAY, MONDAY.plusDays(2))*.id() == [1L, 2L]
+        List<Object> indexedFiles = bookingArchive.index.files()
+        Thread.sleep(50)
+
+        when:
+        bookingArchive.write([booking(1L, 2L, "Board Room", "user@example.com", MONDAY, MONDAY.plusHours(1))])
+
+        then:
+        bookingArchive.searchBookingsOfRoom(1L, MONDAY, MONDAY.plusDays(2))*.id() == [2L]
+        bookingArchive.searchBookingsOfRoom(2L, MONDAY, MONDAY.plusDays(2))*.roomName() == ["Board Room"]
+        !bookingArchive.index.files()[0].is(indexedFiles[0])
+        bookingArchive.index.files()[1].is(indexedFiles[1])
+    }
+
+    def "a booking archived again, by a run of the archiver failing to commit, is read once"() {
+        given:
+        List<ArchivedBookingDTO> bookings = (1..3).collect {
+            booking(it as Long, 1L, "Conference Room", "user@example.com", MONDAY.plusHours(it), MONDAY.plusHours(it).plusMinutes(30))
+        }
+        bookingArchive.write(bookings.take(2))
+        bookingArchive.write(bookings.drop(1))
+
+        expect:
+        bookingArchive.searchBookingsOfRoom(1L, MONDAY, MONDAY.plusDays(1)) == bookings
+    }
+
+    def "files written by another archive sharing the directory are found once the directory changed"() {
+        given:
+        BookingArchive otherBookingArchive = new BookingArchive(new BookingMetrics(meterRegistry), directory.resolve("archive").toString())
+        bookingArchive.write([booking(1L, 1L, "Conference Room", "user@example.com", MONDAY, MONDAY.plusHours(1))])
+        assert bookingArchive.searchBookingsOfRoom(1L, MONDAY, MONDAY.plusDays(1)).size() == 1
+        Thread.sleep(50)
+
+        when:
+        otherBookingArchive.write([booking(2L, 1L, "Conference Room", "user@example.com", MONDAY.plusHours(2), MONDAY.plusHours(3))])
+
+        then:
+        bookingArchive.searchBookingsOfRoom(1L, MONDAY, MONDAY.plusDays(1))*.id() == [1L, 2L]
+    }
+
+    def "files of an unknown format are left out of the archive"() {
+        given:
+        bookingArchive.write([booking(1L, 1L, "Conference Room", "user@example.com", MONDAY, MONDAY.plusHours(1))])
+        Files.write(directory.resolve("archive").resolve("bookings-other" + BookingArchive.FILE_EXTENSION), [0, 0, 0, 0, 0, 0, 0, 1] as byte[])
+        Files.write(directory.resolve("archive").resolve("bookings-newer" + BookingArchive.FILE_EXTENSION), [0x41, 0x43, 0x4d, 0x41, 0, 0, 0, 2] as byte[])
+
+        expect:
+        bookingArchive.searchBookingsOfRoom(1L, MONDAY, MONDAY.plusDays(1))*.id() == [1L]
+    }
+
+    def "nothing is archived when the archive is disabled or its directory does not exist yet"() {
+        given:
+        BookingArchive disabledBookingArchive = new BookingArchive(new BookingMetrics(meterRegistry), "")
+
+        expect:
+        !disabledBookingArchive.enabled
+        disabledBookingArchive.searchBookingsOfRoom(1L, MONDAY, MONDAY.plusDays(1)).empty
+        bookingArchive.enabled
+        bookingArchive.searchBookingsOfRoom(1L, MONDAY, MONDAY.plusDays(1)).empty
+    }
+
+    def "an archive in place of which there is a file can neither be written nor read"() {
+        given:
+        Files.writeString(directory.resolve("archive"), "not a directory")
+
+        when:
+        bookingArchive.write([booking(1L, 1L, "Conference Room", "user@example.com", MONDAY, MONDAY.plusHours(1))])
+
+        then:
+        UncheckedIOException writeException = thrown()
+        writeException.message.contains("Could not write 1 bookings")
+
+        when:
+        bookingArchive.searchBookingsOfRoom(1L, MONDAY, MONDAY.plusDays(1))
+
+        then:
+        UncheckedIOException readException = thrown()
+        readException.message.contains("Could not read the index")
+    }
+
+    /**
+     * @return the bytes up to the length, followed by junk
+     */
+    private static byte[] truncated(final byte[] bytes, final int length) {
+        byte[] truncated = Arrays.copyOf(bytes, length + 16)
+        Arrays.fill(truncated, length, truncated.length, (byte) 0x42)
+        return truncated
+    }
+
+    private static ArchivedBookingDTO booking(final Long id, final Long roomId, final String roomName, final String userEmail,
+                                              final LocalDateTime bookingStartTime, final LocalDateTime bookingEndTime) {
+        return new ArchivedBookingDTO(id, UUID.randomUUID(), roomId, roomName, userEmail, bookingStartTime, bookingEndTime)
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingArchiveRepository
+import com.github.pavlidise.acmebooking.model.dto.ArchivedBookingDTO
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.dao.QueryTimeoutException
+import org.springframework.transaction.PlatformTransactionManager
+import spock.lang.Specification
+import spock.lang.Timeout
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.time.LocalDate
+import java.time.LocalDateTime
+
+@Timeout(10)
+class BookingArchiverSpec extends Specification {
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2020, 1, 6, 10, 0)
+
+    private BookingArchiveRepository bookingArchiveRepository = Mock()
+    private BookingArchive bookingArchive = Mock {
+        isEnabled() >> true
+    }
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    private BookingMetrics bookingMetrics = new BookingMetrics(meterRegistry)
+    private RetryingTransactionTemplate retryingTransactionTemplate = new RetryingTransactionTemplate(Stub(PlatformTransactionManager), bookingMetrics, 3)
+    private LocalDate thisMonth = LocalDate.now().withDayOfMonth(1)
+    private List<List<Long>> writtenChunks = []
+
+    def "setup"() {
+        bookingArchive.write(_) >> { writtenChunks << it[0]*.id(); null }
+    }
+
+    def "the detached partitions and the months before the horizon are archived a chunk per transaction, and the partitions dropped once empty"() {
+        given:
+        BookingArchiver archiver = archiver()
+
+        when:
+        archiver.archive()
+
+        then:
+        1 * bookingArchiveRepository.findDetachedPartitions() >> ["booking_p2019_12"]
+        2 * bookingArchiveRepository.moveBookingsOfDetachedPartition("booking_p2019_12", 2) >>> [[booking(1), booking(2)], [booking(3)]]
+
+        then:
+        1 * bookingArchiveRepository.dropDetachedPartition("booking_p2019_12")
+
+        then:
+        1 * bookingArchiveRepository.findMonthsWithBookingsBefore(thisMonth.minusMonths(24)) >> [LocalDate.of(2020, 1, 1), LocalDate.of(2020, 2, 1)]
+        2 * bookingArchiveRepository.moveBookingsOfMonth(LocalDate.of(2020, 1, 1), 2) >>> [[booking(4), booking(5)], []]
+        1 * bookingArchiveRepository.moveBookingsOfMonth(LocalDate.of(2020, 2, 1), 2) >> []
+        writtenChunks == [[1L, 2L], [3L], [4L, 5L]]
+        meterRegistry.get(BookingMetrics.ARCHIVED_BOOKINGS).counter().count() == 5
+    }
+
+    def "a run failing after a chunk keeps the chunks committed before, and the partition until it is empty"() {
+        given:
+        BookingArchiver archiver = archiver()
+        bookingArchiveRepository.findDetachedPartitions() >> ["booking_p2019_12"]
+
+        when:
+        archiver.archive()
+
+        then:
+        2 * bookingArchiveRepository.moveBookingsOfDetachedPartition("booking_p2019_12", 2) >>> [[booking(1), booking(2)]] >>
+                { throw new QueryTimeoutException("canceling statement due to statement timeout") }
+        0 * bookingArchiveRepository.dropDetachedPartition(_)
+        0 * bookingArchiveRepository.findMonthsWithBookingsBefore(_)
+        writtenChunks == [[1L, 2L]]
+        meterRegistry.get(BookingMetrics.ARCHIVED_BOOKINGS).counter().count() == 2
+    }
+
+    def "a run failing to #failure leaves the bookings to the next one"() {
+        given:
+        BookingArchiver archiver = archiver()
+        bookingArchiveRepository.findDetachedPartitions() >> []
+        bookingArchiveRepository.findMonthsWithBookingsBefore(_) >> [LocalDate.of(2020, 1, 1)]
+
+        when:
+        archiver.archive()
+
+        then:
+        1 * bookingArchiveRepository.moveBookingsOfMonth(_, _) >> {
+            if (failure == "read the bookings") {
+                throw new QueryTimeoutException("canceling statement due to statement timeout")
+            }
+            [booking(1)]
+        }
+        bookingArchive.write(_) >> { throw new UncheckedIOException(new IOException("No space left on device")) }
+        noExceptionThrown()
+        meterRegistry.find(BookingMetrics.ARCHIVED_BOOKINGS).counter() == null
+
+        where:
+        failure << ["read the bookings", "write them"]
+    }
+
+    def "archiving bookings without a directory for the archive is refused"() {
+        given:
+        BookingArchive disabledBookingArchive = new BookingArchive(bookingMetrics, "")
+
+        when:
+        new BookingArchiver(bookingArchiveRepository, disabledBookingArchive, retryingTransactionTemplate, bookingMetrics, 24, 2, Duration.ofHours(1))
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "bookings are archived on start and then every archive interval until stopped"() {
+        given:
+        PollingConditions conditions = new PollingConditions(timeout: 5)
+        BookingArchiver archiver = archiver()
+        int runs = 0
+        bookingArchiveRepository.findDetachedPartitions() >> { runs++; [] }
+        bookingArchiveRepository.findMonthsWithBookingsBefore(_) >> []
+
+        when:
+        archiver.start()
+
+        then:
+        conditions.eventually {
+            assert runs >= 3
+        }
+
+        when:
+        archiver.stop()
+
+        then:
+        !archiver.archiver.alive
+    }
+
+    def "an archiver stopped during a run finishes it and archives no more"() {
+        given:
+        PollingConditions conditions = new PollingConditions(timeout: 5)
+        BookingArchiver archiver = archiver()
+        int runs = 0
+        bookingArchiveRepository.findDetachedPartitions() >> {
+            runs++
+            archiver.running = false
+            []
+        }
+        bookingArchiveRepository.findMonthsWithBookingsBefore(_) >> []
+
+        when:
+        archiver.start()
+
+        then:
+        conditions.eventually {
+            assert !archiver.archiver.alive
+        }
+        runs == 1
+    }
+
+    private BookingArchiver archiver() {
+        return new BookingArchiver(bookingArchiveRepository, bookingArchive, retryingTransactionTemplate, bookingMetrics, 24, 2, Duration.ofMillis(10))
+    }
+
+    private static ArchivedBookingDTO booking(final int id) {
+        return new ArchivedBookingDTO(id as Long, UUID.randomUUID(), 1L, "Conference Room", "user@example.com",
+                MONDAY.plusHours(id), MONDAY.plusHours(id).plusMinutes(30))
+    }
+}
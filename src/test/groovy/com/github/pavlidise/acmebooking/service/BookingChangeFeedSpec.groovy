@@ -0,0 +1,318 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.exception.InvalidCursorException
+import com.github.pavlidise.acmebooking.integration.repository.BookingOutboxRepository
+import com.github.pavlidise.acmebooking.model.dto.BookingChangeDTO
+import com.github.pavlidise.acmebooking.model.projection.BookingChangeView
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.dao.DataAccessResourceFailureException
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter
+import spock.lang.Specification
+import spock.lang.Timeout
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.time.LocalDateTime
+import java.util.function.Consumer
+
+@Timeout(10)
+class BookingChangeFeedSpec extends Specification {
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2030, 1, 7, 10, 0)
+
+    private BookingOutboxRepository bookingOutboxRepository = Mock()
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    private BookingChangeFeed bookingChangeFeed = feed(Duration.ofHours(1), Duration.ofHours(1))
+
+    def "a subscriber without a position is sent the changes committed after it subscribed"() {
+        given:
+        List<SseEmitter.SseEventBuilder> sent = []
+        SseEmitter emitter = Mock() {
+            send(_ as SseEmitter.SseEventBuilder) >> { arguments -> sent << arguments[0] }
+        }
+        bookingChangeFeed.subscribe(null, emitter)
+
+        when:
+        bookingChangeFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.findLastChange() >> Optional.of(change(5L, 1L, BookingChangeFeed.CREATED))
+        1 * bookingOutboxRepository.findChangesAfter(5L, 1L, 2) >> [change(6L, 2L, BookingChangeFeed.DELETED)]
+        sent.collect { eventOf(it) } == [[id: "6-2", event: BookingChangeFeed.DELETED]]
+        sent[0].build()*.data.find { it instanceof BookingChangeDTO }.position() == "6-2"
+        meterRegistry.get(BookingMetrics.CHANGE_SUBSCRIBERS).gauge().value() == 1
+
+        when:
+        bookingChangeFeed.poll()
+
+        then:
+        0 * bookingOutboxRepository.findLastChange()
+        1 * bookingOutboxRepository.findChangesAfter(6L, 2L, 2) >> [change(7L, 3L, BookingChangeFeed.CREATED), change(7L, 4L, BookingChangeFeed.CREATED)]
+        sent.drop(1).collect { eventOf(it).id } == ["7-3", "7-4"]
+    }
+
+    def "the head is read from the start when the outbox is empty"() {
+        given:
+        bookingChangeFeed.subscribe(null, Mock(SseEmitter))
+
+        when:
+        bookingChangeFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.findLastChange() >> Optional.empty()
+        1 * bookingOutboxRepository.findChangesAfter(0L, 0L, 2) >> []
+    }
+
+    def "a subscriber resuming from further back is caught up a batch per poll, up to the head, then sent the new changes"() {
+        given:
+        List<SseEmitter.SseEventBuilder> sent = []
+        SseEmitter emitter = Mock() {
+            send(_ as SseEmitter.SseEventBuilder) >> { arguments -> sent << arguments[0] }
+        }
+        bookingChangeFeed.subscribe("3-1", emitter)
+        bookingChangeFeed.wakeUps.drainPermits()
+
+        when:
+        bookingChangeFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.findLastChange() >> Optional.of(change(6L, 2L, BookingChangeFeed.CREATED))
+        1 * bookingOutboxRepository.findChangesAfter(6L, 2L, 2) >> []
+        1 * bookingOutboxRepository.findChangesAfter(3L, 1L, 2) >> [change(4L, 1L, BookingChangeFeed.CREATED), change(5L, 1L, BookingChangeFeed.DELETED)]
+        sent.collect { eventOf(it).id } == ["4-1", "5-1"]
+        bookingChangeFeed.wakeUps.availablePermits() == 1
+
+        when: "a change committed past the head is only sent once the head moved past it"
+        bookingChangeFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.findChangesAfter(6L, 2L, 2) >> []
+        1 * bookingOutboxRepository.findChangesAfter(5L, 1L, 2) >> [change(6L, 2L, BookingChangeFeed.CREATED), change(7L, 1L, BookingChangeFeed.CREATED)]
+        sent.drop(2).collect { eventOf(it).id } == ["6-2"]
+
+        when:
+        bookingChangeFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.findChangesAfter(6L, 2L, 2) >> [change(7L, 1L, BookingChangeFeed.CREATED)]
+        0 * bookingOutboxRepository.findChangesAfter(_, _, _)
+        sent.drop(3).collect { eventOf(it).id } == ["7-1"]
+    }
+
+    def "a subscriber caught up is moved to the head when the changes in between were removed"() {
+        given:
+        SseEmitter emitter = Mock()
+        bookingChangeFeed.subscribe("3-1", emitter)
+
+        when:
+        bookingChangeFeed.poll()
+        bookingChangeFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.findLastChange() >> Optional.of(change(6L, 2L, BookingChangeFeed.CREATED))
+        1 * bookingOutboxRepository.findChangesAfter(3L, 1L, 2) >> []
+        2 * bookingOutboxRepository.findChangesAfter(6L, 2L, 2) >> []
+        0 * emitter.send(_)
+    }
+
+    def "a subscriber resuming from past the head waits for the head to move past its position"() {
+        given:
+        SseEmitter emitter = Mock()
+        bookingChangeFeed.subscribe("9-1", emitter)
+
+        when:
+        bookingChangeFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.findLastChange() >> Optional.of(change(6L, 2L, BookingChangeFeed.CREATED))
+        1 * bookingOutboxRepository.findChangesAfter(6L, 2L, 2) >> [change(9L, 1L, BookingChangeFeed.CREATED)]
+        0 * bookingOutboxRepository.findChangesAfter(9L, 1L, _)
+        0 * emitter.send(_)
+    }
+
+    def "a full batch of new changes wakes the feed up again right away"() {
+        given:
+        bookingChangeFeed.subscribe(null, Mock(SseEmitter))
+        bookingChangeFeed.wakeUps.drainPermits()
+
+        when:
+        bookingChangeFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.findLastChange() >> Optional.empty()
+        1 * bookingOutboxRepository.findChangesAfter(0L, 0L, 2) >> [change(1L, 1L, BookingChangeFeed.CREATED), change(1L, 2L, BookingChangeFeed.CREATED)]
+        bookingChangeFeed.wakeUps.availablePermits() == 1
+    }
+
+    def "a subscriber that can not be sent a change is dropped, with #failure"() {
+        given:
+        SseEmitter emitter = Mock() {
+            send(_ as SseEmitter.SseEventBuilder) >> { throw failure }
+        }
+        bookingChangeFeed.subscribe(position, emitter)
+
+        when:
+        bookingChangeFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.findLastChange() >> Optional.of(change(6L, 2L, BookingChangeFeed.CREATED))
+        _ * bookingOutboxRepository.findChangesAfter(_, _, 2) >> [change(6L, 3L, BookingChangeFeed.CREATED)]
+        bookingChangeFeed.subscribers.isEmpty()
+        meterRegistry.get(BookingMetrics.CHANGE_SUBSCRIBERS).gauge().value() == 0
+
+        where:
+        failure                                  | position
+        new IOException("Broken pipe")           | null
+        new IllegalStateException("Completed")   | "3-1"
+    }
+
+    def "subscribers are sent a heartbeat every heartbeat interval, and dropped when it can not be sent"() {
+        given:
+        BookingChangeFeed heartbeatFeed = feed(Duration.ZERO, Duration.ofHours(1))
+        List<SseEmitter.SseEventBuilder> sent = []
+        SseEmitter listening = Mock() {
+            send(_ as SseEmitter.SseEventBuilder) >> { arguments -> sent << arguments[0] }
+        }
+        SseEmitter gone = Mock() {
+            send(_ as SseEmitter.SseEventBuilder) >> { throw new IOException("Broken pipe") }
+        }
+        heartbeatFeed.subscribe(null, listening)
+        heartbeatFeed.subscribe(null, gone)
+
+        when:
+        heartbeatFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.findLastChange() >> Optional.empty()
+        1 * bookingOutboxRepository.findChangesAfter(0L, 0L, 2) >> []
+        sent.collect { it.build()*.data.join().trim() } == [":heartbeat"]
+        heartbeatFeed.subscribers*.emitter() == [listening]
+    }
+
+    def "changes past the retention are removed every clean-up interval, whether there are subscribers or not"() {
+        given:
+        BookingChangeFeed cleaningFeed = feed(Duration.ofHours(1), Duration.ZERO)
+
+        when:
+        cleaningFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.deleteChangesOccurredBefore({ it.isAfter(LocalDateTime.now().minusDays(7).minusMinutes(1)) && it.isBefore(LocalDateTime.now().minusDays(7).plusMinutes(1)) }) >> 3
+        0 * bookingOutboxRepository._
+    }
+
+    def "the head is read again once subscribers come back"() {
+        given:
+        SseEmitter emitter = Mock()
+        bookingOutboxRepository.findLastChange() >> Optional.empty()
+        bookingOutboxRepository.findChangesAfter(_, _, _) >> []
+        bookingChangeFeed.subscribe(null, emitter)
+        bookingChangeFeed.poll()
+        bookingChangeFeed.subscribers.clear()
+        bookingChangeFeed.poll()
+        bookingChangeFeed.subscribe(null, emitter)
+
+        when:
+        bookingChangeFeed.poll()
+
+        then:
+        1 * bookingOutboxRepository.findLastChange() >> Optional.of(change(8L, 1L, BookingChangeFeed.CREATED))
+        1 * bookingOutboxRepository.findChangesAfter(8L, 1L, 2) >> []
+    }
+
+    def "a subscriber is dropped once its emitter is #completion"() {
+        given:
+        Runnable completionCallback = null
+        Runnable timeoutCallback = null
+        Consumer<Throwable> errorCallback = null
+        SseEmitter emitter = Mock() {
+            onCompletion(_) >> { arguments -> completionCallback = arguments[0] }
+            onTimeout(_) >> { arguments -> timeoutCallback = arguments[0] }
+            onError(_) >> { arguments -> errorCallback = arguments[0] }
+        }
+        bookingChangeFeed.subscribe(null, emitter)
+
+        when:
+        [completed: { completionCallback.run() }, "timed out": { timeoutCallback.run() }, failed: { errorCallback.accept(new IOException()) }][completion]()
+
+        then:
+        bookingChangeFeed.subscribers.isEmpty()
+
+        where:
+        completion << ["completed", "timed out", "failed"]
+    }
+
+    def "subscribing after a position the feed did not hand out throws InvalidCursorException"() {
+        when:
+        bookingChangeFeed.subscribe("not-a-position")
+
+        then:
+        InvalidCursorException exception = thrown()
+        exception.message == "Invalid position: not-a-position"
+        bookingChangeFeed.subscribers.isEmpty()
+    }
+
+    def "subscribing creates an emitter completed after the timeout"() {
+        expect:
+        bookingChangeFeed.subscribe("3-1").timeout == Duration.ofMinutes(30).toMillis()
+    }
+
+    def "the feed reads the outbox on its own thread once signalled, and completes its subscribers when stopped"() {
+        given:
+        PollingConditions conditions = new PollingConditions(timeout: 5)
+        SseEmitter emitter = Mock()
+        bookingOutboxRepository.findLastChange() >> { throw new DataAccessResourceFailureException("Connection refused") } >> Optional.empty()
+        bookingOutboxRepository.findChangesAfter(0L, 0L, 2) >>> [[change(1L, 1L, BookingChangeFeed.CREATED)], []]
+
+        when:
+        bookingChangeFeed.start()
+        bookingChangeFeed.subscribe(null, emitter)
+        bookingChangeFeed.signal()
+
+        then:
+        conditions.eventually {
+            assert bookingChangeFeed.subscribers[0].position()?.encode() == "1-1"
+        }
+
+        when:
+        bookingChangeFeed.stop()
+
+        then:
+        1 * emitter.complete()
+        bookingChangeFeed.subscribers.isEmpty()
+        !bookingChangeFeed.reader.isAlive()
+    }
+
+    def "the feed stops reading when its thread is interrupted"() {
+        when:
+        bookingChangeFeed.start()
+        bookingChangeFeed.reader.interrupt()
+        bookingChangeFeed.reader.join()
+
+        then:
+        !bookingChangeFeed.reader.isAlive()
+    }
+
+    private BookingChangeFeed feed(final Duration heartbeatInterval, final Duration cleanUpInterval) {
+        return new BookingChangeFeed(bookingOutboxRepository, new BookingMetrics(meterRegistry), Duration.ofMillis(50), 2,
+                Duration.ofMinutes(30), heartbeatInterval, Duration.ofDays(7), cleanUpInterval)
+    }
+
+    private static Map<String, String> eventOf(final SseEmitter.SseEventBuilder builder) {
+        return builder.build()*.data.join().readLines()
+                .findAll { it.startsWith("id:") || it.startsWith("event:") }
+                .collectEntries { String line -> [line.substring(0, line.indexOf(":")), line.substring(line.indexOf(":") + 1)] }
+    }
+
+    private static BookingChangeView change(final Long txId, final Long id, final String type) {
+        return [getTxId            : { txId },
+                getId              : { id },
+                getType            : { type },
+                getUuid            : { UUID.randomUUID() },
+                getRoomName        : { "Conference Room" },
+                getUserEmail       : { "user@example.com" },
+                getBookingStartTime: { MONDAY },
+                getBookingEndTime  : { MONDAY.plusHours(1) },
+                getOccurredAt      : { MONDAY.minusDays(1) }] as BookingChangeView
+    }
+}
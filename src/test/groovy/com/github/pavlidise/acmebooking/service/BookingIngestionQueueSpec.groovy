@@ -0,0 +1,276 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.exception.BookingIngestionUnavailableException
+import com.github.pavlidise.acmebooking.exception.OverlappingBookingException
+import com.github.pavlidise.acmebooking.exception.RoomNotFoundException
+import com.github.pavlidise.acmebooking.model.dto.BookingRequestDTO
+import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.dao.DataAccessResourceFailureException
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.time.Duration
+import java.time.LocalDateTime
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+@Timeout(10)
+class BookingIngestionQueueSpec extends Specification {
+
+    private BookingServiceImpl bookingService = Mock()
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    private BookingIngestionQueue bookingIngestionQueue = new BookingIngestionQueue(bookingService, new BookingMetrics(meterRegistry), 1, 10, 200, Duration.ofSeconds(5))
+    @AutoCleanup("shutdownNow")
+    private ExecutorService callers = Executors.newCachedThreadPool()
+
+    def "cleanup"() {
+        bookingIngestionQueue.stop()
+    }
+
+    def "requests waiting in a partition are created as one group, each caller receiving its own outcome"() {
+        given:
+        List<BookingRequestDTO> requestDTOs = (0..2).collect { request(it) }
+        ConfirmedBookingDTO first = confirmed(requestDTOs[0])
+        ConfirmedBookingDTO third = confirmed(requestDTOs[2])
+        1 * bookingService.createBookingGroup(requestDTOs) >>
+                [BookingOutcome.created(first), BookingOutcome.rejected(new RoomNotFoundException("Room with name: Room 1 not found")), BookingOutcome.created(third)]
+        0 * bookingService.createBookingNow(_)
+        List<CompletableFuture<ConfirmedBookingDTO>> results = queueBeforeStart(requestDTOs)
+
+        when:
+        bookingIngestionQueue.start()
+
+        then:
+        results[0].get(5, TimeUnit.SECONDS) == first
+        results[2].get(5, TimeUnit.SECONDS) == third
+
+        when:
+        results[1].get(5, TimeUnit.SECONDS)
+
+        then:
+        ExecutionException exception = thrown()
+        exception.cause instanceof RoomNotFoundException
+        meterRegistry.get(BookingMetrics.INGESTION_GROUP_SIZE).summary().max() == 3
+        meterRegistry.get(BookingMetrics.INGESTION_QUEUE_SIZE).tags("partition", "0").gauge().value() == 0
+    }
+
+    def "requests of a group rejected by the database are created one by one"() {
+        given:
+        List<BookingRequestDTO> requestDTOs = (0..1).collect { request(it) }
+        ConfirmedBookingDTO first = confirmed(requestDTOs[0])
+        1 * bookingService.createBookingGroup(requestDTOs) >> { throw new OverlappingBookingException("A requested room was booked concurrently") }
+        1 * bookingService.createBookingNow(requestDTOs[0]) >> first
+        1 * bookingService.createBookingNow(requestDTOs[1]) >> { throw new OverlappingBookingException("Room: 'Room 1' is already booked") }
+        List<CompletableFuture<ConfirmedBookingDTO>> results = queueBeforeStart(requestDTOs)
+
+        when:
+        bookingIngestionQueue.start()
+
+        then:
+        results[0].get(5, TimeUnit.SECONDS) == first
+
+        when:
+        results[1].get(5, TimeUnit.SECONDS)
+
+        then:
+        ExecutionException exception = thrown()
+        exception.cause instanceof OverlappingBookingException
+    }
+
+    def "requests queued before stopping are still created"() {
+        given:
+        BookingRequestDTO requestDTO = request(0)
+        ConfirmedBookingDTO confirmedBookingDTO = confirmed(requestDTO)
+        1 * bookingService.createBookingGroup([requestDTO]) >> [BookingOutcome.created(confirmedBookingDTO)]
+        List<CompletableFuture<ConfirmedBookingDTO>> results = queueBeforeStart([requestDTO])
+
+        when:
+        bookingIngestionQueue.running = false
+        bookingIngestionQueue.writers[0].start()
+
+        then:
+        results[0].get(5, TimeUnit.SECONDS) == confirmedBookingDTO
+    }
+
+    def "every caller of a failed group receives the failure"() {
+        given:
+        List<BookingRequestDTO> requestDTOs = (0..1).collect { request(it) }
+        DataAccessResourceFailureException failure = new DataAccessResourceFailureException("connection refused")
+        List<CompletableFuture<ConfirmedBookingDTO>> results = queueBeforeStart(requestDTOs)
+
+        when:
+        bookingIngestionQueue.start()
+        List<Throwable> failures = results.collect { result -> thrownBy { result.get(5, TimeUnit.SECONDS) } }
+
+        then:
+        1 * bookingService.createBookingGroup(requestDTOs) >> { throw failure }
+        0 * bookingService.createBookingNow(_)
+        failures.every { it instanceof ExecutionException && it.cause.is(failure) }
+    }
+
+    def "the exception a request was rejected with is thrown to the caller"() {
+        given:
+        BookingRequestDTO requestDTO = request(0)
+        bookingIngestionQueue.start()
+
+        when:
+        bookingIngestionQueue.submit(requestDTO)
+
+        then:
+        1 * bookingService.createBookingGroup([requestDTO]) >> [BookingOutcome.rejected(new OverlappingBookingException("Room: 'Room 0' is already booked"))]
+        thrown(OverlappingBookingException)
+    }
+
+    def "a request not created within the timeout is withdrawn from the queue and refused"() {
+        given:
+        BookingIngestionQueue impatientQueue = new BookingIngestionQueue(bookingService, new BookingMetrics(meterRegistry), 1, 10, 200, Duration.ofMillis(50))
+        impatientQueue.running = true
+
+        when:
+        impatientQueue.submit(request(0))
+
+        then:
+        BookingIngestionUnavailableException exception = thrown()
+        exception.message.contains("could not be confirmed in time")
+        impatientQueue.partitions[0].empty
+        0 * bookingService._
+    }
+
+    def "a request taken by a writer that does not create it within the timeout is refused"() {
+        given:
+        BookingIngestionQueue impatientQueue = new BookingIngestionQueue(bookingService, new BookingMetrics(meterRegistry), 1, 10, 200, Duration.ofMillis(50))
+        impatientQueue.start()
+
+        when:
+        impatientQueue.submit(request(0))
+
+        then:
+        1 * bookingService.createBookingGroup(_) >> { Thread.sleep(200); [] }
+        thrown(BookingIngestionUnavailableException)
+
+        cleanup:
+        impatientQueue.stop()
+    }
+
+    def "a caller interrupted while waiting withdraws its request and is refused"() {
+        given:
+        bookingIngestionQueue.running = true
+        Thread.currentThread().interrupt()
+
+        when:
+        bookingIngestionQueue.submit(request(0))
+
+        then:
+        thrown(BookingIngestionUnavailableException)
+        Thread.interrupted()
+        bookingIngestionQueue.partitions[0].empty
+    }
+
+    def "a request failing with #failure.class.simpleName is thrown to the caller #thrownAs"() {
+        given:
+        bookingIngestionQueue.running = true
+        CompletableFuture<Throwable> waiting = CompletableFuture.supplyAsync({ thrownBy { bookingIngestionQueue.submit(request(0)) } }, callers)
+        waitUntil { bookingIngestionQueue.partitions[0].size() == 1 }
+
+        when:
+        bookingIngestionQueue.partitions[0].poll().result().completeExceptionally(failure)
+        Throwable thrownToCaller = waiting.get(5, TimeUnit.SECONDS)
+
+        then:
+        thrownToCaller.getClass() == thrownClass
+        (thrownToCaller.is(failure) || thrownToCaller.cause.is(failure))
+
+        where:
+        failure                         | thrownAs                         | thrownClass
+        new StackOverflowError()        | "as it is"                       | StackOverflowError
+        new IOException("Broken pipe")  | "wrapped in a runtime exception" | CompletionException
+    }
+
+    def "requests are refused when the queue is not running"() {
+        when:
+        bookingIngestionQueue.submit(request(0))
+
+        then:
+        thrown(BookingIngestionUnavailableException)
+        0 * bookingService._
+    }
+
+    def "requests are refused when their partition is full, and the ones left over when stopping are refused as well"() {
+        given:
+        BookingIngestionQueue smallQueue = new BookingIngestionQueue(bookingService, new BookingMetrics(meterRegistry), 1, 1, 200, Duration.ofSeconds(5))
+        smallQueue.running = true
+        CompletableFuture<ConfirmedBookingDTO> waiting = CompletableFuture.supplyAsync({ smallQueue.submit(request(0)) }, callers)
+        waitUntil { smallQueue.partitions[0].size() == 1 }
+
+        when:
+        smallQueue.submit(request(1))
+
+        then:
+        thrown(BookingIngestionUnavailableException)
+
+        when:
+        smallQueue.stop()
+        waiting.get(5, TimeUnit.SECONDS)
+
+        then:
+        ExecutionException exception = thrown()
+        exception.cause instanceof BookingIngestionUnavailableException
+        0 * bookingService._
+    }
+
+    def "a writer stops when interrupted"() {
+        given:
+        bookingIngestionQueue.start()
+        Thread writer = bookingIngestionQueue.writers[0]
+
+        when:
+        writer.interrupt()
+        writer.join(5000)
+
+        then:
+        !writer.alive
+    }
+
+    /**
+     * Submits the requests while no writer runs yet, so that the first writer to start finds all of them waiting.
+     */
+    private List<CompletableFuture<ConfirmedBookingDTO>> queueBeforeStart(final List<BookingRequestDTO> requestDTOs) {
+        bookingIngestionQueue.running = true
+        List<CompletableFuture<ConfirmedBookingDTO>> results = []
+        requestDTOs.eachWithIndex { BookingRequestDTO requestDTO, int index ->
+            results << CompletableFuture.supplyAsync({ bookingIngestionQueue.submit(requestDTO) }, callers)
+            waitUntil { bookingIngestionQueue.partitions[0].size() == index + 1 }
+        }
+        return results
+    }
+
+    private static void waitUntil(final Closure<Boolean> condition) {
+        while (!condition()) {
+            Thread.sleep(5)
+        }
+    }
+
+    private static Throwable thrownBy(final Closure<?> action) {
+        try {
+            action()
+            return null
+        } catch (Throwable throwable) {
+            return throwable
+        }
+    }
+
+    private static BookingRequestDTO request(final int room) {
+        return new BookingRequestDTO("user@example.com", "Room " + room, LocalDateTime.now().plusDays(1).withNano(0), 2)
+    }
+
+    private static ConfirmedBookingDTO confirmed(final BookingRequestDTO requestDTO) {
+        return new ConfirmedBookingDTO(UUID.randomUUID(), requestDTO.roomName(), requestDTO.userEmail(),
+                requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(requestDTO.numberOfHours()))
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.pavlidise.acmebooking.service
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.dao.CannotAcquireLockException
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.sql.SQLException
+
+class BookingMetricsSpec extends Specification {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    @Subject
+    private final BookingMetrics bookingMetrics = new BookingMetrics(meterRegistry)
+
+    def "countException counts exceptions by their type"() {
+        when:
+        bookingMetrics.countException(new IllegalStateException("first"))
+        bookingMetrics.countException(new IllegalStateException("second"))
+        bookingMetrics.countException(new IllegalArgumentException())
+
+        then:
+        meterRegistry.get(BookingMetrics.EXCEPTIONS).tag("exception", "IllegalStateException").counter().count() == 2
+        meterRegistry.get(BookingMetrics.EXCEPTIONS).tag("exception", "IllegalArgumentException").counter().count() == 1
+        meterRegistry.find(BookingMetrics.SERIALIZATION_FAILURES).counter() == null
+    }
+
+    def "countException counts transactions aborted by the database with SQLState #sqlState as serialization failures"() {
+        when:
+        bookingMetrics.countException(new CannotAcquireLockException("could not execute statement", new SQLException("aborted", sqlState)))
+
+        then:
+        meterRegistry.get(BookingMetrics.EXCEPTIONS).tag("exception", "CannotAcquireLockException").counter().count() == 1
+        meterRegistry.get(BookingMetrics.SERIALIZATION_FAILURES).tag("sqlstate", sqlState).counter().count() == 1
+
+        where:
+        sqlState << ["40001", "40P01"]
+    }
+
+    def "countException does not count other database errors as serialization failures"() {
+        when:
+        bookingMetrics.countException(new CannotAcquireLockException("could not execute statement", new SQLException("lock timeout", "55P03")))
+
+        then:
+        meterRegistry.find(BookingMetrics.SERIALIZATION_FAILURES).counter() == null
+    }
+}
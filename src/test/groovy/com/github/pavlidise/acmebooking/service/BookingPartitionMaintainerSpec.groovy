@@ -0,0 +1,116 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingPartitionRepository
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.dao.CannotAcquireLockException
+import spock.lang.Specification
+import spock.lang.Timeout
+import spock.util.concurrent.PollingConditions
+
+import java.time.Duration
+import java.time.LocalDate
+
+@Timeout(10)
+class BookingPartitionMaintainerSpec extends Specification {
+
+    private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(1)
+
+    private BookingPartitionRepository bookingPartitionRepository = Mock()
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    private LocalDate thisMonth = LocalDate.now().withDayOfMonth(1)
+
+    def "the partitions of the months ahead are created, and every partition is kept without a retention"() {
+        given:
+        BookingPartitionMaintainer maintainer = maintainer(0)
+
+        when:
+        maintainer.maintain()
+
+        then:
+        1 * bookingPartitionRepository.extendPartitions(thisMonth.plusMonths(12), LOCK_TIMEOUT) >> ["booking_p2027_11"]
+        0 * bookingPartitionRepository.detachPartitions(_, _)
+        partitions(BookingPartitionMaintainer.CREATED) == 1
+    }
+
+    def "with a retention, the partitions of the months past it are detached"() {
+        given:
+        BookingPartitionMaintainer maintainer = maintainer(24)
+
+        when:
+        maintainer.maintain()
+
+        then:
+        1 * bookingPartitionRepository.extendPartitions(thisMonth.plusMonths(12), LOCK_TIMEOUT) >> []
+        1 * bookingPartitionRepository.detachPartitions(thisMonth.minusMonths(24), LOCK_TIMEOUT) >> detached
+        partitions(BookingPartitionMaintainer.CREATED) == 0
+        partitions(BookingPartitionMaintainer.DETACHED) == detached.size()
+
+        where:
+        detached << [[], ["booking_p2024_09", "booking_p2024_10"]]
+    }
+
+    def "a run that can not lock the booking table leaves the partitions to the next one"() {
+        given:
+        BookingPartitionMaintainer maintainer = maintainer(24)
+
+        when:
+        maintainer.maintain()
+
+        then:
+        1 * bookingPartitionRepository.extendPartitions(_, _) >> { throw new CannotAcquireLockException("lock timeout") }
+        0 * bookingPartitionRepository.detachPartitions(_, _)
+        noExceptionThrown()
+    }
+
+    def "the partitions are maintained on start and then every maintenance interval until stopped"() {
+        given:
+        PollingConditions conditions = new PollingConditions(timeout: 5)
+        BookingPartitionMaintainer maintainer = maintainer(0)
+        List<LocalDate> runs = []
+        bookingPartitionRepository.extendPartitions(_, _) >> { LocalDate until, Duration lockTimeout -> runs << until; [] }
+
+        when:
+        maintainer.start()
+
+        then:
+        conditions.eventually {
+            assert runs.size() >= 3
+        }
+
+        when:
+        maintainer.stop()
+
+        then:
+        !maintainer.maintainer.alive
+    }
+
+    def "a maintainer stopped during a run finishes it and maintains no more"() {
+        given:
+        PollingConditions conditions = new PollingConditions(timeout: 5)
+        BookingPartitionMaintainer maintainer = maintainer(0)
+        List<LocalDate> runs = []
+        bookingPartitionRepository.extendPartitions(_, _) >> { LocalDate until, Duration lockTimeout ->
+            runs << until
+            maintainer.running = false
+            []
+        }
+
+        when:
+        maintainer.start()
+
+        then:
+        conditions.eventually {
+            assert !maintainer.maintainer.alive
+        }
+        runs.size() == 1
+    }
+
+    private BookingPartitionMaintainer maintainer(final int retentionMonths) {
+        return new BookingPartitionMaintainer(bookingPartitionRepository, new BookingMetrics(meterRegistry), 12, retentionMonths,
+                Duration.ofMillis(10), LOCK_TIMEOUT)
+    }
+
+    private double partitions(final String operation) {
+        return meterRegistry.get(BookingMetrics.PARTITIONS).tag("operation", operation).counter().count()
+    }
+}
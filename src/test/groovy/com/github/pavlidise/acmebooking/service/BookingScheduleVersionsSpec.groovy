@@ -0,0 +1,103 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingScheduleVersionRepository
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.TransactionDefinition
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Duration
+import java.time.LocalDate
+import java.util.function.Supplier
+
+class BookingScheduleVersionsSpec extends Specification {
+
+    private static final LocalDate MONDAY = LocalDate.of(2030, 1, 7)
+
+    private BookingScheduleVersionRepository bookingScheduleVersionRepository = Mock()
+
+    private PlatformTransactionManager transactionManager = Mock()
+
+    private ReplicaRouting replicaRouting = new ReplicaRouting(new BookingMetrics(new SimpleMeterRegistry()), Duration.ofSeconds(1), Duration.ofSeconds(1))
+
+    @Subject
+    private BookingScheduleVersions bookingScheduleVersions = new BookingScheduleVersions(true, true, bookingScheduleVersionRepository, replicaRouting, transactionManager)
+
+    def "the ETag of a schedule carries the room, the date and the version of the schedule"() {
+        when:
+        String eTag = bookingScheduleVersions.eTag(1L, MONDAY)
+
+        then:
+        1 * bookingScheduleVersionRepository.findVersion(1L, MONDAY) >> 42L
+        eTag == "1-2030-01-07-42"
+    }
+
+    def "a schedule whose version the replica replayed is read from the replica, in a read-only transaction reading the version again"() {
+        given:
+        List<Boolean> replicaReads = []
+
+        when:
+        List<String> bookings = bookingScheduleVersions.readFromReplica(1L, MONDAY, {
+            replicaReads << replicaRouting.REPLICA_READ.get()
+            return ["replica"]
+        } as Supplier<List<String>>)
+
+        then:
+        1 * bookingScheduleVersionRepository.findVersion(1L, MONDAY) >> 3L
+
+        then:
+        1 * transactionManager.getTransaction({ TransactionDefinition definition -> definition.readOnly })
+        1 * bookingScheduleVersionRepository.findVersion(1L, MONDAY) >> replicaVersion
+        bookings == ["replica"]
+        replicaReads == [true]
+
+        where:
+        replicaVersion << [3L, 4L]
+    }
+
+    def "a schedule whose version the replica did not replay yet is read from the primary"() {
+        given:
+        List<Boolean> replicaReads = []
+
+        when:
+        List<String> bookings = bookingScheduleVersions.readFromReplica(1L, MONDAY, {
+            replicaReads << replicaRouting.REPLICA_READ.get()
+            return ["primary"]
+        } as Supplier<List<String>>)
+
+        then:
+        2 * bookingScheduleVersionRepository.findVersion(1L, MONDAY) >>> [4L, 3L]
+        bookings == ["primary"]
+        replicaReads == [false]
+    }
+
+    def "without #disabled the versions are not read before reading from the replica"() {
+        given:
+        BookingScheduleVersions versions = new BookingScheduleVersions(enabled, replicaEnabled, bookingScheduleVersionRepository, replicaRouting, transactionManager)
+        List<Boolean> replicaReads = []
+
+        when:
+        List<String> bookings = versions.readFromReplica(1L, MONDAY, {
+            replicaReads << replicaRouting.REPLICA_READ.get()
+            return ["replica"]
+        } as Supplier<List<String>>)
+
+        then:
+        0 * bookingScheduleVersionRepository._
+        0 * transactionManager._
+        bookings == ["replica"]
+        replicaReads == [true]
+
+        where:
+        disabled    | enabled | replicaEnabled
+        "ETags"     | false   | true
+        "a replica" | true    | false
+    }
+
+    def "ETags are enabled unless disabled"() {
+        expect:
+        bookingScheduleVersions.isEnabled()
+        !new BookingScheduleVersions(false, false, bookingScheduleVersionRepository, replicaRouting, transactionManager).isEnabled()
+    }
+}
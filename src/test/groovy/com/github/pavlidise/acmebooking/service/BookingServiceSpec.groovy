@@ -1,31 +1,73 @@
 package com.github.pavlidise.acmebooking.service
 
 import com.github.pavlidise.acmebooking.exception.BookingNotFoundException
+import com.github.pavlidise.acmebooking.exception.InvalidCursorException
 import com.github.pavlidise.acmebooking.exception.OverlappingBookingException
 import com.github.pavlidise.acmebooking.exception.PastBookingDeletionException
 import com.github.pavlidise.acmebooking.exception.RoomNotFoundException
 import com.github.pavlidise.acmebooking.exception.UserNotFoundException
 import com.github.pavlidise.acmebooking.integration.repository.AcmeUserRepository
+import com.github.pavlidise.acmebooking.integration.repository.BookingOutboxRepository
+import com.github.pavlidise.acmebooking.integration.repository.BookingRangeRepository
 import com.github.pavlidise.acmebooking.integration.repository.BookingRepository
+import com.github.pavlidise.acmebooking.integration.repository.BookingScheduleVersionRepository
+import com.github.pavlidise.acmebooking.model.dto.ArchivedBookingDTO
+import com.github.pavlidise.acmebooking.model.dto.BookingBatchResultDTO
+import com.github.pavlidise.acmebooking.model.dto.BookingCursor
 import com.github.pavlidise.acmebooking.model.dto.BookingInquiryDTO
+import com.github.pavlidise.acmebooking.model.dto.BookingIntervalDTO
+import com.github.pavlidise.acmebooking.model.dto.BookingPageDTO
+import com.github.pavlidise.acmebooking.model.dto.BookingRangeInquiryDTO
 import com.github.pavlidise.acmebooking.model.dto.BookingRequestDTO
 import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO
+import com.github.pavlidise.acmebooking.model.dto.RecurrenceFrequency
+import com.github.pavlidise.acmebooking.model.dto.RecurringBookingRequestDTO
 import com.github.pavlidise.acmebooking.model.entity.AcmeUserEntity
 import com.github.pavlidise.acmebooking.model.entity.BookingEntity
 import com.github.pavlidise.acmebooking.model.entity.RoomEntity
+import com.github.pavlidise.acmebooking.model.projection.BookingIntervalView
+import com.github.pavlidise.acmebooking.model.projection.ConfirmedBookingView
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.beans.factory.ObjectProvider
+import org.springframework.dao.CannotAcquireLockException
+import org.springframework.dao.DataIntegrityViolationException
+import org.springframework.transaction.PlatformTransactionManager
 import spock.lang.Specification
 import spock.lang.Subject
+import spock.lang.TempDir
 
+import java.nio.file.Path
+import java.sql.SQLException
+
+import java.time.Duration
 import java.time.LocalDate
 import java.time.LocalDateTime
+import java.util.function.BiConsumer
 
 class BookingServiceSpec extends Specification {
 
     private BookingRepository bookingRepository = Mock()
+    private BookingRangeRepository bookingRangeRepository = Mock()
+    private BookingOutboxRepository bookingOutboxRepository = Mock()
     private RoomCacheService roomCacheService = Mock()
+    private UserCacheService userCacheService = Mock()
     private AcmeUserRepository acmeUserRepository = Mock()
+    private RoomScheduleIndex roomScheduleIndex = Mock()
+    private BookingScheduleVersionRepository bookingScheduleVersionRepository = Mock()
+    private BookingChangeFeed bookingChangeFeed = Mock()
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    private BookingMetrics bookingMetrics = new BookingMetrics(meterRegistry)
+    private ReplicaRouting replicaRouting = new ReplicaRouting(bookingMetrics, Duration.ofSeconds(1), Duration.ofSeconds(1))
+    private BookingScheduleVersions bookingScheduleVersions = new BookingScheduleVersions(true, true, bookingScheduleVersionRepository, replicaRouting, Stub(PlatformTransactionManager))
+    private BookingArchive bookingArchive = new BookingArchive(bookingMetrics, "")
+    private RoomWriteLock roomWriteLock = Mock()
+    private RetryingTransactionTemplate retryingTransactionTemplate = new RetryingTransactionTemplate(Stub(PlatformTransactionManager), bookingMetrics, 3)
+    private ObjectProvider<BookingIngestionQueue> bookingIngestionQueueProvider = Mock()
     @Subject
-    private BookingService bookingService = new BookingServiceImpl(bookingRepository, roomCacheService, acmeUserRepository)
+    private BookingService bookingService = new BookingServiceImpl(bookingRepository, bookingRangeRepository, bookingOutboxRepository, roomCacheService, userCacheService, acmeUserRepository, roomScheduleIndex, bookingScheduleVersions, bookingChangeFeed, replicaRouting, bookingArchive, bookingMetrics, roomWriteLock, retryingTransactionTemplate, bookingIngestionQueueProvider, true)
+
+    @TempDir
+    private Path archiveDirectory
 
     private static RoomEntity roomEntity
     private static AcmeUserEntity acmeUserEntity
@@ -35,21 +77,51 @@ class BookingServiceSpec extends Specification {
         acmeUserEntity = new AcmeUserEntity(userEmail: "user@example.com")
     }
 
-    def "searchBookings completes successfully"() {
+    def "searchBookings issues a single repository query for #bookingCount bookings"() {
         given:
         BookingInquiryDTO inquiryDTO = new BookingInquiryDTO("Conference Room", LocalDate.now())
-        List<BookingEntity> bookingEntities = [
-                new BookingEntity(uuid: UUID.randomUUID(), room: roomEntity, acmeUser: acmeUserEntity, bookingStartTime: LocalDateTime.now(), bookingEndTime: LocalDateTime.now().plusHours(2))
-        ]
+        List<ConfirmedBookingView> confirmedBookingViews = (0..<bookingCount).collect { int position ->
+            confirmedBookingView("user${position}@example.com", inquiryDTO.date().atTime(8, 0).plusMinutes(5 * position))
+        }
 
         when:
         List<ConfirmedBookingDTO> result = bookingService.searchBookings(inquiryDTO)
 
         then:
         1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
-        1 * bookingRepository.searchBookingsByRoomAndDateOrderByBookingStartTimeAsc(1L, inquiryDTO.date()) >> bookingEntities
-        result.size() == 1
-        result[0].roomName() == "Conference Room"
+        1 * bookingRepository.searchBookingsByRoomAndPeriodOrderByBookingStartTimeAsc(1L, inquiryDTO.date().atStartOfDay(), inquiryDTO.date().plusDays(1).atStartOfDay()) >> confirmedBookingViews
+        0 * bookingRepository._
+        0 * userCacheService._
+        0 * acmeUserRepository._
+        result.size() == bookingCount
+        result*.roomName().every { it == "Conference Room" }
+        result*.userEmail() == confirmedBookingViews*.userEmail
+        result*.bookingStartTime() == confirmedBookingViews*.bookingStartTime
+        meterRegistry.get(BookingMetrics.SEARCH_RESULTS).tag("search", "day").summary().totalAmount() == bookingCount
+
+        where:
+        bookingCount << [0, 1, 100]
+    }
+
+    def "searchBookings reads the replica, unless the replica did not replay the version of the schedule the primary has yet"() {
+        given:
+        LocalDate date = LocalDate.of(2030, 1, 7)
+        List<Boolean> replicaReads = []
+        roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        bookingRepository.searchBookingsByRoomAndPeriodOrderByBookingStartTimeAsc(1L, date.atStartOfDay(), date.plusDays(1).atStartOfDay()) >> {
+            replicaReads << ReplicaRouting.REPLICA_READ.get()
+            []
+        }
+
+        bookingScheduleVersionRepository.findVersion(1L, date) >>> [3L, 3L, 4L, 3L]
+
+        when:
+        bookingService.searchBookings(new BookingInquiryDTO("Conference Room", date))
+        bookingService.searchBookings(new BookingInquiryDTO("Conference Room", date))
+
+        then:
+        replicaReads == [true, false]
+        !ReplicaRouting.REPLICA_READ.get()
     }
 
     def "searchBookings throws RoomNotFoundException when room is not found"() {
@@ -64,10 +136,192 @@ class BookingServiceSpec extends Specification {
         thrown(RoomNotFoundException)
     }
 
+    def "getBookingsETag tags the bookings of the room on the date without searching them"() {
+        given:
+        BookingInquiryDTO inquiryDTO = new BookingInquiryDTO("Conference Room", LocalDate.of(2030, 1, 7))
+
+        when:
+        Optional<String> eTag = bookingService.getBookingsETag(inquiryDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * bookingScheduleVersionRepository.findVersion(1L, LocalDate.of(2030, 1, 7)) >> 3L
+        0 * bookingRepository._
+        eTag == Optional.of("1-2030-01-07-3")
+    }
+
+    def "getBookingsETag throws RoomNotFoundException when room is not found"() {
+        when:
+        bookingService.getBookingsETag(new BookingInquiryDTO("Conference Room", LocalDate.now()))
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.empty()
+        thrown(RoomNotFoundException)
+    }
+
+    def "getBookingsETag is empty when ETags of searches are disabled"() {
+        given:
+        BookingService untaggedBookingService = new BookingServiceImpl(bookingRepository, bookingRangeRepository, bookingOutboxRepository, roomCacheService, userCacheService, acmeUserRepository, roomScheduleIndex, new BookingScheduleVersions(false, true, bookingScheduleVersionRepository, replicaRouting, Stub(PlatformTransactionManager)), bookingChangeFeed, replicaRouting, bookingArchive, bookingMetrics, roomWriteLock, retryingTransactionTemplate, bookingIngestionQueueProvider, true)
+
+        expect:
+        untaggedBookingService.getBookingsETag(new BookingInquiryDTO("Conference Room", LocalDate.now())) == Optional.empty()
+    }
+
+    def "searchBookingsPage returns #pageSize of #bookingCount bookings with the cursor of the last one when more follow"() {
+        given:
+        LocalDate today = LocalDate.now()
+        BookingRangeInquiryDTO inquiryDTO = new BookingRangeInquiryDTO("Conference Room", today, today.plusDays(6), null, pageSize)
+        List<BookingCursor> cursors = (0..<bookingCount).collect { new BookingCursor(today.atTime(8, 0).plusHours(it), it as Long) }
+
+        when:
+        BookingPageDTO result = bookingService.searchBookingsPage(inquiryDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * bookingRangeRepository.searchBookingsOfRoom(1L, today.atStartOfDay(), today.plusDays(7).atStartOfDay(), null, pageSize + 1, _) >> {
+            assert ReplicaRouting.REPLICA_READ.get()
+            BiConsumer<BookingCursor, ConfirmedBookingDTO> consumer = it[5]
+            cursors.take(pageSize + 1).each { BookingCursor cursor -> consumer.accept(cursor, confirmedBooking(cursor)) }
+        }
+        result.bookings()*.bookingStartTime() == cursors.take(pageSize)*.bookingStartTime()
+        result.nextCursor() == (expectedNextCursorIndex == null ? null : cursors[expectedNextCursorIndex].encode())
+        meterRegistry.get(BookingMetrics.SEARCH_RESULTS).tag("search", "page").summary().totalAmount() == Math.min(pageSize, bookingCount)
+
+        where:
+        pageSize | bookingCount || expectedNextCursorIndex
+        2        | 5            || 1
+        5        | 5            || null
+        5        | 3            || null
+    }
+
+    def "searchBookingsPage resumes after the cursor of the previous page, with the default page size"() {
+        given:
+        LocalDate today = LocalDate.now()
+        BookingCursor cursor = new BookingCursor(today.atTime(10, 0), 42L)
+        BookingRangeInquiryDTO inquiryDTO = new BookingRangeInquiryDTO("Conference Room", today, today, cursor.encode(), null)
+
+        when:
+        BookingPageDTO result = bookingService.searchBookingsPage(inquiryDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * bookingRangeRepository.searchBookingsOfRoom(1L, today.atStartOfDay(), today.plusDays(1).atStartOfDay(), cursor,
+                BookingRangeInquiryDTO.DEFAULT_PAGE_SIZE + 1, _)
+        result.bookings().isEmpty()
+        result.nextCursor() == null
+    }
+
+    def "searchBookingsPage throws InvalidCursorException for a cursor it did not hand out"() {
+        given:
+        BookingRangeInquiryDTO inquiryDTO = new BookingRangeInquiryDTO("Conference Room", LocalDate.now(), LocalDate.now(), "not-a-cursor", null)
+
+        when:
+        bookingService.searchBookingsPage(inquiryDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        0 * bookingRangeRepository._
+        thrown(InvalidCursorException)
+    }
+
+    def "streamBookings hands over every booking as it is read"() {
+        given:
+        LocalDate today = LocalDate.now()
+        BookingRangeInquiryDTO inquiryDTO = new BookingRangeInquiryDTO("Conference Room", today, today.plusDays(30), null, null)
+        List<BookingCursor> cursors = (0..<3).collect { new BookingCursor(today.atTime(8, 0).plusDays(it), it as Long) }
+        List<ConfirmedBookingDTO> streamed = []
+
+        when:
+        bookingService.streamBookings(inquiryDTO, { streamed << it })
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * bookingRangeRepository.searchBookingsOfRoom(1L, today.atStartOfDay(), today.plusDays(31).atStartOfDay(), null, null, _) >> {
+            assert ReplicaRouting.REPLICA_READ.get()
+            BiConsumer<BookingCursor, ConfirmedBookingDTO> consumer = it[5]
+            cursors.each { BookingCursor cursor -> consumer.accept(cursor, confirmedBooking(cursor)) }
+        }
+        streamed*.bookingStartTime() == cursors*.bookingStartTime()
+        meterRegistry.get(BookingMetrics.SEARCH_RESULTS).tag("search", "stream").summary().totalAmount() == 3
+    }
+
+    def "searchBookings adds the archived bookings of the room on the date, keeping a booking still in the database once"() {
+        given:
+        LocalDate date = LocalDate.of(2020, 3, 2)
+        UUID stillInDatabase = UUID.randomUUID()
+        ConfirmedBookingView confirmedBookingView = [getUuid            : { stillInDatabase },
+                                                     getRoomName        : { "Conference Room" },
+                                                     getUserEmail       : { "user@example.com" },
+                                                     getBookingStartTime: { date.atTime(10, 0) },
+                                                     getBookingEndTime  : { date.atTime(11, 0) }] as ConfirmedBookingView
+        BookingService archivingBookingService = bookingServiceWithArchive([
+                archivedBooking(1L, 1L, date.minusDays(1).atTime(8, 0)),
+                archivedBooking(2L, 1L, date.atTime(8, 0)),
+                archivedBooking(3L, 2L, date.atTime(9, 0)),
+                new ArchivedBookingDTO(4L, stillInDatabase, 1L, "Conference Room", "user@example.com", date.atTime(10, 0), date.atTime(11, 0))])
+
+        when:
+        List<ConfirmedBookingDTO> result = archivingBookingService.searchBookings(new BookingInquiryDTO("Conference Room", date))
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * bookingRepository.searchBookingsByRoomAndPeriodOrderByBookingStartTimeAsc(1L, date.atStartOfDay(), date.plusDays(1).atStartOfDay()) >> [confirmedBookingView]
+        result*.bookingStartTime() == [date.atTime(8, 0), date.atTime(10, 0)]
+        result*.roomName() == ["Conference Room", "Conference Room"]
+        meterRegistry.get(BookingMetrics.SEARCH_RESULTS).tag("search", "day").summary().totalAmount() == 2
+    }
+
+    def "searchBookingsPage merges the archived bookings with the ones of the database in order, up to the page size"() {
+        given:
+        LocalDate date = LocalDate.of(2020, 3, 2)
+        BookingService archivingBookingService = bookingServiceWithArchive([
+                archivedBooking(1L, 1L, date.atTime(8, 0)),
+                archivedBooking(3L, 1L, date.atTime(10, 0)),
+                archivedBooking(5L, 1L, date.atTime(12, 0)),
+                archivedBooking(6L, 1L, date.atTime(13, 0))])
+        List<BookingCursor> cursors = [new BookingCursor(date.atTime(10, 0), 3L), new BookingCursor(date.atTime(11, 0), 4L)]
+
+        when:
+        BookingPageDTO result = archivingBookingService.searchBookingsPage(new BookingRangeInquiryDTO("Conference Room", date, date, null, 3))
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * bookingRangeRepository.searchBookingsOfRoom(1L, date.atStartOfDay(), date.plusDays(1).atStartOfDay(), null, 4, _) >> {
+            BiConsumer<BookingCursor, ConfirmedBookingDTO> consumer = it[5]
+            cursors.each { BookingCursor cursor -> consumer.accept(cursor, confirmedBooking(cursor)) }
+        }
+        result.bookings()*.bookingStartTime() == [date.atTime(8, 0), date.atTime(10, 0), date.atTime(11, 0)]
+        result.nextCursor() == new BookingCursor(date.atTime(11, 0), 4L).encode()
+    }
+
+    def "streamBookings hands over the archived bookings after the cursor, in order with the ones of the database"() {
+        given:
+        LocalDate date = LocalDate.of(2020, 3, 2)
+        BookingService archivingBookingService = bookingServiceWithArchive([
+                archivedBooking(1L, 1L, date.atTime(8, 0)),
+                archivedBooking(3L, 1L, date.atTime(10, 0)),
+                archivedBooking(5L, 1L, date.atTime(12, 0))])
+        BookingCursor after = new BookingCursor(date.atTime(8, 0), 1L)
+        List<ConfirmedBookingDTO> streamed = []
+
+        when:
+        archivingBookingService.streamBookings(new BookingRangeInquiryDTO("Conference Room", date, date, after.encode(), null), { streamed << it })
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * bookingRangeRepository.searchBookingsOfRoom(1L, date.atStartOfDay(), date.plusDays(1).atStartOfDay(), after, null, _) >> {
+            BiConsumer<BookingCursor, ConfirmedBookingDTO> consumer = it[5]
+            [new BookingCursor(date.atTime(11, 0), 4L), new BookingCursor(date.atTime(13, 0), 6L)].each { BookingCursor cursor ->
+                consumer.accept(cursor, confirmedBooking(cursor))
+            }
+        }
+        streamed*.bookingStartTime() == [date.atTime(10, 0), date.atTime(11, 0), date.atTime(12, 0), date.atTime(13, 0)]
+    }
+
     def "createBooking completes successfully"() {
         given:
         BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
-        BookingEntity bookingEntity = new BookingEntity(uuid: UUID.randomUUID(), room: roomEntity, acmeUser: acmeUserEntity, bookingStartTime: requestDTO.bookingStartDateTime(), bookingEndTime: requestDTO.bookingStartDateTime().plusHours(2))
+        BookingEntity bookingEntity = new BookingEntity(id: 7L, uuid: UUID.randomUUID(), room: roomEntity, acmeUser: acmeUserEntity, bookingStartTime: requestDTO.bookingStartDateTime(), bookingEndTime: requestDTO.bookingStartDateTime().plusHours(2))
 
         when:
         ConfirmedBookingDTO result = bookingService.createBooking(requestDTO)
@@ -75,9 +329,137 @@ class BookingServiceSpec extends Specification {
         then:
         1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
         1 * bookingRepository.existsOverlappingBooking(1L, requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2)) >> false
-        1 * acmeUserRepository.findByUserEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        1 * userCacheService.getUserByEmail("user@example.com") >> Optional.of(acmeUserEntity)
         1 * bookingRepository.saveAndFlush(_) >> bookingEntity
+
+        then:
+        1 * bookingOutboxRepository.insertBookingChanges(BookingChangeFeed.CREATED, [7L])
+
+        then:
+        1 * roomScheduleIndex.add(new BookingIntervalDTO(1L, bookingEntity.uuid, bookingEntity.bookingStartTime, bookingEntity.bookingEndTime))
+        1 * bookingChangeFeed.signal()
         result.roomName() == "Conference Room"
+        meterRegistry.get(BookingMetrics.OVERLAP_CHECK).tags("source", "database", "result", "free").timer().count() == 1
+        meterRegistry.get(BookingMetrics.INSERT).tags("operation", "single", "outcome", "created").timer().count() == 1
+    }
+
+    def "createBooking hands the request over to the ingestion queue when enabled"() {
+        given:
+        BookingIngestionQueue bookingIngestionQueue = Mock()
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
+        ConfirmedBookingDTO confirmedBookingDTO = new ConfirmedBookingDTO(UUID.randomUUID(), "Conference Room", "user@example.com",
+                requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2))
+
+        when:
+        ConfirmedBookingDTO result = bookingService.createBooking(requestDTO)
+
+        then:
+        1 * bookingIngestionQueueProvider.getIfAvailable() >> bookingIngestionQueue
+        1 * bookingIngestionQueue.submit(requestDTO) >> confirmedBookingDTO
+        0 * roomCacheService.getRoomByName(_)
+        result == confirmedBookingDTO
+    }
+
+    def "createBooking locks the room for write before checking its availability"() {
+        given:
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
+        BookingEntity bookingEntity = new BookingEntity(uuid: UUID.randomUUID(), room: roomEntity, acmeUser: acmeUserEntity, bookingStartTime: requestDTO.bookingStartDateTime(), bookingEndTime: requestDTO.bookingStartDateTime().plusHours(2))
+
+        when:
+        bookingService.createBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+
+        then:
+        1 * roomWriteLock.lock([1L] as Set)
+
+        then:
+        1 * bookingRepository.existsOverlappingBooking(1L, requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2)) >> false
+        1 * userCacheService.getUserByEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        1 * bookingRepository.saveAndFlush(_) >> bookingEntity
+    }
+
+    def "createBooking is retried when the database aborts it with SQLState #sqlState"() {
+        given:
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
+        BookingEntity bookingEntity = new BookingEntity(uuid: UUID.randomUUID(), room: roomEntity, acmeUser: acmeUserEntity, bookingStartTime: requestDTO.bookingStartDateTime(), bookingEndTime: requestDTO.bookingStartDateTime().plusHours(2))
+
+        when:
+        ConfirmedBookingDTO result = bookingService.createBooking(requestDTO)
+
+        then:
+        2 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        2 * roomWriteLock.lock([1L] as Set)
+        2 * bookingRepository.existsOverlappingBooking(1L, requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2)) >> false
+        2 * userCacheService.getUserByEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        2 * bookingRepository.saveAndFlush(_) >> {
+            throw new CannotAcquireLockException("could not execute statement", new SQLException("could not serialize access", sqlState))
+        } >> bookingEntity
+        1 * roomScheduleIndex.add(_)
+        result.uuid() == bookingEntity.uuid
+        meterRegistry.get(BookingMetrics.RETRIES).tag("sqlstate", sqlState).counter().count() == 1
+
+        where:
+        sqlState << ["40001", "40P01"]
+    }
+
+    def "createBooking checks availability against the room schedule index once loaded"() {
+        given:
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
+        BookingEntity bookingEntity = new BookingEntity(uuid: UUID.randomUUID(), room: roomEntity, acmeUser: acmeUserEntity, bookingStartTime: requestDTO.bookingStartDateTime(), bookingEndTime: requestDTO.bookingStartDateTime().plusHours(2))
+
+        when:
+        ConfirmedBookingDTO result = bookingService.createBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * roomScheduleIndex.isLoaded() >> true
+        1 * roomScheduleIndex.hasOverlap(1L, requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2)) >> false
+        0 * bookingRepository.existsOverlappingBooking(_, _, _)
+        1 * userCacheService.getUserByEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        1 * bookingRepository.saveAndFlush(_) >> bookingEntity
+        result.roomName() == "Conference Room"
+    }
+
+    def "createBooking throws OverlappingBookingException when the database confirms an overlap reported by the room schedule index"() {
+        given:
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
+
+        when:
+        bookingService.createBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * roomScheduleIndex.isLoaded() >> true
+        1 * roomScheduleIndex.hasOverlap(1L, requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2)) >> true
+        1 * bookingRepository.existsOverlappingBooking(1L, requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2)) >> true
+        0 * roomScheduleIndex.removeOverlapping(_, _, _)
+        0 * bookingRepository.saveAndFlush(_)
+        thrown(OverlappingBookingException)
+        meterRegistry.get(BookingMetrics.OVERLAP_CHECK).tags("source", "index", "result", "overlap").timer().count() == 1
+    }
+
+    def "createBooking books the slot of a booking deleted outside of the service, and removes it from the room schedule index"() {
+        given:
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withHour(10).withMinute(0).withSecond(0).withNano(0)
+        RoomScheduleIndex loadedRoomScheduleIndex = new IntervalTreeRoomScheduleIndex(true)
+        loadedRoomScheduleIndex.load([new BookingIntervalDTO(1L, UUID.randomUUID(), start, start.plusHours(2))])
+        BookingService indexedBookingService = new BookingServiceImpl(bookingRepository, bookingRangeRepository, bookingOutboxRepository, roomCacheService, userCacheService, acmeUserRepository, loadedRoomScheduleIndex, bookingScheduleVersions, bookingChangeFeed, replicaRouting, bookingArchive, bookingMetrics, roomWriteLock, retryingTransactionTemplate, bookingIngestionQueueProvider, true)
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", start.plusHours(1), 1)
+
+        when:
+        ConfirmedBookingDTO result = indexedBookingService.createBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * bookingRepository.existsOverlappingBooking(1L, start.plusHours(1), start.plusHours(2)) >> false
+        1 * userCacheService.getUserByEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        1 * bookingRepository.saveAndFlush(_) >> { BookingEntity booking -> booking.uuid = UUID.randomUUID(); booking }
+        result.bookingStartTime() == start.plusHours(1)
+        !loadedRoomScheduleIndex.hasOverlap(1L, start, start.plusMinutes(59))
+        loadedRoomScheduleIndex.hasOverlap(1L, start.plusHours(1), start.plusHours(2))
+        meterRegistry.get(BookingMetrics.OVERLAP_CHECK).tags("source", "index", "result", "free").timer().count() == 1
     }
 
     def "createBooking throws RoomNotFoundException when room is not found"() {
@@ -105,6 +487,63 @@ class BookingServiceSpec extends Specification {
         thrown(OverlappingBookingException)
     }
 
+    def "createBooking skips the overlap pre-check when disabled"() {
+        given:
+        BookingService insertFirstBookingService = new BookingServiceImpl(bookingRepository, bookingRangeRepository, bookingOutboxRepository, roomCacheService, userCacheService, acmeUserRepository, roomScheduleIndex, bookingScheduleVersions, bookingChangeFeed, replicaRouting, bookingArchive, bookingMetrics, roomWriteLock, retryingTransactionTemplate, bookingIngestionQueueProvider, false)
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
+        BookingEntity bookingEntity = new BookingEntity(uuid: UUID.randomUUID(), room: roomEntity, acmeUser: acmeUserEntity, bookingStartTime: requestDTO.bookingStartDateTime(), bookingEndTime: requestDTO.bookingStartDateTime().plusHours(2))
+
+        when:
+        ConfirmedBookingDTO result = insertFirstBookingService.createBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        0 * roomScheduleIndex.hasOverlap(_, _, _)
+        0 * bookingRepository.existsOverlappingBooking(_, _, _)
+        1 * userCacheService.getUserByEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        1 * bookingRepository.saveAndFlush(_) >> bookingEntity
+        result.roomName() == "Conference Room"
+    }
+
+    def "createBooking throws OverlappingBookingException when the database rejects an overlapping booking"() {
+        given:
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
+
+        when:
+        bookingService.createBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * bookingRepository.existsOverlappingBooking(1L, requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2)) >> false
+        1 * userCacheService.getUserByEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        1 * bookingRepository.saveAndFlush(_) >> {
+            throw new DataIntegrityViolationException("could not execute statement",
+                    new SQLException("conflicting key value violates exclusion constraint", "23P01"))
+        }
+        0 * roomScheduleIndex.add(_)
+        thrown(OverlappingBookingException)
+        meterRegistry.get(BookingMetrics.INSERT).tags("operation", "single", "outcome", "overlap").timer().count() == 1
+    }
+
+    def "createBooking rethrows data integrity violations other than overlaps"() {
+        given:
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
+
+        when:
+        bookingService.createBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * bookingRepository.existsOverlappingBooking(1L, requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2)) >> false
+        1 * userCacheService.getUserByEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        1 * bookingRepository.saveAndFlush(_) >> {
+            throw new DataIntegrityViolationException("could not execute statement",
+                    new SQLException("insert or update violates foreign key constraint", "23503"))
+        }
+        thrown(DataIntegrityViolationException)
+        meterRegistry.get(BookingMetrics.INSERT).tags("operation", "single", "outcome", "failed").timer().count() == 1
+    }
+
     def "createBooking should throw UserNotFoundException if user is not found"() {
         given:
         BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
@@ -115,21 +554,328 @@ class BookingServiceSpec extends Specification {
         then:
         1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
         1 * bookingRepository.existsOverlappingBooking(1L, requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2)) >> false
-        1 * acmeUserRepository.findByUserEmail("user@example.com") >> Optional.empty()
+        1 * userCacheService.getUserByEmail("user@example.com") >> Optional.empty()
         thrown(UserNotFoundException)
     }
 
+    def "createBookings resolves rooms, users and existing bookings once and reports rejected requests"() {
+        given:
+        LocalDateTime monday = LocalDateTime.now().plusDays(7).withHour(10).withMinute(0).withSecond(0).withNano(0)
+        List<BookingRequestDTO> requestDTOs = [
+                new BookingRequestDTO("user@example.com", "Conference Room", monday, 2),
+                new BookingRequestDTO("USER@example.com", "Conference Room", monday.plusDays(7), 2),
+                new BookingRequestDTO("user@example.com", "Unknown Room", monday, 2),
+                new BookingRequestDTO("user@example.com", "Conference Room", monday.plusDays(14), 2),
+                new BookingRequestDTO("user@example.com", "Conference Room", monday.plusHours(1), 2),
+                new BookingRequestDTO("unknown@example.com", "Conference Room", monday.plusDays(21), 2)]
+        BookingIntervalView existingBooking = Stub() {
+            getRoomId() >> 1L
+            getUuid() >> UUID.randomUUID()
+            getBookingStartTime() >> monday.plusDays(14)
+            getBookingEndTime() >> monday.plusDays(14).plusHours(1)
+        }
+
+        when:
+        List<BookingBatchResultDTO> results = bookingService.createBookings(requestDTOs)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * roomCacheService.getRoomByName("Unknown Room") >> Optional.empty()
+        1 * roomWriteLock.lock([1L] as Set)
+        1 * acmeUserRepository.findByUserEmailIn(["user@example.com", "USER@example.com", "unknown@example.com"] as Set) >> [acmeUserEntity]
+        1 * roomScheduleIndex.isLoaded() >> false
+        1 * bookingRepository.findBookingIntervalsOverlapping([1L] as Set, monday, monday.plusDays(21).plusHours(2)) >> [existingBooking]
+        1 * bookingRepository.saveAllAndFlush({ it.size() == 2 }) >> { arguments ->
+            arguments[0].eachWithIndex { BookingEntity booking, int index -> booking.id = 100L + index; booking.uuid = UUID.randomUUID() }
+        }
+        1 * bookingOutboxRepository.insertBookingChanges(BookingChangeFeed.CREATED, [100L, 101L])
+        1 * bookingChangeFeed.signal()
+        0 * bookingRepository.existsOverlappingBooking(_, _, _)
+        0 * bookingRepository.saveAndFlush(_)
+
+        results*.index() == [0, 1, 2, 3, 4, 5]
+        results[0].confirmedBooking().bookingStartTime() == monday
+        results[1].confirmedBooking().bookingStartTime() == monday.plusDays(7)
+        results[2].errorMessage() == "Room with name: Unknown Room not found"
+        results[3].errorMessage() == "Room: 'Conference Room' is already booked during the requested period"
+        results[4].errorMessage() == "Room: 'Conference Room' is already booked during the requested period"
+        results[5].errorMessage() == "User with email: unknown@example.com not found"
+    }
+
+    def "createBookings checks availability against the room schedule index once loaded"() {
+        given:
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
+
+        when:
+        List<BookingBatchResultDTO> results = bookingService.createBookings([requestDTO])
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * acmeUserRepository.findByUserEmailIn(["user@example.com"] as Set) >> [acmeUserEntity]
+        1 * roomScheduleIndex.isLoaded() >> true
+        1 * roomScheduleIndex.hasOverlap(1L, requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2)) >> true
+        1 * bookingRepository.existsOverlappingBooking(1L, requestDTO.bookingStartDateTime(), requestDTO.bookingStartDateTime().plusHours(2)) >> true
+        0 * bookingRepository.findBookingIntervalsOverlapping(_, _, _)
+        1 * bookingRepository.saveAllAndFlush([]) >> []
+        0 * bookingOutboxRepository.insertBookingChanges(_, _)
+        results[0].confirmedBooking() == null
+        results[0].errorMessage() == "Room: 'Conference Room' is already booked during the requested period"
+    }
+
+    def "createBookings skips the lookup of existing bookings when none of the requested rooms exists"() {
+        given:
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Unknown Room", LocalDateTime.now().plusDays(1), 2)
+
+        when:
+        List<BookingBatchResultDTO> results = bookingService.createBookings([requestDTO])
+
+        then:
+        1 * roomCacheService.getRoomByName("Unknown Room") >> Optional.empty()
+        1 * acmeUserRepository.findByUserEmailIn(["user@example.com"] as Set) >> [acmeUserEntity]
+        1 * roomScheduleIndex.isLoaded() >> false
+        0 * bookingRepository.findBookingIntervalsOverlapping(_, _, _)
+        1 * bookingRepository.saveAllAndFlush([]) >> []
+        results[0].errorMessage() == "Room with name: Unknown Room not found"
+    }
+
+    def "createBookings throws OverlappingBookingException when the database rejects an overlapping booking"() {
+        given:
+        BookingRequestDTO requestDTO = new BookingRequestDTO("user@example.com", "Conference Room", LocalDateTime.now().plusDays(1), 2)
+
+        when:
+        bookingService.createBookings([requestDTO])
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * acmeUserRepository.findByUserEmailIn(["user@example.com"] as Set) >> [acmeUserEntity]
+        1 * bookingRepository.findBookingIntervalsOverlapping(_, _, _) >> []
+        1 * bookingRepository.saveAllAndFlush(_) >> {
+            throw new DataIntegrityViolationException("could not execute statement",
+                    new SQLException("conflicting key value violates exclusion constraint", "23P01"))
+        }
+        0 * roomScheduleIndex.add(_)
+        thrown(OverlappingBookingException)
+        meterRegistry.get(BookingMetrics.INSERT).tags("operation", "batch", "outcome", "overlap").timer().count() == 1
+    }
+
+    def "createBookingGroup leaves overlaps with existing bookings to the database when the overlap pre-check is disabled"() {
+        given:
+        BookingServiceImpl insertFirstBookingService = new BookingServiceImpl(bookingRepository, bookingRangeRepository, bookingOutboxRepository, roomCacheService, userCacheService, acmeUserRepository, roomScheduleIndex, bookingScheduleVersions, bookingChangeFeed, replicaRouting, bookingArchive, bookingMetrics, roomWriteLock, retryingTransactionTemplate, bookingIngestionQueueProvider, false)
+        LocalDateTime monday = LocalDateTime.now().plusDays(7).withHour(10).withMinute(0).withSecond(0).withNano(0)
+        List<BookingRequestDTO> requestDTOs = [
+                new BookingRequestDTO("user@example.com", "Conference Room", monday, 2),
+                new BookingRequestDTO("user@example.com", "Conference Room", monday.plusHours(1), 2)]
+
+        when:
+        List<BookingOutcome> outcomes = insertFirstBookingService.createBookingGroup(requestDTOs)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * acmeUserRepository.findByUserEmailIn(["user@example.com"] as Set) >> [acmeUserEntity]
+        0 * roomScheduleIndex.isLoaded()
+        0 * roomScheduleIndex.hasOverlap(_, _, _)
+        0 * bookingRepository.findBookingIntervalsOverlapping(_, _, _)
+        0 * bookingRepository.existsOverlappingBooking(_, _, _)
+        1 * bookingRepository.saveAllAndFlush({ it.size() == 1 }) >> { arguments ->
+            arguments[0].each { BookingEntity booking -> booking.uuid = UUID.randomUUID() }
+        }
+        outcomes[0].confirmedBooking().bookingStartTime() == monday
+        outcomes[1].rejection() instanceof OverlappingBookingException
+    }
+
+    def "createBookingGroup reports each request as created or rejected with the exception of a single booking"() {
+        given:
+        LocalDateTime monday = LocalDateTime.now().plusDays(7).withHour(10).withMinute(0).withSecond(0).withNano(0)
+        List<BookingRequestDTO> requestDTOs = [
+                new BookingRequestDTO("user@example.com", "Conference Room", monday, 2),
+                new BookingRequestDTO("user@example.com", "Conference Room", monday.plusHours(1), 2),
+                new BookingRequestDTO("user@example.com", "Unknown Room", monday, 2),
+                new BookingRequestDTO("unknown@example.com", "Conference Room", monday.plusDays(1), 2)]
+
+        when:
+        List<BookingOutcome> outcomes = bookingService.createBookingGroup(requestDTOs)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * roomCacheService.getRoomByName("Unknown Room") >> Optional.empty()
+        1 * roomWriteLock.lock([1L] as Set)
+        1 * acmeUserRepository.findByUserEmailIn(["user@example.com", "unknown@example.com"] as Set) >> [acmeUserEntity]
+        1 * bookingRepository.findBookingIntervalsOverlapping([1L] as Set, _, _) >> []
+        1 * bookingRepository.saveAllAndFlush({ it.size() == 1 }) >> { arguments ->
+            arguments[0].each { BookingEntity booking -> booking.uuid = UUID.randomUUID() }
+        }
+
+        outcomes[0].confirmedBooking().bookingStartTime() == monday
+        outcomes[0].rejection() == null
+        outcomes[1].rejection() instanceof OverlappingBookingException
+        outcomes[2].rejection() instanceof RoomNotFoundException
+        outcomes[3].rejection() instanceof UserNotFoundException
+        outcomes[3].rejection().message == "User with email: unknown@example.com not found"
+        meterRegistry.get(BookingMetrics.INSERT).tags("operation", "group", "outcome", "created").timer().count() == 1
+    }
+
+    def "createRecurringBooking checks the whole series with a single lookup and persists it at once"() {
+        given:
+        LocalDateTime monday = LocalDateTime.now().plusDays(7).withHour(10).withMinute(0).withSecond(0).withNano(0)
+        RecurringBookingRequestDTO requestDTO = new RecurringBookingRequestDTO("user@example.com", "Conference Room",
+                monday, 2, RecurrenceFrequency.WEEKLY, 1, 4, null)
+
+        when:
+        List<ConfirmedBookingDTO> result = bookingService.createRecurringBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * roomWriteLock.lock([1L] as Set)
+        1 * roomScheduleIndex.isLoaded() >> false
+        1 * bookingRepository.findBookingIntervalsOverlapping([1L] as Set, monday, monday.plusWeeks(3).plusHours(2)) >> []
+        1 * userCacheService.getUserByEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        1 * bookingRepository.saveAllAndFlush({ it.size() == 4 }) >> { arguments ->
+            arguments[0].eachWithIndex { BookingEntity booking, int index -> booking.id = 100L + index; booking.uuid = UUID.randomUUID() }
+        }
+        1 * bookingOutboxRepository.insertBookingChanges(BookingChangeFeed.CREATED, [100L, 101L, 102L, 103L])
+        1 * bookingChangeFeed.signal()
+        0 * bookingRepository.existsOverlappingBooking(_, _, _)
+        result*.bookingStartTime() == [monday, monday.plusWeeks(1), monday.plusWeeks(2), monday.plusWeeks(3)]
+        result*.bookingEndTime() == result*.bookingStartTime()*.plusHours(2)
+        meterRegistry.get(BookingMetrics.OVERLAP_CHECK).tags("source", "database", "result", "free").timer().count() == 1
+        meterRegistry.get(BookingMetrics.INSERT).tags("operation", "recurring", "outcome", "created").timer().count() == 1
+    }
+
+    def "createRecurringBooking throws OverlappingBookingException when any occurrence overlaps with an existing booking"() {
+        given:
+        LocalDateTime monday = LocalDateTime.now().plusDays(7).withHour(10).withMinute(0).withSecond(0).withNano(0)
+        RecurringBookingRequestDTO requestDTO = new RecurringBookingRequestDTO("user@example.com", "Conference Room",
+                monday, 2, RecurrenceFrequency.WEEKLY, 1, 4, null)
+
+        when:
+        bookingService.createRecurringBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * roomScheduleIndex.isLoaded() >> true
+        4 * roomScheduleIndex.hasOverlap(1L, _, _) >> { Long roomId, LocalDateTime start, LocalDateTime end -> start == monday.plusWeeks(2) }
+        1 * bookingRepository.existsOverlappingBooking(1L, monday.plusWeeks(2), monday.plusWeeks(2).plusHours(2)) >> true
+        0 * userCacheService.getUserByEmail(_)
+        0 * bookingRepository.saveAllAndFlush(_)
+        OverlappingBookingException exception = thrown()
+        exception.message == "Room: 'Conference Room' is already booked during 1 occurrence(s) of the series, starting at: [${monday.plusWeeks(2)}]"
+        meterRegistry.get(BookingMetrics.OVERLAP_CHECK).tags("source", "index", "result", "overlap").timer().count() == 1
+    }
+
+    def "createRecurringBooking books the occurrences the room schedule index holds bookings of, once the database finds none"() {
+        given:
+        LocalDateTime monday = LocalDateTime.now().plusDays(7).withHour(10).withMinute(0).withSecond(0).withNano(0)
+        RecurringBookingRequestDTO requestDTO = new RecurringBookingRequestDTO("user@example.com", "Conference Room",
+                monday, 2, RecurrenceFrequency.WEEKLY, 1, 2, null)
+
+        when:
+        List<ConfirmedBookingDTO> result = bookingService.createRecurringBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * roomScheduleIndex.isLoaded() >> true
+        2 * roomScheduleIndex.hasOverlap(1L, _, _) >> true
+        2 * bookingRepository.existsOverlappingBooking(1L, _, _) >> false
+        1 * roomScheduleIndex.removeOverlapping(1L, monday, monday.plusHours(2))
+        1 * roomScheduleIndex.removeOverlapping(1L, monday.plusWeeks(1), monday.plusWeeks(1).plusHours(2))
+        1 * userCacheService.getUserByEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        1 * bookingRepository.saveAllAndFlush({ it.size() == 2 }) >> { arguments ->
+            arguments[0].each { BookingEntity booking -> booking.uuid = UUID.randomUUID() }
+        }
+        result*.bookingStartTime() == [monday, monday.plusWeeks(1)]
+    }
+
+    def "createRecurringBooking throws OverlappingBookingException when occurrences of the series overlap with each other"() {
+        given:
+        RecurringBookingRequestDTO requestDTO = new RecurringBookingRequestDTO("user@example.com", "Conference Room",
+                LocalDateTime.now().plusDays(1), 24, RecurrenceFrequency.DAILY, 1, 2, null)
+
+        when:
+        bookingService.createRecurringBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        1 * bookingRepository.findBookingIntervalsOverlapping(_, _, _) >> []
+        0 * bookingRepository.saveAllAndFlush(_)
+        thrown(OverlappingBookingException)
+    }
+
+    def "createRecurringBooking leaves overlaps to the database when the overlap pre-check is disabled"() {
+        given:
+        BookingService insertFirstBookingService = new BookingServiceImpl(bookingRepository, bookingRangeRepository, bookingOutboxRepository, roomCacheService, userCacheService, acmeUserRepository, roomScheduleIndex, bookingScheduleVersions, bookingChangeFeed, replicaRouting, bookingArchive, bookingMetrics, roomWriteLock, retryingTransactionTemplate, bookingIngestionQueueProvider, false)
+        RecurringBookingRequestDTO requestDTO = new RecurringBookingRequestDTO("user@example.com", "Conference Room",
+                LocalDateTime.now().plusDays(1), 2, RecurrenceFrequency.DAILY, 1, 2, null)
+
+        when:
+        insertFirstBookingService.createRecurringBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.of(roomEntity)
+        0 * roomScheduleIndex.hasOverlap(_, _, _)
+        0 * bookingRepository.findBookingIntervalsOverlapping(_, _, _)
+        1 * userCacheService.getUserByEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        1 * bookingRepository.saveAllAndFlush({ it.size() == 2 }) >> {
+            throw new DataIntegrityViolationException("could not execute statement",
+                    new SQLException("conflicting key value violates exclusion constraint", "23P01"))
+        }
+        OverlappingBookingException exception = thrown()
+        exception.message == "Room: 'Conference Room' is already booked during the requested period"
+    }
+
+    def "createRecurringBooking throws RoomNotFoundException when room is not found"() {
+        given:
+        RecurringBookingRequestDTO requestDTO = new RecurringBookingRequestDTO("user@example.com", "Conference Room",
+                LocalDateTime.now().plusDays(1), 2, RecurrenceFrequency.DAILY, 1, 2, null)
+
+        when:
+        bookingService.createRecurringBooking(requestDTO)
+
+        then:
+        1 * roomCacheService.getRoomByName("Conference Room") >> Optional.empty()
+        0 * bookingRepository.saveAllAndFlush(_)
+        thrown(RoomNotFoundException)
+    }
+
     def "deleteBooking completes successfully"() {
         given:
         UUID uuid = UUID.randomUUID()
-        BookingEntity bookingEntity = new BookingEntity(uuid: uuid, bookingStartTime: LocalDateTime.now().plusDays(1), bookingEndTime: LocalDateTime.now().plusDays(1).plusHours(2))
+        BookingEntity bookingEntity = new BookingEntity(id: 7L, uuid: uuid, room: roomEntity, bookingStartTime: LocalDateTime.now().plusDays(1), bookingEndTime: LocalDateTime.now().plusDays(1).plusHours(2))
 
         when:
         bookingService.deleteBooking(uuid)
 
         then:
         1 * bookingRepository.findBookingEntityByUuid(uuid) >> Optional.of(bookingEntity)
+
+        then: "the deletion is recorded while the booking can still be read"
+        1 * bookingOutboxRepository.insertBookingChanges(BookingChangeFeed.DELETED, [7L])
+
+        then:
         1 * bookingRepository.delete(bookingEntity)
+        1 * roomScheduleIndex.remove(new BookingIntervalDTO(1L, uuid, bookingEntity.bookingStartTime, bookingEntity.bookingEndTime))
+        1 * bookingChangeFeed.signal()
+        meterRegistry.get(BookingMetrics.DELETE).timer().count() == 1
+    }
+
+    def "deleteBooking is retried when the database aborts it with SQLState #sqlState"() {
+        given:
+        UUID uuid = UUID.randomUUID()
+        BookingEntity bookingEntity = new BookingEntity(id: 7L, uuid: uuid, room: roomEntity, bookingStartTime: LocalDateTime.now().plusDays(1), bookingEndTime: LocalDateTime.now().plusDays(1).plusHours(2))
+
+        when:
+        bookingService.deleteBooking(uuid)
+
+        then:
+        2 * bookingRepository.findBookingEntityByUuid(uuid) >> Optional.of(bookingEntity)
+        2 * bookingOutboxRepository.insertBookingChanges(BookingChangeFeed.DELETED, [7L])
+        2 * bookingRepository.delete(bookingEntity) >> {
+            throw new CannotAcquireLockException("could not execute statement", new SQLException("could not serialize access", sqlState))
+        } >> {}
+        1 * roomScheduleIndex.remove(new BookingIntervalDTO(1L, uuid, bookingEntity.bookingStartTime, bookingEntity.bookingEndTime))
+        meterRegistry.get(BookingMetrics.RETRIES).tag("sqlstate", sqlState).counter().count() == 1
+
+        where:
+        sqlState << ["40001", "40P01"]
     }
 
     def "deleteBooking throws BookingNotFoundException when booking is not found"() {
@@ -156,4 +902,27 @@ class BookingServiceSpec extends Specification {
         1 * bookingRepository.findBookingEntityByUuid(uuid) >> Optional.of(pastBookingEntity)
         thrown(PastBookingDeletionException)
     }
+
+    private BookingService bookingServiceWithArchive(final List<ArchivedBookingDTO> archivedBookings) {
+        BookingArchive archive = new BookingArchive(bookingMetrics, archiveDirectory.toString())
+        archive.write(archivedBookings)
+        return new BookingServiceImpl(bookingRepository, bookingRangeRepository, bookingOutboxRepository, roomCacheService, userCacheService, acmeUserRepository, roomScheduleIndex, bookingScheduleVersions, bookingChangeFeed, replicaRouting, archive, bookingMetrics, roomWriteLock, retryingTransactionTemplate, bookingIngestionQueueProvider, true)
+    }
+
+    private static ArchivedBookingDTO archivedBooking(final Long id, final Long roomId, final LocalDateTime bookingStartTime) {
+        return new ArchivedBookingDTO(id, UUID.randomUUID(), roomId, roomId == 1L ? "Conference Room" : "Other Room", "user@example.com",
+                bookingStartTime, bookingStartTime.plusHours(1))
+    }
+
+    private static ConfirmedBookingView confirmedBookingView(final String userEmail, final LocalDateTime bookingStartTime) {
+        return [getUuid            : { UUID.randomUUID() },
+                getRoomName        : { "Conference Room" },
+                getUserEmail       : { userEmail },
+                getBookingStartTime: { bookingStartTime },
+                getBookingEndTime  : { bookingStartTime.plusMinutes(5) }] as ConfirmedBookingView
+    }
+
+    private static ConfirmedBookingDTO confirmedBooking(final BookingCursor cursor) {
+        return new ConfirmedBookingDTO(UUID.randomUUID(), "Conference Room", "user@example.com", cursor.bookingStartTime(), cursor.bookingStartTime().plusHours(1))
+    }
 }
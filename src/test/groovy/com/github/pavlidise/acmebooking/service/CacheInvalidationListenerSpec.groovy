@@ -0,0 +1,263 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.github.pavlidise.acmebooking.configuration.CacheConfig
+import com.github.pavlidise.acmebooking.integration.repository.RoomRepository
+import com.github.pavlidise.acmebooking.model.entity.AcmeUserEntity
+import com.github.pavlidise.acmebooking.model.entity.RoomEntity
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.postgresql.PGConnection
+import org.postgresql.PGNotification
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties
+import org.springframework.cache.Cache
+import org.springframework.cache.CacheManager
+import org.springframework.cache.interceptor.SimpleKey
+import spock.lang.Specification
+import spock.lang.Timeout
+import spock.util.concurrent.PollingConditions
+
+import javax.sql.DataSource
+import java.sql.Connection
+import java.sql.SQLException
+import java.sql.Statement
+import java.time.Duration
+import java.util.concurrent.CountDownLatch
+
+@Timeout(10)
+class CacheInvalidationListenerSpec extends Specification {
+
+    private CacheManager cacheManager = new CacheConfig(Mock(RoomRepository)).cacheManager(10, Duration.ofMinutes(10), 10, Duration.ofMinutes(30), 10, Duration.ofMinutes(1), Runnable::run)
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    private DataSource dataSource = Mock()
+    private CacheInvalidationListener cacheInvalidationListener = listener(dataSource, Duration.ofMillis(10))
+    private PollingConditions conditions = new PollingConditions(timeout: 5)
+
+    def "setup"() {
+        rooms().put("Conference Room", new RoomEntity(id: 1L, roomName: "Conference Room"))
+        rooms().put("Meeting Room", new RoomEntity(id: 2L, roomName: "Meeting Room"))
+        users().put("jane@acme.com", new AcmeUserEntity(id: 1L, userEmail: "jane@acme.com"))
+        users().put("john@acme.com", new AcmeUserEntity(id: 2L, userEmail: "john@acme.com"))
+        roomList().put(SimpleKey.EMPTY, rooms().nativeCache.asMap().values().toList())
+    }
+
+    def "a room renamed is evicted by its old and new names, from the rooms and their misses, the other rooms stay cached"() {
+        given:
+        roomMisses().put("Board Room", true)
+
+        when:
+        cacheInvalidationListener.invalidate('{"cache": "rooms", "keys": ["Conference Room", "Board Room"]}')
+
+        then:
+        !cached(rooms(), "Conference Room")
+        !cached(roomMisses(), "Board Room")
+        cached(rooms(), "Meeting Room")
+        !cached(roomList(), SimpleKey.EMPTY)
+        meterRegistry.get(BookingMetrics.CACHE_INVALIDATIONS).tag("cache", CacheConfig.ROOMS_CACHE).counter().count() == 1
+    }
+
+    def "a user changed is evicted by their emails in lower case, from the users and their misses"() {
+        given:
+        userMisses().put("jane@acme.com", true)
+
+        when:
+        cacheInvalidationListener.invalidate('{"cache": "users", "keys": ["Jane@ACME.com", null]}')
+
+        then:
+        !cached(users(), "jane@acme.com")
+        !cached(userMisses(), "jane@acme.com")
+        cached(users(), "john@acme.com")
+        cached(roomList(), SimpleKey.EMPTY)
+        meterRegistry.get(BookingMetrics.CACHE_INVALIDATIONS).tag("cache", CacheConfig.USERS_CACHE).counter().count() == 1
+    }
+
+    def "an invalidation without keys clears the cache and its misses"() {
+        given:
+        roomMisses().put("Board Room", true)
+        userMisses().put("joe@acme.com", true)
+
+        when:
+        cacheInvalidationListener.invalidate('{"cache": "rooms"}')
+
+        then:
+        !cached(rooms(), "Conference Room")
+        !cached(rooms(), "Meeting Room")
+        !cached(roomMisses(), "Board Room")
+        cached(users(), "jane@acme.com")
+        cached(userMisses(), "joe@acme.com")
+    }
+
+    def "an invalidation that can not be read, or of an unknown cache, is ignored"() {
+        when:
+        cacheInvalidationListener.invalidate(payload)
+
+        then:
+        cached(rooms(), "Conference Room")
+        cached(users(), "jane@acme.com")
+        cacheManager.cacheNames.toSorted() == [CacheConfig.ROOM_LIST_CACHE, CacheConfig.ROOM_MISSES_CACHE, CacheConfig.ROOMS_CACHE,
+                                               CacheConfig.USER_MISSES_CACHE, CacheConfig.USERS_CACHE]
+        meterRegistry.find(BookingMetrics.CACHE_INVALIDATIONS).counter() == null
+
+        where:
+        payload << ['not json', '{"cache": "bookings", "keys": ["Conference Room"]}']
+    }
+
+    def "the keys notified on the channel are evicted until the listener is stopped"() {
+        given:
+        List<String> executed = []
+        Statement statement = Mock() {
+            execute(_ as String) >> { String sql -> executed << sql; false }
+        }
+        PGConnection pgConnection = Mock() {
+            getNotifications(500) >>> [[notification('{"cache": "rooms", "keys": ["Conference Room"]}')] as PGNotification[], null]
+        }
+        Connection connection = Mock() {
+            createStatement() >> statement
+            unwrap(PGConnection) >> pgConnection
+        }
+        dataSource.getConnection() >> connection
+
+        when:
+        cacheInvalidationListener.start()
+
+        then:
+        conditions.eventually {
+            assert !cached(rooms(), "Conference Room")
+        }
+        executed == ["LISTEN acme_booking_cache_invalidation"]
+        cached(rooms(), "Meeting Room")
+        cached(users(), "jane@acme.com")
+
+        when:
+        cacheInvalidationListener.stop()
+
+        then:
+        1 * statement.close()
+        1 * connection.close()
+        !cacheInvalidationListener.listener.alive
+    }
+
+    def "both caches are cleared once listening again after the connection was lost, as notifications may have been missed"() {
+        given:
+        roomMisses().put("Board Room", true)
+        userMisses().put("joe@acme.com", true)
+        PGConnection lostConnection = Mock() {
+            getNotifications(500) >> { throw new SQLException("An I/O error occurred while sending to the backend.") }
+        }
+        PGConnection pgConnection = Mock() {
+            getNotifications(500) >> null
+        }
+        dataSource.getConnection() >>> [connection(lostConnection), connection(pgConnection)]
+
+        when:
+        cacheInvalidationListener.start()
+
+        then:
+        conditions.eventually {
+            assert !cached(rooms(), "Meeting Room")
+            assert !cached(roomList(), SimpleKey.EMPTY)
+            assert !cached(users(), "jane@acme.com")
+            assert !cached(roomMisses(), "Board Room")
+            assert !cached(userMisses(), "joe@acme.com")
+        }
+
+        cleanup:
+        cacheInvalidationListener.stop()
+    }
+
+    def "a listener stopped while its connection is failing does not reconnect"() {
+        given:
+        CacheInvalidationListener listener = listener(dataSource, Duration.ofHours(1))
+        CountDownLatch listening = new CountDownLatch(1)
+        PGConnection pgConnection = Mock() {
+            getNotifications(500) >> {
+                listening.countDown()
+                while (listener.running) {
+                    Thread.onSpinWait()
+                }
+                throw new SQLException("This connection has been closed.")
+            }
+        }
+        dataSource.getConnection() >> connection(pgConnection)
+
+        when:
+        listener.start()
+        listening.await()
+        listener.stop()
+
+        then:
+        !listener.listener.alive
+        cached(rooms(), "Meeting Room")
+    }
+
+    def "a listener stopped while waiting to reconnect stops right away"() {
+        given:
+        CacheInvalidationListener listener = listener(dataSource, Duration.ofHours(1))
+        dataSource.getConnection() >> { throw new SQLException("Connection refused") }
+
+        when:
+        listener.start()
+        conditions.eventually {
+            assert listener.listener.state == Thread.State.TIMED_WAITING
+        }
+        listener.stop()
+
+        then:
+        !listener.listener.alive
+    }
+
+    def "the listener connects to the database of the application, outside its connection pool"() {
+        given:
+        DataSourceProperties dataSourceProperties = new DataSourceProperties(url: "jdbc:postgresql://localhost:5432/acme", username: "acme", password: "secret")
+
+        when:
+        CacheInvalidationListener listener = new CacheInvalidationListener(dataSourceProperties, cacheManager, new ObjectMapper(),
+                new BookingMetrics(meterRegistry), Duration.ofSeconds(5))
+
+        then:
+        listener.dataSource.url == "jdbc:postgresql://localhost:5432/acme"
+        listener.dataSource.username == "acme"
+        listener.reconnectIntervalMillis == 5000
+    }
+
+    private CacheInvalidationListener listener(final DataSource dataSource, final Duration reconnectInterval) {
+        return new CacheInvalidationListener(dataSource, cacheManager, new ObjectMapper(), new BookingMetrics(meterRegistry), reconnectInterval)
+    }
+
+    private Connection connection(final PGConnection pgConnection) {
+        return Mock(Connection) {
+            createStatement() >> Mock(Statement)
+            unwrap(PGConnection) >> pgConnection
+        }
+    }
+
+    private PGNotification notification(final String payload) {
+        return Mock(PGNotification) {
+            getName() >> CacheInvalidationListener.CHANNEL
+            getParameter() >> payload
+        }
+    }
+
+    private static boolean cached(final Cache cache, final Object key) {
+        return cache.nativeCache.asMap().containsKey(key)
+    }
+
+    private Cache rooms() {
+        return cacheManager.getCache(CacheConfig.ROOMS_CACHE)
+    }
+
+    private Cache roomList() {
+        return cacheManager.getCache(CacheConfig.ROOM_LIST_CACHE)
+    }
+
+    private Cache users() {
+        return cacheManager.getCache(CacheConfig.USERS_CACHE)
+    }
+
+    private Cache roomMisses() {
+        return cacheManager.getCache(CacheConfig.ROOM_MISSES_CACHE)
+    }
+
+    private Cache userMisses() {
+        return cacheManager.getCache(CacheConfig.USER_MISSES_CACHE)
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.model.dto.BookingIntervalDTO
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Duration
+import java.time.LocalDate
+import java.time.LocalDateTime
+
+class HourlyBitmapRoomScheduleIndexSpec extends Specification {
+
+    @Subject
+    private RoomScheduleIndex roomScheduleIndex = new HourlyBitmapRoomScheduleIndex(true, Duration.ofDays(366))
+
+    private static LocalDateTime tenOClock = LocalDate.now().plusDays(30).atTime(10, 0)
+    private static BookingIntervalDTO morningBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock, tenOClock.plusHours(2))
+
+    def "index is not loaded until populated"() {
+        expect:
+        !roomScheduleIndex.isLoaded()
+
+        when:
+        roomScheduleIndex.load([morningBooking])
+
+        then:
+        roomScheduleIndex.isLoaded()
+    }
+
+    def "disabled index ignores bookings and never reports itself as loaded"() {
+        given:
+        RoomScheduleIndex disabledIndex = new HourlyBitmapRoomScheduleIndex(false, Duration.ofDays(366))
+
+        when:
+        disabledIndex.load([morningBooking])
+        disabledIndex.add(morningBooking)
+        disabledIndex.remove(morningBooking)
+
+        then:
+        !disabledIndex.isLoaded()
+        !disabledIndex.hasOverlap(1L, tenOClock, tenOClock.plusHours(1))
+    }
+
+    def "hasOverlap follows the inclusive overlap semantics of the repository"() {
+        given:
+        roomScheduleIndex.load([morningBooking])
+
+        expect:
+        roomScheduleIndex.hasOverlap(roomId, tenOClock.plusMinutes(startOffset), tenOClock.plusMinutes(endOffset)) == overlapping
+
+        where:
+        roomId | startOffset | endOffset || overlapping
+        1L     | -120        | -1        || false
+        1L     | -120        | 0         || true
+        1L     | 30          | 60        || true
+        1L     | -60         | 180       || true
+        1L     | 120         | 180       || true
+        1L     | 121         | 180       || false
+        2L     | 0           | 120       || false
+    }
+
+    def "hasOverlap answers the same as the interval tree for bookings spanning several words of the bitmap"() {
+        given:
+        RoomScheduleIndex intervalTree = new IntervalTreeRoomScheduleIndex(true)
+        List<BookingIntervalDTO> bookings = [
+                new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusDays(3), tenOClock.plusDays(5)),
+                new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusDays(9).plusHours(1), tenOClock.plusDays(9).plusHours(2)),
+                new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.minusDays(10), tenOClock.minusDays(10).plusHours(3))]
+        roomScheduleIndex.load(bookings)
+        intervalTree.load(bookings)
+
+        expect:
+        (-15 * 24..12 * 24).every { int hourOffset ->
+            LocalDateTime start = tenOClock.plusHours(hourOffset).plusMinutes(30)
+            [start.plusMinutes(30), start.plusHours(1), start.plusHours(70)].every { LocalDateTime end ->
+                roomScheduleIndex.hasOverlap(1L, start, end) == intervalTree.hasOverlap(1L, start, end)
+            }
+        }
+    }
+
+    def "bookings not on the hour are kept apart and still cause overlaps"() {
+        given:
+        BookingIntervalDTO offHourBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusMinutes(15), tenOClock.plusMinutes(75))
+        roomScheduleIndex.load([offHourBooking, new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusHours(8), tenOClock.plusHours(9))])
+
+        expect:
+        roomScheduleIndex.hasOverlap(1L, tenOClock.plusMinutes(75), tenOClock.plusHours(2))
+        !roomScheduleIndex.hasOverlap(1L, tenOClock.plusMinutes(76), tenOClock.plusHours(2))
+
+        when:
+        roomScheduleIndex.remove(offHourBooking)
+
+        then:
+        !roomScheduleIndex.hasOverlap(1L, tenOClock, tenOClock.plusHours(2))
+    }
+
+    def "a booking is kept apart unless both its start and its end are on the hour"() {
+        given:
+        BookingIntervalDTO booking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusSeconds(startOffset), tenOClock.plusHours(1).plusNanos(endOffset))
+        roomScheduleIndex.load([booking])
+
+        expect:
+        roomScheduleIndex.hasOverlap(1L, tenOClock.plusHours(1).plusNanos(endOffset), tenOClock.plusHours(2))
+        !roomScheduleIndex.hasOverlap(1L, tenOClock.plusHours(1).plusNanos(endOffset + 1), tenOClock.plusHours(2))
+
+        where:
+        startOffset | endOffset
+        1           | 0
+        0           | 1
+    }
+
+    def "removed bookings no longer cause overlaps, while the other hours stay booked"() {
+        given:
+        BookingIntervalDTO afternoonBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusHours(4), tenOClock.plusHours(5))
+        roomScheduleIndex.load([morningBooking, afternoonBooking])
+
+        when:
+        roomScheduleIndex.remove(morningBooking)
+        roomScheduleIndex.remove(new BookingIntervalDTO(2L, UUID.randomUUID(), tenOClock, tenOClock.plusHours(2)))
+
+        then:
+        !roomScheduleIndex.hasOverlap(1L, tenOClock, tenOClock.plusHours(3).plusMinutes(59))
+        roomScheduleIndex.hasOverlap(1L, tenOClock, tenOClock.plusHours(4))
+    }
+
+    def "removeOverlapping clears the hours touching the period, on the hour or not, and no other"() {
+        given:
+        BookingIntervalDTO offHourBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusMinutes(150), tenOClock.plusMinutes(170))
+        BookingIntervalDTO afternoonBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusHours(4), tenOClock.plusHours(5))
+        roomScheduleIndex.load([morningBooking, offHourBooking, afternoonBooking])
+
+        when:
+        roomScheduleIndex.removeOverlapping(1L, tenOClock.plusMinutes(30), tenOClock.plusMinutes(160))
+        roomScheduleIndex.removeOverlapping(2L, tenOClock, tenOClock.plusHours(5))
+
+        then:
+        !roomScheduleIndex.hasOverlap(1L, tenOClock.minusMinutes(59), tenOClock.plusMinutes(239))
+        roomScheduleIndex.hasOverlap(1L, tenOClock, tenOClock.plusHours(4))
+    }
+
+    def "bookings before and long after the first one grow the bitmap of the room"() {
+        given:
+        roomScheduleIndex.load([morningBooking])
+
+        when:
+        roomScheduleIndex.add(new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.minusDays(20), tenOClock.minusDays(20).plusHours(1)))
+        roomScheduleIndex.add(new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusDays(300), tenOClock.plusDays(300).plusHours(1)))
+        roomScheduleIndex.add(new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusDays(1), tenOClock.plusDays(1)))
+
+        then:
+        roomScheduleIndex.hasOverlap(1L, tenOClock.minusDays(20), tenOClock.minusDays(20))
+        roomScheduleIndex.hasOverlap(1L, tenOClock, tenOClock)
+        roomScheduleIndex.hasOverlap(1L, tenOClock.plusDays(300).plusMinutes(30), tenOClock.plusDays(300).plusMinutes(45))
+        !roomScheduleIndex.hasOverlap(1L, tenOClock.plusDays(1).plusMinutes(1), tenOClock.plusDays(1).plusMinutes(2))
+        !roomScheduleIndex.hasOverlap(1L, tenOClock.plusDays(301), tenOClock.plusDays(301).plusHours(1))
+        roomScheduleIndex.hoursByRoom.get(1L).sizeInBytes() < 2048
+    }
+
+    def "a booking #description is kept by the interval tree, leaving the bitmap of the room bounded by the horizon"() {
+        given:
+        BookingIntervalDTO booking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusYears(startYears), tenOClock.plusYears(startYears).plusHours(hours))
+        roomScheduleIndex.load([morningBooking])
+
+        when:
+        roomScheduleIndex.add(booking)
+
+        then:
+        roomScheduleIndex.hasOverlap(1L, booking.bookingEndTime(), booking.bookingEndTime())
+        roomScheduleIndex.hasOverlap(1L, tenOClock, tenOClock)
+        roomScheduleIndex.hoursByRoom.get(1L).sizeInBytes() == Long.BYTES
+
+        when:
+        roomScheduleIndex.remove(booking)
+
+        then:
+        !roomScheduleIndex.hasOverlap(1L, booking.bookingEndTime(), booking.bookingEndTime())
+
+        where:
+        description                   | startYears | hours
+        "years ahead"                 | 5          | 1
+        "lasting for millennia"       | 0          | Integer.MAX_VALUE
+    }
+
+    def "a booking kept by the interval tree beyond the horizon is removed once the horizon caught up with it"() {
+        given:
+        BookingIntervalDTO booking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock, tenOClock.plusHours(2))
+        RoomScheduleIndex shortSightedIndex = new HourlyBitmapRoomScheduleIndex(true, Duration.ofDays(7))
+        shortSightedIndex.load([booking])
+        shortSightedIndex.hoursByRoom.put(1L, new HourlyBitmapRoomScheduleIndex.RoomHours())
+
+        when:
+        shortSightedIndex.remove(booking)
+
+        then:
+        !shortSightedIndex.hasOverlap(1L, tenOClock, tenOClock.plusHours(2))
+    }
+
+    def "the hours past are trimmed from the bitmap, keeping the hours from the given one on"() {
+        given:
+        HourlyBitmapRoomScheduleIndex.RoomHours roomHours = new HourlyBitmapRoomScheduleIndex.RoomHours()
+        roomHours.set(10, 1000, true)
+
+        when:
+        roomHours.trimBefore(640)
+        roomHours.trimBefore(600)
+
+        then:
+        roomHours.sizeInBytes() == 6 * Long.BYTES
+        !roomHours.anySet(0, 639)
+        roomHours.anySet(640, 640)
+        roomHours.anySet(999, 999)
+
+        when:
+        roomHours.trimBefore(2000)
+        roomHours.set(2100, 2101, true)
+
+        then:
+        roomHours.sizeInBytes() == Long.BYTES
+        roomHours.anySet(2100, 2100)
+        !roomHours.anySet(0, 2099)
+    }
+
+    def "a year of hourly bookings of a room takes a little over 1 KB"() {
+        given:
+        HourlyBitmapRoomScheduleIndex.RoomHours roomHours = new HourlyBitmapRoomScheduleIndex.RoomHours()
+
+        when:
+        (0..<365).each { long day -> roomHours.set(day * 24 + 9, day * 24 + 17, true) }
+
+        then:
+        roomHours.sizeInBytes() < 2048
+        roomHours.anySet(364 * 24 + 16, 364 * 24 + 16)
+        !roomHours.anySet(364 * 24 + 17, 365 * 24 + 8)
+    }
+}
@@ -0,0 +1,195 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.model.dto.BookingIntervalDTO
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Duration
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.temporal.ChronoUnit
+import java.util.concurrent.ConcurrentSkipListMap
+
+class IntervalTreeRoomScheduleIndexSpec extends Specification {
+
+    @Subject
+    private RoomScheduleIndex roomScheduleIndex = new IntervalTreeRoomScheduleIndex(true)
+
+    private static LocalDateTime tenOClock = LocalDateTime.of(2030, 1, 7, 10, 0)
+    private static BookingIntervalDTO morningBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock, tenOClock.plusHours(2))
+
+    def "index is not loaded until populated"() {
+        expect:
+        !roomScheduleIndex.isLoaded()
+
+        when:
+        roomScheduleIndex.load([morningBooking])
+
+        then:
+        roomScheduleIndex.isLoaded()
+    }
+
+    def "disabled index never reports itself as loaded"() {
+        given:
+        RoomScheduleIndex disabledIndex = new IntervalTreeRoomScheduleIndex(false)
+
+        when:
+        disabledIndex.load([morningBooking])
+
+        then:
+        !disabledIndex.isLoaded()
+        !disabledIndex.hasOverlap(1L, tenOClock, tenOClock.plusHours(1))
+    }
+
+    def "disabled index ignores added and removed bookings"() {
+        given:
+        RoomScheduleIndex disabledIndex = new IntervalTreeRoomScheduleIndex(false)
+
+        when:
+        disabledIndex.add(morningBooking)
+        disabledIndex.remove(morningBooking)
+
+        then:
+        !disabledIndex.hasOverlap(1L, tenOClock, tenOClock.plusHours(1))
+    }
+
+    def "hasOverlap follows the inclusive overlap semantics of the repository"() {
+        given:
+        roomScheduleIndex.load([morningBooking])
+
+        expect:
+        roomScheduleIndex.hasOverlap(roomId, tenOClock.plusMinutes(startOffset), tenOClock.plusMinutes(endOffset)) == overlapping
+
+        where:
+        roomId | startOffset | endOffset || overlapping
+        1L     | -120        | -1        || false
+        1L     | -120        | 0         || true
+        1L     | 30          | 60        || true
+        1L     | -60         | 180       || true
+        1L     | 120         | 180       || true
+        1L     | 121         | 180       || false
+        2L     | 0           | 120       || false
+    }
+
+    def "hasOverlap finds the booking starting closest before the requested period"() {
+        given:
+        BookingIntervalDTO afternoonBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusHours(4), tenOClock.plusHours(5))
+        roomScheduleIndex.load([morningBooking, afternoonBooking])
+
+        expect:
+        !roomScheduleIndex.hasOverlap(1L, tenOClock.plusHours(3), tenOClock.plusHours(3).plusMinutes(30))
+        roomScheduleIndex.hasOverlap(1L, tenOClock.plusHours(3), tenOClock.plusHours(4))
+        roomScheduleIndex.hasOverlap(1L, tenOClock.plusHours(5), tenOClock.plusHours(6))
+    }
+
+    def "removed bookings no longer cause overlaps"() {
+        given:
+        roomScheduleIndex.load([morningBooking])
+
+        when:
+        roomScheduleIndex.remove(morningBooking)
+
+        then:
+        !roomScheduleIndex.hasOverlap(1L, tenOClock, tenOClock.plusHours(2))
+    }
+
+    def "removeOverlapping removes every booking touching the period, and no other"() {
+        given:
+        BookingIntervalDTO afternoonBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusHours(3), tenOClock.plusHours(4))
+        BookingIntervalDTO eveningBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock.plusHours(5), tenOClock.plusHours(6))
+        roomScheduleIndex.load([morningBooking, afternoonBooking, eveningBooking])
+
+        when:
+        roomScheduleIndex.removeOverlapping(1L, tenOClock.plusHours(1), tenOClock.plusHours(3))
+        roomScheduleIndex.removeOverlapping(1L, tenOClock.plusHours(7), tenOClock.plusHours(8))
+        roomScheduleIndex.removeOverlapping(2L, tenOClock, tenOClock.plusHours(6))
+
+        then:
+        !roomScheduleIndex.hasOverlap(1L, tenOClock, tenOClock.plusMinutes(299))
+        roomScheduleIndex.hasOverlap(1L, tenOClock, tenOClock.plusHours(5))
+    }
+
+    def "remove ignores a different booking with the same start time"() {
+        given:
+        roomScheduleIndex.load([morningBooking])
+
+        when:
+        roomScheduleIndex.remove(new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock, tenOClock.plusHours(2)))
+        roomScheduleIndex.remove(new BookingIntervalDTO(2L, UUID.randomUUID(), tenOClock, tenOClock.plusHours(2)))
+
+        then:
+        roomScheduleIndex.hasOverlap(1L, tenOClock, tenOClock.plusHours(2))
+    }
+
+    def "add keeps the longest booking when two bookings start at the same time"() {
+        given:
+        roomScheduleIndex.load([morningBooking])
+
+        when:
+        roomScheduleIndex.add(new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock, tenOClock.plusHours(1)))
+
+        then:
+        roomScheduleIndex.hasOverlap(1L, tenOClock.plusMinutes(90), tenOClock.plusHours(3))
+
+        when:
+        roomScheduleIndex.add(new BookingIntervalDTO(1L, UUID.randomUUID(), tenOClock, tenOClock.plusHours(3)))
+
+        then:
+        roomScheduleIndex.hasOverlap(1L, tenOClock.plusMinutes(150), tenOClock.plusHours(4))
+    }
+
+    def "the bookings ended before the current hour are pruned from the schedule of the room as bookings are added, the ongoing ones kept"() {
+        given:
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+        BookingIntervalDTO endedBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), currentHour.minusDays(2), currentHour.minusDays(2).plusHours(1))
+        BookingIntervalDTO ongoingBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), currentHour.minusHours(1), currentHour.plusHours(2))
+        BookingIntervalDTO nextBooking = new BookingIntervalDTO(1L, UUID.randomUUID(), currentHour.plusDays(1), currentHour.plusDays(1).plusHours(1))
+        IntervalTreeRoomScheduleIndex boundedIndex = new IntervalTreeRoomScheduleIndex(true, Duration.ofDays(366))
+        boundedIndex.schedulesByRoom.put(1L, new ConcurrentSkipListMap([(endedBooking.bookingStartTime()): endedBooking, (ongoingBooking.bookingStartTime()): ongoingBooking]))
+
+        when:
+        boundedIndex.add(nextBooking)
+
+        then:
+        boundedIndex.schedulesByRoom.get(1L).values() as List == [ongoingBooking, nextBooking]
+    }
+
+    def "a booking ended before the current hour, or starting beyond the horizon, is not kept"() {
+        given:
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS)
+        IntervalTreeRoomScheduleIndex shortSightedIndex = new IntervalTreeRoomScheduleIndex(true, Duration.ofDays(7))
+
+        when:
+        shortSightedIndex.load([
+                new BookingIntervalDTO(1L, UUID.randomUUID(), currentHour.minusHours(3), currentHour.minusHours(2)),
+                new BookingIntervalDTO(1L, UUID.randomUUID(), currentHour.plusDays(8), currentHour.plusDays(8).plusHours(1))])
+
+        then:
+        shortSightedIndex.isLoaded()
+        shortSightedIndex.schedulesByRoom.isEmpty()
+    }
+
+    def "a period ending beyond the horizon is reported as overlapping, for the database to tell"() {
+        given:
+        LocalDateTime start = LocalDate.now().plusDays(5).atTime(10, 0)
+        RoomScheduleIndex shortSightedIndex = new IntervalTreeRoomScheduleIndex(true, Duration.ofDays(7))
+        shortSightedIndex.load([])
+
+        expect:
+        !shortSightedIndex.hasOverlap(1L, start, start.plusHours(2))
+        shortSightedIndex.hasOverlap(1L, start, start.plusDays(3))
+        shortSightedIndex.hasOverlap(1L, start.plusDays(3), start.plusDays(3).plusHours(2))
+    }
+
+    def "an index without a horizon keeps bookings however far ahead they start"() {
+        given:
+        LocalDateTime farAhead = LocalDate.now().plusYears(50).atTime(10, 0)
+
+        when:
+        roomScheduleIndex.add(new BookingIntervalDTO(1L, UUID.randomUUID(), farAhead, farAhead.plusHours(2)))
+
+        then:
+        roomScheduleIndex.hasOverlap(1L, farAhead.plusHours(1), farAhead.plusHours(3))
+        !roomScheduleIndex.hasOverlap(1L, farAhead.plusHours(3), farAhead.plusHours(4))
+    }
+}
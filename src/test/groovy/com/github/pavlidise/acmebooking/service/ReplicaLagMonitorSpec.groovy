@@ -0,0 +1,96 @@
+package com.github.pavlidise.acmebooking.service
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.dao.DataAccessResourceFailureException
+import org.springframework.jdbc.core.JdbcTemplate
+import spock.lang.Specification
+import spock.lang.Timeout
+import spock.util.concurrent.PollingConditions
+
+import javax.sql.DataSource
+import java.time.Duration
+
+@Timeout(10)
+class ReplicaLagMonitorSpec extends Specification {
+
+    private JdbcTemplate replicaJdbcTemplate = Mock()
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    private BookingMetrics bookingMetrics = new BookingMetrics(meterRegistry)
+    private ReplicaRouting replicaRouting = new ReplicaRouting(bookingMetrics, Duration.ofSeconds(1), Duration.ofSeconds(1))
+    private ReplicaLagMonitor replicaLagMonitor = new ReplicaLagMonitor(replicaJdbcTemplate, replicaRouting, bookingMetrics,
+            Duration.ofSeconds(1), Duration.ofMillis(10))
+
+    def "the replica is read while it lags by at most the max lag, and its lag is published: #description"() {
+        when:
+        replicaLagMonitor.check()
+
+        then:
+        1 * replicaJdbcTemplate.queryForMap(ReplicaLagMonitor.STATUS_QUERY) >> status(inRecovery, true, replayed, replayAge)
+        replicaRouting.replicaFresh == fresh
+        meterRegistry.get(BookingMetrics.REPLICA_LAG).gauge().value() == lag
+
+        where:
+        description                           | inRecovery | replayed | replayAge || lag  | fresh
+        "not a standby"                       | false      | null     | null      || 0.0d | true
+        "a standby that replayed all its WAL" | true       | true     | 60.0d     || 0.0d | true
+        "a standby behind by the max lag"     | true       | false    | 1.0d      || 1.0d | true
+        "a standby behind by more"            | true       | false    | 1.5d      || 1.5d | false
+    }
+
+    def "the replica is not read while its lag is unknown or can not be checked: #description"() {
+        given:
+        replicaRouting.setReplicaFresh(true)
+
+        when:
+        replicaLagMonitor.check()
+
+        then:
+        1 * replicaJdbcTemplate.queryForMap(ReplicaLagMonitor.STATUS_QUERY) >> { answer() }
+        !replicaRouting.replicaFresh
+        meterRegistry.get(BookingMetrics.REPLICA_LAG).gauge().value().naN
+
+        where:
+        description                                    | answer
+        "a standby whose WAL receiver is down"         | { status(true, false, true, 0.0d) }
+        "a standby that never replayed a transaction"  | { status(true, true, false, null) }
+        "a replica that can not be reached"            | { throw new DataAccessResourceFailureException("Connection refused") }
+    }
+
+    def "the lag is checked on start and then every lag check interval until stopped"() {
+        given:
+        PollingConditions conditions = new PollingConditions(timeout: 5)
+        List<Double> lags = [2.0d, 2.0d, 0.5d]
+        replicaJdbcTemplate.queryForMap(ReplicaLagMonitor.STATUS_QUERY) >> { status(true, true, false, lags.size() > 1 ? lags.removeAt(0) : lags[0]) }
+
+        when:
+        replicaLagMonitor.start()
+
+        then:
+        conditions.eventually {
+            assert replicaRouting.replicaFresh
+        }
+
+        when:
+        replicaLagMonitor.stop()
+
+        then:
+        !replicaLagMonitor.monitor.alive
+    }
+
+    def "the lag is checked on the replica data source"() {
+        given:
+        DataSource replicaDataSource = Mock()
+
+        when:
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replicaDataSource, replicaRouting, new BookingMetrics(new SimpleMeterRegistry()),
+                Duration.ofSeconds(1), Duration.ofSeconds(1))
+
+        then:
+        monitor.replicaJdbcTemplate.dataSource == replicaDataSource
+        monitor.maxLagSeconds == 1.0d
+    }
+
+    private static Map<String, Object> status(final Boolean inRecovery, final Boolean streaming, final Boolean replayed, final Double replayAge) {
+        return [in_recovery: inRecovery, streaming: streaming, replayed: replayed, replay_age: replayAge]
+    }
+}
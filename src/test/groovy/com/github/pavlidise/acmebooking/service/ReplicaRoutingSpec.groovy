@@ -0,0 +1,119 @@
+package com.github.pavlidise.acmebooking.service
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.time.Duration
+import java.util.concurrent.Executors
+import java.util.function.Supplier
+
+class ReplicaRoutingSpec extends Specification {
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    @Subject
+    private ReplicaRouting replicaRouting = new ReplicaRouting(new BookingMetrics(meterRegistry), Duration.ofSeconds(1), Duration.ofMillis(500))
+
+    def "setup"() {
+        replicaRouting.setReplicaFresh(true)
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true)
+    }
+
+    def "cleanup"() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false)
+        replicaRouting.requirePrimary(false)
+    }
+
+    def "a replica read in a read-only transaction goes to the fresh replica, every other read to the primary"() {
+        expect:
+        replicaRead() == ReplicaRouting.REPLICA
+        replicaRouting.determineTarget() == ReplicaRouting.PRIMARY
+        meterRegistry.get(BookingMetrics.REPLICA_READS).tag("target", ReplicaRouting.REPLICA).counter().count() == 1
+        meterRegistry.find(BookingMetrics.REPLICA_READS).tag("target", ReplicaRouting.PRIMARY).counter() == null
+    }
+
+    def "a replica read in a read-write transaction goes to the primary, uncounted"() {
+        given:
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false)
+
+        expect:
+        replicaRead() == ReplicaRouting.PRIMARY
+        meterRegistry.find(BookingMetrics.REPLICA_READS).counter() == null
+    }
+
+    def "a replica read goes to the primary while the replica lags behind"() {
+        given:
+        replicaRouting.setReplicaFresh(false)
+
+        expect:
+        replicaRead() == ReplicaRouting.PRIMARY
+        meterRegistry.get(BookingMetrics.REPLICA_READS).tag("target", ReplicaRouting.PRIMARY).counter().count() == 1
+
+        when:
+        replicaRouting.setReplicaFresh(true)
+
+        then:
+        replicaRead() == ReplicaRouting.REPLICA
+    }
+
+    def "a replica read goes to the primary while the primary is required, e.g. for a client that wrote lately"() {
+        when:
+        replicaRouting.requirePrimary(true)
+
+        then:
+        replicaRead() == ReplicaRouting.PRIMARY
+
+        when:
+        replicaRouting.requirePrimary(false)
+
+        then:
+        replicaRead() == ReplicaRouting.REPLICA
+    }
+
+    def "a replica read nested in another one leaves the outer one a replica read"() {
+        given:
+        List<String> targets = []
+
+        when:
+        replicaRouting.readFromReplica({
+            replicaRouting.readFromReplica({ targets << replicaRouting.determineTarget() } as Runnable)
+            targets << replicaRouting.determineTarget()
+        } as Runnable)
+        targets << replicaRouting.determineTarget()
+
+        then:
+        targets == [ReplicaRouting.REPLICA, ReplicaRouting.REPLICA, ReplicaRouting.PRIMARY]
+    }
+
+    def "a task submitted while the primary is required requires it on the thread it runs on, and only while it runs"() {
+        given:
+        def executor = Executors.newSingleThreadExecutor()
+        List<Boolean> primaryRequired = []
+
+        when:
+        replicaRouting.requirePrimary(required)
+        Runnable task = replicaRouting.propagate({ primaryRequired << ReplicaRouting.PRIMARY_REQUIRED.get() })
+        replicaRouting.requirePrimary(false)
+        executor.submit(task).get()
+        executor.submit({ primaryRequired << ReplicaRouting.PRIMARY_REQUIRED.get() } as Runnable).get()
+
+        then:
+        primaryRequired == [required, false]
+
+        cleanup:
+        executor.shutdown()
+
+        where:
+        required << [true, false]
+    }
+
+    def "the staleness bound is the max lag and the lag check interval"() {
+        expect:
+        replicaRouting.stalenessBound() == Duration.ofMillis(1500)
+    }
+
+    private String replicaRead() {
+        return replicaRouting.readFromReplica({ replicaRouting.determineTarget() } as Supplier<String>)
+    }
+}
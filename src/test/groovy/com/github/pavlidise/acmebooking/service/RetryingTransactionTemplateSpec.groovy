@@ -0,0 +1,99 @@
+package com.github.pavlidise.acmebooking.service
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.dao.CannotAcquireLockException
+import org.springframework.dao.DataIntegrityViolationException
+import org.springframework.transaction.PlatformTransactionManager
+import org.springframework.transaction.TransactionStatus
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import spock.lang.Specification
+import spock.lang.Subject
+
+import java.sql.SQLException
+import java.util.function.Supplier
+
+class RetryingTransactionTemplateSpec extends Specification {
+
+    private final PlatformTransactionManager transactionManager = Mock()
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    @Subject
+    private final RetryingTransactionTemplate retryingTransactionTemplate = new RetryingTransactionTemplate(transactionManager, new BookingMetrics(meterRegistry), 3)
+
+    def "execute runs the action in a transaction and commits it"() {
+        given:
+        TransactionStatus transactionStatus = Stub()
+
+        when:
+        String result = retryingTransactionTemplate.execute({ "booked" } as Supplier)
+
+        then:
+        1 * transactionManager.getTransaction(_) >> transactionStatus
+        1 * transactionManager.commit(transactionStatus)
+        result == "booked"
+    }
+
+    def "execute runs the action again in a new transaction after a serialization failure"() {
+        given:
+        Supplier<String> action = Mock()
+
+        when:
+        String result = retryingTransactionTemplate.execute(action)
+
+        then:
+        2 * action.get() >> { throw serializationFailure("40001") } >> "booked"
+        2 * transactionManager.getTransaction(_)
+        1 * transactionManager.rollback(_)
+        1 * transactionManager.commit(_)
+        result == "booked"
+        meterRegistry.get(BookingMetrics.RETRIES).tag("sqlstate", "40001").counter().count() == 1
+    }
+
+    def "execute gives up after the maximum number of attempts"() {
+        given:
+        Supplier<String> action = Mock()
+
+        when:
+        retryingTransactionTemplate.execute(action)
+
+        then:
+        3 * action.get() >> { throw serializationFailure("40P01") }
+        3 * transactionManager.rollback(_)
+        thrown(CannotAcquireLockException)
+        meterRegistry.get(BookingMetrics.RETRIES).tag("sqlstate", "40P01").counter().count() == 2
+    }
+
+    def "execute does not retry other exceptions"() {
+        given:
+        Supplier<String> action = Mock()
+
+        when:
+        retryingTransactionTemplate.execute(action)
+
+        then:
+        1 * action.get() >> { throw new DataIntegrityViolationException("could not execute statement", new SQLException("violates foreign key constraint", "23503")) }
+        1 * transactionManager.rollback(_)
+        thrown(DataIntegrityViolationException)
+        meterRegistry.find(BookingMetrics.RETRIES).counter() == null
+    }
+
+    def "execute joins the current transaction without retrying it"() {
+        given:
+        Supplier<String> action = Mock()
+        TransactionSynchronizationManager.setActualTransactionActive(true)
+
+        when:
+        retryingTransactionTemplate.execute(action)
+
+        then:
+        1 * action.get() >> { throw serializationFailure("40001") }
+        0 * transactionManager._
+        thrown(CannotAcquireLockException)
+
+        cleanup:
+        TransactionSynchronizationManager.setActualTransactionActive(false)
+    }
+
+    private static CannotAcquireLockException serializationFailure(final String sqlState) {
+        return new CannotAcquireLockException("could not execute statement", new SQLException("could not serialize access", sqlState))
+    }
+}
@@ -2,18 +2,23 @@ package com.github.pavlidise.acmebooking.service
 
 import com.github.pavlidise.acmebooking.integration.repository.RoomRepository
 import com.github.pavlidise.acmebooking.model.entity.RoomEntity
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
 import org.springframework.cache.Cache
 import org.springframework.cache.CacheManager
+import org.springframework.cache.interceptor.SimpleKey
+import org.springframework.cache.support.SimpleValueWrapper
 import spock.lang.Specification
 import spock.lang.Subject
 
 class RoomCacheServiceSpec extends Specification {
 
     private final Cache cache = Mock()
+    private final Cache missesCache = Mock()
     private final CacheManager cacheManager = Mock()
     private final RoomRepository roomRepository = Mock()
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
     @Subject
-    private final RoomCacheService roomCacheService = new RoomCacheServiceImpl(cacheManager, roomRepository)
+    private final RoomCacheService roomCacheService = new RoomCacheServiceImpl(cacheManager, roomRepository, new BookingMetrics(meterRegistry))
 
     private static String targetRoom
     private static RoomEntity roomEntity
@@ -25,6 +30,7 @@ class RoomCacheServiceSpec extends Specification {
 
     def "setup"(){
         cacheManager.getCache("rooms") >> cache
+        cacheManager.getCache("roomMisses") >> missesCache
     }
 
     def "getRoomByName returns room from cache"() {
@@ -32,32 +38,67 @@ class RoomCacheServiceSpec extends Specification {
         Optional<RoomEntity> result = roomCacheService.getRoomByName(targetRoom)
 
         then:
-        1 * cache.get(targetRoom, RoomEntity.class) >> roomEntity
+        1 * cache.get(targetRoom) >> new SimpleValueWrapper(roomEntity)
         0 * roomRepository.findByRoomName(_)
+        0 * cache.putIfAbsent(_, _)
+        meterRegistry.get(BookingMetrics.ROOM_LOOKUP).tag("source", "cache").timer().count() == 1
         result.isPresent()
         result.get() == roomEntity
     }
 
-    def "getRoomByName returns room from database and caches it"() {
+    def "getRoomByName returns optional.empty for a room cached as not found"() {
         when:
         Optional<RoomEntity> result = roomCacheService.getRoomByName(targetRoom)
 
         then:
-        1 * cache.get(targetRoom, RoomEntity.class) >> null
+        1 * cache.get(targetRoom) >> null
+        1 * missesCache.get(targetRoom) >> new SimpleValueWrapper(true)
+        0 * roomRepository.findByRoomName(_)
+        0 * cache.putIfAbsent(_, _)
+        meterRegistry.get(BookingMetrics.ROOM_LOOKUP).tag("source", "cache").timer().count() == 1
+        result.isEmpty()
+    }
+
+    def "getRoomByName returns room from database on a cache miss"() {
+        when:
+        Optional<RoomEntity> result = roomCacheService.getRoomByName(targetRoom)
+
+        then:
+        1 * cache.get(targetRoom) >> null
         1 * roomRepository.findByRoomName(targetRoom) >> Optional.of(roomEntity)
-        1 * cache.put(targetRoom, roomEntity)
+        1 * cache.putIfAbsent(targetRoom, roomEntity)
+        meterRegistry.get(BookingMetrics.ROOM_LOOKUP).tag("source", "database").timer().count() == 1
         result.isPresent()
         result.get() == roomEntity
     }
 
-    def "getRoomByName returns optional.empty when room is not found anywhere"() {
+    def "getRoomByName returns optional.empty when room is not found anywhere, remembering it in the misses cache"() {
         when:
         Optional<RoomEntity> result = roomCacheService.getRoomByName(targetRoom)
 
         then:
-        1 * cache.get(targetRoom, RoomEntity.class) >> null
+        1 * cache.get(targetRoom) >> null
+        1 * missesCache.get(targetRoom) >> null
         1 * roomRepository.findByRoomName(targetRoom) >> Optional.empty()
-        0 * cache.put(_, _)
+        0 * cache.putIfAbsent(_, _)
+        1 * missesCache.put(targetRoom, true)
         result.isEmpty()
     }
+
+    def "getAllRooms returns the rooms from the room list cache, fetching them from the database on a cache miss"() {
+        given:
+        Cache roomListCache = Mock()
+        cacheManager.getCache("roomList") >> roomListCache
+
+        when:
+        List<RoomEntity> first = roomCacheService.getAllRooms()
+        List<RoomEntity> second = roomCacheService.getAllRooms()
+
+        then:
+        2 * roomListCache.get(SimpleKey.EMPTY) >>> [null, new SimpleValueWrapper([roomEntity])]
+        1 * roomRepository.getAllRooms() >> [roomEntity]
+        1 * roomListCache.putIfAbsent(SimpleKey.EMPTY, [roomEntity])
+        first == [roomEntity]
+        second == [roomEntity]
+    }
 }
@@ -0,0 +1,115 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.integration.repository.RoomRepository
+import com.github.pavlidise.acmebooking.model.entity.RoomEntity
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.Duration
+import java.time.LocalDateTime
+
+class RoomCacheSnapshotSpec extends Specification {
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2030, 1, 7, 10, 0, 0, 123_000_000)
+
+    @TempDir
+    private Path directory
+
+    private RoomRepository roomRepository = Mock()
+
+    def "all rooms are loaded when snapshots are disabled"() {
+        given:
+        RoomCacheSnapshot roomCacheSnapshot = new RoomCacheSnapshot(roomRepository, "", Duration.ofMinutes(5))
+        List<RoomEntity> rooms = [room(1L, "Conference Room", 12, MONDAY)]
+
+        when:
+        List<RoomEntity> loadedRooms = roomCacheSnapshot.loadRooms()
+
+        then:
+        1 * roomRepository.getAllRooms() >> rooms
+        loadedRooms == rooms
+        Files.list(directory).count() == 0
+    }
+
+    def "all rooms are loaded and written to the snapshot when there is none yet"() {
+        given:
+        RoomCacheSnapshot roomCacheSnapshot = new RoomCacheSnapshot(roomRepository, directory.resolve("cache").toString(), Duration.ofMinutes(5))
+        List<RoomEntity> rooms = [room(1L, "Conference Room", 12, MONDAY), room(2L, "Réunion ☕", null, MONDAY.minusDays(1))]
+
+        when:
+        List<RoomEntity> loadedRooms = roomCacheSnapshot.loadRooms()
+        RoomCacheSnapshot.Snapshot snapshot = roomCacheSnapshot.read().get()
+
+        then:
+        1 * roomRepository.getAllRooms() >> rooms
+        loadedRooms == rooms
+        snapshot.watermark() == MONDAY
+        snapshot.rooms().collect { [it.id, it.roomName, it.roomCapacity] } == [[1L, "Conference Room", 12 as Short], [2L, "Réunion ☕", null]]
+    }
+
+    def "rooms are read from the snapshot and caught up with the rooms updated since a little before it was taken"() {
+        given:
+        RoomCacheSnapshot roomCacheSnapshot = new RoomCacheSnapshot(roomRepository, directory.toString(), Duration.ofMinutes(5))
+        roomCacheSnapshot.write(new RoomCacheSnapshot.Snapshot(MONDAY, [room(1L, "Conference Room", 12, null), room(2L, "Board Room", 8, null)]))
+
+        when:
+        List<RoomEntity> loadedRooms = roomCacheSnapshot.loadRooms()
+
+        then:
+        0 * roomRepository.getAllRooms()
+        1 * roomRepository.findRoomsUpdatedSince(MONDAY.minusMinutes(5)) >> [room(2L, "Boardroom", 10, MONDAY.plusHours(1)), room(3L, "Library", 4, MONDAY.plusHours(2))]
+        loadedRooms.collect { [it.id, it.roomName, it.roomCapacity] } == [[1L, "Conference Room", 12 as Short], [2L, "Boardroom", 10 as Short], [3L, "Library", 4 as Short]]
+        roomCacheSnapshot.read().get().watermark() == MONDAY.plusHours(2)
+    }
+
+    def "the watermark of the snapshot never goes back when no room was updated since"() {
+        given:
+        RoomCacheSnapshot roomCacheSnapshot = new RoomCacheSnapshot(roomRepository, directory.toString(), Duration.ofMinutes(5))
+        roomCacheSnapshot.write(new RoomCacheSnapshot.Snapshot(MONDAY, [room(1L, "Conference Room", 12, null)]))
+
+        when:
+        roomCacheSnapshot.loadRooms()
+
+        then:
+        1 * roomRepository.findRoomsUpdatedSince(_) >> [room(1L, "Conference Room", 12, MONDAY.minusDays(1))]
+        roomCacheSnapshot.read().get().watermark() == MONDAY
+    }
+
+    def "all rooms are loaded when the snapshot can not be read"() {
+        given:
+        RoomCacheSnapshot roomCacheSnapshot = new RoomCacheSnapshot(roomRepository, directory.toString(), Duration.ofMinutes(5))
+        Files.write(directory.resolve(RoomCacheSnapshot.FILE_NAME), content as byte[])
+        List<RoomEntity> rooms = [room(1L, "Conference Room", 12, MONDAY)]
+
+        when:
+        List<RoomEntity> loadedRooms = roomCacheSnapshot.loadRooms()
+
+        then:
+        1 * roomRepository.getAllRooms() >> rooms
+        0 * roomRepository.findRoomsUpdatedSince(_)
+        loadedRooms == rooms
+
+        where:
+        content << [[1, 2, 3], [0x41, 0x43, 0x4d, 0x52, 0, 0, 0, 9], [0, 0, 0, 0, 0, 0, 0, 1]]
+    }
+
+    def "a snapshot that can not be written is skipped"() {
+        given:
+        Path notADirectory = Files.createFile(directory.resolve("file"))
+        RoomCacheSnapshot roomCacheSnapshot = new RoomCacheSnapshot(roomRepository, notADirectory.toString(), Duration.ofMinutes(5))
+        List<RoomEntity> rooms = [room(1L, "Conference Room", 12, MONDAY)]
+
+        when:
+        List<RoomEntity> loadedRooms = roomCacheSnapshot.loadRooms()
+
+        then:
+        1 * roomRepository.getAllRooms() >> rooms
+        loadedRooms == rooms
+    }
+
+    private static RoomEntity room(final Long id, final String name, final Integer capacity, final LocalDateTime updatedAt) {
+        return new RoomEntity(id: id, roomName: name, roomCapacity: capacity as Short, updatedAt: updatedAt)
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.integration.repository.BookingRepository
+import spock.lang.Specification
+
+class RoomWriteLockSpec extends Specification {
+
+    private final BookingRepository bookingRepository = Mock()
+
+    def "advisory lock takes the advisory lock of each room once, in ascending order of room id"() {
+        given:
+        RoomWriteLock roomWriteLock = new AdvisoryRoomWriteLock(bookingRepository)
+
+        when:
+        roomWriteLock.lock([7L, 3L, 7L, 5L])
+
+        then:
+        1 * bookingRepository.lockRoomForWrite(3L)
+
+        then:
+        1 * bookingRepository.lockRoomForWrite(5L)
+
+        then:
+        1 * bookingRepository.lockRoomForWrite(7L)
+        0 * bookingRepository._
+    }
+
+    def "no-op lock leaves concurrent writes to the database"() {
+        when:
+        new NoOpRoomWriteLock().lock([1L])
+
+        then:
+        0 * bookingRepository._
+    }
+}
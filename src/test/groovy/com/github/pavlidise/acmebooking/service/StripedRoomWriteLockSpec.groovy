@@ -0,0 +1,111 @@
+package com.github.pavlidise.acmebooking.service
+
+import org.springframework.transaction.support.TransactionSynchronization
+import org.springframework.transaction.support.TransactionSynchronizationManager
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+class StripedRoomWriteLockSpec extends Specification {
+
+    private final StripedRoomWriteLock roomWriteLock = new StripedRoomWriteLock(4)
+    @AutoCleanup("shutdownNow")
+    private final ExecutorService transactions = Executors.newCachedThreadPool()
+
+    def "lock throws IllegalStateException outside of a transaction"() {
+        when:
+        roomWriteLock.lock([1L])
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    @Timeout(10)
+    def "a room stays locked until the transaction that locked it completes"() {
+        given:
+        CountDownLatch locked = new CountDownLatch(1)
+        CountDownLatch complete = new CountDownLatch(1)
+        CompletableFuture<Void> firstTransaction = CompletableFuture.runAsync({
+            inTransaction {
+                roomWriteLock.lock([1L])
+                locked.countDown()
+                complete.await()
+            }
+        }, transactions)
+        locked.await()
+
+        when:
+        CompletableFuture<Void> secondTransaction = CompletableFuture.runAsync({ inTransaction { roomWriteLock.lock([1L]) } }, transactions)
+
+        then:
+        !completesSoon(secondTransaction)
+
+        when:
+        complete.countDown()
+
+        then:
+        firstTransaction.get(5, TimeUnit.SECONDS) == null
+        secondTransaction.get(5, TimeUnit.SECONDS) == null
+    }
+
+    @Timeout(10)
+    def "rooms sharing a stripe are locked once, and rooms of other stripes stay available"() {
+        given:
+        CountDownLatch locked = new CountDownLatch(1)
+        CountDownLatch complete = new CountDownLatch(1)
+        CompletableFuture<Void> firstTransaction = CompletableFuture.runAsync({
+            inTransaction {
+                roomWriteLock.lock([1L, 5L, 9L])
+                locked.countDown()
+                complete.await()
+            }
+        }, transactions)
+        locked.await()
+
+        expect:
+        CompletableFuture.runAsync({ inTransaction { roomWriteLock.lock([2L, 3L]) } }, transactions).get(5, TimeUnit.SECONDS) == null
+
+        when:
+        CompletableFuture<Void> sameStripeTransaction = CompletableFuture.runAsync({ inTransaction { roomWriteLock.lock([13L]) } }, transactions)
+
+        then:
+        !completesSoon(sameStripeTransaction)
+
+        when:
+        complete.countDown()
+
+        then:
+        firstTransaction.get(5, TimeUnit.SECONDS) == null
+        sameStripeTransaction.get(5, TimeUnit.SECONDS) == null
+    }
+
+    /**
+     * Runs the work as a transaction would, completing the registered synchronizations at the end.
+     */
+    private static void inTransaction(final Closure work) {
+        TransactionSynchronizationManager.initSynchronization()
+        try {
+            work()
+        } finally {
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.synchronizations
+            TransactionSynchronizationManager.clearSynchronization()
+            synchronizations*.afterCompletion(TransactionSynchronization.STATUS_COMMITTED)
+        }
+    }
+
+    private static boolean completesSoon(final CompletableFuture<Void> transaction) {
+        try {
+            transaction.get(200, TimeUnit.MILLISECONDS)
+            return true
+        } catch (TimeoutException ignored) {
+            return false
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.pavlidise.acmebooking.service
+
+import com.github.pavlidise.acmebooking.integration.repository.AcmeUserRepository
+import com.github.pavlidise.acmebooking.model.entity.AcmeUserEntity
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.springframework.cache.Cache
+import org.springframework.cache.CacheManager
+import org.springframework.cache.support.SimpleValueWrapper
+import spock.lang.Specification
+import spock.lang.Subject
+
+class UserCacheServiceSpec extends Specification {
+
+    private final Cache cache = Mock()
+    private final Cache missesCache = Mock()
+    private final CacheManager cacheManager = Mock()
+    private final AcmeUserRepository acmeUserRepository = Mock()
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry()
+    @Subject
+    private final UserCacheService userCacheService = new UserCacheServiceImpl(cacheManager, acmeUserRepository, new BookingMetrics(meterRegistry))
+
+    private static AcmeUserEntity acmeUserEntity
+
+    def "setupSpec"() {
+        acmeUserEntity = new AcmeUserEntity(id: 1L, userEmail: "user@example.com")
+    }
+
+    def "setup"() {
+        cacheManager.getCache("users") >> cache
+        cacheManager.getCache("userMisses") >> missesCache
+    }
+
+    def "getUserByEmail returns user from cache, keyed by lower-cased email"() {
+        when:
+        Optional<AcmeUserEntity> result = userCacheService.getUserByEmail("User@Example.com")
+
+        then:
+        1 * cache.get("user@example.com") >> new SimpleValueWrapper(acmeUserEntity)
+        0 * acmeUserRepository.findByUserEmail(_)
+        0 * cache.putIfAbsent(_, _)
+        meterRegistry.get(BookingMetrics.USER_LOOKUP).tag("source", "cache").timer().count() == 1
+        result.get() == acmeUserEntity
+    }
+
+    def "getUserByEmail returns user from database on a cache miss"() {
+        when:
+        Optional<AcmeUserEntity> result = userCacheService.getUserByEmail("user@example.com")
+
+        then:
+        1 * cache.get("user@example.com") >> null
+        1 * acmeUserRepository.findByUserEmail("user@example.com") >> Optional.of(acmeUserEntity)
+        1 * cache.putIfAbsent("user@example.com", acmeUserEntity)
+        meterRegistry.get(BookingMetrics.USER_LOOKUP).tag("source", "database").timer().count() == 1
+        result.get() == acmeUserEntity
+    }
+
+    def "getUserByEmail returns optional.empty when user is not found anywhere, remembering them in the misses cache"() {
+        when:
+        Optional<AcmeUserEntity> result = userCacheService.getUserByEmail("user@example.com")
+
+        then:
+        1 * cache.get("user@example.com") >> null
+        1 * missesCache.get("user@example.com") >> null
+        1 * acmeUserRepository.findByUserEmail("user@example.com") >> Optional.empty()
+        0 * cache.putIfAbsent(_, _)
+        1 * missesCache.put("user@example.com", true)
+        result.isEmpty()
+    }
+
+    def "getUserByEmail returns optional.empty for a user cached as not found"() {
+        when:
+        Optional<AcmeUserEntity> result = userCacheService.getUserByEmail("User@Example.com")
+
+        then:
+        1 * cache.get("user@example.com") >> null
+        1 * missesCache.get("user@example.com") >> new SimpleValueWrapper(true)
+        0 * acmeUserRepository.findByUserEmail(_)
+        result.isEmpty()
+    }
+
+    def "evictAll clears the users cache and its misses"() {
+        when:
+        userCacheService.evictAll()
+
+        then:
+        1 * cache.clear()
+        1 * missesCache.clear()
+    }
+
+    def "evict evicts the email in lower case from the users cache and its misses"() {
+        when:
+        userCacheService.evict("User@Example.com")
+
+        then:
+        1 * cache.evict("user@example.com")
+        1 * missesCache.evict("user@example.com")
+        0 * cache.clear()
+    }
+}
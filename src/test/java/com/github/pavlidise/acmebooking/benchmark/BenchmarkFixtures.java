@@ -0,0 +1,49 @@
+package com.github.pavlidise.acmebooking.benchmark;
+
+import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO;
+import com.github.pavlidise.acmebooking.model.entity.AcmeUserEntity;
+import com.github.pavlidise.acmebooking.model.entity.BookingEntity;
+import com.github.pavlidise.acmebooking.model.entity.RoomEntity;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Test data shared by the benchmarks.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static RoomEntity room(final Long id, final String roomName) {
+        RoomEntity room = new RoomEntity();
+        room.setId(id);
+        room.setRoomName(roomName);
+        room.setRoomCapacity((short) 10);
+        return room;
+    }
+
+    static AcmeUserEntity user(final String userEmail) {
+        AcmeUserEntity user = new AcmeUserEntity();
+        user.setId(1L);
+        user.setUsername(userEmail.substring(0, userEmail.indexOf('@')));
+        user.setUserEmail(userEmail);
+        return user;
+    }
+
+    static BookingEntity booking(final RoomEntity room, final AcmeUserEntity user, final LocalDateTime bookingStartTime) {
+        return BookingEntity.builder()
+                .id(1L)
+                .uuid(UUID.randomUUID())
+                .room(room)
+                .acmeUser(user)
+                .bookingStartTime(bookingStartTime)
+                .bookingEndTime(bookingStartTime.plusHours(1))
+                .build();
+    }
+
+    static ConfirmedBookingDTO confirmedBooking(final LocalDateTime bookingStartTime) {
+        return new ConfirmedBookingDTO(UUID.randomUUID(), "Conference Room", "user@example.com", bookingStartTime, bookingStartTime.plusHours(1));
+    }
+}
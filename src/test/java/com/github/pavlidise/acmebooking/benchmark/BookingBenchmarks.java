@@ -0,0 +1,101 @@
+package com.github.pavlidise.acmebooking.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs the benchmarks of the booking hot paths, as the benchmark Maven profile does, and writes their results as JSON.
+ * Given the results of an earlier run as a baseline, it fails when any benchmark got slower than the tolerance allows.
+ * <p>
+ * Configured through system properties:
+ * <ul>
+ *     <li>benchmark.includes: regular expression of the benchmarks to run</li>
+ *     <li>benchmark.result: file to write the results to</li>
+ *     <li>benchmark.baseline: results of an earlier run to compare with, optional</li>
+ *     <li>benchmark.tolerance: allowed slowdown relative to the baseline, e.g. 0.10 for 10%</li>
+ * </ul>
+ */
+public final class BookingBenchmarks {
+
+    private BookingBenchmarks() {
+    }
+
+    public static void main(final String[] args) throws RunnerException, IOException {
+        Path result = Path.of(System.getProperty("benchmark.result", "target/benchmark/jmh-result.json"));
+        Files.createDirectories(result.toAbsolutePath().getParent());
+        Collection<RunResult> runResults = new Runner(new OptionsBuilder()
+                .include(System.getProperty("benchmark.includes", ".*Benchmark.*"))
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString())
+                .build())
+                .run();
+
+        String baseline = System.getProperty("benchmark.baseline", "");
+        if (baseline.isBlank()) {
+            return;
+        }
+        List<String> regressions = findRegressions(readScores(Path.of(baseline)), readScores(result),
+                Double.parseDouble(System.getProperty("benchmark.tolerance", "0.10")));
+        System.out.printf("%nCompared %d benchmarks with baseline %s%n", runResults.size(), baseline);
+        if (!regressions.isEmpty()) {
+            regressions.forEach(System.out::println);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Benchmarks missing from either side are skipped, so that benchmarks can be added or removed between releases.
+     */
+    static List<String> findRegressions(final Map<String, Score> baselineScores, final Map<String, Score> currentScores,
+                                        final double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        currentScores.forEach((benchmark, current) -> {
+            Score previous = baselineScores.get(benchmark);
+            if (previous == null || !previous.unit().equals(current.unit())) {
+                return;
+            }
+            double slowdown = current.higherIsBetter()
+                    ? (previous.value() - current.value()) / previous.value()
+                    : (current.value() - previous.value()) / previous.value();
+            if (slowdown > tolerance) {
+                regressions.add(String.format("REGRESSION %s: %.3f -> %.3f %s (%.0f%% slower)",
+                        benchmark, previous.value(), current.value(), current.unit(), slowdown * 100));
+            }
+        });
+        return regressions;
+    }
+
+    /**
+     * Scores of a JMH JSON result file, keyed by benchmark and parameters.
+     */
+    static Map<String, Score> readScores(final Path resultFile) throws IOException {
+        Map<String, Score> scores = new HashMap<>();
+        for (JsonNode benchmark : new ObjectMapper().readTree(resultFile.toFile())) {
+            Map<String, String> params = new TreeMap<>();
+            benchmark.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+            JsonNode primaryMetric = benchmark.path("primaryMetric");
+            scores.put(benchmark.path("benchmark").asText() + params,
+                    new Score(primaryMetric.path("score").asDouble(), primaryMetric.path("scoreUnit").asText(),
+                            "thrpt".equals(benchmark.path("mode").asText())));
+        }
+        return scores;
+    }
+
+    record Score(double value, String unit, boolean higherIsBetter) {
+    }
+}
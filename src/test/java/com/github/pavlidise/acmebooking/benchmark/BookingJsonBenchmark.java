@@ -0,0 +1,54 @@
+package com.github.pavlidise.acmebooking.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Serialization of search results, with an ObjectMapper configured like the one of the application.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BookingJsonBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int bookingCount;
+
+    private ObjectMapper objectMapper;
+
+    private List<ConfirmedBookingDTO> confirmedBookings;
+
+    @Setup
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        confirmedBookings = IntStream.range(0, bookingCount)
+                .mapToObj(i -> BenchmarkFixtures.confirmedBooking(LocalDateTime.of(2030, 1, 7, 10, 0).plusHours(i)))
+                .toList();
+    }
+
+    @Benchmark
+    public byte[] writeConfirmedBookings() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(confirmedBookings);
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.pavlidise.acmebooking.benchmark;
+
+import com.github.pavlidise.acmebooking.mapper.BookingMapper;
+import com.github.pavlidise.acmebooking.model.dto.ConfirmedBookingDTO;
+import com.github.pavlidise.acmebooking.model.entity.BookingEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class BookingMapperBenchmark {
+
+    private BookingEntity booking;
+
+    @Setup
+    public void setup() {
+        booking = BenchmarkFixtures.booking(BenchmarkFixtures.room(1L, "Conference Room"), BenchmarkFixtures.user("user@example.com"),
+                LocalDateTime.of(2030, 1, 7, 10, 0));
+    }
+
+    @Benchmark
+    public ConfirmedBookingDTO mapConfirmedBookingFromBooking() {
+        return BookingMapper.INSTANCE.mapConfirmedBookingFromBooking(booking);
+    }
+}
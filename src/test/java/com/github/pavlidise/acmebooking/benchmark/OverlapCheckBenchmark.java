@@ -0,0 +1,85 @@
+package com.github.pavlidise.acmebooking.benchmark;
+
+import com.github.pavlidise.acmebooking.model.dto.BookingIntervalDTO;
+import com.github.pavlidise.acmebooking.service.HourlyBitmapRoomScheduleIndex;
+import com.github.pavlidise.acmebooking.service.IntervalTreeRoomScheduleIndex;
+import com.github.pavlidise.acmebooking.service.RoomScheduleIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Overlap checks against the room schedule index, holding one booking of an hour every two hours per room.
+ * Requested periods are drawn at random over the whole schedule, so about half of them overlap.
+ * Compares the sorted map of bookings with the bitmap of booked hours.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class OverlapCheckBenchmark {
+
+    private static final int ROOMS = 10;
+    private static final int REQUESTED_PERIODS = 1024;
+    private static final LocalDateTime SCHEDULE_START = LocalDate.now().plusDays(1).atStartOfDay();
+
+    /**
+     * Far enough for the schedules to cover every booking of the largest schedule, 2 hours apart.
+     */
+    private static final Duration HORIZON = Duration.ofDays(366L * 25);
+
+    @Param({"1000", "100000"})
+    private int bookingsPerRoom;
+
+    @Param({"interval-tree", "hourly-bitmap"})
+    private String index;
+
+    private RoomScheduleIndex roomScheduleIndex;
+
+    private LocalDateTime[] requestedStartTimes;
+
+    private int nextRequest;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<BookingIntervalDTO> bookingIntervals = IntStream.range(0, ROOMS * bookingsPerRoom)
+                .mapToObj(i -> {
+                    LocalDateTime bookingStartTime = SCHEDULE_START.plusHours(2L * (i / ROOMS));
+                    return new BookingIntervalDTO((long) (i % ROOMS), UUID.randomUUID(), bookingStartTime, bookingStartTime.plusHours(1));
+                })
+                .toList();
+        roomScheduleIndex = "hourly-bitmap".equals(index) ? new HourlyBitmapRoomScheduleIndex(true, HORIZON) : new IntervalTreeRoomScheduleIndex(true, HORIZON);
+        roomScheduleIndex.load(bookingIntervals);
+
+        SplittableRandom random = new SplittableRandom(42);
+        requestedStartTimes = IntStream.range(0, REQUESTED_PERIODS)
+                .mapToObj(i -> SCHEDULE_START.plusMinutes(random.nextLong(2L * 60 * bookingsPerRoom)))
+                .toArray(LocalDateTime[]::new);
+    }
+
+    @Benchmark
+    public boolean hasOverlap() {
+        LocalDateTime requestedStartTime = requestedStartTimes[nextRequest++ & (REQUESTED_PERIODS - 1)];
+        return roomScheduleIndex.hasOverlap((long) (nextRequest % ROOMS), requestedStartTime, requestedStartTime.plusMinutes(30));
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.pavlidise.acmebooking.benchmark;
+
+import com.github.pavlidise.acmebooking.configuration.CacheConfig;
+import com.github.pavlidise.acmebooking.integration.repository.RoomRepository;
+import com.github.pavlidise.acmebooking.model.entity.RoomEntity;
+import com.github.pavlidise.acmebooking.service.BookingMetrics;
+import com.github.pavlidise.acmebooking.service.RoomCacheService;
+import com.github.pavlidise.acmebooking.service.RoomCacheServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.CacheManager;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Room lookups through the rooms cache, as configured by CacheConfig, over a repository answering from memory.
+ * So a miss measures the cache bookkeeping of a load and an eviction, not a database round trip.
+ */
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class RoomCacheBenchmark {
+
+    private static final String CACHED_ROOM_NAME = "Conference Room";
+    private static final long MAXIMUM_SIZE = 1000;
+
+    private final AtomicLong missCounter = new AtomicLong();
+
+    private RoomCacheService roomCacheService;
+
+    @Setup
+    public void setup() {
+        RoomRepository roomRepository = inMemoryRoomRepository();
+        CacheManager cacheManager = new CacheConfig(roomRepository)
+                .cacheManager(MAXIMUM_SIZE, Duration.ofMinutes(10), 10_000, Duration.ofMinutes(30), MAXIMUM_SIZE, Duration.ofMinutes(1),
+                        ForkJoinPool.commonPool());
+        roomCacheService = new RoomCacheServiceImpl(cacheManager, roomRepository, new BookingMetrics(new SimpleMeterRegistry()));
+        roomCacheService.getRoomByName(CACHED_ROOM_NAME);
+    }
+
+    @Benchmark
+    public Optional<RoomEntity> hit() {
+        return roomCacheService.getRoomByName(CACHED_ROOM_NAME);
+    }
+
+    /**
+     * Every lookup is of a name not seen before, so it is loaded and, once the cache is full, evicts another.
+     */
+    @Benchmark
+    public Optional<RoomEntity> miss() {
+        return roomCacheService.getRoomByName("Room " + missCounter.incrementAndGet());
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(6)
+    public Optional<RoomEntity> concurrentHit() {
+        return hit();
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(2)
+    public Optional<RoomEntity> concurrentMiss() {
+        return miss();
+    }
+
+    private static RoomRepository inMemoryRoomRepository() {
+        return (RoomRepository) Proxy.newProxyInstance(RoomRepository.class.getClassLoader(), new Class<?>[]{RoomRepository.class},
+                (proxy, method, arguments) -> switch (method.getName()) {
+                    case "findByRoomName" -> Optional.of(BenchmarkFixtures.room(1L, (String) arguments[0]));
+                    case "getAllRooms" -> List.of();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.pavlidise.acmebooking.benchmark;
+
+import com.github.pavlidise.acmebooking.service.NoOpRoomWriteLock;
+import com.github.pavlidise.acmebooking.service.RoomWriteLock;
+import com.github.pavlidise.acmebooking.service.StripedRoomWriteLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Booking transactions of 8 threads, each locking a room drawn at random out of the given number of rooms for write,
+ * then holding it for a fixed amount of work standing in for the overlap check and the insert.
+ * With a single room the transactions run one at a time, the more rooms the closer they get to running without locks.
+ */
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class RoomWriteLockBenchmark {
+
+    private static final long WORK_WHILE_LOCKED = 1_000;
+
+    @Param({"striped", "none"})
+    private String lock;
+
+    @Param({"1", "8", "1024"})
+    private int rooms;
+
+    private RoomWriteLock roomWriteLock;
+
+    @Setup
+    public void setup() {
+        roomWriteLock = "striped".equals(lock) ? new StripedRoomWriteLock(256) : new NoOpRoomWriteLock();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public void bookRoom(final Client client) {
+        long roomId = client.random.nextInt(rooms);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            roomWriteLock.lock(List.of(roomId));
+            Blackhole.consumeCPU(WORK_WHILE_LOCKED);
+        } finally {
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        }
+    }
+}
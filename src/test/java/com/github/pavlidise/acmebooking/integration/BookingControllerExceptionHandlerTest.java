@@ -1,12 +1,16 @@
 package com.github.pavlidise.acmebooking.integration;
 
+import com.github.pavlidise.acmebooking.exception.BookingIngestionUnavailableException;
 import com.github.pavlidise.acmebooking.exception.BookingNotFoundException;
+import com.github.pavlidise.acmebooking.exception.InvalidCursorException;
 import com.github.pavlidise.acmebooking.exception.OverlappingBookingException;
 import com.github.pavlidise.acmebooking.exception.PastBookingDeletionException;
 import com.github.pavlidise.acmebooking.exception.RoomNotFoundException;
 import com.github.pavlidise.acmebooking.exception.UserNotFoundException;
 import com.github.pavlidise.acmebooking.integration.rest.BookingController;
+import com.github.pavlidise.acmebooking.service.BookingMetrics;
 import com.github.pavlidise.acmebooking.service.BookingService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,10 +26,14 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.doThrow;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -37,6 +45,9 @@ class BookingControllerExceptionHandlerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockitoBean
     private BookingService bookingService;
 
@@ -77,6 +88,19 @@ class BookingControllerExceptionHandlerTest {
                 .andExpect(content().string("Overlapping booking"));
     }
 
+    @Test
+    void testHandledExceptionsAreCounted() throws Exception {
+        Mockito.doThrow(new OverlappingBookingException("Overlapping booking")).when(bookingService).createBooking(Mockito.any());
+        double countBefore = meterRegistry.counter(BookingMetrics.EXCEPTIONS, "exception", "OverlappingBookingException").count();
+
+        mockMvc.perform(post("/api/v1/bookings")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userEmail\":\"user@example.com\",\"roomName\":\"Conference Room\",\"bookingStartDateTime\":\"" + LocalDateTime.now().plusDays(1) + "\",\"numberOfHours\":2}"))
+                .andExpect(status().isConflict());
+
+        assertEquals(countBefore + 1, meterRegistry.counter(BookingMetrics.EXCEPTIONS, "exception", "OverlappingBookingException").count());
+    }
+
     @Test
     void testHandleRoomNotFoundException() throws Exception {
         Mockito.doThrow(new RoomNotFoundException("Room not found")).when(bookingService).createBooking(Mockito.any());
@@ -99,6 +123,17 @@ class BookingControllerExceptionHandlerTest {
                 .andExpect(content().string("User not found"));
     }
 
+    @Test
+    void testHandleBookingIngestionUnavailableException() throws Exception {
+        Mockito.doThrow(new BookingIngestionUnavailableException("Too many bookings")).when(bookingService).createBooking(Mockito.any());
+
+        mockMvc.perform(post("/api/v1/bookings")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userEmail\":\"user@example.com\",\"roomName\":\"Conference Room\",\"bookingStartDateTime\":\"" + LocalDateTime.now().plusDays(1) + "\",\"numberOfHours\":2}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(content().string("Too many bookings"));
+    }
+
     @Test
     void testHandlePastBookingDeletionException() throws Exception {
         UUID uuid = UUID.randomUUID();
@@ -110,6 +145,26 @@ class BookingControllerExceptionHandlerTest {
                 .andExpect(content().string("Cannot delete past booking"));
     }
 
+    @Test
+    void testHandleInvalidCursorException() throws Exception {
+        Mockito.doThrow(new InvalidCursorException("Invalid cursor: not-a-cursor")).when(bookingService).searchBookingsPage(Mockito.any());
+
+        mockMvc.perform(get("/api/v1/bookings/page")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"roomName\":\"Conference Room\",\"fromDate\":\"2030-01-07\",\"toDate\":\"2030-01-08\",\"cursor\":\"not-a-cursor\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid cursor: not-a-cursor"));
+    }
+
+    @Test
+    void testHandleInvalidCursorExceptionWhenStreamingChanges() throws Exception {
+        mockMvc.perform(get("/api/v1/bookings/changes")
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .header("Last-Event-ID", "not-a-position"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid position: not-a-position"));
+    }
+
     @Test
     void testHandleMethodArgumentTypeMismatchException() throws Exception {
         mockMvc.perform(delete("/api/v1/bookings")
@@ -143,6 +198,44 @@ class BookingControllerExceptionHandlerTest {
                 .andExpect(content().string("{\"numberOfHours\":\"must be greater than or equal to 1\"}"));
     }
 
+    @Test
+    void testHandleConstraintViolationExceptionForEmptyBatch() throws Exception {
+        mockMvc.perform(post("/api/v1/bookings/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("createBookings.bookingRequestDTOs: must not be empty"));
+    }
+
+    @Test
+    void testHandleConstraintViolationExceptionForInvalidBatchItem() throws Exception {
+        mockMvc.perform(post("/api/v1/bookings/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"userEmail\":\"email@acme.com\",\"roomName\":\"Conference Room\",\"bookingStartDateTime\":\"" + LocalDateTime.now().plusDays(1) + "\",\"numberOfHours\": -1}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("createBookings.bookingRequestDTOs[0].numberOfHours: must be greater than or equal to 1"));
+    }
+
+    @Test
+    void testHandleOverlappingBookingExceptionForBatch() throws Exception {
+        Mockito.doThrow(new OverlappingBookingException("Overlapping booking")).when(bookingService).createBookings(Mockito.any());
+
+        mockMvc.perform(post("/api/v1/bookings/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"userEmail\":\"user@example.com\",\"roomName\":\"Conference Room\",\"bookingStartDateTime\":\"" + LocalDateTime.now().plusDays(1) + "\",\"numberOfHours\":2}]"))
+                .andExpect(status().isConflict())
+                .andExpect(content().string("Overlapping booking"));
+    }
+
+    @Test
+    void testHandleMethodArgumentNotValidExceptionForRecurringBooking() throws Exception {
+        mockMvc.perform(post("/api/v1/bookings/recurring")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userEmail\":\"email@acme.com\",\"roomName\":\"Conference Room\",\"firstBookingStartDateTime\":\"" + LocalDateTime.now().plusDays(1) + "\",\"numberOfHours\":2,\"frequency\":\"WEEKLY\",\"interval\":1}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("{\"countOrUntilProvided\":\"exactly one of count or until must be provided\"}"));
+    }
+
     @Test
     void testCatchAllException() throws Exception {
         UUID uuid = UUID.randomUUID();
@@ -153,4 +246,41 @@ class BookingControllerExceptionHandlerTest {
                 .andExpect(status().isInternalServerError())
                 .andExpect(content().string("An unexpected error occurred"));
     }
+
+    @Test
+    void testHandleRoomNotFoundExceptionWhenTaggingSearch() throws Exception {
+        Mockito.doThrow(new RoomNotFoundException("Room not found")).when(bookingService).getBookingsETag(Mockito.any());
+
+        mockMvc.perform(get("/api/v1/bookings")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"roomName\":\"NonExistentRoom\",\"date\":\"2030-01-07\"}"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("Room not found"));
+    }
+
+    @Test
+    void testSearchBookingsIsNotModifiedWhileTheETagMatches() throws Exception {
+        Mockito.when(bookingService.getBookingsETag(Mockito.any())).thenReturn(Optional.of("1-2030-01-07-3"));
+        Mockito.when(bookingService.searchBookings(Mockito.any())).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/v1/bookings")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"roomName\":\"Conference Room\",\"date\":\"2030-01-07\"}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-2030-01-07-3\""))
+                .andExpect(content().string("[]"));
+        mockMvc.perform(get("/api/v1/bookings")
+                        .header("If-None-Match", "\"1-2030-01-07-3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"roomName\":\"Conference Room\",\"date\":\"2030-01-07\"}"))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"1-2030-01-07-3\""))
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/v1/bookings")
+                        .header("If-None-Match", "\"1-2030-01-07-epoch-2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"roomName\":\"Conference Room\",\"date\":\"2030-01-07\"}"))
+                .andExpect(status().isOk());
+        Mockito.verify(bookingService, Mockito.times(2)).searchBookings(Mockito.any());
+    }
 }